@@ -188,6 +188,47 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
         trimEnd();
     }
 
+    /**
+     * Adds messages in chronological order to bottom of list with a single notification and scroll.
+     *
+     * @param messages messages to add. The last one is the newest.
+     * @param scroll   {@code true} if need to scroll list to bottom when messages added.
+     */
+    public void addToStart(List<MESSAGE> messages, boolean scroll) {
+        if (messages == null || messages.isEmpty()) return;
+
+        removeLoadingMessageIfNeeded();
+
+        // Older messages will be trimmed anyway
+        int fromIndex = maxItemsCount > 0 ? Math.max(0, messages.size() - maxItemsCount) : 0;
+        int insertedCount = 0;
+
+        for (int i = fromIndex; i < messages.size(); i++) {
+            MESSAGE message = messages.get(i);
+
+            if (!IMessage.checkMessage(message)) {
+                continue;
+            }
+
+            boolean isNewMessageToday = isDateHeaderEnabled && !isPreviousSameDate(0, message.getCreatedAt());
+            if (isNewMessageToday) {
+                items.add(0, new Wrapper<>(message.getCreatedAt()));
+                insertedCount++;
+            }
+            items.add(0, new Wrapper<>(message));
+            insertedCount++;
+        }
+
+        if (insertedCount == 0) return;
+
+        notifyItemRangeInserted(0, insertedCount);
+        if (layoutManager != null && scroll) {
+            layoutManager.scrollToPosition(0);
+        }
+
+        trimEnd();
+    }
+
     /**
      * Adds messages list in chronological order. Use this method to add history.
      *
@@ -1,26 +1,71 @@
 package com.liskovsoft.smartyoutubetv2.common.app.models.data;
 
+import android.content.Context;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
+import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs.ProfileChangeListener;
+import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Manages a playlist of videos.
+ * Manages a playlist of videos.<br/>
+ * Linked list with the index by the video key: contains, remove and move don't depend on the queue size.<br/>
+ * Changes are appended to the per profile log (see {@link PlaylistStore}) once {@link #restore(Context)} is called.
  */
-public class Playlist {
-    private static final int PLAYLIST_MAX_SIZE = 50;
-    private final List<Video> mPlaylist;
+public class Playlist implements ProfileChangeListener {
+    private static final String TAG = Playlist.class.getSimpleName();
+    static final int PLAYLIST_MAX_SIZE = 10_000;
+    private static final long PERSIST_DELAY_MS = 5_000;
+    private static final int MIN_COMPACT_RECORD_COUNT = 1_000;
+    // Distance between the order labels of the adjacent items
+    private static final long ORDER_GAP = 1 << 16;
+    private final Map<String, Node> mIndex = new HashMap<>();
     private final List<Video> mSyncedItems;
-    private int mCurrentIndex;
+    private Node mHead;
+    private Node mTail;
+    private Node mCurrent;
     private static Playlist sInstance;
+    private Context mContext;
+    private File mLogFile;
+    private final ByteArrayOutputStream mPendingRecords = new ByteArrayOutputStream();
+    private final DataOutputStream mPendingOut = new DataOutputStream(mPendingRecords);
+    private int mPendingRecordCount;
+    private int mLogRecordCount;
+    private boolean mIsReplaying;
+    // The log is being replayed into the detached playlist
+    private boolean mIsRestoring;
+    private int mRestoreId;
+    private final Runnable mPersistInt = this::persistInt;
+
+    private static class Node {
+        final String key;
+        Video video;
+        Node prev;
+        Node next;
+        // Increases from the head to the tail
+        long order;
+
+        Node(String key, Video video) {
+            this.key = key;
+            this.video = video;
+        }
+    }
 
-    private Playlist() {
-        mPlaylist = new ArrayList<>();
+    Playlist() {
         mSyncedItems = new ArrayList<>();
-        mCurrentIndex = -1;
     }
 
-    public static Playlist instance() {
+    public static synchronized Playlist instance() {
         if (sInstance == null) {
             sInstance = new Playlist();
         }
@@ -28,24 +73,67 @@ public class Playlist {
         return sInstance;
     }
 
+    /**
+     * Load the queue of the current profile and start to persist the changes.<br/>
+     * Should be called from the background thread. The playlist isn't locked while the log is read.
+     */
+    public void restore(Context context) {
+        int restoreId;
+
+        synchronized (this) {
+            if (mContext != null || context == null) {
+                return;
+            }
+
+            mContext = context.getApplicationContext();
+            AppPrefs.instance(mContext).addListener(this);
+            restoreId = startRestore();
+        }
+
+        // Don't read the log while it's being written
+        PlaylistStore.flush();
+        restoreInt(restoreId);
+    }
+
     /**
      * Clears the videos from the playlist.
      */
-    public void clear() {
-        mPlaylist.clear();
-        mCurrentIndex = -1;
+    public synchronized void clear() {
+        clearInt();
+        log(PlaylistStore::writeClear);
     }
 
-    public void clearPosition() {
-        mCurrentIndex = -1;
+    public synchronized void clearPosition() {
+        setCurrentInt(null);
     }
 
     /**
      * Used to sync list with remotely added items
      */
-    public void addAll(List<Video> videos) {
-        mPlaylist.removeAll(videos);
-        mPlaylist.addAll(videos);
+    public synchronized void addAll(List<Video> videos) {
+        if (videos == null) {
+            return;
+        }
+
+        for (Video video : videos) {
+            if (video == null) {
+                continue;
+            }
+
+            Node node = mIndex.get(getKey(video));
+
+            if (node != null) {
+                // Keep the current item selected
+                unlink(node);
+                node.video = video;
+            } else {
+                node = new Node(getKey(video), video);
+            }
+
+            linkAfter(mTail, node);
+        }
+
+        trimPlaylist();
     }
 
     /**
@@ -53,7 +141,7 @@ public class Playlist {
      *
      * @param video to be added to the playlist.
      */
-    public void add(Video video) {
+    public synchronized void add(Video video) {
         if (Video.isEmpty(video)) {
             return;
         }
@@ -67,15 +155,15 @@ public class Playlist {
             return;
         }
 
-        boolean isLastElement = !mPlaylist.isEmpty() && video.equals(mPlaylist.get(mPlaylist.size() - 1));
+        boolean isLastElement = mTail != null && video.equals(mTail.video);
 
         remove(video);
 
-        mPlaylist.add(video);
+        linkAfter(mTail, new Node(getKey(video), video));
 
         // Replacing last element? Increase index then.
         if (isLastElement) {
-            mCurrentIndex++;
+            setCurrentInt(mCurrent != null ? mCurrent.next : mHead);
         }
 
         // Video opened from the browser or suggestions.
@@ -84,21 +172,15 @@ public class Playlist {
         stripPrevItem();
     }
 
-    public void next(Video video) {
+    public synchronized void next(Video video) {
         if (Video.isEmpty(video)) {
             return;
         }
 
         remove(video);
 
-        int nextIdx = mPlaylist.size() > mCurrentIndex ? mCurrentIndex + 1 : mPlaylist.size() - 1;
-
-        // IndexOutOfBoundsException fix
-        if (nextIdx < 0) {
-            return;
-        }
-
-        mPlaylist.add(nextIdx, video);
+        // Right after the current or at the head when nothing is playing
+        linkAfter(mCurrent, new Node(getKey(video), video));
 
         // Video opened from the browser or suggestions.
         // In this case remove all next items.
@@ -106,7 +188,7 @@ public class Playlist {
         stripPrevItem();
     }
 
-    public void remove(Video video) {
+    public synchronized void remove(Video video) {
         if (Video.isEmpty(video)) {
             return;
         }
@@ -116,74 +198,47 @@ public class Playlist {
         //    return;
         //}
 
-        int index = mPlaylist.indexOf(video);
+        Node node = mIndex.get(getKey(video));
 
         // If contains
-        if (index >= 0) {
-            mPlaylist.remove(video);
-
-            // Shift video stack index if needed
-            // Don't remove current index. Except this is the last element.
+        if (node != null) {
+            // Don't remove current position. Select next element (or the last one).
             // Give a chance to replace current element.
-            if (index < mCurrentIndex) {
-                mCurrentIndex--;
+            if (node == mCurrent) {
+                setCurrentInt(node.next != null ? node.next : node.prev);
             }
 
-            // Index out of bounds as the result of previous operation.
-            // Select last element in this case.
-            if (mCurrentIndex >= mPlaylist.size()) {
-                mCurrentIndex = mPlaylist.size() - 1;
-            }
+            unlink(node);
         }
     }
 
-    public boolean contains(Video video) {
+    public synchronized boolean contains(Video video) {
         if (Video.isEmpty(video)) {
             return false;
         }
 
-        return mPlaylist.contains(video);
+        return mIndex.containsKey(getKey(video));
     }
 
-    public boolean containsAfterCurrent(Video video) {
+    public synchronized boolean containsAfterCurrent(Video video) {
         if (Video.isEmpty(video)) {
             return false;
         }
 
-        List<Video> afterCurrent = getAllAfterCurrent();
+        Node node = mIndex.get(getKey(video));
 
-        return afterCurrent != null && afterCurrent.contains(video);
+        return node != null && (mCurrent == null || node.order > mCurrent.order);
     }
 
-    ///**
-    // * Trim playlist if one exceeds needed size or current element not last in the list
-    // */
-    //private void trimPlaylist() {
-    //    int fromIndex = 0;
-    //    int toIndex = mCurrentIndex + 1;
-    //
-    //    boolean isLastElement = mCurrentIndex == (mPlaylist.size() - 1);
-    //    boolean playlistTooBig = mPlaylist.size() > PLAYLIST_MAX_SIZE;
-    //
-    //    if (playlistTooBig) {
-    //        fromIndex = mPlaylist.size() - PLAYLIST_MAX_SIZE;
-    //    }
-    //
-    //    if (!isLastElement || playlistTooBig) {
-    //        mPlaylist = mPlaylist.subList(fromIndex, toIndex);
-    //        mCurrentIndex = mPlaylist.size() - 1;
-    //    }
-    //}
-
     /**
      * Moves to the next video in the playlist. If already at the end of the playlist, null will
      * be returned and the position will not change.
      *
      * @return The next video in the playlist.
      */
-    public Video getNext() {
-        if (mCurrentIndex >= 0 && (mCurrentIndex + 1) < mPlaylist.size()) {
-            return mPlaylist.get(mCurrentIndex + 1);
+    public synchronized Video getNext() {
+        if (mCurrent != null && mCurrent.next != null) {
+            return mCurrent.next.video;
         }
 
         return null;
@@ -195,89 +250,80 @@ public class Playlist {
      *
      * @return The previous video in the playlist.
      */
-    public Video getPrevious() {
-        if ((mCurrentIndex - 1) >= 0) {
-            return mPlaylist.get(mCurrentIndex - 1);
+    public synchronized Video getPrevious() {
+        if (mCurrent != null && mCurrent.prev != null) {
+            return mCurrent.prev.video;
         }
 
         return null;
     }
 
-    public void setCurrent(Video video) {
+    public synchronized void setCurrent(Video video) {
         if (Video.isEmpty(video)) {
             return;
         }
 
-        int currentPosition = mPlaylist.indexOf(video);
+        Node node = mIndex.get(getKey(video));
 
-        if (currentPosition >= 0) {
-            mCurrentIndex = currentPosition;
+        if (node != null) {
+            setCurrentInt(node);
         } else {
             add(video);
-            mCurrentIndex = mPlaylist.size() - 1;
+            setCurrentInt(mTail);
         }
     }
 
-    public Video getCurrent() {
-        if (mCurrentIndex < mPlaylist.size() && mCurrentIndex >= 0) {
-            return mPlaylist.get(mCurrentIndex);
-        }
-
-        return null;
+    public synchronized Video getCurrent() {
+        return mCurrent != null ? mCurrent.video : null;
     }
 
-    public List<Video> getAll() {
-        return Collections.unmodifiableList(mPlaylist);
+    public synchronized List<Video> getAll() {
+        return Collections.unmodifiableList(toList(mHead));
     }
 
     public List<Video> getChangedItems() {
         return Collections.unmodifiableList(mSyncedItems);
     }
 
-    public boolean hasNext() {
+    public synchronized boolean hasNext() {
         return getNext() != null;
     }
 
-    public List<Video> getAllAfterCurrent() {
-        if (mCurrentIndex == -1) {
-            return mPlaylist;
-        }
+    public synchronized int size() {
+        return mIndex.size();
+    }
 
-        int fromIndex = mCurrentIndex + 1;
-        if (fromIndex > 0 && fromIndex < mPlaylist.size()) {
-            return mPlaylist.subList(fromIndex, mPlaylist.size());
+    /**
+     * Copy of the items after the current one or null if there's nothing next
+     */
+    public synchronized List<Video> getAllAfterCurrent() {
+        if (mCurrent == null) {
+            return toList(mHead);
         }
 
-        return null;
+        return mCurrent.next != null ? toList(mCurrent.next) : null;
     }
 
-    public void removeAllAfterCurrent() {
-        if (mCurrentIndex == -1) {
+    public synchronized void removeAllAfterCurrent() {
+        if (mCurrent == null) {
             return;
         }
 
-        int fromIndex = mCurrentIndex + 1;
-        int size = mPlaylist.size();
-        if (fromIndex > 0 && fromIndex < size) {
-            //mPlaylist = mPlaylist.subList(0, fromIndex);
-            mPlaylist.subList(fromIndex, size).clear();
+        while (mTail != mCurrent) {
+            unlink(mTail);
         }
     }
 
     /**
-     * Trim playlist if one exceeds needed size or current element not last in the list
+     * Trim playlist if one exceeds needed size
      */
     private void trimPlaylist() {
-        int size = mPlaylist.size();
-        boolean playlistTooBig = size > PLAYLIST_MAX_SIZE;
+        while (mIndex.size() > PLAYLIST_MAX_SIZE) {
+            if (mHead == mCurrent) {
+                setCurrentInt(null);
+            }
 
-        if (playlistTooBig) {
-            //int fromIndex = mPlaylist.size() - PLAYLIST_MAX_SIZE;
-            //int toIndex = mPlaylist.size();
-            //mPlaylist = mPlaylist.subList(fromIndex, toIndex);
-            int toIndex = size - PLAYLIST_MAX_SIZE;
-            mPlaylist.subList(0, toIndex).clear();
-            mCurrentIndex -= toIndex;
+            unlink(mHead);
         }
     }
 
@@ -285,27 +331,24 @@ public class Playlist {
      * Do some cleanup to prevent possible OOM exception
      */
     private void stripPrevItem() {
-        if (mCurrentIndex == -1) {
+        if (mCurrent == null || mCurrent.prev == null) {
             return;
         }
 
-        int prevPosition = mCurrentIndex - 1;
-
-        if (prevPosition < mPlaylist.size() && prevPosition >= 0) {
-            Video prevItem = mPlaylist.get(prevPosition);
-            if (prevItem != null) {
-                prevItem.mediaItem = null;
-                prevItem.nextMediaItem = null;
-                prevItem.shuffleMediaItem = null;
-            }
+        Video prevItem = mCurrent.prev.video;
+        if (prevItem != null) {
+            prevItem.mediaItem = null;
+            prevItem.nextMediaItem = null;
+            prevItem.shuffleMediaItem = null;
         }
     }
 
     private void replace(Video origin, Video newItem) {
-        int index = mPlaylist.indexOf(origin);
+        Node node = mIndex.get(getKey(origin));
 
-        if (index != -1) {
-            mPlaylist.set(index, newItem);
+        if (node != null) {
+            node.video = newItem;
+            log(out -> PlaylistStore.writeReplace(out, node.key, newItem));
         }
     }
 
@@ -322,10 +365,11 @@ public class Playlist {
         }
 
         // Sync to maintain order. Item may be cloned.
-        for (Video video : mPlaylist) {
-            if (video.equals(origin)) {
-                video.sync(origin);
-                break;
+        synchronized (this) {
+            Node node = mIndex.get(getKey(origin));
+
+            if (node != null && node.video.equals(origin)) {
+                node.video.sync(origin);
             }
         }
 
@@ -333,4 +377,344 @@ public class Playlist {
         mSyncedItems.remove(origin);
         mSyncedItems.add(origin);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void onProfileChanged() {
+        int restoreId;
+
+        synchronized (this) {
+            // Flush pending records of the previous profile
+            Utils.removeCallbacks(mPersistInt);
+            persistInt();
+            clearInt();
+            restoreId = startRestore();
+        }
+
+        // After the pending writes
+        PlaylistStore.runAsync(() -> restoreInt(restoreId));
+    }
+
+    /**
+     * Same key for the equal videos (see {@link Video#equals(Object)})
+     */
+    private static String getKey(Video video) {
+        String key = video.videoId != null ? video.videoId : String.valueOf(video.hashCode());
+        return video.isMix() ? "mix:" + key : key;
+    }
+
+    private static List<Node> toNodes(Node from) {
+        List<Node> result = new ArrayList<>();
+
+        for (Node node = from; node != null; node = node.next) {
+            result.add(node);
+        }
+
+        return result;
+    }
+
+    private static List<Video> toList(Node from) {
+        List<Video> result = new ArrayList<>();
+
+        for (Node node = from; node != null; node = node.next) {
+            result.add(node.video);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param anchor null means the head of the queue
+     */
+    private void linkAfter(Node anchor, Node node) {
+        Node next = anchor != null ? anchor.next : mHead;
+
+        node.prev = anchor;
+        node.next = next;
+
+        if (anchor != null) {
+            anchor.next = node;
+        } else {
+            mHead = node;
+        }
+
+        if (next != null) {
+            next.prev = node;
+        } else {
+            mTail = node;
+        }
+
+        mIndex.put(node.key, node);
+        updateOrder(node);
+
+        if (anchor == null || next != null) {
+            log(out -> PlaylistStore.writeInsertAfter(out, anchor != null ? anchor.key : null, node.key, node.video));
+        } else {
+            log(out -> PlaylistStore.writeAppend(out, node.key, node.video));
+        }
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            mHead = node.next;
+        }
+
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            mTail = node.prev;
+        }
+
+        node.prev = null;
+        node.next = null;
+        mIndex.remove(node.key);
+
+        log(out -> PlaylistStore.writeRemove(out, node.key));
+    }
+
+    private void setCurrentInt(Node node) {
+        if (mCurrent == node) {
+            return;
+        }
+
+        mCurrent = node;
+
+        log(out -> PlaylistStore.writeCurrent(out, node != null ? node.key : null));
+    }
+
+    private void clearInt() {
+        mIndex.clear();
+        mHead = null;
+        mTail = null;
+        mCurrent = null;
+    }
+
+    /**
+     * Place the new node between the neighbours. Relabel the whole list when there's no gap left.
+     */
+    private void updateOrder(Node node) {
+        if (node.prev == null && node.next == null) {
+            node.order = 0;
+        } else if (node.prev == null) {
+            node.order = node.next.order - ORDER_GAP;
+        } else if (node.next == null) {
+            node.order = node.prev.order + ORDER_GAP;
+        } else if (node.next.order - node.prev.order > 1) {
+            node.order = node.prev.order + (node.next.order - node.prev.order) / 2;
+        } else {
+            long order = 0;
+
+            for (Node current = mHead; current != null; current = current.next) {
+                current.order = order;
+                order += ORDER_GAP;
+            }
+        }
+    }
+
+    private interface Record {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void log(Record record) {
+        if (mIsReplaying || mContext == null) {
+            return;
+        }
+
+        try {
+            record.write(mPendingOut);
+            mPendingRecordCount++;
+        } catch (IOException e) { // e.g. UTFDataFormatException on the huge item
+            e.printStackTrace();
+        }
+
+        // Improve memory and disc usage
+        Utils.postDelayed(mPersistInt, PERSIST_DELAY_MS);
+    }
+
+    /**
+     * Switch to the log of the current profile. Changes made until the log is loaded are kept in the pending records.
+     */
+    private int startRestore() {
+        mPendingRecords.reset();
+        mPendingRecordCount = 0;
+        mLogFile = PlaylistStore.getFile(mContext);
+        mIsRestoring = true;
+
+        return ++mRestoreId;
+    }
+
+    /**
+     * The log is replayed into the detached playlist without the lock. Then the saved items are swapped in.
+     */
+    private void restoreInt(int restoreId) {
+        long startTimeMs = System.currentTimeMillis();
+
+        File logFile;
+
+        synchronized (this) {
+            if (restoreId != mRestoreId) {
+                return;
+            }
+
+            logFile = mLogFile;
+        }
+
+        // Changes aren't logged: the context isn't set
+        Playlist saved = new Playlist();
+        Replayer replayer = new Replayer(saved);
+        int logRecordCount = PlaylistStore.read(logFile, replayer);
+
+        swapRestored(restoreId, saved, logRecordCount, replayer.mIsCorrupted);
+
+        Log.d(TAG, "Restored %s items in %s ms", saved.mIndex.size(), System.currentTimeMillis() - startTimeMs);
+    }
+
+    private synchronized void swapRestored(int restoreId, Playlist saved, int logRecordCount, boolean isCorrupted) {
+        // Outdated restore (e.g. the profile has been changed again)
+        if (restoreId != mRestoreId) {
+            return;
+        }
+
+        // Something is already queued before the log is loaded. Put it after the saved items.
+        List<Node> queued = toNodes(mHead);
+        Node queuedCurrent = mCurrent;
+
+        mIndex.clear();
+        mIndex.putAll(saved.mIndex);
+        mHead = saved.mHead;
+        mTail = saved.mTail;
+        mCurrent = saved.mCurrent;
+
+        mIsReplaying = true;
+
+        for (Node node : queued) {
+            Node savedNode = mIndex.get(node.key);
+
+            if (savedNode != null) {
+                unlink(savedNode);
+            }
+
+            node.prev = null;
+            node.next = null;
+            linkAfter(mTail, node);
+        }
+
+        if (queuedCurrent != null) {
+            mCurrent = queuedCurrent;
+        } else if (mCurrent != null) {
+            // The current item might be moved (or replaced by the queued one) after it was selected
+            mCurrent = mIndex.get(mCurrent.key);
+        }
+
+        trimPlaylist();
+
+        mIsReplaying = false;
+        mIsRestoring = false;
+        mLogRecordCount = logRecordCount;
+
+        if (logRecordCount == -1 || isCorrupted || !queued.isEmpty() || mPendingRecordCount > 0) {
+            // New, unknown or broken log or the changes made during the restore. Start from the header.
+            compact();
+        }
+    }
+
+    private synchronized void persistInt() {
+        // The changes made during the restore are saved with the restored items
+        if (mPendingRecordCount == 0 || mLogFile == null || mIsRestoring) {
+            return;
+        }
+
+        // Rewrite the log when stale records prevail
+        boolean compact = mLogRecordCount + mPendingRecordCount > Math.max(MIN_COMPACT_RECORD_COUNT, mIndex.size() * 2);
+
+        if (compact) {
+            compact();
+        } else {
+            PlaylistStore.writeAsync(mLogFile, mPendingRecords.toByteArray(), true);
+            mLogRecordCount += mPendingRecordCount;
+            mPendingRecords.reset();
+            mPendingRecordCount = 0;
+        }
+    }
+
+    /**
+     * Rewrite the log with the current items. Only the references are copied here, the items are serialized in background.
+     */
+    private void compact() {
+        List<String> keys = new ArrayList<>(mIndex.size());
+        List<Video> videos = new ArrayList<>(mIndex.size());
+
+        for (Node node = mHead; node != null; node = node.next) {
+            keys.add(node.key);
+            videos.add(node.video);
+        }
+
+        PlaylistStore.compactAsync(mLogFile, keys, videos, mCurrent != null ? mCurrent.key : null);
+        mLogRecordCount = keys.size() + 1;
+        mPendingRecords.reset();
+        mPendingRecordCount = 0;
+    }
+
+    /**
+     * Replays the log into the detached playlist
+     */
+    private static class Replayer implements PlaylistStore.Reader {
+        private final Playlist mTarget;
+        private boolean mIsCorrupted;
+
+        Replayer(Playlist target) {
+            mTarget = target;
+        }
+
+        @Override
+        public void onAppend(String key, Video video) {
+            onInsertAfter(mTarget.mTail != null ? mTarget.mTail.key : null, key, video);
+        }
+
+        @Override
+        public void onInsertAfter(String anchorKey, String key, Video video) {
+            Node node = mTarget.mIndex.get(key);
+
+            if (node != null) {
+                mTarget.unlink(node);
+            }
+
+            mTarget.linkAfter(anchorKey != null ? mTarget.mIndex.get(anchorKey) : null, new Node(key, video));
+        }
+
+        @Override
+        public void onRemove(String key) {
+            Node node = mTarget.mIndex.get(key);
+
+            if (node != null) {
+                mTarget.unlink(node);
+            }
+        }
+
+        @Override
+        public void onClear() {
+            mTarget.clearInt();
+        }
+
+        @Override
+        public void onCurrent(String key) {
+            mTarget.mCurrent = key != null ? mTarget.mIndex.get(key) : null;
+        }
+
+        @Override
+        public void onReplace(String key, Video video) {
+            Node node = mTarget.mIndex.get(key);
+
+            if (node != null) {
+                node.video = video;
+            }
+        }
+
+        @Override
+        public void onCorrupted() {
+            // Don't append after the broken record
+            mIsCorrupted = true;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.liskovsoft.smartyoutubetv2.common.app.models.data;
+
+import android.content.Context;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only binary log of the playback queue.<br/>
+ * Every change of the queue is appended as a record. The whole log is rewritten once it contains too many stale records.
+ */
+class PlaylistStore {
+    private static final String TAG = PlaylistStore.class.getSimpleName();
+    private static final String FILE_NAME = "playback_queue.bin";
+    private static final int MAGIC = 0x51554555; // QUEU
+    private static final byte VERSION = 1;
+    private static final byte RECORD_APPEND = 1;
+    private static final byte RECORD_INSERT_AFTER = 2;
+    private static final byte RECORD_REMOVE = 3;
+    private static final byte RECORD_CLEAR = 4;
+    private static final byte RECORD_CURRENT = 5;
+    private static final byte RECORD_REPLACE = 6;
+    // Keep the writes ordered
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    interface Reader {
+        void onAppend(String key, Video video);
+        /**
+         * @param anchorKey null means the head of the queue
+         */
+        void onInsertAfter(String anchorKey, String key, Video video);
+        void onRemove(String key);
+        void onClear();
+        void onCurrent(String key);
+        void onReplace(String key, Video video);
+        void onCorrupted();
+    }
+
+    static File getFile(Context context) {
+        return new File(context.getFilesDir(), AppPrefs.instance(context).getProfileFileName(FILE_NAME));
+    }
+
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    static void writeAppend(DataOutputStream out, String key, Video video) throws IOException {
+        out.writeByte(RECORD_APPEND);
+        out.writeUTF(key);
+        out.writeUTF(video.toString());
+    }
+
+    static void writeInsertAfter(DataOutputStream out, String anchorKey, String key, Video video) throws IOException {
+        out.writeByte(RECORD_INSERT_AFTER);
+        writeString(out, anchorKey);
+        out.writeUTF(key);
+        out.writeUTF(video.toString());
+    }
+
+    static void writeRemove(DataOutputStream out, String key) throws IOException {
+        out.writeByte(RECORD_REMOVE);
+        out.writeUTF(key);
+    }
+
+    static void writeClear(DataOutputStream out) throws IOException {
+        out.writeByte(RECORD_CLEAR);
+    }
+
+    static void writeCurrent(DataOutputStream out, String key) throws IOException {
+        out.writeByte(RECORD_CURRENT);
+        writeString(out, key);
+    }
+
+    static void writeReplace(DataOutputStream out, String key, Video video) throws IOException {
+        out.writeByte(RECORD_REPLACE);
+        out.writeUTF(key);
+        out.writeUTF(video.toString());
+    }
+
+    /**
+     * Replays the log. Returns number of the records or -1 if the log is missing or has unknown format.<br/>
+     * Truncated tail is ignored and reported as corrupted.
+     */
+    static int read(File file, Reader reader) {
+        if (file == null || !file.exists()) {
+            return -1;
+        }
+
+        int count = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return -1;
+            }
+
+            while (true) {
+                byte type;
+
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                switch (type) {
+                    case RECORD_APPEND:
+                        String appendKey = in.readUTF();
+                        reader.onAppend(appendKey, toVideo(in.readUTF()));
+                        break;
+                    case RECORD_INSERT_AFTER:
+                        String anchorKey = readString(in);
+                        String insertKey = in.readUTF();
+                        reader.onInsertAfter(anchorKey, insertKey, toVideo(in.readUTF()));
+                        break;
+                    case RECORD_REMOVE:
+                        reader.onRemove(in.readUTF());
+                        break;
+                    case RECORD_CLEAR:
+                        reader.onClear();
+                        break;
+                    case RECORD_CURRENT:
+                        reader.onCurrent(readString(in));
+                        break;
+                    case RECORD_REPLACE:
+                        String replaceKey = in.readUTF();
+                        reader.onReplace(replaceKey, toVideo(in.readUTF()));
+                        break;
+                    default:
+                        throw new IOException("Unknown record type: " + type);
+                }
+
+                count++;
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Can't read log %s after %s records: %s", file.getName(), count, e.getMessage());
+
+            if (count == 0) {
+                return -1;
+            }
+
+            reader.onCorrupted();
+        }
+
+        return count;
+    }
+
+    /**
+     * Writes in background in the order of the calls
+     */
+    static void writeAsync(File file, byte[] data, boolean append) {
+        sExecutor.execute(() -> write(file, data, append));
+    }
+
+    /**
+     * Waits for the pending writes. Call before reading the log.
+     */
+    static void flush() {
+        try {
+            sExecutor.submit(() -> {}).get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(TAG, "Can't flush pending writes: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Runs in background after the pending writes (e.g. reads the log)
+     */
+    static void runAsync(Runnable task) {
+        sExecutor.execute(task);
+    }
+
+    /**
+     * Rewrites the whole log in background. Serialization of the items is done there too.
+     */
+    static void compactAsync(File file, List<String> keys, List<Video> videos, String currentKey) {
+        sExecutor.execute(() -> write(file, toSnapshot(keys, videos, currentKey), false));
+    }
+
+    /**
+     * Full log content: header, items and the current position
+     */
+    static byte[] toSnapshot(List<String> keys, List<Video> videos, String currentKey) {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(snapshot);
+
+        try {
+            writeHeader(out);
+
+            for (int i = 0; i < keys.size(); i++) {
+                try {
+                    writeAppend(out, keys.get(i), videos.get(i));
+                } catch (IOException e) { // e.g. UTFDataFormatException on the huge item
+                    e.printStackTrace();
+                }
+            }
+
+            writeCurrent(out, currentKey);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return snapshot.toByteArray();
+    }
+
+    /**
+     * @param append add records to the end or replace the whole log (data should start with the header)
+     */
+    private static void write(File file, byte[] data, boolean append) {
+        long startTimeMs = System.currentTimeMillis();
+
+        File target = append ? file : new File(file.getPath() + ".tmp");
+
+        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(target, append))) {
+            out.write(data);
+        } catch (IOException e) {
+            Log.e(TAG, "Can't write log %s: %s", file.getName(), e.getMessage());
+            return;
+        }
+
+        if (!append && !target.renameTo(file)) {
+            Log.e(TAG, "Can't replace log %s", file.getName());
+            return;
+        }
+
+        Log.d(TAG, "%s %s bytes to %s in %s ms", append ? "Appended" : "Compacted", data.length, file.getName(),
+                System.currentTimeMillis() - startTimeMs);
+    }
+
+    private static Video toVideo(String spec) {
+        Video video = Video.fromString(spec);
+        return video != null ? video : new Video();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
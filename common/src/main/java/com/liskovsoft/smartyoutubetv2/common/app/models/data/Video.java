@@ -698,6 +698,28 @@ public final class Video {
         percentWatched = video.percentWatched;
     }
 
+    /**
+     * Restore live data of the item that has been restored from the disk snapshot
+     */
+    public void sync(MediaItem item) {
+        if (item == null) {
+            return;
+        }
+
+        id = item.getId();
+        category = item.getContentType();
+        secondTitle = item.getSecondTitle();
+        percentWatched = item.getPercentWatched();
+        startTimeSeconds = item.getStartTimeSeconds();
+        badge = item.getBadgeText();
+        hasNewContent = item.hasNewContent();
+        playlistIndex = item.getPlaylistIndex();
+        clickTrackingParams = item.getClickTrackingParams();
+        durationMs = item.getDurationMs();
+        searchQuery = item.getSearchQuery();
+        mediaItem = item;
+    }
+
     public void sync(MediaItemMetadata metadata) {
         if (metadata == null) {
             return;
@@ -447,10 +447,37 @@ public class VideoGroup {
     }
 
     public void add(int idx, Video video) {
-        if (video == null || video.isEmpty()) {
+        if (!prepareToAdd(video)) {
             return;
         }
 
+        mVideos.add(idx, video);
+        mVideoIds.add(video.hashCode());
+    }
+
+    /**
+     * Single shift of the list instead of the one per item
+     */
+    public void addAll(int idx, List<Video> videos) {
+        List<Video> result = new ArrayList<>(videos.size());
+
+        for (Video video : videos) {
+            if (prepareToAdd(video)) {
+                result.add(video);
+                mVideoIds.add(video.hashCode());
+            }
+        }
+
+        if (!result.isEmpty()) {
+            mVideos.addAll(idx, result);
+        }
+    }
+
+    private boolean prepareToAdd(Video video) {
+        if (video == null || video.isEmpty()) {
+            return false;
+        }
+
         if (mVideos == null) {
             mVideos = new ArrayList<>();
         }
@@ -473,8 +500,33 @@ public class VideoGroup {
             video.sync(state);
         }
 
-        mVideos.add(idx, video);
-        mVideoIds.add(video.hashCode());
+        return true;
+    }
+
+    /**
+     * Take live data from the fresh copy of the same group (e.g. group restored from the disk snapshot).<br/>
+     * Videos that are missing in this group are appended.
+     */
+    public void adopt(VideoGroup freshGroup) {
+        mMediaGroup = freshGroup.mMediaGroup;
+        mAction = ACTION_APPEND;
+
+        if (freshGroup.mVideos == null) {
+            return;
+        }
+
+        int size = mVideos != null ? mVideos.size() : 0;
+
+        for (int i = 0; i < Math.min(size, freshGroup.mVideos.size()); i++) {
+            mVideos.get(i).sync(freshGroup.mVideos.get(i).mediaItem);
+        }
+
+        // Hash codes are changed after sync
+        mVideoIds = null;
+
+        for (int i = size; i < freshGroup.mVideos.size(); i++) {
+            add(freshGroup.mVideos.get(i));
+        }
     }
 
     public void clear() {
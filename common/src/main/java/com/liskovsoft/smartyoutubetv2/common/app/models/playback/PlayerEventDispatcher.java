@@ -0,0 +1,180 @@
+package com.liskovsoft.smartyoutubetv2.common.app.models.playback;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.smartyoutubetv2.common.app.models.playback.listener.PlayerEventListener;
+import com.liskovsoft.smartyoutubetv2.common.utils.Utils.ChainProcessor;
+import com.liskovsoft.smartyoutubetv2.common.utils.Utils.Processor;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Routes every player event only to the controllers that override its handler (see {@link BasePlayerController}).<br/>
+ * Measures every handler call. Calls that don't fit into a frame are reported.
+ */
+public class PlayerEventDispatcher {
+    private static final String TAG = PlayerEventDispatcher.class.getSimpleName();
+    private static final long FRAME_BUDGET_NS = 16_000_000;
+    // Upper bounds of the histogram buckets. The last bucket is unbounded.
+    private static final long[] BUCKETS_NS = {1_000_000, 4_000_000, FRAME_BUDGET_NS, 50_000_000};
+    private final List<PlayerEventListener> mListeners;
+    private final Map<String, List<Handler>> mHandlers = new HashMap<>();
+    private final List<Stats> mStats = new ArrayList<>();
+
+    public interface StatsProvider {
+        List<Stats> getEventStats();
+    }
+
+    public static class Stats {
+        public final String controller;
+        public final String event;
+        public final long[] histogram = new long[BUCKETS_NS.length + 1];
+        public long count;
+        public long totalNs;
+        public long maxNs;
+
+        private Stats(String controller, String event) {
+            this.controller = controller;
+            this.event = event;
+        }
+
+        private void add(long timeNs) {
+            count++;
+            totalNs += timeNs;
+            maxNs = Math.max(maxNs, timeNs);
+
+            int bucket = 0;
+            while (bucket < BUCKETS_NS.length && timeNs >= BUCKETS_NS[bucket]) {
+                bucket++;
+            }
+            histogram[bucket]++;
+
+            if (timeNs >= FRAME_BUDGET_NS) {
+                Log.w(TAG, "%s.%s took %s ms", controller, event, timeNs / 1_000_000);
+            }
+        }
+
+        private void reset() {
+            count = 0;
+            totalNs = 0;
+            maxNs = 0;
+            Arrays.fill(histogram, 0);
+        }
+
+        public long getSlowCount() {
+            long result = 0;
+
+            for (int i = BUCKETS_NS.length - 1; i < histogram.length; i++) {
+                result += histogram[i];
+            }
+
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s.%s: %s calls, avg %.2f ms, max %.1f ms, slow %s",
+                    controller, event, count, totalNs / 1_000_000f / Math.max(1, count), maxNs / 1_000_000f, getSlowCount());
+        }
+    }
+
+    private static class Handler {
+        final PlayerEventListener listener;
+        final Stats stats;
+
+        Handler(PlayerEventListener listener, Stats stats) {
+            this.listener = listener;
+            this.stats = stats;
+        }
+    }
+
+    /**
+     * @param listeners controllers in the order of the processing
+     */
+    public PlayerEventDispatcher(List<PlayerEventListener> listeners) {
+        mListeners = listeners;
+    }
+
+    /**
+     * @param event name of the handler method
+     */
+    public void process(String event, Processor<PlayerEventListener> processor) {
+        for (Handler handler : getHandlers(event)) {
+            long startTimeNs = System.nanoTime();
+            processor.process(handler.listener);
+            handler.stats.add(System.nanoTime() - startTimeNs);
+        }
+    }
+
+    /**
+     * Stops on the first controller that handled the event
+     */
+    public boolean chainProcess(String event, ChainProcessor<PlayerEventListener> processor) {
+        for (Handler handler : getHandlers(event)) {
+            long startTimeNs = System.nanoTime();
+            boolean result = processor.process(handler.listener);
+            handler.stats.add(System.nanoTime() - startTimeNs);
+
+            if (result) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Handlers sorted by total time, the slowest first
+     */
+    public List<Stats> getStats() {
+        List<Stats> result = new ArrayList<>(mStats);
+        Collections.sort(result, (o1, o2) -> Long.compare(o2.totalNs, o1.totalNs));
+        return result;
+    }
+
+    /**
+     * Zero the counters. The handlers stay routed.
+     */
+    public void resetStats() {
+        for (Stats stats : mStats) {
+            stats.reset();
+        }
+    }
+
+    private List<Handler> getHandlers(String event) {
+        List<Handler> handlers = mHandlers.get(event);
+
+        if (handlers == null) {
+            handlers = new ArrayList<>();
+
+            for (PlayerEventListener listener : mListeners) {
+                if (isOverridden(listener, event)) {
+                    Stats stats = new Stats(listener.getClass().getSimpleName(), event);
+                    mStats.add(stats);
+                    handlers.add(new Handler(listener, stats));
+                }
+            }
+
+            mHandlers.put(event, handlers);
+        }
+
+        return handlers;
+    }
+
+    private static boolean isOverridden(PlayerEventListener listener, String event) {
+        for (Method method : listener.getClass().getMethods()) {
+            if (method.getName().equals(event)) {
+                return method.getDeclaringClass() != BasePlayerController.class;
+            }
+        }
+
+        // Unknown event. Don't skip.
+        return true;
+    }
+}
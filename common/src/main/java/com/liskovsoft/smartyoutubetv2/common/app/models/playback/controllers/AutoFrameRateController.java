@@ -2,6 +2,9 @@ package com.liskovsoft.smartyoutubetv2.common.app.models.playback.controllers;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.os.SystemClock;
+import com.liskovsoft.mediaserviceinterfaces.data.MediaFormat;
+import com.liskovsoft.mediaserviceinterfaces.data.MediaItemFormatInfo;
 import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.smartyoutubetv2.common.R;
@@ -12,6 +15,7 @@ import com.liskovsoft.smartyoutubetv2.common.app.models.playback.ui.OptionItem;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.ui.UiOptionItem;
 import com.liskovsoft.smartyoutubetv2.common.app.presenters.AppDialogPresenter;
 import com.liskovsoft.smartyoutubetv2.common.autoframerate.AutoFrameRateHelper;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.FormatInfoSelector;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.FormatItem;
 import com.liskovsoft.smartyoutubetv2.common.autoframerate.ModeSyncManager;
 import com.liskovsoft.smartyoutubetv2.common.autoframerate.internal.DisplayHolder.Mode;
@@ -38,6 +42,13 @@ public class AutoFrameRateController extends BasePlayerController implements Aut
     private final Runnable mApplyAfr = this::applyAfr;
     private final Runnable mApplyAfrStop = this::applyAfrStop;
     private boolean mIsPlay;
+    private boolean mIsPreSwitching;
+    // The mode is already switched for this video from the format info
+    private String mPreSwitchVideoId;
+    private int mPreSwitchWidth;
+    private float mPreSwitchFrameRate;
+    private long mFormatInfoTimeMs;
+    private long mModeStartTimeMs;
     private VideoStateController mStateController;
     private HQDialogController mHQDialogController;
     private final Runnable mPlaybackResumeHandler = () -> {
@@ -72,7 +83,10 @@ public class AutoFrameRateController extends BasePlayerController implements Aut
 
     @Override
     public void onVideoLoaded(Video item) {
-        savePlayback();
+        // Already saved before the early switch paused the playback
+        if (item == null || !Helpers.equals(item.videoId, mPreSwitchVideoId)) {
+            savePlayback();
+        }
 
         // Sometimes AFR is not working on activity startup. Trying to fix with delay.
         applyAfrDelayed();
@@ -93,6 +107,10 @@ public class AutoFrameRateController extends BasePlayerController implements Aut
                 newMode.getPhysicalHeight(),
                 newMode.getRefreshRate());
         Log.d(TAG, message);
+        if (mIsPreSwitching) {
+            Log.d(TAG, "Mode requested in %s ms after format info", SystemClock.elapsedRealtime() - mFormatInfoTimeMs);
+        }
+        mModeStartTimeMs = SystemClock.elapsedRealtime();
         //MessageHelpers.showLongMessage(getActivity(), message);
         maybePausePlayback();
         getPlayerData().setAfrSwitchTimeMs(System.currentTimeMillis());
@@ -100,7 +118,7 @@ public class AutoFrameRateController extends BasePlayerController implements Aut
 
     @Override
     public void onModeError(Mode newMode) {
-        if (getContext() == null) {
+        if (getContext() == null || mIsPreSwitching) {
             return;
         }
 
@@ -115,9 +133,53 @@ public class AutoFrameRateController extends BasePlayerController implements Aut
 
     @Override
     public void onModeCancel() {
+        // The video isn't opened yet
+        if (mIsPreSwitching) {
+            return;
+        }
+
         restorePlayback();
     }
 
+    /**
+     * Switch the display mode as soon as the formats are known.<br/>
+     * The display resync overlaps the initial buffering instead of following the first decoded frame.
+     */
+    public void onFormatInfo(MediaItemFormatInfo formatInfo) {
+        mPreSwitchVideoId = null;
+
+        if (getPlayerData() == null || !getPlayerData().isAfrEnabled() || skipPreSwitch() || !formatInfo.containsDashFormats()) {
+            return;
+        }
+
+        MediaFormat format = FormatInfoSelector.findVideoFormat(formatInfo.getAdaptiveFormats(), getPlayerData().getFormat(FormatItem.TYPE_VIDEO));
+
+        if (format == null || format.getWidth() <= 0 || format.getWidth() < format.getHeight()) {
+            return;
+        }
+
+        int width = format.getWidth();
+        float frameRate = Helpers.parseFloat(format.getFps());
+
+        if (frameRate <= 0) {
+            return;
+        }
+
+        // The mode switch pauses the playback. Save the state first.
+        savePlayback();
+
+        mFormatInfoTimeMs = SystemClock.elapsedRealtime();
+        mIsPreSwitching = true;
+        boolean started = mAutoFrameRateHelper.preApply(getActivity(), width, frameRate, mFormatInfoTimeMs);
+        mIsPreSwitching = false;
+
+        if (started) {
+            mPreSwitchVideoId = getPlayer().getVideo().videoId;
+            mPreSwitchWidth = width;
+            mPreSwitchFrameRate = frameRate;
+        }
+    }
+
     @Override
     public void onEngineReleased() {
         if (getPlayerData().isAfrEnabled()) {
@@ -166,7 +228,15 @@ public class AutoFrameRateController extends BasePlayerController implements Aut
     public void applyAfr() {
         if (!skipAfr() && getPlayerData().isAfrEnabled()) {
             FormatItem videoFormat = getPlayer().getVideoFormat();
-            applyAfr(videoFormat, false);
+            if (isPreSwitched(videoFormat)) {
+                Log.d(TAG, "Mode already switched from the format info");
+                // The pause started earlier. Resume when it ends.
+                long remainingMs = Math.max(0, getPlayerData().getAfrPauseMs() - (SystemClock.elapsedRealtime() - mModeStartTimeMs));
+                Utils.removeCallbacks(mPlaybackResumeHandler);
+                Utils.postDelayed(mPlaybackResumeHandler, remainingMs);
+            } else {
+                applyAfr(videoFormat, false);
+            }
             // Send data to AFR daemon via tvQuickActions app
             TvQuickActions.sendStartAFR(getContext(), videoFormat);
         } else {
@@ -357,6 +427,34 @@ public class AutoFrameRateController extends BasePlayerController implements Aut
         return OptionCategory.from(AUTO_FRAME_RATE_MODES_ID, OptionCategory.TYPE_LONG_TEXT, title, UiOptionItem.from(result.toString()));
     }
 
+    /**
+     * One-shot. Settings applied later (e.g. on dialog close) go through the regular path.<br/>
+     * The width matters only when the resolution is switched too.
+     */
+    private boolean isPreSwitched(FormatItem videoFormat) {
+        String videoId = mPreSwitchVideoId;
+        mPreSwitchVideoId = null;
+
+        return videoId != null && videoFormat != null && videoId.equals(getPlayer().getVideo().videoId)
+                && (!getPlayerData().isAfrResSwitchEnabled() || videoFormat.getWidth() == mPreSwitchWidth)
+                && Math.abs(videoFormat.getFrameRate() - mPreSwitchFrameRate) < 0.01;
+    }
+
+    /**
+     * Duration isn't known by the player yet. Use the video metadata.
+     */
+    private boolean skipPreSwitch() {
+        if (getPlayer() == null || getPlayer().getVideo() == null) {
+            return true;
+        }
+
+        Video video = getPlayer().getVideo();
+        long durationMs = video.getDurationMs();
+
+        return isEmbedPlayer() || durationMs <= SHORTS_DURATION_MIN_MS
+                || (getPlayerData().isSkipShortsEnabled() && (video.isShorts || durationMs <= SHORTS_DURATION_MAX_MS));
+    }
+
     private boolean skipAfr() {
         if (getPlayerData() == null || getPlayer() == null || getPlayer().getVideo() == null) {
             return true;
@@ -1,5 +1,7 @@
 package com.liskovsoft.smartyoutubetv2.common.app.models.playback.controllers;
 
+import android.text.TextUtils;
+
 import com.liskovsoft.mediaserviceinterfaces.LiveChatService;
 import com.liskovsoft.mediaserviceinterfaces.data.ChatItem;
 import com.liskovsoft.mediaserviceinterfaces.data.MediaItemMetadata;
@@ -8,15 +10,18 @@ import com.liskovsoft.sharedutils.rx.RxHelper;
 import com.liskovsoft.smartyoutubetv2.common.R;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.BasePlayerController;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.manager.PlayerUI;
-import com.liskovsoft.smartyoutubetv2.common.app.models.playback.ui.ChatReceiver;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.ui.ChatReceiverImpl;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.ui.OptionItem;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.ui.UiOptionItem;
 import com.liskovsoft.smartyoutubetv2.common.app.presenters.AppDialogPresenter;
+import com.liskovsoft.smartyoutubetv2.common.utils.MultiPatternMatcher;
+import com.liskovsoft.smartyoutubetv2.common.utils.SimpleEditDialog;
 import com.liskovsoft.youtubeapi.service.YouTubeServiceManager;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ChatController extends BasePlayerController {
@@ -28,6 +33,12 @@ public class ChatController extends BasePlayerController {
     private LiveChatService mChatService;
     private Disposable mChatAction;
     private String mLiveChatKey;
+    private ChatReceiverImpl mChatReceiver;
+    private MultiPatternMatcher mAuthorFilter;
+    private MultiPatternMatcher mMessageFilter;
+    private long mCheckedCount;
+    private long mFilteredCount;
+    private long mCheckTimeNs;
 
     @Override
     public void onInit() {
@@ -54,10 +65,15 @@ public class ChatController extends BasePlayerController {
             return;
         }
 
-        ChatReceiver chatReceiver = new ChatReceiverImpl();
+        compileFilters();
+
+        ChatReceiverImpl chatReceiver = new ChatReceiverImpl();
+        mChatReceiver = chatReceiver;
         getPlayer().setChatReceiver(chatReceiver);
 
+        // Filter and buffer off the main thread. Receiver delivers the items to the ui once per frame.
         mChatAction = mChatService.openLiveChatObserve(mLiveChatKey)
+                .observeOn(Schedulers.io())
                 .subscribe(
                         chatItem -> {
                             Log.d(TAG, chatItem.getMessage());
@@ -116,6 +132,14 @@ public class ChatController extends BasePlayerController {
 
             settingsPresenter.appendRadioCategory(chatCategoryTitle, options);
 
+            if (mLiveChatKey != null) {
+                settingsPresenter.appendSingleButton(UiOptionItem.from(getContext().getString(R.string.chat_block_list),
+                        optionItem -> {
+                            settingsPresenter.closeDialog();
+                            showBlockListDialog();
+                        }));
+            }
+
             settingsPresenter.showDialog(chatCategoryTitle);
         }
     }
@@ -135,6 +159,12 @@ public class ChatController extends BasePlayerController {
             RxHelper.disposeActions(mChatAction);
             getPlayer().setChatReceiver(null);
         }
+
+        if (mChatReceiver != null) {
+            Log.d(TAG, "Live chat stats: %s, filtered: %s of %s, avg filter time: %s ns",
+                    mChatReceiver.getStats(), mFilteredCount, mCheckedCount, mCheckedCount > 0 ? mCheckTimeNs / mCheckedCount : 0);
+            mChatReceiver = null;
+        }
     }
 
     private boolean checkItem(ChatItem chatItem) {
@@ -142,15 +172,59 @@ public class ChatController extends BasePlayerController {
             return false;
         }
 
-        String authorName = chatItem.getAuthorName();
+        long startTimeNs = System.nanoTime();
 
-        for (String spammer : BLACK_LIST) {
-            if (authorName.toLowerCase().contains(spammer.toLowerCase())) {
-                return false;
-            }
+        boolean result = !mAuthorFilter.matches(chatItem.getAuthorName()) && !mMessageFilter.matches(chatItem.getMessage());
+
+        mCheckTimeNs += System.nanoTime() - startTimeNs;
+        mCheckedCount++;
+
+        if (!result) {
+            mFilteredCount++;
         }
 
-        return true;
+        return result;
+    }
+
+    /**
+     * Built-in list applies to the author names only. User list applies to the names and the messages.
+     */
+    private void compileFilters() {
+        List<String> blockList = getPlayerTweaksData().getChatBlockList();
+
+        List<String> authorPatterns = new ArrayList<>(Arrays.asList(BLACK_LIST));
+
+        if (blockList != null) {
+            authorPatterns.addAll(blockList);
+        }
+
+        mAuthorFilter = new MultiPatternMatcher(authorPatterns);
+        mMessageFilter = new MultiPatternMatcher(blockList);
+        mCheckedCount = mFilteredCount = mCheckTimeNs = 0;
+    }
+
+    private void showBlockListDialog() {
+        List<String> blockList = getPlayerTweaksData().getChatBlockList();
+
+        SimpleEditDialog.show(getContext(), getContext().getString(R.string.chat_block_list),
+                blockList != null ? TextUtils.join(", ", blockList) : null,
+                newValue -> {
+                    List<String> result = new ArrayList<>();
+
+                    for (String word : newValue.split(",")) {
+                        if (!word.trim().isEmpty()) {
+                            result.add(word.trim());
+                        }
+                    }
+
+                    getPlayerTweaksData().setChatBlockList(result);
+
+                    if (getPlayerData().isLiveChatEnabled()) {
+                        openLiveChat();
+                    }
+
+                    return true;
+                });
     }
 
     private void enableLiveChat(boolean enabled) {
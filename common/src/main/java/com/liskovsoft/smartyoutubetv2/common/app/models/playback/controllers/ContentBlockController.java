@@ -27,16 +27,17 @@ import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 public class ContentBlockController extends BasePlayerController {
     private static final String TAG = ContentBlockController.class.getSimpleName();
-    private static final long POLL_INTERVAL_MS = 1_000;
+    private static final long MIN_CHECK_DELAY_MS = 10;
+    private static final long MAX_CHECK_DELAY_MS = 30_000;
     private static final int CONTENT_BLOCK_ID = 144;
     private MediaItemService mMediaItemService;
-    private List<SponsorSegment> mOriginalSegments;
-    private List<SponsorSegment> mActiveSegments;
+    private SegmentIndex mSegmentIndex;
+    private final Runnable mCheckSegments = this::checkSegments;
     private long mLastSkipPosMs;
     private boolean mSkipExclude;
     private Disposable mSegmentsAction;
@@ -79,6 +80,86 @@ public class ContentBlockController extends BasePlayerController {
         }
     }
 
+    /**
+     * Segments sorted by start with precomputed actions.<br/>
+     * Running max of the ends allows to stop the lookup early.
+     */
+    private static class SegmentIndex {
+        private final SponsorSegment[] mSegments;
+        private final boolean[] mIsSkipAction;
+        private final long[] mMaxEndMs;
+        private final boolean[] mDone;
+
+        private SegmentIndex(List<SponsorSegment> segments, ContentBlockData data) {
+            mSegments = segments.toArray(new SponsorSegment[0]);
+            Arrays.sort(mSegments, (o1, o2) -> Long.compare(o1.getStartMs(), o2.getStartMs()));
+
+            mIsSkipAction = new boolean[mSegments.length];
+            mMaxEndMs = new long[mSegments.length];
+            mDone = new boolean[mSegments.length];
+
+            long maxEndMs = 0;
+
+            for (int i = 0; i < mSegments.length; i++) {
+                int action = data.getAction(mSegments[i].getCategory());
+                mIsSkipAction[i] = action == ContentBlockData.ACTION_SKIP_ONLY || action == ContentBlockData.ACTION_SKIP_WITH_TOAST;
+                maxEndMs = Math.max(maxEndMs, mSegments[i].getEndMs());
+                mMaxEndMs[i] = maxEndMs;
+            }
+        }
+
+        /**
+         * Index of the first segment that starts after the position
+         */
+        private int upperBound(long positionMs) {
+            int low = 0;
+            int high = mSegments.length;
+
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+
+                if (mSegments[mid].getStartMs() <= positionMs) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            return low;
+        }
+
+        /**
+         * Start of the nearest pending segment or -1
+         */
+        private long getNextStartMs(long positionMs) {
+            for (int i = upperBound(positionMs); i < mSegments.length; i++) {
+                if (!mDone[i]) {
+                    return mSegments[i].getStartMs();
+                }
+            }
+
+            return -1;
+        }
+
+        private boolean hasPending() {
+            for (boolean done : mDone) {
+                if (!done) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void markDone(List<SponsorSegment> segments) {
+            for (int i = 0; i < mSegments.length; i++) {
+                if (segments.contains(mSegments[i])) {
+                    mDone[i] = true;
+                }
+            }
+        }
+    }
+
     @Override
     public void onInit() {
         ServiceManager service = YouTubeServiceManager.instance();
@@ -126,10 +207,35 @@ public class ContentBlockController extends BasePlayerController {
         disposeActions();
     }
 
+    @Override
+    public void onPlay() {
+        checkSegments();
+    }
+
+    @Override
+    public void onPause() {
+        Utils.removeCallbacks(mCheckSegments);
+    }
+
+    @Override
+    public void onBuffering() {
+        Utils.removeCallbacks(mCheckSegments);
+    }
+
+    @Override
+    public void onSeekEnd() {
+        checkSegments();
+    }
+
+    @Override
+    public void onSpeedChanged(float speed) {
+        checkSegments();
+    }
+
     @Override
     public void onButtonClicked(int buttonId, int buttonState) {
         if (buttonId == R.id.action_content_block) {
-            List<SponsorSegment> foundSegments = findMatchedSegments(getPlayer().getPositionMs(), mOriginalSegments, true);
+            List<SponsorSegment> foundSegments = findMatchedSegments(getPlayer().getPositionMs(), true);
 
             if (foundSegments != null) {
                 SponsorSegment lastSegment = foundSegments.get(foundSegments.size() - 1);
@@ -157,7 +263,7 @@ public class ContentBlockController extends BasePlayerController {
 
     private void updateSponsorSegmentsAndWatch(Video item) {
         if (item == null || item.videoId == null || item.isLive || getContentBlockData().getEnabledCategories().isEmpty()) {
-            mActiveSegments = mOriginalSegments = null;
+            mSegmentIndex = null;
             mCachedSegmentsAction = null;
             return;
         }
@@ -171,37 +277,30 @@ public class ContentBlockController extends BasePlayerController {
         }
 
         mSegmentsAction = mCachedSegmentsAction
-                .flatMap(this::startSponsorWatcher)
                 .subscribe(
-                        this::skipSegment,
+                        this::startSponsorWatcher,
                         error -> Log.d(TAG, "It's ok. Nothing to block in this video. Error msg: %s", error.getMessage())
                 );
     }
 
-    private Observable<Long> startSponsorWatcher(List<SponsorSegment> segments) {
+    private void startSponsorWatcher(List<SponsorSegment> segments) {
         if (segments == null || segments.isEmpty()) {
-            mActiveSegments = mOriginalSegments = null;
-            return Observable.empty();
+            mSegmentIndex = null;
+            return;
         }
 
-        mOriginalSegments = segments;
-
-        mActiveSegments = new ArrayList<>(segments);
+        mSegmentIndex = new SegmentIndex(segments, getContentBlockData());
 
         if (getContentBlockData().isColorMarkersEnabled()) {
             getPlayer().setSeekBarSegments(toSeekBarSegments(segments));
         }
-        if (getContentBlockData().isActionsEnabled()) {
-            // Warn. Try to not access player object here.
-            // Or you'll get "Player is accessed on the wrong thread" error.
-            return RxHelper.interval(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
-        } else {
-            return Observable.empty();
-        }
+
+        checkSegments();
     }
 
     private void disposeActions() {
         RxHelper.disposeActions(mSegmentsAction);
+        Utils.removeCallbacks(mCheckSegments);
 
         // Note, removes all segments at once
         //getPlayer().setSeekBarSegments(null); // reset colors
@@ -210,27 +309,53 @@ public class ContentBlockController extends BasePlayerController {
         mLastSkipPosMs = 0;
     }
 
-    private void skipSegment(long interval) {
-        if (mActiveSegments == null || mActiveSegments.isEmpty() || getVideo() == null || !Helpers.equals(mVideoId, getVideo().videoId)) {
+    /**
+     * Checks the current position and schedules the next check at the nearest segment start.<br/>
+     * Re-armed on play, seek and speed change.
+     */
+    private void checkSegments() {
+        Utils.removeCallbacks(mCheckSegments);
+
+        if (mSegmentIndex == null || !getContentBlockData().isActionsEnabled()) {
+            return;
+        }
+
+        if (!mSegmentIndex.hasPending() || getVideo() == null || !Helpers.equals(mVideoId, getVideo().videoId)) {
             disposeActions();
             return;
         }
 
         // Fix looping messages at the end of the video (playback mode: pause at the end of the video)
-        if (!getPlayer().isPlaying()) {
+        if (getPlayer() == null || !getPlayer().isPlaying()) {
             return;
         }
 
         long positionMs = getPlayer().getPositionMs();
 
-        List<SponsorSegment> foundSegments = findMatchedSegments(positionMs, mActiveSegments, false);
+        List<SponsorSegment> foundSegments = findMatchedSegments(positionMs, false);
 
         applyActions(foundSegments);
 
         // Skip each segment only once
         if (foundSegments != null && getContentBlockData().isDontSkipSegmentAgainEnabled()) {
-            mActiveSegments.removeAll(foundSegments);
+            mSegmentIndex.markDone(foundSegments);
+        }
+
+        scheduleCheck(getPlayer().getPositionMs());
+    }
+
+    private void scheduleCheck(long positionMs) {
+        long nextStartMs = mSegmentIndex.getNextStartMs(positionMs);
+
+        if (nextStartMs == -1) {
+            return;
         }
+
+        float speed = getPlayer().getSpeed();
+        long delayMs = (long) ((nextStartMs - positionMs) / (speed > 0 ? speed : 1));
+
+        // Long delays are split to compensate the drift between the player and the clock
+        Utils.postDelayed(mCheckSegments, Math.max(MIN_CHECK_DELAY_MS, Math.min(delayMs, MAX_CHECK_DELAY_MS)));
     }
 
     private boolean isPositionInsideSegment(long positionMs, SponsorSegment segment, boolean fullMatch) {
@@ -334,34 +459,46 @@ public class ContentBlockController extends BasePlayerController {
     }
 
     /**
-     * @param fullMatch Match only the beginning or the full segment length
+     * @param fullMatch Match only the beginning or the full segment length. Full match also includes skipped segments.
      */
-    private List<SponsorSegment> findMatchedSegments(long positionMs, List<SponsorSegment> segments, boolean fullMatch) {
-        if (segments == null) {
+    private List<SponsorSegment> findMatchedSegments(long positionMs, boolean fullMatch) {
+        SegmentIndex index = mSegmentIndex;
+
+        if (index == null) {
             return null;
         }
 
-        List<SponsorSegment> foundSegment = null;
+        // Earliest segment that contains the position. Segments that start later can't contain it.
+        int firstIdx = -1;
 
-        for (SponsorSegment segment : segments) {
-            int action = getContentBlockData().getAction(segment.getCategory());
-            boolean isSkipAction = action == ContentBlockData.ACTION_SKIP_ONLY ||
-                    action == ContentBlockData.ACTION_SKIP_WITH_TOAST;
-            if (foundSegment == null) {
-                if (isPositionInsideSegment(positionMs, segment, fullMatch)) {
-                    foundSegment = new ArrayList<>();
-                    foundSegment.add(segment);
+        for (int i = index.upperBound(positionMs) - 1; i >= 0 && index.mMaxEndMs[i] >= positionMs; i--) {
+            if ((fullMatch || !index.mDone[i]) && isPositionInsideSegment(positionMs, index.mSegments[i], fullMatch)) {
+                firstIdx = i;
+            }
+        }
 
-                    // Action grouping aren't supported for dialogs
-                    if (!isSkipAction) {
-                        break;
-                    }
-                }
-            } else {
-                SponsorSegment lastSegment = foundSegment.get(foundSegment.size() - 1);
-                if (isSkipAction && isPositionInsideSegment(lastSegment.getEndMs() + 3_000, segment, fullMatch)) {
-                    foundSegment.add(segment);
-                }
+        if (firstIdx == -1) {
+            return null;
+        }
+
+        List<SponsorSegment> foundSegment = new ArrayList<>();
+        foundSegment.add(index.mSegments[firstIdx]);
+
+        // Action grouping aren't supported for dialogs
+        if (!index.mIsSkipAction[firstIdx]) {
+            return foundSegment;
+        }
+
+        for (int i = firstIdx + 1; i < index.mSegments.length; i++) {
+            SponsorSegment lastSegment = foundSegment.get(foundSegment.size() - 1);
+            long nextPosMs = lastSegment.getEndMs() + 3_000;
+
+            if (index.mSegments[i].getStartMs() > nextPosMs) {
+                break;
+            }
+
+            if (index.mIsSkipAction[i] && (fullMatch || !index.mDone[i]) && isPositionInsideSegment(nextPosMs, index.mSegments[i], fullMatch)) {
+                foundSegment.add(index.mSegments[i]);
             }
         }
 
@@ -17,11 +17,13 @@ import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.BasePlayerController;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.manager.PlayerConstants;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.manager.PlayerUI;
+import com.liskovsoft.smartyoutubetv2.common.app.models.playback.service.RemoteStateChannel;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.FormatItem;
 import com.liskovsoft.smartyoutubetv2.common.prefs.common.DataChangeBase.OnDataChange;
 import com.liskovsoft.smartyoutubetv2.common.prefs.RemoteControlData;
 import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
 import com.liskovsoft.youtubeapi.service.YouTubeServiceManager;
+import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
 import java.util.List;
 import java.util.Locale;
@@ -32,10 +34,8 @@ public class RemoteController extends BasePlayerController implements OnDataChan
     private final Runnable mStartListeningInt = this::startListeningInt;
     private final RemoteControlService mRemoteControlService;
     private final RemoteControlData mRemoteControlData;
+    private final RemoteStateChannel mStateChannel;
     private Disposable mListeningAction;
-    private Disposable mPostStartPlayAction;
-    private Disposable mPostStateAction;
-    private Disposable mPostVolumeAction;
     private boolean mConnected;
     private long mNewVideoPositionMs;
     private Disposable mActionDown;
@@ -47,6 +47,22 @@ public class RemoteController extends BasePlayerController implements OnDataChan
         // Start receiving a commands as early as possible
         ServiceManager service = YouTubeServiceManager.instance();
         mRemoteControlService = service.getRemoteControlService();
+        mStateChannel = new RemoteStateChannel(new RemoteStateChannel.Sender() {
+            @Override
+            public Observable<?> postStartPlaying(String videoId, long positionMs, long durationMs, boolean isPlaying) {
+                return mRemoteControlService.postStartPlayingObserve(videoId, positionMs, durationMs, isPlaying);
+            }
+
+            @Override
+            public Observable<?> postStateChange(long positionMs, long durationMs, boolean isPlaying) {
+                return mRemoteControlService.postStateChangeObserve(positionMs, durationMs, isPlaying);
+            }
+
+            @Override
+            public Observable<?> postVolumeChange(int volume) {
+                return mRemoteControlService.postVolumeChangeObserve(volume);
+            }
+        });
         mRemoteControlData = RemoteControlData.instance(context);
         mRemoteControlData.setOnChange(this);
         tryListening();
@@ -119,6 +135,8 @@ public class RemoteController extends BasePlayerController implements OnDataChan
     @Override
     public void onEngineReleased() {
         postPlay(false);
+        // Don't let the last state wait
+        mStateChannel.flush();
         // Below doesn't work on Vanced
         //postStartPlaying(null);
     }
@@ -152,11 +170,7 @@ public class RemoteController extends BasePlayerController implements OnDataChan
             return;
         }
 
-        RxHelper.disposeActions(mPostStartPlayAction);
-
-        mPostStartPlayAction = RxHelper.execute(
-                mRemoteControlService.postStartPlayingObserve(videoId, positionMs, durationMs, isPlaying)
-        );
+        mStateChannel.postStartPlaying(videoId, positionMs, durationMs, isPlaying);
     }
 
     private void postState(long positionMs, long durationMs, boolean isPlaying) {
@@ -164,11 +178,7 @@ public class RemoteController extends BasePlayerController implements OnDataChan
             return;
         }
 
-        RxHelper.disposeActions(mPostStateAction);
-
-        mPostStateAction = RxHelper.execute(
-                mRemoteControlService.postStateChangeObserve(positionMs, durationMs, isPlaying)
-        );
+        mStateChannel.postStateChange(positionMs, durationMs, isPlaying);
     }
 
     private void postVolumeChange(int volume) {
@@ -176,11 +186,7 @@ public class RemoteController extends BasePlayerController implements OnDataChan
             return;
         }
 
-        RxHelper.disposeActions(mPostVolumeAction);
-
-        mPostVolumeAction = RxHelper.execute(
-                mRemoteControlService.postVolumeChangeObserve(volume)
-        );
+        mStateChannel.postVolumeChange(volume);
     }
 
     private void postPlay(boolean isPlaying) {
@@ -238,7 +244,8 @@ public class RemoteController extends BasePlayerController implements OnDataChan
     }
 
     private void stopListening() {
-        RxHelper.disposeActions(mListeningAction, mPostStartPlayAction, mPostStateAction, mPostVolumeAction);
+        RxHelper.disposeActions(mListeningAction);
+        mStateChannel.close();
         unregisterVolumeObserver();
         Utils.removeCallbacks(mStartListeningInt);
     }
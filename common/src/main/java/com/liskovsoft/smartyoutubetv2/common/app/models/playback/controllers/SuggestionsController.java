@@ -569,9 +569,7 @@ public class SuggestionsController extends BasePlayerController {
     }
 
     private void markAsQueueIfNeeded(Video item) {
-        List<Video> afterCurrent = Playlist.instance().getAllAfterCurrent();
-
-        if (afterCurrent != null && afterCurrent.contains(item)) {
+        if (Playlist.instance().containsAfterCurrent(item)) {
             item.fromQueue = true;
         }
     }
@@ -23,6 +23,8 @@ import com.liskovsoft.smartyoutubetv2.common.app.models.playback.manager.PlayerC
 import com.liskovsoft.smartyoutubetv2.common.app.presenters.AppDialogPresenter;
 import com.liskovsoft.smartyoutubetv2.common.app.presenters.dialogs.VideoActionPresenter;
 import com.liskovsoft.smartyoutubetv2.common.app.views.PlaybackView;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.other.ConnectionPrewarmer;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.other.PreBufferManager;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.FormatItem;
 import com.liskovsoft.smartyoutubetv2.common.misc.MediaServiceManager;
 import com.liskovsoft.smartyoutubetv2.common.prefs.PlayerData;
@@ -42,6 +44,7 @@ public class VideoLoaderController extends BasePlayerController {
     private static final long BUFFERING_WINDOW_MS = 60_000;
     private static final long BUFFERING_RECURRENCE_COUNT = 5;
     private static final long BUFFERING_CONTINUATION_MS = 20_000;
+    private static final long APPEND_THRESHOLD_MS = 30_000;
     private final Playlist mPlaylist;
     private Video mPendingVideo;
     private int mLastErrorType = -1;
@@ -78,6 +81,9 @@ public class VideoLoaderController extends BasePlayerController {
         }
     };
     private Pair<Integer, Long> mBufferingCount;
+    // Gapless playlist: the next video added to the player timeline
+    private Video mAppendedVideo;
+    private MediaItemFormatInfo mAppendedFormatInfo;
 
     public VideoLoaderController() {
         mPlaylist = Playlist.instance();
@@ -157,6 +163,8 @@ public class VideoLoaderController extends BasePlayerController {
     @Override
     public void onEngineReleased() {
         disposeActions();
+        mAppendedVideo = null;
+        mAppendedFormatInfo = null;
     }
 
     @Override
@@ -238,11 +246,19 @@ public class VideoLoaderController extends BasePlayerController {
             return;
         }
 
+        Video appended = getPlayer().getAppendedVideo();
+        if (appended != null) {
+            appended.isShuffled = getVideo() != null && getVideo().isShuffled;
+        }
+
         // Stop the playback if the user is browsing options or reading comments
         int playbackMode = getPlaybackMode();
-        if (getAppDialogPresenter().isDialogShown() && !getAppDialogPresenter().isOverlay()
-                && playbackMode != PlayerConstants.PLAYBACK_MODE_ONE) {
-            getAppDialogPresenter().setOnFinish(mOnApplyPlaybackMode);
+        if (isDialogBlocking() && playbackMode != PlayerConstants.PLAYBACK_MODE_ONE) {
+            // The appended video isn't accepted, so the player stops. Load it as usual after the dialog.
+            getAppDialogPresenter().setOnFinish(appended != null ? () -> openVideoInt(appended) : mOnApplyPlaybackMode);
+        } else if (appended != null) {
+            // Gapless playlist: the next video is already playing
+            openVideoInt(appended);
         } else {
             applyPlaybackMode(playbackMode);
         }
@@ -278,6 +294,7 @@ public class VideoLoaderController extends BasePlayerController {
     public void onTickle() {
         checkSleepTimer();
         preloadNextVideoIfNeeded();
+        appendNextVideoIfNeeded();
     }
 
     private void checkSleepTimer() {
@@ -298,14 +315,35 @@ public class VideoLoaderController extends BasePlayerController {
      * Force load and play!
      */
     private void loadVideo(Video item) {
-        if (getPlayer() != null && item != null) {
+        if (getPlayer() != null && item != null && item == getPlayer().getAppendedVideo()) {
+            continueAppendedVideo(item);
+        } else if (getPlayer() != null && item != null) {
+            mAppendedVideo = null;
+            mAppendedFormatInfo = null;
             mPlaylist.setCurrent(item);
             getPlayer().setVideo(item);
             getPlayer().resetPlayerState();
+            PreBufferManager.instance(getContext()).cancelUnless(item.videoId);
             loadFormatInfo(item);
         }
     }
 
+    /**
+     * The player has switched to the appended video by itself. Only the state is updated.
+     */
+    private void continueAppendedVideo(Video item) {
+        mPlaylist.setCurrent(item);
+        getPlayer().setVideo(item);
+        PreBufferManager.instance(getContext()).cancelUnless(item.videoId);
+
+        if (mAppendedFormatInfo != null) {
+            applyFormatInfo(mAppendedFormatInfo);
+        }
+
+        mAppendedVideo = null;
+        mAppendedFormatInfo = null;
+    }
+
     /**
      * Force load suggestions.
      */
@@ -365,15 +403,10 @@ public class VideoLoaderController extends BasePlayerController {
 
         String bgImageUrl = null;
 
-        getVideo().sync(formatInfo);
+        // Not warmed up. The first requests are counted as cold.
+        ConnectionPrewarmer.instance(getContext()).track(formatInfo);
 
-        // Fix stretched video for a couple milliseconds (before the onVideoSizeChanged
-        // gets called)
-        applyAspectRatio(formatInfo);
-
-        if (formatInfo.getPaidContentText() != null && getContentBlockData().isPaidContentNotificationEnabled()) {
-            MessageHelpers.showMessage(getContext(), formatInfo.getPaidContentText());
-        }
+        applyFormatInfo(formatInfo);
 
         if (formatInfo.isUnplayable()) {
             if (isEmbedPlayer()) {
@@ -430,6 +463,27 @@ public class VideoLoaderController extends BasePlayerController {
         player.showBackground(bgImageUrl); // remove bg (if video playing) or set another bg
     }
 
+    /**
+     * Common part of the regular and the appended (gapless) video
+     */
+    private void applyFormatInfo(MediaItemFormatInfo formatInfo) {
+        getVideo().sync(formatInfo);
+
+        // Fix stretched video for a couple milliseconds (before the onVideoSizeChanged
+        // gets called)
+        applyAspectRatio(formatInfo);
+
+        // Display resync overlaps the initial buffering
+        AutoFrameRateController afrController = getController(AutoFrameRateController.class);
+        if (afrController != null && !formatInfo.isUnplayable()) {
+            afrController.onFormatInfo(formatInfo);
+        }
+
+        if (formatInfo.getPaidContentText() != null && getContentBlockData().isPaidContentNotificationEnabled()) {
+            MessageHelpers.showMessage(getContext(), formatInfo.getPaidContentText());
+        }
+    }
+
     private void scheduleReloadVideoTimer(int delayMs) {
         if (getPlayer() == null) {
             return;
@@ -1021,11 +1075,87 @@ public class VideoLoaderController extends BasePlayerController {
         if (next != null && next != mLastPreloadedVideo) {
             mLastPreloadedVideo = next;
             Log.d(TAG, "Preloading next video metadata: " + next.getTitle());
+            // Fetch first seconds of the next video to the disk cache
             MediaServiceManager.instance().loadFormatInfo(next, formatInfo -> {
+                ConnectionPrewarmer.instance(getContext()).prewarm(formatInfo);
+                PreBufferManager.instance(getContext()).preBuffer(next.videoId, formatInfo);
             });
         }
     }
 
+    /**
+     * Gapless playlist: add the next video to the player timeline shortly before the end
+     */
+    private void appendNextVideoIfNeeded() {
+        if (getPlayer() == null || getVideo() == null) {
+            return;
+        }
+
+        Video next = isAppendAllowed() ? mSuggestionsController.getNext() : null;
+
+        // Playback mode or the next video has changed
+        if (mAppendedVideo != null && mAppendedVideo != next) {
+            mAppendedVideo = null;
+            mAppendedFormatInfo = null;
+            getPlayer().clearAppended();
+        }
+
+        long durationMs = getPlayer().getDurationMs();
+
+        if (next == null || next == mAppendedVideo || durationMs <= 0
+                || durationMs - getPlayer().getPositionMs() > APPEND_THRESHOLD_MS) {
+            return;
+        }
+
+        mAppendedVideo = next;
+
+        MediaServiceManager.instance().loadFormatInfo(next, formatInfo -> {
+            if (getPlayer() == null || mAppendedVideo != next) {
+                return;
+            }
+
+            if (formatInfo.isUnplayable() || formatInfo.isLive() || !acceptAdaptiveFormats(formatInfo) || !formatInfo.containsDashFormats()
+                    || (getPlayerTweaksData().isHighBitrateFormatsEnabled() && formatInfo.hasExtendedHlsFormats())) {
+                Log.d(TAG, "Gapless: can't append %s. Will be loaded as usual.", next.getTitle());
+                return;
+            }
+
+            Log.d(TAG, "Gapless: appending %s", next.getTitle());
+            ConnectionPrewarmer.instance(getContext()).prewarm(formatInfo);
+            mAppendedFormatInfo = formatInfo;
+            getPlayer().appendDash(next, formatInfo);
+        });
+    }
+
+    /**
+     * Playback modes that load the next video after the end
+     */
+    private boolean isAppendAllowed() {
+        Video video = getVideo();
+
+        // The end of the video is handled after the dialog is closed
+        if (!getPlayerTweaksData().isGaplessPlaylistEnabled() || isEmbedPlayer() || video.isLive || isDialogBlocking()) {
+            return false;
+        }
+
+        switch (getPlaybackMode()) {
+            case PlayerConstants.PLAYBACK_MODE_ALL:
+            case PlayerConstants.PLAYBACK_MODE_SHUFFLE:
+                return true;
+            case PlayerConstants.PLAYBACK_MODE_LIST:
+                return video.hasNextPlaylist() || mPlaylist.getNext() != null;
+            case PlayerConstants.PLAYBACK_MODE_CLOSE:
+            case PlayerConstants.PLAYBACK_MODE_PAUSE:
+                return mPlaylist.getNext() != null;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isDialogBlocking() {
+        return getAppDialogPresenter().isDialogShown() && !getAppDialogPresenter().isOverlay();
+    }
+
     private void disableSubtitles() {
         // if (getVideo() != null) {
         // getPlayerData().disableSubtitlesPerChannel(getVideo().channelId);
@@ -1,6 +1,7 @@
 package com.liskovsoft.smartyoutubetv2.common.app.models.playback.manager;
 
 import com.liskovsoft.mediaserviceinterfaces.data.MediaItemFormatInfo;
+import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.FormatItem;
 
 import java.io.InputStream;
@@ -24,6 +25,18 @@ public interface PlayerEngine extends PlayerConstants {
 
     void openMerged(InputStream dashManifest, String hlsPlaylistUrl);
 
+    /**
+     * Gapless playlist: play the video after the current one without the player reset
+     */
+    void appendDash(Video video, MediaItemFormatInfo formatInfo);
+
+    void clearAppended();
+
+    /**
+     * The appended video that replaced the ended one. Available only inside onPlayEnd.
+     */
+    Video getAppendedVideo();
+
     long getPositionMs();
 
     void setPositionMs(long positionMs);
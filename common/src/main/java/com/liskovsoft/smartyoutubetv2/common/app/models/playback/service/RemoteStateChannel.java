@@ -0,0 +1,227 @@
+package com.liskovsoft.smartyoutubetv2.common.app.models.playback.service;
+
+import android.os.SystemClock;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.sharedutils.rx.RxHelper;
+import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
+
+import java.util.Locale;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Outbound player state of the remote control session.<br/>
+ * Keeps only the latest state of each kind and sends it not more often than once per {@link #MIN_INTERVAL_MS}.<br/>
+ * A newer state waits for the request in flight instead of cancelling it. {@link #flush()} sends the pending states right away.<br/>
+ * Should be used from the main thread.
+ */
+public class RemoteStateChannel {
+    private static final String TAG = RemoteStateChannel.class.getSimpleName();
+    static final long MIN_INTERVAL_MS = 500;
+    // Hanging request doesn't block the newer state forever
+    private static final long REQUEST_TIMEOUT_MS = 10_000;
+    private static final int KIND_START_PLAYING = 0;
+    private static final int KIND_STATE = 1;
+    private static final int KIND_VOLUME = 2;
+    private final Sender mSender;
+    private final Slot[] mSlots = {new Slot(), new Slot(), new Slot()};
+    private final Runnable mFlushDue = this::flushDue;
+    private long mSentCount;
+    private long mCoalescedCount;
+    private long mDroppedCount;
+
+    /**
+     * Transport of the states. See {@link com.liskovsoft.mediaserviceinterfaces.RemoteControlService}.
+     */
+    public interface Sender {
+        Observable<?> postStartPlaying(String videoId, long positionMs, long durationMs, boolean isPlaying);
+        Observable<?> postStateChange(long positionMs, long durationMs, boolean isPlaying);
+        Observable<?> postVolumeChange(int volume);
+    }
+
+    private interface Request {
+        Observable<?> send(Sender sender);
+    }
+
+    private static class Slot {
+        Request pending;
+        Disposable inFlight;
+        long inFlightId;
+        long lastSentMs = -MIN_INTERVAL_MS;
+    }
+
+    public RemoteStateChannel(Sender sender) {
+        mSender = sender;
+    }
+
+    public void postStartPlaying(String videoId, long positionMs, long durationMs, boolean isPlaying) {
+        offer(KIND_START_PLAYING, sender -> sender.postStartPlaying(videoId, positionMs, durationMs, isPlaying));
+    }
+
+    public void postStateChange(long positionMs, long durationMs, boolean isPlaying) {
+        offer(KIND_STATE, sender -> sender.postStateChange(positionMs, durationMs, isPlaying));
+    }
+
+    public void postVolumeChange(int volume) {
+        offer(KIND_VOLUME, sender -> sender.postVolumeChange(volume));
+    }
+
+    /**
+     * Send the pending states without waiting, e.g. when the player is closed.<br/>
+     * Requests in flight are superseded.
+     */
+    public void flush() {
+        Utils.removeCallbacks(mFlushDue);
+
+        for (Slot slot : mSlots) {
+            if (slot.pending != null) {
+                cancelInFlight(slot);
+                send(slot);
+            }
+        }
+    }
+
+    /**
+     * Drop the pending states and cancel the requests in flight
+     */
+    public void close() {
+        Utils.removeCallbacks(mFlushDue);
+
+        for (Slot slot : mSlots) {
+            if (slot.pending != null) {
+                slot.pending = null;
+                mDroppedCount++;
+            }
+
+            cancelInFlight(slot);
+        }
+
+        Log.d(TAG, "Closed: %s", getStats());
+    }
+
+    public long getSentCount() {
+        return mSentCount;
+    }
+
+    /**
+     * States replaced by the newer ones before being sent
+     */
+    public long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * States cancelled in flight or discarded on close
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public String getStats() {
+        return String.format(Locale.US, "sent %s, coalesced %s, dropped %s", mSentCount, mCoalescedCount, mDroppedCount);
+    }
+
+    private void offer(int kind, Request request) {
+        Slot slot = mSlots[kind];
+
+        if (slot.pending != null) {
+            mCoalescedCount++;
+        }
+
+        slot.pending = request;
+
+        scheduleFlush();
+    }
+
+    private void flushDue() {
+        long nowMs = SystemClock.elapsedRealtime();
+
+        for (Slot slot : mSlots) {
+            if (slot.pending == null) {
+                continue;
+            }
+
+            if (slot.inFlight != null && nowMs - slot.lastSentMs >= REQUEST_TIMEOUT_MS) {
+                Log.e(TAG, "Request timed out");
+                cancelInFlight(slot);
+            }
+
+            if (slot.inFlight == null && nowMs - slot.lastSentMs >= MIN_INTERVAL_MS) {
+                send(slot);
+            }
+        }
+
+        scheduleFlush();
+    }
+
+    /**
+     * Wake up when the earliest pending state is allowed to go
+     */
+    private void scheduleFlush() {
+        long nowMs = SystemClock.elapsedRealtime();
+        long delayMs = -1;
+
+        for (Slot slot : mSlots) {
+            if (slot.pending == null) {
+                continue;
+            }
+
+            // Completion of the request triggers the next flush. The timeout is the fallback.
+            long slotDelayMs = slot.inFlight != null ? slot.lastSentMs + REQUEST_TIMEOUT_MS - nowMs : slot.lastSentMs + MIN_INTERVAL_MS - nowMs;
+            slotDelayMs = Math.max(0, slotDelayMs);
+            delayMs = delayMs == -1 ? slotDelayMs : Math.min(delayMs, slotDelayMs);
+        }
+
+        if (delayMs != -1) {
+            Utils.postDelayed(mFlushDue, delayMs);
+        } else {
+            Utils.removeCallbacks(mFlushDue);
+        }
+    }
+
+    private void send(Slot slot) {
+        Request request = slot.pending;
+        slot.pending = null;
+        slot.lastSentMs = SystemClock.elapsedRealtime();
+        long id = ++slot.inFlightId;
+        mSentCount++;
+
+        slot.inFlight = RxHelper.execute(request.send(mSender),
+                error -> {
+                    Log.e(TAG, "Post state error: %s", error.getMessage());
+                    Utils.sHandler.post(() -> onComplete(slot, id));
+                },
+                () -> Utils.sHandler.post(() -> onComplete(slot, id))
+        );
+    }
+
+    private void onComplete(Slot slot, long id) {
+        // Superseded request
+        if (slot.inFlightId != id) {
+            return;
+        }
+
+        slot.inFlight = null;
+
+        if (slot.pending != null) {
+            scheduleFlush();
+        }
+    }
+
+    private void cancelInFlight(Slot slot) {
+        if (slot.inFlight == null) {
+            return;
+        }
+
+        if (!slot.inFlight.isDisposed()) {
+            slot.inFlight.dispose();
+            mDroppedCount++;
+        }
+
+        slot.inFlight = null;
+        // Ignore the late callbacks
+        slot.inFlightId++;
+    }
+}
@@ -6,37 +6,62 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.liskovsoft.sharedutils.helpers.Helpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
 import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
 import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs.ProfileChangeListener;
 import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class VideoStateService implements ProfileChangeListener {
+    private static final String TAG = VideoStateService.class.getSimpleName();
     @SuppressLint("StaticFieldLeak")
     private static VideoStateService sInstance;
-    private static final int MIN_PERSISTENT_STATE_SIZE = 50;
-    private static final int MAX_PERSISTENT_STATE_SIZE = 300;
+    private static final int MIN_PERSISTENT_STATE_SIZE = 500;
+    private static final int MAX_PERSISTENT_STATE_SIZE = 10_000;
+    private static final int MIN_COMPACT_RECORD_COUNT = 1_000;
     private static final long PERSIST_DELAY_MS = 10_000;
+    private final Context mContext;
     // Don't store state inside Video object.
     // As one video might correspond to multiple Video objects.
-    //private final Map<String, State> mStates = Helpers.createLRUMap(MAX_PERSISTENT_STATE_SIZE);
-    private final List<State> mStates;
+    // Ordered from the oldest to the newest. Key is the video id.
+    private final Map<String, State> mStates = new LinkedHashMap<>();
+    private final int mMaxStates;
     private final AppPrefs mPrefs;
     private static final String DELIM = "&si;";
     private boolean mIsHistoryBroken;
+    private State mLastState;
+    private File mLogFile;
+    private int mLogRecordCount;
+    private final ByteArrayOutputStream mPendingRecords = new ByteArrayOutputStream();
+    private final DataOutputStream mPendingOut = new DataOutputStream(mPendingRecords);
+    private int mPendingRecordCount;
     private final Runnable mPersistStateInt = this::persistStateInt;
+    // Changes made while the log is replayed in background. Not null during the restore.
+    private List<Change> mRestoreChanges;
+
+    private interface Change {
+        void apply(VideoStateStore.Reader reader);
+    }
 
     private VideoStateService(Context context) {
+        mContext = context;
         mPrefs = AppPrefs.instance(context);
         mPrefs.addListener(this);
-        mStates = Helpers.createSafeLRUList(
-                Utils.isEnoughRam() ? MAX_PERSISTENT_STATE_SIZE : MIN_PERSISTENT_STATE_SIZE);
+        mMaxStates = Utils.isEnoughRam() ? MAX_PERSISTENT_STATE_SIZE : MIN_PERSISTENT_STATE_SIZE;
         restoreState();
     }
 
-    public static VideoStateService instance(Context context) {
+    public static synchronized VideoStateService instance(Context context) {
         if (sInstance == null && context != null) {
             sInstance = new VideoStateService(context.getApplicationContext());
         }
@@ -44,72 +69,249 @@ public class VideoStateService implements ProfileChangeListener {
         return sInstance;
     }
 
-    public List<State> getStates() {
-        return mStates;
+    /**
+     * Copy of the states ordered from the oldest to the newest
+     */
+    public synchronized List<State> getStates() {
+        return new ArrayList<>(mStates.values());
     }
 
-    public @Nullable State getLastState() {
-        if (isEmpty()) {
-            return null;
-        }
+    public synchronized @Nullable State getLastState() {
+        return mLastState;
+    }
 
-        return mStates.get(mStates.size() - 1);
+    public synchronized State getByVideoId(String videoId) {
+        return mStates.get(videoId);
     }
 
-    public State getByVideoId(String videoId) {
-        for (State state : mStates) {
-            if (Helpers.equals(videoId, state.video.videoId)) {
-                return state;
+    public synchronized void removeByVideoId(String videoId) {
+        if (removeInt(videoId)) {
+            addRestoreChange(reader -> reader.onRemove(videoId));
+
+            try {
+                VideoStateStore.writeRemove(mPendingOut, videoId);
+                mPendingRecordCount++;
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+            persistState();
         }
-
-        return null;
     }
 
-    public void removeByVideoId(String videoId) {
-        Helpers.removeIf(mStates, state -> Helpers.equals(state.video.videoId, videoId));
-        persistState();
-    }
-
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return mStates.isEmpty();
     }
 
-    public void save(State state) {
-        mStates.add(state);
+    public synchronized void save(State state) {
+        putInt(state);
+        addRestoreChange(reader -> reader.onPut(state));
+
+        try {
+            VideoStateStore.writePut(mPendingOut, state);
+            mPendingRecordCount++;
+        } catch (IOException e) { // e.g. UTFDataFormatException on the huge item
+            e.printStackTrace();
+        }
         persistState();
     }
 
-    public void clear() {
-        mStates.clear();
+    public synchronized void clear() {
+        clearInt();
+        addRestoreChange(VideoStateStore.Reader::onClear);
+
+        try {
+            VideoStateStore.writeClear(mPendingOut);
+            mPendingRecordCount++;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
         persistState();
     }
 
-    public void setHistoryBroken(boolean isBroken) {
+    public synchronized void setHistoryBroken(boolean isBroken) {
+        // The restored flag isn't known yet
+        if (mIsHistoryBroken == isBroken && mRestoreChanges == null) {
+            return;
+        }
+
         mIsHistoryBroken = isBroken;
+        addRestoreChange(reader -> reader.onHistoryBroken(isBroken));
+
+        try {
+            VideoStateStore.writeHistoryBroken(mPendingOut, isBroken);
+            mPendingRecordCount++;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        persistState();
     }
 
     public boolean isHistoryBroken() {
         return mIsHistoryBroken;
     }
 
+    private void putInt(State state) {
+        putInt(mStates, state, mMaxStates);
+        mLastState = state;
+    }
+
+    private static void putInt(Map<String, State> states, State state, int maxStates) {
+        String videoId = state.video.videoId;
+
+        // Move to the end
+        states.remove(videoId);
+        states.put(videoId, state);
+
+        Iterator<State> iterator = states.values().iterator();
+
+        while (states.size() > maxStates && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private boolean removeInt(String videoId) {
+        if (mStates.remove(videoId) == null) {
+            return false;
+        }
+
+        if (mLastState != null && Helpers.equals(mLastState.video.videoId, videoId)) {
+            mLastState = null;
+
+            for (State state : mStates.values()) {
+                mLastState = state;
+            }
+        }
+
+        return true;
+    }
+
+    private void clearInt() {
+        mStates.clear();
+        mLastState = null;
+    }
+
+    private void addRestoreChange(Change change) {
+        if (mRestoreChanges != null) {
+            mRestoreChanges.add(change);
+        }
+    }
+
+    /**
+     * The log is replayed into the detached states in background, after the pending writes. Nothing is locked meanwhile.<br/>
+     * Then the states are swapped in with the changes made during the restore on top.
+     */
     private void restoreState() {
+        DetachedStates restored;
+
+        synchronized (this) {
+            clearInt();
+            mIsHistoryBroken = false;
+            mPendingRecords.reset();
+            mPendingRecordCount = 0;
+            mLogFile = VideoStateStore.getFile(mContext);
+            mLogRecordCount = 0;
+            mRestoreChanges = new ArrayList<>();
+            restored = new DetachedStates(mLogFile, mMaxStates, mRestoreChanges);
+        }
+
+        VideoStateStore.runAsync(() -> {
+            long startTimeMs = System.currentTimeMillis();
+
+            int recordCount = VideoStateStore.read(restored.mLogFile, restored);
+
+            if (recordCount == -1) {
+                recordCount = migrateState(restored);
+            }
+
+            swapState(restored, recordCount);
+
+            Log.d(TAG, "Restored %s states in %s ms", restored.mStates.size(), System.currentTimeMillis() - startTimeMs);
+        });
+    }
+
+    private synchronized void swapState(DetachedStates restored, int recordCount) {
+        // Outdated restore (e.g. the profile has been changed again)
+        if (restored.mChanges != mRestoreChanges) {
+            return;
+        }
+
+        for (Change change : mRestoreChanges) {
+            change.apply(restored);
+        }
+
+        mRestoreChanges = null;
+
         mStates.clear();
+        mStates.putAll(restored.mStates);
+        mLastState = null;
+
+        for (State state : mStates.values()) {
+            mLastState = state;
+        }
+
+        mIsHistoryBroken = restored.mIsHistoryBroken;
+        mLogRecordCount += recordCount;
+    }
+
+    /**
+     * One time migration from the string based prefs storage
+     */
+    private int migrateState(DetachedStates restored) {
         String data = mPrefs.getStateUpdaterData();
 
+        readLegacy(data, restored);
+
+        if (restored.writeSnapshot() && data != null) {
+            mPrefs.setStateUpdaterData(null);
+        }
+
+        return restored.mStates.size() + 1;
+    }
+
+    /**
+     * Replays the old string format: the states delimited with {@link #DELIM} and the history flag
+     */
+    static void readLegacy(String data, VideoStateStore.Reader reader) {
         String[] split = Helpers.splitData(data);
+        String stateData = Helpers.parseStr(split, 0);
+
+        if (stateData != null) {
+            try {
+                for (String spec : Helpers.split(stateData, DELIM)) {
+                    State state = State.from(spec);
+
+                    if (state != null) {
+                        reader.onPut(state);
+                    }
+                }
+            } catch (ArrayIndexOutOfBoundsException e) { // weird issue (NVidia Shield)
+                e.printStackTrace();
+            }
+        }
 
-        setStateData(Helpers.parseStr(split, 0));
-        mIsHistoryBroken = Helpers.parseBoolean(split, 1);
+        reader.onHistoryBroken(Helpers.parseBoolean(split, 1));
     }
 
-    private void persistStateInt() {
-        if (mIsHistoryBroken) {
-            mPrefs.setStateUpdaterData(Helpers.mergeData(getStateData(), mIsHistoryBroken));
+    private synchronized void persistStateInt() {
+        if (mPendingRecordCount == 0) {
+            return;
+        }
+
+        // Rewrite the log when stale records prevail. Not during the restore: the states aren't complete yet.
+        boolean compact = mRestoreChanges == null && mLogRecordCount + mPendingRecordCount > Math.max(MIN_COMPACT_RECORD_COUNT, mStates.size() * 2);
+
+        if (compact) {
+            // Only the references are copied here. Serialized in background.
+            VideoStateStore.compactAsync(mLogFile, getStates(), mIsHistoryBroken);
+            mLogRecordCount = mStates.size() + 1;
         } else {
-            // Eliminate additional string creation with the merge
-            mPrefs.setStateUpdaterData(getStateData());
+            VideoStateStore.writeAsync(mLogFile, mPendingRecords.toByteArray(), true);
+            mLogRecordCount += mPendingRecordCount;
         }
+
+        mPendingRecords.reset();
+        mPendingRecordCount = 0;
     }
 
     private void persistState() {
@@ -123,7 +325,7 @@ public class VideoStateService implements ProfileChangeListener {
         public final long positionMs;
         public final long durationMs;
         public final float speed;
-        public final long timestamp = System.currentTimeMillis();
+        public final long timestamp;
 
         public State(Video video, long positionMs) {
             this(video, positionMs, -1);
@@ -134,10 +336,15 @@ public class VideoStateService implements ProfileChangeListener {
         }
 
         public State(Video video, long positionMs, long durationMs, float speed) {
+            this(video, positionMs, durationMs, speed, System.currentTimeMillis());
+        }
+
+        State(Video video, long positionMs, long durationMs, float speed, long timestamp) {
             this.video = video;
             this.positionMs = positionMs;
             this.durationMs = durationMs;
             this.speed = speed;
+            this.timestamp = timestamp;
         }
 
         public static State from(String spec) {
@@ -183,42 +390,56 @@ public class VideoStateService implements ProfileChangeListener {
 
     @Override
     public void onProfileChanged() {
+        // Flush pending records of the previous profile
+        Utils.removeCallbacks(mPersistStateInt);
+        persistStateInt();
         restoreState();
     }
 
-    private void setStateDataSafe(String data) {
-        try {
-            setStateData(data);
-        } catch (ArrayIndexOutOfBoundsException e) { // weird issue (NVidia Shield)
-            e.printStackTrace();
+    /**
+     * States replayed in background, not visible until swapped in
+     */
+    private static class DetachedStates implements VideoStateStore.Reader {
+        private final Map<String, State> mStates = new LinkedHashMap<>();
+        private final File mLogFile;
+        private final int mMaxStates;
+        private final List<Change> mChanges;
+        private boolean mIsHistoryBroken;
+
+        DetachedStates(File logFile, int maxStates, List<Change> changes) {
+            mLogFile = logFile;
+            mMaxStates = maxStates;
+            mChanges = changes;
         }
-    }
-
-    private void setStateData(String data) {
-        if (data != null) {
-            String[] split = Helpers.split(data, DELIM);
 
-            for (String spec : split) {
-                State state = State.from(spec);
+        @Override
+        public void onPut(State state) {
+            putInt(mStates, state, mMaxStates);
+        }
 
-                if (state != null) {
-                    mStates.add(state);
-                }
-            }
+        @Override
+        public void onRemove(String videoId) {
+            mStates.remove(videoId);
         }
-    }
 
-    private String getStateData() {
-        StringBuilder sb = new StringBuilder();
+        @Override
+        public void onClear() {
+            mStates.clear();
+        }
 
-        for (State state : mStates) {
-            if (sb.length() != 0) {
-                sb.append(DELIM);
-            }
+        @Override
+        public void onHistoryBroken(boolean isBroken) {
+            mIsHistoryBroken = isBroken;
+        }
 
-            sb.append(state);
+        @Override
+        public void onCorrupted() {
+            // Don't append after the broken record
+            writeSnapshot();
         }
 
-        return sb.toString();
+        boolean writeSnapshot() {
+            return VideoStateStore.write(mLogFile, VideoStateStore.toSnapshot(new ArrayList<>(mStates.values()), mIsHistoryBroken), false);
+        }
     }
 }
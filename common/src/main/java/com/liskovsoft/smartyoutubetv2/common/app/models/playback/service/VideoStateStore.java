@@ -0,0 +1,243 @@
+package com.liskovsoft.smartyoutubetv2.common.app.models.playback.service;
+
+import android.content.Context;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
+import com.liskovsoft.smartyoutubetv2.common.app.models.playback.service.VideoStateService.State;
+import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only binary log of the watch history.<br/>
+ * Every change is appended as a record. The whole log is rewritten once it contains too many stale records.<br/>
+ * Stored next to the shared prefs to be included into the backups.
+ */
+class VideoStateStore {
+    private static final String TAG = VideoStateStore.class.getSimpleName();
+    private static final String SHARED_PREFS_SUBDIR = "shared_prefs";
+    static final String FILE_NAME = "video_states.bin";
+    private static final int MAGIC = 0x5653544c; // VSTL
+    private static final byte VERSION = 1;
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final byte RECORD_CLEAR = 3;
+    private static final byte RECORD_HISTORY_BROKEN = 4;
+    // Keep the writes ordered
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    interface Reader {
+        void onPut(State state);
+        void onRemove(String videoId);
+        void onClear();
+        void onHistoryBroken(boolean isBroken);
+        void onCorrupted();
+    }
+
+    static File getFile(Context context) {
+        File dataDir = new File(context.getApplicationInfo().dataDir, SHARED_PREFS_SUBDIR);
+        return new File(dataDir, AppPrefs.instance(context).getProfileFileName(FILE_NAME));
+    }
+
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    static void writePut(DataOutputStream out, State state) throws IOException {
+        out.writeByte(RECORD_PUT);
+        out.writeUTF(state.video.toString());
+        out.writeLong(state.positionMs);
+        out.writeLong(state.durationMs);
+        out.writeFloat(state.speed);
+        out.writeLong(state.timestamp);
+    }
+
+    static void writeRemove(DataOutputStream out, String videoId) throws IOException {
+        out.writeByte(RECORD_REMOVE);
+        writeString(out, videoId);
+    }
+
+    static void writeClear(DataOutputStream out) throws IOException {
+        out.writeByte(RECORD_CLEAR);
+    }
+
+    static void writeHistoryBroken(DataOutputStream out, boolean isBroken) throws IOException {
+        out.writeByte(RECORD_HISTORY_BROKEN);
+        out.writeBoolean(isBroken);
+    }
+
+    /**
+     * Replays the log. Returns number of the records or -1 if the log is missing or has unknown format.<br/>
+     * Truncated tail is ignored and reported as corrupted.
+     */
+    static int read(File file, Reader reader) {
+        if (file == null || !file.exists()) {
+            return -1;
+        }
+
+        int count = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return -1;
+            }
+
+            while (true) {
+                byte type;
+
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                switch (type) {
+                    case RECORD_PUT:
+                        String spec = in.readUTF();
+                        long positionMs = in.readLong();
+                        long durationMs = in.readLong();
+                        float speed = in.readFloat();
+                        long timestamp = in.readLong();
+                        reader.onPut(toState(spec, positionMs, durationMs, speed, timestamp));
+                        break;
+                    case RECORD_REMOVE:
+                        reader.onRemove(readString(in));
+                        break;
+                    case RECORD_CLEAR:
+                        reader.onClear();
+                        break;
+                    case RECORD_HISTORY_BROKEN:
+                        reader.onHistoryBroken(in.readBoolean());
+                        break;
+                    default:
+                        throw new IOException("Unknown record type: " + type);
+                }
+
+                count++;
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Can't read log %s after %s records: %s", file.getName(), count, e.getMessage());
+
+            if (count == 0) {
+                return -1;
+            }
+
+            reader.onCorrupted();
+        }
+
+        return count;
+    }
+
+    /**
+     * Writes in background in the order of the calls
+     */
+    static void writeAsync(File file, byte[] data, boolean append) {
+        sExecutor.execute(() -> write(file, data, append));
+    }
+
+    /**
+     * Serializes and replaces the whole log in background
+     *
+     * @param states copy of the states ordered from the oldest to the newest
+     */
+    static void compactAsync(File file, List<State> states, boolean isHistoryBroken) {
+        sExecutor.execute(() -> write(file, toSnapshot(states, isHistoryBroken), false));
+    }
+
+    /**
+     * Runs in background after the pending writes (e.g. reads the log)
+     */
+    static void runAsync(Runnable task) {
+        sExecutor.execute(task);
+    }
+
+    /**
+     * Full log content: header, states and the history flag
+     */
+    static byte[] toSnapshot(List<State> states, boolean isHistoryBroken) {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(snapshot);
+
+        try {
+            writeHeader(out);
+
+            for (State state : states) {
+                try {
+                    writePut(out, state);
+                } catch (IOException e) { // e.g. UTFDataFormatException on the huge item
+                    e.printStackTrace();
+                }
+            }
+
+            writeHistoryBroken(out, isHistoryBroken);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return snapshot.toByteArray();
+    }
+
+    /**
+     * @param append add records to the end or replace the whole log (data should start with the header)
+     */
+    static boolean write(File file, byte[] data, boolean append) {
+        long startTimeMs = System.currentTimeMillis();
+
+        File target = append ? file : new File(file.getPath() + ".tmp");
+
+        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(target, append))) {
+            out.write(data);
+        } catch (IOException e) {
+            Log.e(TAG, "Can't write log %s: %s", file.getName(), e.getMessage());
+            return false;
+        }
+
+        if (!append && !target.renameTo(file)) {
+            Log.e(TAG, "Can't replace log %s", file.getName());
+            return false;
+        }
+
+        Log.d(TAG, "%s %s bytes to %s in %s ms", append ? "Appended" : "Compacted", data.length, file.getName(),
+                System.currentTimeMillis() - startTimeMs);
+
+        return true;
+    }
+
+    private static State toState(String spec, long positionMs, long durationMs, float speed, long timestamp) {
+        Video video = Video.fromString(spec);
+
+        if (video == null) {
+            video = new Video();
+        }
+
+        video.percentWatched = (positionMs * 100f) / durationMs;
+
+        return new State(video, positionMs, durationMs, speed, timestamp);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
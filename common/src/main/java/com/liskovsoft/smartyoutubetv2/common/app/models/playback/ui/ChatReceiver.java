@@ -2,9 +2,14 @@ package com.liskovsoft.smartyoutubetv2.common.app.models.playback.ui;
 
 import com.liskovsoft.mediaserviceinterfaces.data.ChatItem;
 
+import java.util.List;
+
 public interface ChatReceiver {
     interface Callback {
-        void onChatItem(ChatItem chatItem);
+        /**
+         * Items received during the last display frame in chronological order
+         */
+        void onChatItems(List<ChatItem> chatItems);
     }
     void addChatItem(ChatItem chatItem);
     void setCallback(Callback callback);
@@ -1,19 +1,123 @@
 package com.liskovsoft.smartyoutubetv2.common.app.models.playback.ui;
 
+import android.view.Choreographer;
+
 import com.liskovsoft.mediaserviceinterfaces.data.ChatItem;
+import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Buffers chat items from any thread and delivers them to the ui once per display frame.<br/>
+ * The oldest items are dropped when the buffer is full (the chat shows only the latest ones anyway).
+ */
 public class ChatReceiverImpl implements ChatReceiver {
+    private static final int MAX_PENDING_COUNT = 20;
+    private final ArrayDeque<PendingItem> mPendingItems = new ArrayDeque<>();
+    private final Runnable mPostFrame = () -> Choreographer.getInstance().postFrameCallback(this::applyPendingItems);
     private Callback mCallback;
+    private boolean mIsFrameScheduled;
+    private long mReceivedCount;
+    private long mDroppedCount;
+    private long mAppliedCount;
+    private long mBatchCount;
+    private long mTotalLatencyMs;
+    private long mMaxLatencyMs;
+
+    private static class PendingItem {
+        private final ChatItem chatItem;
+        private final long receivedTimeMs;
+
+        private PendingItem(ChatItem chatItem, long receivedTimeMs) {
+            this.chatItem = chatItem;
+            this.receivedTimeMs = receivedTimeMs;
+        }
+    }
 
     @Override
     public void addChatItem(ChatItem chatItem) {
-        if (mCallback != null) {
-            mCallback.onChatItem(chatItem);
+        synchronized (mPendingItems) {
+            mReceivedCount++;
+
+            if (mPendingItems.size() >= MAX_PENDING_COUNT) {
+                mPendingItems.removeFirst();
+                mDroppedCount++;
+            }
+
+            mPendingItems.addLast(new PendingItem(chatItem, System.currentTimeMillis()));
+
+            if (mIsFrameScheduled) {
+                return;
+            }
+
+            mIsFrameScheduled = true;
         }
+
+        // Choreographer should be obtained on the main thread
+        Utils.post(mPostFrame);
     }
 
     @Override
     public void setCallback(Callback callback) {
         mCallback = callback;
     }
+
+    private void applyPendingItems(long frameTimeNanos) {
+        List<ChatItem> chatItems;
+        long nowMs = System.currentTimeMillis();
+
+        synchronized (mPendingItems) {
+            mIsFrameScheduled = false;
+
+            if (mCallback == null || mPendingItems.isEmpty()) {
+                return;
+            }
+
+            chatItems = new ArrayList<>(mPendingItems.size());
+
+            for (PendingItem item : mPendingItems) {
+                chatItems.add(item.chatItem);
+            }
+
+            long latencyMs = nowMs - mPendingItems.getFirst().receivedTimeMs;
+            mTotalLatencyMs += latencyMs;
+            mMaxLatencyMs = Math.max(mMaxLatencyMs, latencyMs);
+            mAppliedCount += chatItems.size();
+            mBatchCount++;
+
+            mPendingItems.clear();
+        }
+
+        mCallback.onChatItems(chatItems);
+    }
+
+    public long getReceivedCount() {
+        return mReceivedCount;
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public long getAppliedCount() {
+        return mAppliedCount;
+    }
+
+    /**
+     * Average delay of the oldest item in a frame batch
+     */
+    public long getAvgLatencyMs() {
+        return mBatchCount > 0 ? mTotalLatencyMs / mBatchCount : 0;
+    }
+
+    public long getMaxLatencyMs() {
+        return mMaxLatencyMs;
+    }
+
+    public String getStats() {
+        return String.format("received: %s, dropped: %s, applied: %s in %s frames, latency avg/max: %s/%s ms",
+                mReceivedCount, mDroppedCount, mAppliedCount, mBatchCount, getAvgLatencyMs(), mMaxLatencyMs);
+    }
 }
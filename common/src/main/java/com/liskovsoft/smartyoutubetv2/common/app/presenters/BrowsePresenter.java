@@ -37,6 +37,7 @@ import com.liskovsoft.smartyoutubetv2.common.app.presenters.interfaces.VideoGrou
 import com.liskovsoft.smartyoutubetv2.common.app.views.BrowseView;
 import com.liskovsoft.smartyoutubetv2.common.misc.AppDataSourceManager;
 import com.liskovsoft.smartyoutubetv2.common.misc.BrowseProcessorManager;
+import com.liskovsoft.smartyoutubetv2.common.misc.BrowseSnapshotManager;
 import com.liskovsoft.smartyoutubetv2.common.misc.MediaServiceManager;
 import com.liskovsoft.smartyoutubetv2.common.misc.MediaServiceManager.AccountChangeListener;
 import com.liskovsoft.smartyoutubetv2.common.prefs.AccountsData;
@@ -68,6 +69,7 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
     private final Map<Integer, BrowseSection> mSectionsMapping;
     private final AppDataSourceManager mDataSourcePresenter;
     private final BrowseProcessorManager mBrowseProcessor;
+    private final BrowseSnapshotManager mSnapshotManager;
     private final List<Disposable> mActions;
     private final Runnable mRefreshSection = this::refresh;
     private BrowseSection mCurrentSection;
@@ -75,6 +77,7 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
     private long mLastUpdateTimeMs = -1;
     private int mBootSectionIndex;
     private int mBootstrapSectionId = -1;
+    private long mUpdateStartTimeMs = -1;
 
     private BrowsePresenter(Context context) {
         super(context);
@@ -89,6 +92,7 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
         MediaServiceManager.instance().addAccountListener(this);
 
         mBrowseProcessor = new BrowseProcessorManager(getContext(), this::syncItem);
+        mSnapshotManager = BrowseSnapshotManager.instance(context);
         mActions = new ArrayList<>();
 
         initSectionMappings();
@@ -696,6 +700,7 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
         }
         
         getView().showProgressBar(true);
+        mUpdateStartTimeMs = System.currentTimeMillis();
 
         VideoGroup firstGroup = VideoGroup.from(section);
         firstGroup.setAction(VideoGroup.ACTION_REPLACE);
@@ -707,6 +712,29 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
             return;
         }
 
+        // Show rows of the previous session while the network data is loading
+        Disposable snapshotAction = mSnapshotManager.loadObserve(section)
+                .subscribe(
+                        snapshotRows -> loadVideoRows(section, groups, snapshotRows.isEmpty() ? null : snapshotRows),
+                        error -> loadVideoRows(section, groups, null));
+
+        mActions.add(snapshotAction);
+    }
+
+    private void loadVideoRows(BrowseSection section, Observable<List<MediaGroup>> groups, List<VideoGroup> snapshotRows) {
+        if (getView() == null) {
+            return;
+        }
+
+        List<VideoGroup> renderedRows = new ArrayList<>();
+
+        if (snapshotRows != null) {
+            for (VideoGroup row : snapshotRows) {
+                getView().updateSection(row);
+            }
+            onFirstRow(section, true);
+        }
+
         Disposable updateAction = groups
                 .subscribe(
                         mediaGroups -> {
@@ -726,16 +754,25 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
                                     videoGroup.setTitle(getContext().getString(R.string.suggestions));
                                 }
 
+                                videoGroup = revalidateRow(videoGroup, snapshotRows, renderedRows.size());
+                                renderedRows.add(videoGroup);
+
                                 getView().updateSection(videoGroup);
+                                onFirstRow(section, false);
                                 mBrowseProcessor.process(videoGroup);
 
                                 continueGroupIfNeeded(videoGroup, false);
                             }
+
+                            mSnapshotManager.save(section, renderedRows);
                         },
                         error -> {
                             Log.e(TAG, "updateRowsHeader error: %s", error.getMessage());
-                            handleLoadError(error);
-                        }, () -> handleLoadError(null));
+                            handleLoadError(snapshotRows, error);
+                        }, () -> {
+                            removeStaleRows(section, snapshotRows, renderedRows.size());
+                            handleLoadError(null);
+                        });
 
         mActions.add(updateAction);
     }
@@ -752,11 +789,39 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
         Log.d(TAG, "updateGridHeader: Start loading section: " + section.getTitle());
 
         getView().showProgressBar(true);
+        mUpdateStartTimeMs = System.currentTimeMillis();
+
+        // Show the grid of the previous session while the network data is loading
+        // Multi grids aren't supported
+        if (group != null && column == -1) {
+            Disposable snapshotAction = mSnapshotManager.loadObserve(section)
+                    .subscribe(
+                            snapshotRows -> loadVideoGrid(section, group, column, snapshotRows.isEmpty() ? null : snapshotRows),
+                            error -> loadVideoGrid(section, group, column, null));
+
+            mActions.add(snapshotAction);
+        } else {
+            loadVideoGrid(section, group, column, null);
+        }
+    }
+
+    private void loadVideoGrid(BrowseSection section, Observable<MediaGroup> group, int column, List<VideoGroup> snapshotRows) {
+        if (getView() == null) {
+            return;
+        }
 
         // Stay on the same group in case of multiple subscribe calls
         VideoGroup baseGroup = VideoGroup.from(section, column);
         baseGroup.setAction(VideoGroup.ACTION_REPLACE);
-        getView().updateSection(baseGroup);
+
+        if (snapshotRows != null) {
+            VideoGroup snapshotGroup = snapshotRows.get(0);
+            snapshotGroup.setAction(VideoGroup.ACTION_REPLACE);
+            getView().updateSection(snapshotGroup);
+            onFirstRow(section, true);
+        } else {
+            getView().updateSection(baseGroup);
+        }
 
         if (group == null) {
             // No group. Maybe just clear.
@@ -764,6 +829,8 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
             return;
         }
 
+        List<VideoGroup> renderedRows = new ArrayList<>();
+
         Disposable updateAction = group
                 .subscribe(
                         mediaGroup -> {
@@ -777,19 +844,91 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
 
                             VideoGroup videoGroup = VideoGroup.from(baseGroup, mediaGroup);
                             appendLocalHistory(videoGroup);
+
+                            if (renderedRows.isEmpty()) {
+                                videoGroup = revalidateGrid(videoGroup, snapshotRows);
+                                renderedRows.add(videoGroup);
+                                mSnapshotManager.save(section, renderedRows);
+                            }
+
                             getView().updateSection(videoGroup);
+                            onFirstRow(section, false);
                             mBrowseProcessor.process(videoGroup);
 
                             continueGroupIfNeeded(videoGroup);
                         },
                         error -> {
                             Log.e(TAG, "updateGridHeader error: %s", error.getMessage());
-                            handleLoadError(error);
+                            handleLoadError(snapshotRows, error);
                         }, () -> handleLoadError(null));
 
         mActions.add(updateAction);
     }
 
+    /**
+     * Unchanged row takes the network data silently. Changed row replaces the snapshot row at the same position.
+     */
+    private VideoGroup revalidateRow(VideoGroup freshRow, List<VideoGroup> snapshotRows, int index) {
+        if (snapshotRows == null || index >= snapshotRows.size()) {
+            return freshRow;
+        }
+
+        VideoGroup snapshotRow = snapshotRows.get(index);
+
+        if (BrowseSnapshotManager.isSameRow(snapshotRow, freshRow)) {
+            snapshotRow.adopt(freshRow);
+            return snapshotRow;
+        }
+
+        freshRow.setId(snapshotRow.getId());
+        freshRow.setPosition(index);
+        freshRow.setAction(VideoGroup.ACTION_REPLACE);
+
+        return freshRow;
+    }
+
+    private VideoGroup revalidateGrid(VideoGroup freshGroup, List<VideoGroup> snapshotRows) {
+        if (snapshotRows == null) {
+            return freshGroup;
+        }
+
+        VideoGroup snapshotGroup = snapshotRows.get(0);
+
+        if (BrowseSnapshotManager.isSameRow(snapshotGroup, freshGroup)) {
+            snapshotGroup.adopt(freshGroup);
+            return snapshotGroup;
+        }
+
+        freshGroup.setAction(VideoGroup.ACTION_REPLACE);
+
+        return freshGroup;
+    }
+
+    /**
+     * Remove snapshot rows that are missing in the network data
+     */
+    private void removeStaleRows(BrowseSection section, List<VideoGroup> snapshotRows, int renderedSize) {
+        if (snapshotRows == null || getView() == null) {
+            return;
+        }
+
+        for (int i = snapshotRows.size() - 1; i >= renderedSize; i--) {
+            VideoGroup staleRow = VideoGroup.from(section, i);
+            staleRow.setId(snapshotRows.get(i).getId());
+            staleRow.setAction(VideoGroup.ACTION_REPLACE);
+            getView().updateSection(staleRow);
+        }
+    }
+
+    private void onFirstRow(BrowseSection section, boolean fromSnapshot) {
+        if (mUpdateStartTimeMs == -1) {
+            return;
+        }
+
+        mSnapshotManager.onFirstRow(section, System.currentTimeMillis() - mUpdateStartTimeMs, fromSnapshot);
+        mUpdateStartTimeMs = -1;
+    }
+
     private void continueGroup(VideoGroup group) {
         continueGroup(group, true);
     }
@@ -1150,6 +1289,19 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
         return getMainUIData().isPinnedChannelRowsEnabled() && item.hasChannel() && !item.isPlaylistAsChannel();
     }
 
+    /**
+     * Keep stale snapshot on the screen if the network is unavailable
+     */
+    private void handleLoadError(List<VideoGroup> snapshotRows, Throwable error) {
+        if (snapshotRows == null || getView() == null) {
+            handleLoadError(error);
+            return;
+        }
+
+        getView().showProgressBar(false);
+        Utils.postDelayed(mRefreshSection, 30_000);
+    }
+
     private void handleLoadError(Throwable error) {
         if (getView() == null) {
             return;
@@ -1201,8 +1353,14 @@ public class BrowsePresenter extends BasePresenter<BrowseView> implements Sectio
             return;
         }
 
-        for (State state : stateService.getStates()) {
-            videoGroup.add(0, state.video);
+        // States are ordered from the oldest to the newest
+        List<State> states = stateService.getStates();
+        List<Video> videos = new ArrayList<>(states.size());
+
+        for (int i = states.size() - 1; i >= 0; i--) {
+            videos.add(states.get(i).video);
         }
+
+        videoGroup.addAll(0, videos);
     }
 }
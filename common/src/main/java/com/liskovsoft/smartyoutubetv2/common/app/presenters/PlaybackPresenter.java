@@ -8,6 +8,7 @@ import com.liskovsoft.mediaserviceinterfaces.data.MediaItemMetadata;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.Playlist;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.BasePlayerController;
+import com.liskovsoft.smartyoutubetv2.common.app.models.playback.PlayerEventDispatcher;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.controllers.AutoFrameRateController;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.controllers.ChatController;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.controllers.CommentsController;
@@ -45,6 +46,7 @@ public class PlaybackPresenter extends BasePresenter<PlaybackView> implements Pl
             return super.add(listener);
         }
     };
+    private final PlayerEventDispatcher mEventDispatcher = new PlayerEventDispatcher(mEventListeners);
     private WeakReference<Video> mVideo;
     // Fix for using destroyed view
     private WeakReference<PlaybackView> mPlayer = new WeakReference<>(null);
@@ -85,7 +87,7 @@ public class PlaybackPresenter extends BasePresenter<PlaybackView> implements Pl
 
     private void initControllers() {
         // Re-init after app exit
-        process(PlayerEventListener::onInit);
+        process("onInit", PlayerEventListener::onInit);
     }
 
     public void openVideo(String videoId) {
@@ -223,18 +225,25 @@ public class PlaybackPresenter extends BasePresenter<PlaybackView> implements Pl
         return null;
     }
 
+    /**
+     * Time spent by the controllers in the event handlers. The slowest first.
+     */
+    public List<PlayerEventDispatcher.Stats> getEventStats() {
+        return mEventDispatcher.getStats();
+    }
+
     // Core events
 
     @Override
     public void onNewVideo(Video video) {
-        process(listener -> listener.onNewVideo(video));
+        process("onNewVideo", listener -> listener.onNewVideo(video));
         mVideo = new WeakReference<>(video);
         mIsEmbedPlayerStarted = true;
     }
 
     @Override
     public void onFinish() {
-        process(PlayerEventListener::onFinish);
+        process("onFinish", PlayerEventListener::onFinish);
     }
 
     @Override
@@ -244,19 +253,19 @@ public class PlaybackPresenter extends BasePresenter<PlaybackView> implements Pl
 
     @Override
     public void onMetadata(MediaItemMetadata metadata) {
-        process(listener -> listener.onMetadata(metadata));
+        process("onMetadata", listener -> listener.onMetadata(metadata));
     }
 
     // End core events
 
     // Helpers
 
-    private boolean chainProcess(ChainProcessor<PlayerEventListener> processor) {
-        return Utils.chainProcess(mEventListeners, processor);
+    private boolean chainProcess(String event, ChainProcessor<PlayerEventListener> processor) {
+        return mEventDispatcher.chainProcess(event, processor);
     }
 
-    private void process(Processor<PlayerEventListener> processor) {
-        Utils.process(mEventListeners, processor);
+    private void process(String event, Processor<PlayerEventListener> processor) {
+        mEventDispatcher.process(event, processor);
     }
 
     // End Helpers
@@ -265,26 +274,26 @@ public class PlaybackPresenter extends BasePresenter<PlaybackView> implements Pl
 
     @Override
     public void onViewCreated() {
-        process(ViewEventListener::onViewCreated);
+        process("onViewCreated", ViewEventListener::onViewCreated);
     }
 
     @Override
     public void onViewDestroyed() {
-        process(ViewEventListener::onViewDestroyed);
+        process("onViewDestroyed", ViewEventListener::onViewDestroyed);
     }
 
     @Override
     public void onViewPaused() {
         super.onViewPaused();
 
-        process(ViewEventListener::onViewPaused);
+        process("onViewPaused", ViewEventListener::onViewPaused);
     }
 
     @Override
     public void onViewResumed() {
         super.onViewResumed();
 
-        process(ViewEventListener::onViewResumed);
+        process("onViewResumed", ViewEventListener::onViewResumed);
     }
 
     // End common events
@@ -293,86 +302,89 @@ public class PlaybackPresenter extends BasePresenter<PlaybackView> implements Pl
 
     @Override
     public void onSourceChanged(Video item) {
-        process(listener -> listener.onSourceChanged(item));
+        process("onSourceChanged", listener -> listener.onSourceChanged(item));
     }
 
     @Override
     public void onEngineInitialized() {
         getTickleManager().addListener(this);
 
-        process(PlayerEventListener::onEngineInitialized);
+        // Stats of the new player only
+        mEventDispatcher.resetStats();
+
+        process("onEngineInitialized", PlayerEventListener::onEngineInitialized);
     }
 
     @Override
     public void onEngineReleased() {
         getTickleManager().removeListener(this);
 
-        process(PlayerEventListener::onEngineReleased);
+        process("onEngineReleased", PlayerEventListener::onEngineReleased);
     }
 
     @Override
     public void onEngineError(int type, int rendererIndex, Throwable error) {
-        process(listener -> listener.onEngineError(type, rendererIndex, error));
+        process("onEngineError", listener -> listener.onEngineError(type, rendererIndex, error));
     }
 
     @Override
     public void onPlay() {
-        process(PlayerEventListener::onPlay);
+        process("onPlay", PlayerEventListener::onPlay);
     }
 
     @Override
     public void onPause() {
-        process(PlayerEventListener::onPause);
+        process("onPause", PlayerEventListener::onPause);
     }
 
     @Override
     public void onPlayClicked() {
-        process(PlayerEventListener::onPlayClicked);
+        process("onPlayClicked", PlayerEventListener::onPlayClicked);
     }
 
     @Override
     public void onPauseClicked() {
-        process(PlayerEventListener::onPauseClicked);
+        process("onPauseClicked", PlayerEventListener::onPauseClicked);
     }
 
     @Override
     public void onSeekEnd() {
-        process(PlayerEventListener::onSeekEnd);
+        process("onSeekEnd", PlayerEventListener::onSeekEnd);
     }
 
     @Override
     public void onSeekPositionChanged(long positionMs) {
-        process(listener -> listener.onSeekPositionChanged(positionMs));
+        process("onSeekPositionChanged", listener -> listener.onSeekPositionChanged(positionMs));
     }
 
     @Override
     public void onSpeedChanged(float speed) {
-        process(listener -> listener.onSpeedChanged(speed));
+        process("onSpeedChanged", listener -> listener.onSpeedChanged(speed));
     }
 
     @Override
     public void onPlayEnd() {
-        process(PlayerEventListener::onPlayEnd);
+        process("onPlayEnd", PlayerEventListener::onPlayEnd);
     }
 
     @Override
     public void onBuffering() {
-        process(PlayerEventListener::onBuffering);
+        process("onBuffering", PlayerEventListener::onBuffering);
     }
 
     @Override
     public boolean onKeyDown(int keyCode) {
-        return chainProcess(listener -> listener.onKeyDown(keyCode));
+        return chainProcess("onKeyDown", listener -> listener.onKeyDown(keyCode));
     }
 
     @Override
     public void onVideoLoaded(Video item) {
-        process(listener -> listener.onVideoLoaded(item));
+        process("onVideoLoaded", listener -> listener.onVideoLoaded(item));
     }
 
     @Override
     public void onTickle() {
-        process(PlayerEventListener::onTickle);
+        process("onTickle", PlayerEventListener::onTickle);
     }
 
     // End engine events
@@ -381,52 +393,52 @@ public class PlaybackPresenter extends BasePresenter<PlaybackView> implements Pl
 
     @Override
     public void onSuggestionItemClicked(Video item) {
-        process(listener -> listener.onSuggestionItemClicked(item));
+        process("onSuggestionItemClicked", listener -> listener.onSuggestionItemClicked(item));
     }
 
     @Override
     public void onSuggestionItemLongClicked(Video item) {
-        process(listener -> listener.onSuggestionItemLongClicked(item));
+        process("onSuggestionItemLongClicked", listener -> listener.onSuggestionItemLongClicked(item));
     }
 
     @Override
     public void onScrollEnd(Video item) {
-        process(listener -> listener.onScrollEnd(item));
+        process("onScrollEnd", listener -> listener.onScrollEnd(item));
     }
 
     @Override
     public boolean onPreviousClicked() {
-        return chainProcess(PlayerEventListener::onPreviousClicked);
+        return chainProcess("onPreviousClicked", PlayerEventListener::onPreviousClicked);
     }
 
     @Override
     public boolean onNextClicked() {
-        return chainProcess(PlayerEventListener::onNextClicked);
+        return chainProcess("onNextClicked", PlayerEventListener::onNextClicked);
     }
 
     @Override
     public void onTrackSelected(FormatItem track) {
-        process(listener -> listener.onTrackSelected(track));
+        process("onTrackSelected", listener -> listener.onTrackSelected(track));
     }
 
     @Override
     public void onControlsShown(boolean shown) {
-        process(listener -> listener.onControlsShown(shown));
+        process("onControlsShown", listener -> listener.onControlsShown(shown));
     }
 
     @Override
     public void onTrackChanged(FormatItem track) {
-        process(listener -> listener.onTrackChanged(track));
+        process("onTrackChanged", listener -> listener.onTrackChanged(track));
     }
 
     @Override
     public void onButtonClicked(int buttonId, int buttonState) {
-        process(listener -> listener.onButtonClicked(buttonId, buttonState));
+        process("onButtonClicked", listener -> listener.onButtonClicked(buttonId, buttonState));
     }
 
     @Override
     public void onButtonLongClicked(int buttonId, int buttonState) {
-        process(listener -> listener.onButtonLongClicked(buttonId, buttonState));
+        process("onButtonLongClicked", listener -> listener.onButtonLongClicked(buttonId, buttonState));
     }
 
     // End UI events
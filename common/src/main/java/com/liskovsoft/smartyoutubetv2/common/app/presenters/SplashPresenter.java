@@ -6,12 +6,14 @@ import android.content.Intent;
 
 import com.liskovsoft.mediaserviceinterfaces.oauth.Account;
 import com.liskovsoft.mediaserviceinterfaces.data.MediaGroup;
+import com.liskovsoft.sharedutils.helpers.AppInfoHelpers;
 import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.sharedutils.helpers.MessageHelpers;
 import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.sharedutils.prefs.GlobalPreferences;
 import com.liskovsoft.sharedutils.rx.RxHelper;
 import com.liskovsoft.smartyoutubetv2.common.R;
+import com.liskovsoft.smartyoutubetv2.common.app.models.data.Playlist;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.service.VideoStateService;
 import com.liskovsoft.smartyoutubetv2.common.app.presenters.base.BasePresenter;
@@ -27,6 +29,7 @@ import com.liskovsoft.smartyoutubetv2.common.prefs.GeneralData;
 import com.liskovsoft.smartyoutubetv2.common.proxy.ProxyManager;
 import com.liskovsoft.smartyoutubetv2.common.utils.IntentExtractor;
 import com.liskovsoft.smartyoutubetv2.common.utils.SimpleEditDialog;
+import com.liskovsoft.smartyoutubetv2.common.utils.StartupTaskGraph;
 import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
 import com.liskovsoft.youtubeapi.service.YouTubeServiceManager;
 
@@ -35,7 +38,17 @@ import java.util.List;
 
 public class SplashPresenter extends BasePresenter<SplashView> {
     private static final String TAG = SplashPresenter.class.getSimpleName();
+    // Deferred tasks wait for the first content frame but no longer than that
     private static final long APP_INIT_DELAY_MS = 10_000;
+    private static final String TASK_GLOBAL_PREFS = "global_prefs";
+    private static final String TASK_PROXY = "proxy";
+    private static final String TASK_PLAYLIST = "playlist";
+    private static final String TASK_STREAM_REMINDER = "stream_reminder";
+    private static final String TASK_PER_VIEW = "per_view";
+    private static final String TASK_BACKGROUND = "background";
+    private static final String TASK_CHECK_UPDATES = "check_updates";
+    private static final String TASK_TRACE = "trace";
+    private static final Runnable sFirstFrameTimeout = () -> StartupTaskGraph.instance().complete(StartupTaskGraph.FIRST_FRAME);
     @SuppressLint("StaticFieldLeak")
     private static SplashPresenter sInstance;
     private static boolean sRunOnce;
@@ -44,6 +57,7 @@ public class SplashPresenter extends BasePresenter<SplashView> {
     private String mBridgePackageName;
     private final Runnable mRunBackgroundTasks = this::runBackgroundTasks;
     private final Runnable mCheckForUpdates = this::checkForUpdates;
+    private final Runnable mRunPerViewTasks = this::runPerViewTasks;
 
     private interface IntentProcessor {
         boolean process(Intent intent);
@@ -65,7 +79,9 @@ public class SplashPresenter extends BasePresenter<SplashView> {
 
     public static void unhold() {
         if (sInstance != null) {
-            Utils.removeCallbacks(sInstance.mRunBackgroundTasks);
+            StartupTaskGraph.instance().cancel(sInstance.mRunBackgroundTasks);
+            StartupTaskGraph.instance().cancel(sInstance.mCheckForUpdates);
+            StartupTaskGraph.instance().cancel(sInstance.mRunPerViewTasks);
         }
         sInstance = null;
     }
@@ -80,30 +96,49 @@ public class SplashPresenter extends BasePresenter<SplashView> {
 
         runOneTimeTasks();
         runPerInstanceTasks();
-        runPerViewTasks();
+        // Intents use media service api
+        StartupTaskGraph.instance().add(TASK_PER_VIEW, StartupTaskGraph.THREAD_MAIN, mRunPerViewTasks, TASK_GLOBAL_PREFS, TASK_PROXY);
     }
 
+    /**
+     * Independent init steps run in parallel. Deferred ones wait for the first content frame.
+     */
     private void runOneTimeTasks() {
         if (!sRunOnce) {
             sRunOnce = true;
             RxHelper.setupGlobalErrorHandler();
+
+            StartupTaskGraph graph = StartupTaskGraph.instance();
+            // Main thread code expects the prefs and the video states service to be ready (e.g. VideoStateService.instance(null))
+            // The states itself are restored in background
             initGlobalPrefs();
-            initProxy();
+            graph.complete(TASK_GLOBAL_PREFS);
             initVideoStateService();
-            initStreamReminderService();
+            graph.add(TASK_PROXY, StartupTaskGraph.THREAD_BACKGROUND, this::initProxy, TASK_GLOBAL_PREFS);
+            graph.add(TASK_PLAYLIST, StartupTaskGraph.THREAD_BACKGROUND, this::initPlaylist, TASK_GLOBAL_PREFS);
+            graph.add(TASK_STREAM_REMINDER, StartupTaskGraph.THREAD_MAIN, this::initStreamReminderService, TASK_GLOBAL_PREFS, TASK_PROXY);
+            graph.add(TASK_TRACE, StartupTaskGraph.THREAD_MAIN, this::logStartupTrace, StartupTaskGraph.FIRST_FRAME);
+
+            // E.g. the app is started straight into the player
+            Utils.postDelayed(sFirstFrameTimeout, APP_INIT_DELAY_MS);
         }
     }
 
     private void runPerInstanceTasks() {
         if (!mRunPerInstance) {
             mRunPerInstance = true;
-            Utils.postDelayed(mRunBackgroundTasks, APP_INIT_DELAY_MS);
+            StartupTaskGraph.instance().add(TASK_BACKGROUND, StartupTaskGraph.THREAD_MAIN, mRunBackgroundTasks, StartupTaskGraph.FIRST_FRAME);
             initIntentChain();
         }
     }
 
     private void runPerViewTasks() {
-        Utils.postDelayed(mCheckForUpdates, APP_INIT_DELAY_MS);
+        if (getView() == null) {
+            return;
+        }
+
+        StartupTaskGraph.instance().cancel(mCheckForUpdates);
+        StartupTaskGraph.instance().add(TASK_CHECK_UPDATES, StartupTaskGraph.THREAD_MAIN, mCheckForUpdates, StartupTaskGraph.FIRST_FRAME);
         Utils.updateRemoteControlService(getContext());
 
         checkMasterPassword(() -> applyNewIntent(getView().getNewIntent()));
@@ -113,6 +148,10 @@ public class SplashPresenter extends BasePresenter<SplashView> {
     }
 
     private void runBackgroundTasks() {
+        if (getContext() == null) {
+            return;
+        }
+
         YouTubeServiceManager.instance().refreshCacheIfNeeded(); // warm up player engine
         enableHistoryIfNeeded();
         Utils.updateChannels(getContext());
@@ -133,7 +172,16 @@ public class SplashPresenter extends BasePresenter<SplashView> {
         }
     }
 
+    private void logStartupTrace() {
+        Log.d(TAG, "Startup trace, version %s:\n%s", getContext() != null ? AppInfoHelpers.getAppVersionName(getContext()) : null,
+                StartupTaskGraph.instance().getTrace());
+    }
+
     private void checkForUpdates() {
+        if (getContext() == null) {
+            return;
+        }
+
         BootDialogPresenter updatePresenter = BootDialogPresenter.instance(getContext());
         updatePresenter.start();
     }
@@ -144,6 +192,12 @@ public class SplashPresenter extends BasePresenter<SplashView> {
         }
     }
 
+    private void initPlaylist() {
+        if (getContext() != null) {
+            Playlist.instance().restore(getContext());
+        }
+    }
+
     private void initStreamReminderService() {
         if (getContext() != null) {
             StreamReminderService.instance(getContext()).start();
@@ -313,6 +313,11 @@ public class PlayerSettingsPresenter extends BasePresenter<Void> {
                 option -> mPlayerTweaksData.setBufferOnStreamsDisabled(option.isSelected()),
                 mPlayerTweaksData.isBufferOnStreamsDisabled()));
 
+        options.add(UiOptionItem.from(getContext().getString(R.string.gapless_playlist),
+                getContext().getString(R.string.gapless_playlist_desc),
+                option -> mPlayerTweaksData.setGaplessPlaylistEnabled(option.isSelected()),
+                mPlayerTweaksData.isGaplessPlaylistEnabled()));
+
         options.add(UiOptionItem.from(getContext().getString(R.string.playback_notifications_fix),
                 getContext().getString(R.string.playback_notifications_fix_desc),
                 option -> mPlayerTweaksData.setPlaybackNotificationsDisabled(option.isSelected()),
@@ -2,6 +2,7 @@ package com.liskovsoft.smartyoutubetv2.common.autoframerate;
 
 import android.app.Activity;
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Pair;
 import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.smartyoutubetv2.common.autoframerate.internal.DisplayHolder.Mode;
@@ -137,25 +138,45 @@ public class AutoFrameRateHelper {
 
         Log.d(TAG, String.format("Applying mode change... Video fps: %s, width: %s, height: %s", frameRate, width, format.getHeight()));
 
-        syncMode(activity, width, frameRate, force);
+        syncMode(activity, width, frameRate, force, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Switch the mode before the first frame is decoded, using the format info of the video.<br/>
+     * Not throttled. The caller should skip the regular {@link #apply} for the same format.
+     * @param startTimeMs when the format info is received, {@link SystemClock#elapsedRealtime()}
+     * @return the switch is started
+     */
+    public boolean preApply(Activity activity, int width, float frameRate, long startTimeMs) {
+        setContext(activity);
+
+        if (activity == null || !isSupported()) {
+            return false;
+        }
+
+        frameRate = correctFrameRate(frameRate);
+
+        Log.d(TAG, String.format("Applying early mode change... Video fps: %s, width: %s", frameRate, width));
+
+        return syncMode(activity, width, frameRate, false, startTimeMs);
     }
 
     //private void syncMode(int width, float frameRate) {
     //    syncMode(width, frameRate, false);
     //}
 
-    private void syncMode(Activity activity, int width, float frameRate, boolean force) {
+    private boolean syncMode(Activity activity, int width, float frameRate, boolean force, long startTimeMs) {
         if (activity == null) {
             Log.e(TAG, "Activity in null. exiting...");
-            return;
+            return false;
         }
 
         if (!isSupported()) {
             Log.e(TAG, "Autoframerate not supported. Exiting...");
-            return;
+            return false;
         }
 
-        mSyncHelper.syncDisplayMode(activity.getWindow(), width, frameRate, force);
+        return mSyncHelper.syncDisplayMode(activity.getWindow(), width, frameRate, force, startTimeMs);
     }
 
     public void restoreOriginalState(Activity activity) {
@@ -3,6 +3,7 @@ package com.liskovsoft.smartyoutubetv2.common.autoframerate.internal;
 import android.content.Context;
 import android.os.Build;
 import android.os.Build.VERSION;
+import android.os.SystemClock;
 import android.view.Window;
 import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.smartyoutubetv2.common.autoframerate.internal.DisplayHolder.Mode;
@@ -14,6 +15,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 // Source: https://developer.amazon.com/docs/fire-tv/4k-apis-for-hdmi-mode-switch.html#amazonextension
 
@@ -33,6 +35,10 @@ public class DisplaySyncHelper implements UhdHelperListener {
     private boolean mIsSkip24RateEnabled;
     private int mModeLength = -1;
     private AutoFrameRateListener mListener;
+    private long mSyncStartMs;
+    // Mode lookups of the current display: video width, fps and current mode -> found mode
+    private final Map<String, Mode> mModeCache = new HashMap<>();
+    private int mModesHash;
 
     public interface AutoFrameRateListener {
         void onModeStart(Mode newMode);
@@ -345,7 +351,7 @@ public class DisplaySyncHelper implements UhdHelperListener {
                     mListener.onModeError(mNewMode);
                 }
             } else {
-                Log.d(TAG, "Mode changed successfully");
+                Log.d(TAG, "Mode changed successfully in %s ms", SystemClock.elapsedRealtime() - mSyncStartMs);
             }
         }
     }
@@ -367,6 +373,13 @@ public class DisplaySyncHelper implements UhdHelperListener {
      * @return
      */
     public boolean syncDisplayMode(Window window, int videoWidth, float videoFramerate, boolean force) {
+        return syncDisplayMode(window, videoWidth, videoFramerate, force, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @param startTimeMs when the switch was requested, {@link SystemClock#elapsedRealtime()}. Used to log the switch time.
+     */
+    public boolean syncDisplayMode(Window window, int videoWidth, float videoFramerate, boolean force, long startTimeMs) {
         if (supportsDisplayModeChange() && videoWidth >= 10) {
             if (mUhdHelper == null) {
                 mUhdHelper = new UhdHelper(mContext);
@@ -375,32 +388,9 @@ public class DisplaySyncHelper implements UhdHelperListener {
 
             Mode[] modes = mUhdHelper.getSupportedModes();
 
-            Log.d(TAG, "Modes supported by device:");
-            Log.d(TAG, Arrays.asList(modes));
-
-            boolean needResolutionSwitch = false;
-
-            List<Mode> resultModes = new ArrayList<>();
-
-            if (mIsResolutionSwitchEnabled) {
-                resultModes = filterModesByWidth(modes, Math.max(videoWidth, HD));
-            }
-
-            if (!resultModes.isEmpty()) {
-                needResolutionSwitch = true;
-            }
-
-            Log.i(TAG, "Need resolution switch: " + needResolutionSwitch);
-
             Mode currentMode = mUhdHelper.getCurrentMode();
 
-            if (!needResolutionSwitch) {
-                resultModes = filterSameResolutionModes(modes, currentMode);
-            }
-
-            // Rate boundaries slightly increased to perfect compare between two floats
-            boolean skipFps = mIsSkip24RateEnabled && videoFramerate >= 23.96 && videoFramerate <= 24.98 && currentMode != null;
-            Mode closerMode = findCloserMode(resultModes, skipFps ? currentMode.getRefreshRate() : videoFramerate);
+            Mode closerMode = findMode(modes, currentMode, videoWidth, videoFramerate);
 
             if (closerMode == null) {
                 String msg = "Could not find closer refresh rate for " + videoFramerate + "fps";
@@ -423,6 +413,7 @@ public class DisplaySyncHelper implements UhdHelperListener {
             }
 
             mNewMode = closerMode;
+            mSyncStartMs = startTimeMs;
             mUhdHelper.setPreferredDisplayModeId(window, mNewMode.getModeId(), true);
             mDisplaySyncInProgress = true;
 
@@ -436,6 +427,56 @@ public class DisplaySyncHelper implements UhdHelperListener {
         return false;
     }
 
+    /**
+     * Lookup results are cached until the display modes or the settings are changed.
+     */
+    private Mode findMode(Mode[] modes, Mode currentMode, int videoWidth, float videoFramerate) {
+        // Supported modes are queried before the sorting below, so the order is stable
+        int modesHash = Arrays.hashCode(modes);
+
+        if (modesHash != mModesHash) {
+            mModeCache.clear();
+            mModesHash = modesHash;
+        }
+
+        String key = videoWidth + "@" + (int) (videoFramerate * 100.0F) + "/" + (currentMode != null ? currentMode.getModeId() : -1);
+
+        if (mModeCache.containsKey(key)) {
+            Mode mode = mModeCache.get(key);
+            Log.d(TAG, "Cached mode: " + mode + " for " + key);
+            return mode;
+        }
+
+        Log.d(TAG, "Modes supported by device:");
+        Log.d(TAG, Arrays.asList(modes));
+
+        boolean needResolutionSwitch = false;
+
+        List<Mode> resultModes = new ArrayList<>();
+
+        if (mIsResolutionSwitchEnabled) {
+            resultModes = filterModesByWidth(modes, Math.max(videoWidth, HD));
+        }
+
+        if (!resultModes.isEmpty()) {
+            needResolutionSwitch = true;
+        }
+
+        Log.i(TAG, "Need resolution switch: " + needResolutionSwitch);
+
+        if (!needResolutionSwitch) {
+            resultModes = filterSameResolutionModes(modes, currentMode);
+        }
+
+        // Rate boundaries slightly increased to perfect compare between two floats
+        boolean skipFps = mIsSkip24RateEnabled && videoFramerate >= 23.96 && videoFramerate <= 24.98 && currentMode != null;
+        Mode closerMode = findCloserMode(resultModes, skipFps ? currentMode.getRefreshRate() : videoFramerate);
+
+        mModeCache.put(key, closerMode);
+
+        return closerMode;
+    }
+
     public void resetMode(Window window) {
         getUhdHelper().setPreferredDisplayModeId(window, 0, true);
     }
@@ -553,6 +594,10 @@ public class DisplaySyncHelper implements UhdHelperListener {
     }
 
     public void setResolutionSwitchEnabled(boolean enabled) {
+        if (mIsResolutionSwitchEnabled != enabled) {
+            mModeCache.clear();
+        }
+
         mIsResolutionSwitchEnabled = enabled;
     }
 
@@ -561,10 +606,18 @@ public class DisplaySyncHelper implements UhdHelperListener {
     }
 
     public void setDoubleRefreshRateEnabled(boolean enabled) {
+        if (mIsDoubleRefreshRateEnabled != enabled) {
+            mModeCache.clear();
+        }
+
         mIsDoubleRefreshRateEnabled = enabled;
     }
 
     public void setSkip24RateEnabled(boolean enabled) {
+        if (mIsSkip24RateEnabled != enabled) {
+            mModeCache.clear();
+        }
+
         mIsSkip24RateEnabled = enabled;
     }
 
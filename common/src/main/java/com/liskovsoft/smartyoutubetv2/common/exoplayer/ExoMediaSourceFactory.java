@@ -31,7 +31,6 @@ import androidx.media3.exoplayer.smoothstreaming.DefaultSsChunkSource;
 import androidx.media3.exoplayer.smoothstreaming.SsMediaSource;
 import androidx.media3.exoplayer.source.MediaSource;
 import androidx.media3.exoplayer.source.ProgressiveMediaSource;
-import androidx.media3.exoplayer.upstream.DefaultBandwidthMeter;
 import androidx.media3.exoplayer.upstream.LoadErrorHandlingPolicy;
 import com.liskovsoft.mediaserviceinterfaces.data.MediaItemFormatInfo;
 import com.liskovsoft.sharedutils.cronet.CronetManager;
@@ -40,6 +39,8 @@ import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.sharedutils.okhttp.OkHttpManager;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.errors.DashDefaultLoadErrorHandlingPolicy;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.errors.TrackErrorFixer;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.other.BandwidthEstimator;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.other.PreBufferManager;
 import com.liskovsoft.smartyoutubetv2.common.prefs.PlayerTweaksData;
 import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
 import com.liskovsoft.googlecommon.common.helpers.DefaultHeaders;
@@ -47,7 +48,10 @@ import com.liskovsoft.googlecommon.common.helpers.DefaultHeaders;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class ExoMediaSourceFactory {
     private static final String TAG = ExoMediaSourceFactory.class.getSimpleName();
@@ -55,15 +59,15 @@ public class ExoMediaSourceFactory {
     // private static ExoMediaSourceFactory sInstance;
     private static final int MAX_SEGMENTS_PER_LOAD = 5; // default - 1 (1-5)
     private static final String USER_AGENT = DefaultHeaders.APP_USER_AGENT;
-    @SuppressLint("StaticFieldLeak")
-    private static final DefaultBandwidthMeter BANDWIDTH_METER = new DefaultBandwidthMeter.Builder(null)
-            .setInitialBitrateEstimate(25_000_000) // 25mbps - ready for 4K immediately
-            .build();
     private final Context mContext;
     private static final Uri DASH_MANIFEST_URI = Uri.parse("https://example.com/test.mpd");
     private static final String DASH_MANIFEST_EXTENSION = "mpd";
     private static final String HLS_PLAYLIST_EXTENSION = "m3u8";
     private static final boolean USE_BANDWIDTH_METER = true;
+    private static final int NETWORK_THREAD_COUNT = 4;
+    // Connection warm-up runs one task at a time, see ConnectionPrewarmer
+    private static final int WARM_UP_THREAD_COUNT = 1;
+    private static ThreadPoolExecutor sNetworkExecutor;
     private TrackErrorFixer mTrackErrorFixer;
     private DataSource.Factory mMediaDataSourceFactory;
 
@@ -105,31 +109,46 @@ public class ExoMediaSourceFactory {
         return mediaSources[0]; // item with max resolution
     }
 
+    /**
+     * Bounded pool shared by the Cronet callbacks and the connection warm-up.<br/>
+     * Has an extra thread for the warm-up, so the callbacks always have {@link #NETWORK_THREAD_COUNT} threads.<br/>
+     * Idle threads are stopped.
+     */
+    public static synchronized Executor getNetworkExecutor() {
+        if (sNetworkExecutor == null) {
+            int threadCount = NETWORK_THREAD_COUNT + WARM_UP_THREAD_COUNT;
+            sNetworkExecutor = new ThreadPoolExecutor(threadCount, threadCount,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            sNetworkExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        return sNetworkExecutor;
+    }
+
     /**
      * Returns a new DataSource factory.
      *
-     * @param useBandwidthMeter Whether to set {@link #BANDWIDTH_METER} as a
+     * @param useBandwidthMeter Whether to set {@link BandwidthEstimator} as a
      *                          listener to the new
      *                          DataSource factory.
      * @return A new DataSource factory.
      */
     private DataSource.Factory buildDataSourceFactory(boolean useBandwidthMeter) {
-        DefaultBandwidthMeter bandwidthMeter = useBandwidthMeter ? BANDWIDTH_METER : null;
         return new DefaultDataSource.Factory(mContext, buildHttpDataSourceFactory(useBandwidthMeter));
     }
 
     /**
      * Returns a new HttpDataSource factory.
      *
-     * @param useBandwidthMeter Whether to set {@link #BANDWIDTH_METER} as a
+     * @param useBandwidthMeter Whether to set {@link BandwidthEstimator} as a
      *                          listener to the new
      *                          DataSource factory.
      * @return A new HttpDataSource factory.
      */
-    private HttpDataSource.Factory buildHttpDataSourceFactory(boolean useBandwidthMeter) {
+    public HttpDataSource.Factory buildHttpDataSourceFactory(boolean useBandwidthMeter) {
         PlayerTweaksData tweaksData = PlayerTweaksData.instance(mContext);
         int source = tweaksData.getPlayerDataSource();
-        DefaultBandwidthMeter bandwidthMeter = useBandwidthMeter ? BANDWIDTH_METER : null;
+        BandwidthEstimator bandwidthMeter = useBandwidthMeter ? BandwidthEstimator.instance(mContext) : null;
         return source == PlayerTweaksData.PLAYER_DATA_SOURCE_OKHTTP ? buildOkHttpDataSourceFactory(bandwidthMeter)
                 : source == PlayerTweaksData.PLAYER_DATA_SOURCE_CRONET && CronetManager.getEngine(mContext) != null
                         ? buildCronetDataSourceFactory(bandwidthMeter)
@@ -263,20 +282,22 @@ public class ExoMediaSourceFactory {
     /**
      * Use OkHttp for networking
      */
-    private HttpDataSource.Factory buildOkHttpDataSourceFactory(DefaultBandwidthMeter bandwidthMeter) {
+    private HttpDataSource.Factory buildOkHttpDataSourceFactory(BandwidthEstimator bandwidthMeter) {
         OkHttpDataSource.Factory dataSourceFactory = new OkHttpDataSource.Factory(OkHttpManager.instance().getClient())
-                .setUserAgent(USER_AGENT);
+                .setUserAgent(USER_AGENT)
+                .setTransferListener(bandwidthMeter);
         addCommonHeaders(dataSourceFactory);
         return dataSourceFactory;
     }
 
-    private HttpDataSource.Factory buildCronetDataSourceFactory(DefaultBandwidthMeter bandwidthMeter) {
+    private HttpDataSource.Factory buildCronetDataSourceFactory(BandwidthEstimator bandwidthMeter) {
         CronetDataSource.Factory dataSourceFactory = new CronetDataSource.Factory(
                 CronetManager.getEngine(mContext),
-                Executors.newSingleThreadExecutor());
+                getNetworkExecutor());
         dataSourceFactory.setUserAgent(USER_AGENT);
         dataSourceFactory.setConnectionTimeoutMs((int) OkHttpManager.getConnectTimeoutMs());
         dataSourceFactory.setReadTimeoutMs((int) OkHttpManager.getReadTimeoutMs());
+        dataSourceFactory.setTransferListener(bandwidthMeter);
         addCommonHeaders(dataSourceFactory);
         return dataSourceFactory;
     }
@@ -284,12 +305,13 @@ public class ExoMediaSourceFactory {
     /**
      * Use built-in component for networking
      */
-    private HttpDataSource.Factory buildDefaultHttpDataSourceFactory(DefaultBandwidthMeter bandwidthMeter) {
+    private HttpDataSource.Factory buildDefaultHttpDataSourceFactory(BandwidthEstimator bandwidthMeter) {
         DefaultHttpDataSource.Factory dataSourceFactory = new DefaultHttpDataSource.Factory()
                 .setUserAgent(USER_AGENT)
                 .setConnectTimeoutMs((int) OkHttpManager.getConnectTimeoutMs())
                 .setReadTimeoutMs((int) OkHttpManager.getReadTimeoutMs())
-                .setAllowCrossProtocolRedirects(true);
+                .setAllowCrossProtocolRedirects(true)
+                .setTransferListener(bandwidthMeter);
 
         addCommonHeaders(dataSourceFactory); // cause troubles for some users
         return dataSourceFactory;
@@ -366,7 +388,8 @@ public class ExoMediaSourceFactory {
 
     private DataSource.Factory getMediaDataSourceFactory() {
         if (mMediaDataSourceFactory == null) {
-            mMediaDataSourceFactory = buildDataSourceFactory(USE_BANDWIDTH_METER);
+            // Read through the pre-buffered beginning of the video (if any)
+            mMediaDataSourceFactory = PreBufferManager.instance(mContext).wrap(buildDataSourceFactory(USE_BANDWIDTH_METER));
         }
 
         return mMediaDataSourceFactory;
@@ -1,6 +1,7 @@
 package com.liskovsoft.smartyoutubetv2.common.exoplayer;
 
 import android.net.Uri;
+import android.os.SystemClock;
 import androidx.media3.common.C;
 import androidx.media3.common.Format;
 import androidx.media3.exoplayer.dash.DashSegmentIndex;
@@ -13,6 +14,7 @@ import androidx.media3.exoplayer.dash.manifest.Period;
 import androidx.media3.exoplayer.dash.manifest.RangedUri;
 import androidx.media3.exoplayer.dash.manifest.Representation;
 import androidx.media3.exoplayer.dash.manifest.Representation.MultiSegmentRepresentation;
+import androidx.media3.exoplayer.dash.manifest.SegmentBase;
 import androidx.media3.exoplayer.dash.manifest.SegmentBase.MultiSegmentBase;
 import androidx.media3.exoplayer.dash.manifest.SegmentBase.SegmentList;
 import androidx.media3.exoplayer.dash.manifest.SegmentBase.SegmentTimelineElement;
@@ -21,18 +23,34 @@ import java.util.Collections;
 import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.sharedutils.querystringparser.UrlQueryString;
 import com.liskovsoft.sharedutils.querystringparser.UrlQueryStringFactory;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.LiveSegmentIndex.SegmentUrls;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.LiveSegmentIndex.Timeline;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Supported ExoPlayer versions: 2.10.6
+ * Supported ExoPlayer versions: 2.10.6<br/>
+ * Segments of the long streams are kept in {@link LiveSegmentIndex}, so the refresh cost and the memory don't grow with the stream.
  */
 @SuppressWarnings("unchecked")
 public class LiveDashManifestParser extends DashManifestParser {
     private static final String TAG = LiveDashManifestParser.class.getSimpleName();
+    // Private and package fields. Resolved once.
+    private static final Field sPeriodStartMs = LiveSegmentIndex.findField(Period.class, "startMs");
+    private static final Field sSegmentBase = LiveSegmentIndex.findField(MultiSegmentRepresentation.class, "segmentBase");
+    private static final Field sPresentationTimeOffset = LiveSegmentIndex.findField(SegmentBase.class, "presentationTimeOffset");
+    private static final Field sStartNumber = LiveSegmentIndex.findField(MultiSegmentBase.class, "startNumber");
+    private static final Field sSegmentTimeline = LiveSegmentIndex.findField(MultiSegmentBase.class, "segmentTimeline");
+    private static final Field sMediaSegments = LiveSegmentIndex.findField(SegmentList.class, "mediaSegments");
+    private static final Field sPresentationTimeOffsetUs = LiveSegmentIndex.findField(Representation.class, "presentationTimeOffsetUs");
+    private static final Field sRepresentations = LiveSegmentIndex.findField(AdaptationSet.class, "representations");
+    private static final Field sMinUpdatePeriodMs = LiveSegmentIndex.findField(DashManifest.class, "minUpdatePeriodMs");
+    private static final Field sTimeShiftBufferDepthMs = LiveSegmentIndex.findField(DashManifest.class, "timeShiftBufferDepthMs");
+    private static final Field sDurationMs = LiveSegmentIndex.findField(DashManifest.class, "durationMs");
     // Should be close to zero but not zero to increase buffer size to 30 sec (Radio
     // Record).
     // Higher values may produce 'url not working' error.
@@ -42,20 +60,56 @@ public class LiveDashManifestParser extends DashManifestParser {
     private static final long MAX_NEW_STREAM_LENGTH_MS = 30 * 1_000;
     private DashManifest mOldManifest;
     private long mOldSegmentNum;
+    private boolean mIsLongStream;
 
     @Override
     public DashManifest parse(Uri uri, InputStream inputStream) throws IOException {
+        long startTimeMs = SystemClock.elapsedRealtime();
+
         DashManifest manifest = super.parse(uri, inputStream);
 
-        // Log.d(TAG, "Parse start: " + System.currentTimeMillis());
+        long parseTimeMs = SystemClock.elapsedRealtime();
 
         appendManifest(manifest);
 
-        // Log.d(TAG, "Parse end: " + System.currentTimeMillis());
+        if (mIsLongStream) {
+            Log.d(TAG, "Refresh: parse %s ms, append %s ms. %s", parseTimeMs - startTimeMs,
+                    SystemClock.elapsedRealtime() - parseTimeMs, getStats());
+        }
 
         return mOldManifest;
     }
 
+    /**
+     * Segments of all representations vs the objects that are actually kept.<br/>
+     * E.g. "segments 138240, runs 32"
+     */
+    public String getStats() {
+        long segmentCount = 0;
+        long runCount = 0;
+
+        if (mOldManifest != null) {
+            for (AdaptationSet adaptationSet : mOldManifest.getPeriod(0).adaptationSets) {
+                for (Representation representation : adaptationSet.representations) {
+                    Object segmentBase = LiveSegmentIndex.getObject(sSegmentBase, representation);
+                    Object mediaSegments = LiveSegmentIndex.getObject(sMediaSegments, segmentBase);
+                    Object segmentTimeline = LiveSegmentIndex.getObject(sSegmentTimeline, segmentBase);
+
+                    if (mediaSegments instanceof SegmentUrls) {
+                        segmentCount += ((SegmentUrls) mediaSegments).size();
+                        runCount += ((SegmentUrls) mediaSegments).getRunCount();
+                    }
+
+                    if (segmentTimeline instanceof Timeline) {
+                        runCount += ((Timeline) segmentTimeline).getRunCount();
+                    }
+                }
+            }
+        }
+
+        return String.format("segments %s, runs %s", segmentCount, runCount);
+    }
+
     private void appendManifest(DashManifest newManifest) {
         if (newManifest == null) {
             return;
@@ -63,6 +117,7 @@ public class LiveDashManifestParser extends DashManifestParser {
 
         // Optimize ram usage on short streams (< 2 hours)
         if (getFirstSegmentNum(newManifest) == 0) { // Short stream. No need to do something special.
+            mIsLongStream = false;
             mOldManifest = newManifest;
             // Below line will be needed later (> 2 hours), when the stream no longer starts
             // from 0 segment
@@ -74,6 +129,8 @@ public class LiveDashManifestParser extends DashManifestParser {
         // So, we should take into account last segment num instead of first one.
         long newSegmentNum = getLastSegmentNum(newManifest);
 
+        mIsLongStream = true;
+
         if (mOldManifest == null) {
             // recreateMissingSegments(newManifest);
 
@@ -81,7 +138,7 @@ public class LiveDashManifestParser extends DashManifestParser {
             Period newPeriod = newManifest.getPeriod(0);
             // TODO: modified
             // newPeriod.startMs = 0;
-            Helpers.setField(newPeriod, "startMs", 0);
+            LiveSegmentIndex.setLong(sPeriodStartMs, newPeriod, 0);
             mOldSegmentNum = newSegmentNum;
 
             for (int i = 0; i < newPeriod.adaptationSets.size(); i++) {
@@ -92,13 +149,16 @@ public class LiveDashManifestParser extends DashManifestParser {
 
                     // TODO: modified
                     // SegmentList newSegmentList = (SegmentList) representation.segmentBase;
-                    SegmentList newSegmentList = (SegmentList) Helpers.getField(representation, "segmentBase");
+                    SegmentList newSegmentList = (SegmentList) LiveSegmentIndex.getObject(sSegmentBase, representation);
                     // TODO: modified
                     // newSegmentList.presentationTimeOffset = 0;
-                    Helpers.setField(newSegmentList, "presentationTimeOffset", 0);
+                    LiveSegmentIndex.setLong(sPresentationTimeOffset, newSegmentList, 0);
                     // TODO: modified
                     // newSegmentList.startNumber = 0;
-                    Helpers.setField(newSegmentList, "startNumber", 0);
+                    LiveSegmentIndex.setLong(sStartNumber, newSegmentList, 0);
+                    // The lists are continued on every refresh
+                    getSegmentUrls(newSegmentList);
+                    getTimeline(newSegmentList);
                 }
             }
 
@@ -132,51 +192,56 @@ public class LiveDashManifestParser extends DashManifestParser {
             return;
         }
 
-        MultiSegmentRepresentation oldMultiRepresentation = (MultiSegmentRepresentation) oldRepresentation;
-        MultiSegmentRepresentation newMultiRepresentation = (MultiSegmentRepresentation) newRepresentation;
-
-        // TODO: modified
-        // SegmentList oldSegmentList = (SegmentList) oldRepresentation.segmentBase;
-        SegmentList oldSegmentList = (SegmentList) Helpers.getField(oldMultiRepresentation, "segmentBase");
-        // TODO: modified
-        // SegmentList newSegmentList = (SegmentList) newRepresentation.segmentBase;
-        SegmentList newSegmentList = (SegmentList) Helpers.getField(newMultiRepresentation, "segmentBase");
+        SegmentList oldSegmentList = (SegmentList) LiveSegmentIndex.getObject(sSegmentBase, oldRepresentation);
+        SegmentList newSegmentList = (SegmentList) LiveSegmentIndex.getObject(sSegmentBase, newRepresentation);
 
-        // TODO: modified
-        // List<RangedUri> oldMediaSegments = oldSegmentList.mediaSegments;
-        List<RangedUri> oldMediaSegments = (List<RangedUri>) Helpers.getField(oldSegmentList, "mediaSegments");
-        // TODO: modified
-        // List<RangedUri> newMediaSegments = newSegmentList.mediaSegments;
-        List<RangedUri> newMediaSegments = (List<RangedUri>) Helpers.getField(newSegmentList, "mediaSegments");
+        SegmentUrls oldMediaSegments = getSegmentUrls(oldSegmentList);
+        Timeline oldSegmentTimeline = getTimeline(oldSegmentList);
+        List<RangedUri> newMediaSegments = (List<RangedUri>) LiveSegmentIndex.getObject(sMediaSegments, newSegmentList);
 
-        oldMediaSegments.addAll(
-                newMediaSegments.subList(newMediaSegments.size() - (int) segmentNumShift, newMediaSegments.size()));
+        if (oldMediaSegments == null || oldSegmentTimeline == null || newMediaSegments == null) {
+            return;
+        }
 
-        // TODO: modified
-        // List<SegmentTimelineElement> oldSegmentTimeline =
-        // oldSegmentList.segmentTimeline;
-        List<SegmentTimelineElement> oldSegmentTimeline = (List<SegmentTimelineElement>) Helpers
-                .getField(oldSegmentList, "segmentTimeline");
+        // Only the run counters are changed for the regular segments
+        for (int i = Math.max(0, newMediaSegments.size() - (int) segmentNumShift); i < newMediaSegments.size(); i++) {
+            oldMediaSegments.addLast(newMediaSegments.get(i));
+        }
 
         // segmentTimeline is the same for all segments
-        if (oldMediaSegments.size() != oldSegmentTimeline.size()) {
-            SegmentTimelineElement lastTimeline = oldSegmentTimeline.get(oldSegmentTimeline.size() - 1);
-            // TODO: modified
-            // long lastTimelineDuration = lastTimeline.duration;
-            long lastTimelineDuration = (Long) Helpers.getField(lastTimeline, "duration");
-            // TODO: modified
-            // long lastTimelineStartTime = lastTimeline.startTime;
-            long lastTimelineStartTime = (Long) Helpers.getField(lastTimeline, "startTime");
+        oldSegmentTimeline.extend(oldMediaSegments.size() - oldSegmentTimeline.size());
+    }
 
-            for (int i = 1; i <= segmentNumShift; i++) {
-                oldSegmentTimeline.add(new SegmentTimelineElement(lastTimelineStartTime + (lastTimelineDuration * i),
-                        lastTimelineDuration));
-            }
+    /**
+     * Replaces the materialized list on first use
+     */
+    private static SegmentUrls getSegmentUrls(SegmentList segmentList) {
+        Object mediaSegments = LiveSegmentIndex.getObject(sMediaSegments, segmentList);
 
-            // oldSegmentTimeline.addAll(
-            // newSegmentList.segmentTimeline.subList(newSegmentList.segmentTimeline.size()
-            // - (int) segmentNumShift - 1, newSegmentList.segmentTimeline.size()));
+        if (mediaSegments == null || mediaSegments instanceof SegmentUrls) {
+            return (SegmentUrls) mediaSegments;
         }
+
+        SegmentUrls segmentUrls = new SegmentUrls((List<RangedUri>) mediaSegments);
+        LiveSegmentIndex.setObject(sMediaSegments, segmentList, segmentUrls);
+
+        return segmentUrls;
+    }
+
+    /**
+     * Replaces the materialized list on first use
+     */
+    private static Timeline getTimeline(SegmentList segmentList) {
+        Object segmentTimeline = LiveSegmentIndex.getObject(sSegmentTimeline, segmentList);
+
+        if (segmentTimeline == null || segmentTimeline instanceof Timeline) {
+            return (Timeline) segmentTimeline;
+        }
+
+        Timeline timeline = new Timeline((List<SegmentTimelineElement>) segmentTimeline);
+        LiveSegmentIndex.setObject(sSegmentTimeline, segmentList, timeline);
+
+        return timeline;
     }
 
     private static void recreateMissingSegments(DashManifest manifest) {
@@ -184,9 +249,9 @@ public class LiveDashManifestParser extends DashManifestParser {
             return;
         }
 
-        long minUpdatePeriodMs = (long) Helpers.getField(manifest, "minUpdatePeriodMs");
-        long timeShiftBufferDepthMs = (long) Helpers.getField(manifest, "timeShiftBufferDepthMs"); // active live stream
-        long durationMs = (long) Helpers.getField(manifest, "durationMs"); // past live stream
+        long minUpdatePeriodMs = LiveSegmentIndex.getLong(sMinUpdatePeriodMs, manifest);
+        long timeShiftBufferDepthMs = LiveSegmentIndex.getLong(sTimeShiftBufferDepthMs, manifest); // active live stream
+        long durationMs = LiveSegmentIndex.getLong(sDurationMs, manifest); // past live stream
         long firstSegmentNum = getFirstSegmentNum(manifest);
         long firstSegmentDurationMs = getFirstSegmentDurationMs(manifest);
         long currentSegmentCount = getSegmentCount(manifest);
@@ -220,10 +285,10 @@ public class LiveDashManifestParser extends DashManifestParser {
         }
 
         if (timeShiftBufferDepthMs > 0) { // active live stream
-            Helpers.setField(manifest, "timeShiftBufferDepthMs",
+            LiveSegmentIndex.setLong(sTimeShiftBufferDepthMs, manifest,
                     timeShiftBufferDepthMs + (recreateSegmentCount * minUpdatePeriodMs));
         } else { // past live stream
-            Helpers.setField(manifest, "durationMs", durationMs + (recreateSegmentCount * minUpdatePeriodMs));
+            LiveSegmentIndex.setLong(sDurationMs, manifest, durationMs + (recreateSegmentCount * minUpdatePeriodMs));
         }
 
         Period oldPeriod = manifest.getPeriod(0);
@@ -242,18 +307,21 @@ public class LiveDashManifestParser extends DashManifestParser {
 
     private static void recreateRepresentation(Representation oldRepresentation, long segmentCount,
             long minUpdatePeriodMs) {
-        MultiSegmentRepresentation oldMultiRepresentation = (MultiSegmentRepresentation) oldRepresentation;
+        SegmentList oldSegmentList = (SegmentList) LiveSegmentIndex.getObject(sSegmentBase, oldRepresentation);
 
-        SegmentList oldSegmentList = (SegmentList) Helpers.getField(oldMultiRepresentation, "segmentBase");
+        SegmentUrls oldMediaSegments = getSegmentUrls(oldSegmentList);
+        Timeline oldSegmentTimeline = getTimeline(oldSegmentList);
 
-        List<RangedUri> oldMediaSegments = (List<RangedUri>) Helpers.getField(oldSegmentList, "mediaSegments");
+        if (oldMediaSegments == null || oldSegmentTimeline == null || oldMediaSegments.size() < 2) {
+            return;
+        }
 
         RangedUri firstSegment = oldMediaSegments.get(0);
         RangedUri secondSegment = oldMediaSegments.get(1);
         long start = firstSegment.start;
         long length = firstSegment.length;
-        String firstSegmentUri = (String) Helpers.getField(firstSegment, "referenceUri");
-        String secondSegmentUri = (String) Helpers.getField(secondSegment, "referenceUri");
+        String firstSegmentUri = LiveSegmentIndex.getReferenceUri(firstSegment);
+        String secondSegmentUri = LiveSegmentIndex.getReferenceUri(secondSegment);
 
         UrlQueryString firstSegmentQuery = UrlQueryStringFactory.parse("/" + firstSegmentUri);
         UrlQueryString secondSegmentQuery = UrlQueryStringFactory.parse("/" + secondSegmentUri);
@@ -268,33 +336,22 @@ public class LiveDashManifestParser extends DashManifestParser {
         }
 
         long presentationTimeOffsetUs = oldRepresentation.presentationTimeOffsetUs;
-        Helpers.setField(oldRepresentation, "presentationTimeOffsetUs",
+        LiveSegmentIndex.setLong(sPresentationTimeOffsetUs, oldRepresentation,
                 presentationTimeOffsetUs - (segmentCount * minUpdatePeriodMs * 1_000));
 
         long currentSegmentNum = firstSegmentNum - 1;
         long currentSegmentLimit = firstSegmentLimit - limitDiff;
 
+        // Continues the first run. Nothing is shifted.
         for (int i = 1; i <= segmentCount; i++) {
-            oldMediaSegments.add(0, new RangedUri(String.format("sq/%s/lmt/%s", currentSegmentNum, currentSegmentLimit),
+            oldMediaSegments.addFirst(new RangedUri(String.format("sq/%s/lmt/%s", currentSegmentNum, currentSegmentLimit),
                     start, length));
             currentSegmentNum--;
             currentSegmentLimit -= limitDiff;
         }
 
-        List<SegmentTimelineElement> oldSegmentTimeline = (List<SegmentTimelineElement>) Helpers
-                .getField(oldSegmentList, "segmentTimeline");
-
         // segmentTimeline is the same for all segments
-        if (oldMediaSegments.size() != oldSegmentTimeline.size()) {
-            SegmentTimelineElement lastTimeline = oldSegmentTimeline.get(oldSegmentTimeline.size() - 1);
-            long lastTimelineDuration = (Long) Helpers.getField(lastTimeline, "duration");
-            long lastTimelineStartTime = (Long) Helpers.getField(lastTimeline, "startTime");
-
-            for (int i = 1; i <= segmentCount; i++) {
-                oldSegmentTimeline.add(new SegmentTimelineElement(lastTimelineStartTime + (lastTimelineDuration * i),
-                        lastTimelineDuration));
-            }
-        }
+        oldSegmentTimeline.extend(oldMediaSegments.size() - oldSegmentTimeline.size());
 
         Log.d(TAG, "Recreate representation: done");
     }
@@ -309,7 +366,7 @@ public class LiveDashManifestParser extends DashManifestParser {
                     segmentCount, minUpdatePeriodMs));
         }
 
-        Helpers.setField(adaptationSet, "representations", newRepresentations);
+        LiveSegmentIndex.setObject(sRepresentations, adaptationSet, newRepresentations);
     }
 
     private static long getFirstSegmentNum(DashManifest manifest) {
@@ -344,7 +401,7 @@ public class LiveDashManifestParser extends DashManifestParser {
         public MultiSegmentRepresentationWrapper(MultiSegmentRepresentation origin, long segmentCount,
                 long minUpdatePeriodMs) {
             this(origin.revisionId, origin.format, origin.baseUrls,
-                    (SegmentList) Helpers.getField(origin, "segmentBase"), origin.inbandEventStreams);
+                    (SegmentList) LiveSegmentIndex.getObject(sSegmentBase, origin), origin.inbandEventStreams);
             mSegmentCount = segmentCount;
             mMinUpdatePeriodMs = minUpdatePeriodMs;
         }
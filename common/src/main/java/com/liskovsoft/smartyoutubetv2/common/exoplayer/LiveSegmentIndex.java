@@ -0,0 +1,347 @@
+package com.liskovsoft.smartyoutubetv2.common.exoplayer;
+
+import androidx.media3.exoplayer.dash.manifest.RangedUri;
+import androidx.media3.exoplayer.dash.manifest.SegmentBase.SegmentTimelineElement;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+
+import java.lang.reflect.Field;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Segment lists of the live streams that don't keep the segments.<br/>
+ * Consecutive segments (sq +1, same lmt step, same duration) are stored as one run and computed on access,
+ * so the memory doesn't depend on the stream length.<br/>
+ * Irregular segments just start a new run.
+ */
+class LiveSegmentIndex {
+    private static final String TAG = LiveSegmentIndex.class.getSimpleName();
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("^(.*?)sq/(\\d+)(/lmt/(\\d+))?(.*)$");
+    private static final long NO_VALUE = -1;
+    private static final Field sReferenceUri = findField(RangedUri.class, "referenceUri");
+    private static final Field sStartTime = findField(SegmentTimelineElement.class, "startTime");
+    private static final Field sDuration = findField(SegmentTimelineElement.class, "duration");
+
+    /**
+     * Media segment urls
+     */
+    static class SegmentUrls extends AbstractList<RangedUri> {
+        private final List<UrlRun> mRuns = new ArrayList<>();
+        private long mFirstIndex;
+        private int mSize;
+
+        SegmentUrls(List<RangedUri> segments) {
+            for (RangedUri segment : segments) {
+                addLast(segment);
+            }
+        }
+
+        @Override
+        public RangedUri get(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+            }
+
+            UrlRun run = mRuns.get(findRun(mRuns, mFirstIndex + index));
+
+            return run.get(mFirstIndex + index - run.offset);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        void addLast(RangedUri segment) {
+            UrlRun last = mRuns.isEmpty() ? null : mRuns.get(mRuns.size() - 1);
+            UrlRun run = UrlRun.from(segment);
+
+            if (last == null || !last.append(run)) {
+                run.offset = mFirstIndex + mSize;
+                mRuns.add(run);
+            }
+
+            mSize++;
+        }
+
+        void addFirst(RangedUri segment) {
+            UrlRun first = mRuns.isEmpty() ? null : mRuns.get(0);
+            UrlRun run = UrlRun.from(segment);
+
+            mFirstIndex--;
+
+            if (first != null && first.prepend(run)) {
+                first.offset--;
+            } else {
+                run.offset = mFirstIndex;
+                mRuns.add(0, run);
+            }
+
+            mSize++;
+        }
+
+        int getRunCount() {
+            return mRuns.size();
+        }
+    }
+
+    /**
+     * Segment start times and durations
+     */
+    static class Timeline extends AbstractList<SegmentTimelineElement> {
+        private final List<TimeRun> mRuns = new ArrayList<>();
+        private int mSize;
+
+        Timeline(List<SegmentTimelineElement> elements) {
+            for (SegmentTimelineElement element : elements) {
+                addLast(getLong(sStartTime, element), getLong(sDuration, element));
+            }
+        }
+
+        @Override
+        public SegmentTimelineElement get(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+            }
+
+            TimeRun run = mRuns.get(findRun(mRuns, index));
+
+            return new SegmentTimelineElement(run.startTime + run.duration * (index - run.offset), run.duration);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        /**
+         * Continue the timeline with the duration of the last segment
+         */
+        void extend(int count) {
+            if (mRuns.isEmpty() || count <= 0) {
+                return;
+            }
+
+            mRuns.get(mRuns.size() - 1).count += count;
+            mSize += count;
+        }
+
+        int getRunCount() {
+            return mRuns.size();
+        }
+
+        private void addLast(long startTime, long duration) {
+            TimeRun last = mRuns.isEmpty() ? null : mRuns.get(mRuns.size() - 1);
+
+            if (last != null && last.duration == duration && last.startTime + last.duration * last.count == startTime) {
+                last.count++;
+            } else {
+                TimeRun run = new TimeRun();
+                run.startTime = startTime;
+                run.duration = duration;
+                run.count = 1;
+                run.offset = mSize;
+                mRuns.add(run);
+            }
+
+            mSize++;
+        }
+    }
+
+    private static class Run {
+        long offset;
+        long count;
+    }
+
+    private static class TimeRun extends Run {
+        long startTime;
+        long duration;
+    }
+
+    /**
+     * sq/{num}/lmt/{lmt} sequence or a single segment with unknown url format
+     */
+    private static class UrlRun extends Run {
+        String prefix;
+        String suffix;
+        long firstNum = NO_VALUE;
+        long firstLmt = NO_VALUE;
+        long lmtStep;
+        long start;
+        long length;
+        RangedUri segment;
+
+        static UrlRun from(RangedUri segment) {
+            UrlRun run = new UrlRun();
+            run.count = 1;
+            run.start = segment.start;
+            run.length = segment.length;
+
+            String referenceUri = getReferenceUri(segment);
+            Matcher matcher = referenceUri != null ? SEGMENT_PATTERN.matcher(referenceUri) : null;
+
+            if (matcher != null && matcher.matches()) {
+                run.prefix = matcher.group(1);
+                run.firstNum = Long.parseLong(matcher.group(2));
+                run.firstLmt = matcher.group(4) != null ? Long.parseLong(matcher.group(4)) : NO_VALUE;
+                run.suffix = matcher.group(5);
+            } else {
+                run.segment = segment;
+            }
+
+            return run;
+        }
+
+        RangedUri get(long position) {
+            if (segment != null) {
+                return segment;
+            }
+
+            String referenceUri = firstLmt != NO_VALUE ?
+                    prefix + "sq/" + (firstNum + position) + "/lmt/" + (firstLmt + lmtStep * position) + suffix :
+                    prefix + "sq/" + (firstNum + position) + suffix;
+
+            return new RangedUri(referenceUri, start, length);
+        }
+
+        /**
+         * @param next single segment run
+         */
+        boolean append(UrlRun next) {
+            if (!canJoin(next) || next.firstNum != firstNum + count) {
+                return false;
+            }
+
+            if (firstLmt != NO_VALUE) {
+                long step = next.firstLmt - (firstLmt + lmtStep * (count - 1));
+
+                if (count > 1 && step != lmtStep) {
+                    return false;
+                }
+
+                lmtStep = step;
+            }
+
+            count++;
+
+            return true;
+        }
+
+        /**
+         * @param previous single segment run
+         */
+        boolean prepend(UrlRun previous) {
+            if (!canJoin(previous) || previous.firstNum != firstNum - 1) {
+                return false;
+            }
+
+            if (firstLmt != NO_VALUE) {
+                long step = firstLmt - previous.firstLmt;
+
+                if (count > 1 && step != lmtStep) {
+                    return false;
+                }
+
+                lmtStep = step;
+                firstLmt = previous.firstLmt;
+            }
+
+            firstNum--;
+            count++;
+
+            return true;
+        }
+
+        private boolean canJoin(UrlRun other) {
+            return segment == null && other.segment == null && start == other.start && length == other.length &&
+                    (firstLmt == NO_VALUE) == (other.firstLmt == NO_VALUE) && prefix.equals(other.prefix) && suffix.equals(other.suffix);
+        }
+    }
+
+    /**
+     * Binary search by the offset
+     */
+    private static int findRun(List<? extends Run> runs, long index) {
+        int low = 0;
+        int high = runs.size() - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (runs.get(mid).offset <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Resolved once. Walks the super classes.
+     */
+    static Field findField(Class<?> clazz, String name) {
+        for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+            try {
+                Field field = current.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // Try the super class
+            } catch (Exception e) {
+                break;
+            }
+        }
+
+        Log.e(TAG, "Field %s not found in %s", name, clazz.getSimpleName());
+
+        return null;
+    }
+
+    static String getReferenceUri(RangedUri segment) {
+        return (String) getObject(sReferenceUri, segment);
+    }
+
+    static Object getObject(Field field, Object target) {
+        try {
+            return field != null && target != null ? field.get(target) : null;
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Can't get field %s: %s", field.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    static long getLong(Field field, Object target) {
+        try {
+            return field != null && target != null ? field.getLong(target) : 0;
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Can't get field %s: %s", field.getName(), e.getMessage());
+            return 0;
+        }
+    }
+
+    static void setObject(Field field, Object target, Object value) {
+        try {
+            if (field != null && target != null) {
+                field.set(target, value);
+            }
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Can't set field %s: %s", field.getName(), e.getMessage());
+        }
+    }
+
+    static void setLong(Field field, Object target, long value) {
+        try {
+            if (field != null && target != null) {
+                field.setLong(target, value);
+            }
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Can't set field %s: %s", field.getName(), e.getMessage());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.liskovsoft.smartyoutubetv2.common.exoplayer.controller;
 import android.content.Context;
 import android.os.Build;
 import android.os.Build.VERSION;
+import android.os.SystemClock;
 
 import androidx.media3.common.C;
 import androidx.media3.common.Format;
@@ -10,6 +11,7 @@ import androidx.media3.common.PlaybackException;
 import androidx.media3.common.PlaybackParameters;
 import androidx.media3.exoplayer.ExoPlaybackException;
 import androidx.media3.common.Player;
+import androidx.media3.common.Timeline;
 import androidx.media3.common.Tracks;
 import androidx.media3.exoplayer.ExoPlayer;
 import androidx.media3.exoplayer.source.MediaSource;
@@ -54,6 +56,12 @@ public class ExoPlayerController implements Player.Listener {
     private VolumeBooster mVolumeBooster;
     private boolean mIsEnded;
     private Runnable mOnVideoLoaded;
+    // Gapless playlist: the next video in the player timeline
+    private Video mAppendedVideo;
+    private Video mTransitionVideo;
+    private long mEndedPositionMs = -1;
+    private long mEndedDurationMs = -1;
+    private long mTransitionTimeMs = -1;
 
     public ExoPlayerController(Context context, PlayerEventListener eventListener) {
         PlayerTweaksData playerTweaksData = PlayerTweaksData.instance(context);
@@ -122,7 +130,45 @@ public class ExoPlayerController implements Player.Listener {
         openMediaSource(new MergingMediaSource(dashMediaSource, hlsMediaSource));
     }
 
+    /**
+     * Add the video after the current one. The player switches to it without the reset.<br/>
+     * Previous appended video is replaced.
+     */
+    public void appendDash(Video video, MediaItemFormatInfo formatInfo) {
+        if (mPlayer == null || !containsMedia() || video == null) {
+            return;
+        }
+
+        clearAppended();
+
+        mPlayer.addMediaSource(mMediaSourceFactory.fromDashFormatInfo(formatInfo));
+        mAppendedVideo = video;
+    }
+
+    public void clearAppended() {
+        mAppendedVideo = null;
+
+        if (mPlayer == null) {
+            return;
+        }
+
+        int nextIndex = mPlayer.getCurrentMediaItemIndex() + 1;
+
+        if (mPlayer.getMediaItemCount() > nextIndex) {
+            mPlayer.removeMediaItems(nextIndex, mPlayer.getMediaItemCount());
+        }
+    }
+
+    /**
+     * The appended video the player has switched to.<br/>
+     * Available only while the end of the previous video is reported.
+     */
+    public Video getAppendedVideo() {
+        return mTransitionVideo;
+    }
+
     private void openMediaSource(MediaSource mediaSource) {
+        mAppendedVideo = null;
         resetPlayerState(); // fixes occasional video artifacts and problems with quality switching
         setQualityInfo("");
 
@@ -138,6 +184,10 @@ public class ExoPlayerController implements Player.Listener {
             return -1;
         }
 
+        if (mEndedPositionMs != -1) {
+            return mEndedPositionMs;
+        }
+
         return mPlayer.getCurrentPosition();
     }
 
@@ -158,6 +208,10 @@ public class ExoPlayerController implements Player.Listener {
             return -1;
         }
 
+        if (mEndedDurationMs != -1) {
+            return mEndedDurationMs;
+        }
+
         long duration = mPlayer.getDuration();
         return duration != C.TIME_UNSET ? duration : -1;
     }
@@ -369,11 +423,66 @@ public class ExoPlayerController implements Player.Listener {
     @Override
     public void onPositionDiscontinuity(Player.PositionInfo oldPosition, Player.PositionInfo newPosition, int reason) {
         if (reason == Player.DISCONTINUITY_REASON_AUTO_TRANSITION) {
+            if (mAppendedVideo != null && newPosition.mediaItemIndex > oldPosition.mediaItemIndex) {
+                onGaplessTransition(oldPosition);
+                return;
+            }
+
             mPlayer.stop();
             mEventListener.onPlayEnd();
         }
     }
 
+    @Override
+    public void onRenderedFirstFrame() {
+        if (mTransitionTimeMs != -1) {
+            Log.d(TAG, "Gapless transition: first frame in %s ms", SystemClock.elapsedRealtime() - mTransitionTimeMs);
+            mTransitionTimeMs = -1;
+        }
+    }
+
+    /**
+     * The previous video is reported as ended with its own position, so its state is saved properly.<br/>
+     * Then the appended one continues without the player reset: decoders, audio sink and track selections are kept.
+     */
+    private void onGaplessTransition(Player.PositionInfo oldPosition) {
+        mTransitionTimeMs = SystemClock.elapsedRealtime();
+        mTransitionVideo = mAppendedVideo;
+        mAppendedVideo = null;
+
+        Timeline timeline = mPlayer.getCurrentTimeline();
+        mEndedPositionMs = oldPosition.positionMs;
+        mEndedDurationMs = oldPosition.mediaItemIndex < timeline.getWindowCount()
+                ? timeline.getWindow(oldPosition.mediaItemIndex, new Timeline.Window()).getDurationMs() : oldPosition.positionMs;
+
+        mEventListener.onPlayEnd();
+
+        Video next = mTransitionVideo;
+        mTransitionVideo = null;
+        mEndedPositionMs = -1;
+        mEndedDurationMs = -1;
+
+        if (mPlayer == null) {
+            return;
+        }
+
+        if (getVideo() != next) {
+            Log.e(TAG, "Gapless transition: the appended video isn't accepted");
+            mTransitionTimeMs = -1;
+            mPlayer.stop();
+            return;
+        }
+
+        // Keep the timeline short
+        mPlayer.removeMediaItems(0, mPlayer.getCurrentMediaItemIndex());
+
+        mIsEnded = false;
+        setQualityInfo("");
+        mTrackSelectorManager.invalidate(); // refresh the track lists only
+        mOnSourceChanged = true;
+        mEventListener.onSourceChanged(next);
+    }
+
     public void onSeekProcessed() {
         mEventListener.onSeekEnd();
     }
@@ -0,0 +1,265 @@
+package com.liskovsoft.smartyoutubetv2.common.exoplayer.other;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
+import androidx.media3.exoplayer.upstream.BandwidthMeter;
+import androidx.media3.exoplayer.upstream.SlidingPercentile;
+
+import com.liskovsoft.sharedutils.helpers.Helpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Throughput and time to first byte of the media requests.<br/>
+ * Listens to the http data sources and keeps the estimates per network type across the sessions,
+ * so the new player starts from the last known speed instead of the fixed value.<br/>
+ * Doesn't give its transfer listener to the player. Otherwise the chunk sources would report the same bytes twice.
+ */
+public class BandwidthEstimator implements BandwidthMeter, TransferListener {
+    private static final String TAG = BandwidthEstimator.class.getSimpleName();
+    private static final String DATA_KEY = "bandwidth_estimate_";
+    private static final long DEFAULT_BITRATE = 25_000_000; // 25mbps - ready for 4K immediately
+    private static final int BITRATE_MAX_WEIGHT = 2000;
+    private static final int TTFB_MAX_WEIGHT = 10;
+    // Less data gives too noisy estimate
+    private static final long MIN_ELAPSED_MS = 2_000;
+    private static final long MIN_BYTES = 512 * 1024;
+    private static final long SAVE_INTERVAL_MS = 30_000;
+    private static BandwidthEstimator sInstance;
+    private final AppPrefs mPrefs;
+    private final ConnectivityManager mConnectivityManager;
+    private final ConnectionPrewarmer mPrewarmer;
+    private final EventListener.EventDispatcher mEventDispatcher = new EventListener.EventDispatcher();
+    private final Map<DataSource, Long> mOpenTimesMs = new WeakHashMap<>();
+    private SlidingPercentile mBitrates;
+    private SlidingPercentile mTtfbs;
+    private String mNetwork;
+    private long mStoredBitrate;
+    private long mStoredTtfbUs;
+    private int mStreamCount;
+    private long mSampleStartMs;
+    private long mSampleBytes;
+    private long mTotalElapsedMs;
+    private long mTotalBytes;
+    private int mSampleCount;
+    private long mBitrate;
+    private long mTtfbUs;
+    private long mSavedTimeMs;
+
+    private BandwidthEstimator(Context context) {
+        mPrefs = AppPrefs.instance(context);
+        mConnectivityManager = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        mPrewarmer = ConnectionPrewarmer.instance(context);
+        updateNetwork();
+    }
+
+    public static BandwidthEstimator instance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BandwidthEstimator(context);
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Switch to the estimates of the current network. Call before the new session.
+     */
+    public synchronized void updateNetwork() {
+        String network = getNetworkType();
+
+        if (network.equals(mNetwork)) {
+            return;
+        }
+
+        if (mNetwork != null) {
+            persist();
+        }
+
+        mNetwork = network;
+        restore();
+
+        mBitrates = new SlidingPercentile(BITRATE_MAX_WEIGHT);
+        mTtfbs = new SlidingPercentile(TTFB_MAX_WEIGHT);
+        mTotalElapsedMs = 0;
+        mTotalBytes = 0;
+        mSampleCount = 0;
+        mBitrate = mStoredBitrate;
+        mTtfbUs = mStoredTtfbUs;
+
+        Log.d(TAG, "Network %s. Initial estimate: %s", mNetwork, getStats());
+    }
+
+    @Override
+    public synchronized long getBitrateEstimate() {
+        return mBitrate;
+    }
+
+    @Override
+    public synchronized long getTimeToFirstByteEstimateUs() {
+        return mTtfbUs;
+    }
+
+    /**
+     * Attached to the data source factories directly
+     */
+    @Nullable
+    @Override
+    public TransferListener getTransferListener() {
+        return null;
+    }
+
+    @Override
+    public void addEventListener(Handler eventHandler, EventListener eventListener) {
+        mEventDispatcher.addListener(eventHandler, eventListener);
+    }
+
+    @Override
+    public void removeEventListener(EventListener eventListener) {
+        mEventDispatcher.removeListener(eventListener);
+    }
+
+    @Override
+    public synchronized void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        if (isNetwork) {
+            // Includes the connection time
+            mOpenTimesMs.put(source, SystemClock.elapsedRealtime());
+        }
+    }
+
+    @Override
+    public synchronized void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        if (!isNetwork) {
+            return;
+        }
+
+        long nowMs = SystemClock.elapsedRealtime();
+
+        if (mStreamCount == 0) {
+            mSampleStartMs = nowMs;
+        }
+
+        mStreamCount++;
+    }
+
+    @Override
+    public synchronized void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+        if (!isNetwork) {
+            return;
+        }
+
+        mSampleBytes += bytesTransferred;
+
+        Long openTimeMs = mOpenTimesMs.remove(source);
+
+        if (openTimeMs != null) {
+            long ttfbMs = SystemClock.elapsedRealtime() - openTimeMs;
+            mTtfbs.addSample(1, ttfbMs * 1_000);
+            mTtfbUs = (long) mTtfbs.getPercentile(0.5f);
+            mPrewarmer.onFirstByte(dataSpec.uri, ttfbMs);
+        }
+    }
+
+    @Override
+    public synchronized void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        if (!isNetwork || mStreamCount == 0) {
+            return;
+        }
+
+        mOpenTimesMs.remove(source);
+        mStreamCount--;
+
+        long nowMs = SystemClock.elapsedRealtime();
+        int elapsedMs = (int) (nowMs - mSampleStartMs);
+        long bytes = mSampleBytes;
+
+        if (elapsedMs > 0 && bytes > 0) {
+            mTotalElapsedMs += elapsedMs;
+            mTotalBytes += bytes;
+
+            long bitrate = bytes * 8_000 / elapsedMs;
+            mBitrates.addSample((int) Math.sqrt(bytes), bitrate);
+            mSampleCount++;
+
+            // Stay on the stored value until the window has enough data
+            if (mTotalElapsedMs >= MIN_ELAPSED_MS || mTotalBytes >= MIN_BYTES) {
+                mBitrate = (long) mBitrates.getPercentile(0.5f);
+            }
+
+            mEventDispatcher.bandwidthSample(elapsedMs, bytes, mBitrate);
+
+            if (nowMs - mSavedTimeMs >= SAVE_INTERVAL_MS) {
+                mSavedTimeMs = nowMs;
+                persist();
+            }
+        }
+
+        // Concurrent streams share the period
+        if (mStreamCount > 0) {
+            mSampleStartMs = nowMs;
+        }
+
+        mSampleBytes = 0;
+    }
+
+    public synchronized String getStats() {
+        return String.format(Locale.US, "%s: %.1f Mbps, TTFB %s ms, %s samples (stored %.1f Mbps)",
+                mNetwork, mBitrate / 1_000_000f, mTtfbUs != C.TIME_UNSET ? mTtfbUs / 1_000 : "-",
+                mSampleCount, mStoredBitrate / 1_000_000f);
+    }
+
+    private void persist() {
+        if (mSampleCount == 0) {
+            return;
+        }
+
+        mPrefs.setData(DATA_KEY + mNetwork, Helpers.mergeData(mBitrate, mTtfbUs));
+    }
+
+    private void restore() {
+        String data = mPrefs.getData(DATA_KEY + mNetwork);
+        String[] split = Helpers.splitData(data);
+
+        long bitrate = Helpers.parseLong(split, 0);
+        long ttfbUs = Helpers.parseLong(split, 1);
+
+        mStoredBitrate = bitrate > 0 ? bitrate : DEFAULT_BITRATE;
+        mStoredTtfbUs = ttfbUs > 0 ? ttfbUs : C.TIME_UNSET;
+    }
+
+    private String getNetworkType() {
+        try {
+            NetworkInfo info = mConnectivityManager != null ? mConnectivityManager.getActiveNetworkInfo() : null;
+
+            if (info == null) {
+                return "none";
+            }
+
+            switch (info.getType()) {
+                case ConnectivityManager.TYPE_ETHERNET:
+                    return "ethernet";
+                case ConnectivityManager.TYPE_WIFI:
+                    return "wifi";
+                case ConnectivityManager.TYPE_MOBILE:
+                    return "mobile";
+                default:
+                    return info.getTypeName().toLowerCase(Locale.US);
+            }
+        } catch (SecurityException e) { // no network state permission
+            Log.e(TAG, "Can't get network type: %s", e.getMessage());
+            return "default";
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.liskovsoft.smartyoutubetv2.common.exoplayer.other;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+
+import com.liskovsoft.mediaserviceinterfaces.data.MediaFormat;
+import com.liskovsoft.mediaserviceinterfaces.data.MediaItemFormatInfo;
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.ExoMediaSourceFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Opens the connections to the media hosts as soon as the stream urls are known.<br/>
+ * Uses the same http stack as the player, so DNS, TLS and HTTP/2 (or QUIC) sessions are reused by the first segment.<br/>
+ * Records the time to first byte of the first request to every host with and without the warm-up.
+ */
+public class ConnectionPrewarmer {
+    private static final String TAG = ConnectionPrewarmer.class.getSimpleName();
+    // Idle connections are kept by the stacks for at least a minute
+    private static final long WARM_TTL_MS = 60_000;
+    private static final int MAX_HOSTS = 32;
+    private static ConnectionPrewarmer sInstance;
+    private final ExoMediaSourceFactory mMediaSourceFactory;
+    // Host -> warm-up finish time, 0 while in progress
+    private final Map<String, Long> mWarmHosts = createHostMap();
+    // Hosts waiting for the first request of the player
+    private final Map<String, Boolean> mPendingHosts = createHostMap();
+    // Warm-ups take a single slot of the network pool. The rest waits here.
+    private final Queue<List<String>> mQueue = new ArrayDeque<>();
+    private boolean mIsRunning;
+    private int mWarmCount;
+    private long mWarmTtfbSumMs;
+    private int mColdCount;
+    private long mColdTtfbSumMs;
+
+    private ConnectionPrewarmer(Context context) {
+        mMediaSourceFactory = new ExoMediaSourceFactory(context.getApplicationContext());
+    }
+
+    public static ConnectionPrewarmer instance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ConnectionPrewarmer(context);
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Connect to the hosts of the video in background.<br/>
+     * Meant for the videos that will be played later, e.g. the next one.
+     */
+    public void prewarm(MediaItemFormatInfo formatInfo) {
+        if (formatInfo == null) {
+            return;
+        }
+
+        List<String> urls = new ArrayList<>();
+        List<String> hosts = new ArrayList<>();
+
+        synchronized (this) {
+            long nowMs = SystemClock.elapsedRealtime();
+
+            for (String url : getUrls(formatInfo)) {
+                String host = Uri.parse(url).getHost();
+
+                if (host == null || hosts.contains(host)) {
+                    continue;
+                }
+
+                hosts.add(host);
+                mPendingHosts.put(host, true);
+
+                Long warmTimeMs = mWarmHosts.get(host);
+
+                if (warmTimeMs != null && (warmTimeMs == 0 || nowMs - warmTimeMs < WARM_TTL_MS)) {
+                    continue;
+                }
+
+                mWarmHosts.put(host, 0L);
+                urls.add(url);
+            }
+        }
+
+        if (urls.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            mQueue.add(urls);
+        }
+
+        runNext();
+    }
+
+    /**
+     * Measure the first request to the hosts of the video without the warm-up.<br/>
+     * Used for the video that is opened right away.
+     */
+    public synchronized void track(MediaItemFormatInfo formatInfo) {
+        if (formatInfo == null) {
+            return;
+        }
+
+        long nowMs = SystemClock.elapsedRealtime();
+
+        for (String url : getUrls(formatInfo)) {
+            String host = Uri.parse(url).getHost();
+
+            if (host == null || mPendingHosts.containsKey(host)) {
+                continue;
+            }
+
+            Long warmTimeMs = mWarmHosts.get(host);
+
+            // Expired warm-up is a cold connection
+            if (warmTimeMs != null && warmTimeMs != 0 && nowMs - warmTimeMs >= WARM_TTL_MS) {
+                mWarmHosts.remove(host);
+            }
+
+            mPendingHosts.put(host, true);
+        }
+    }
+
+    /**
+     * Called by the bandwidth estimator for every network request
+     */
+    void onFirstByte(Uri uri, long ttfbMs) {
+        String host = uri != null ? uri.getHost() : null;
+
+        if (host == null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (mPendingHosts.remove(host) == null) {
+                return;
+            }
+
+            Long warmTimeMs = mWarmHosts.get(host);
+            boolean isWarm = warmTimeMs != null && warmTimeMs != 0;
+
+            if (isWarm) {
+                mWarmCount++;
+                mWarmTtfbSumMs += ttfbMs;
+            } else {
+                mColdCount++;
+                mColdTtfbSumMs += ttfbMs;
+            }
+
+            Log.d(TAG, "First byte from %s in %s ms (%s). %s", host, ttfbMs, isWarm ? "warm" : "cold", getStats());
+        }
+    }
+
+    public synchronized String getStats() {
+        return String.format(Locale.US, "first byte: warm %s ms (%s), cold %s ms (%s)",
+                mWarmCount > 0 ? mWarmTtfbSumMs / mWarmCount : "-", mWarmCount,
+                mColdCount > 0 ? mColdTtfbSumMs / mColdCount : "-", mColdCount);
+    }
+
+    private void runNext() {
+        List<String> urls;
+
+        synchronized (this) {
+            if (mIsRunning || mQueue.isEmpty()) {
+                return;
+            }
+
+            urls = mQueue.poll();
+            mIsRunning = true;
+        }
+
+        ExoMediaSourceFactory.getNetworkExecutor().execute(() -> {
+            try {
+                for (String url : urls) {
+                    connect(url);
+                }
+            } finally {
+                synchronized (this) {
+                    mIsRunning = false;
+                }
+
+                runNext();
+            }
+        });
+    }
+
+    /**
+     * Runs in background
+     */
+    private void connect(String url) {
+        String host = Uri.parse(url).getHost();
+        long startMs = SystemClock.elapsedRealtime();
+        // No transfer listener. Warm-up requests shouldn't affect the bandwidth estimate.
+        DataSource dataSource = mMediaSourceFactory.buildHttpDataSourceFactory(false).createDataSource();
+
+        try {
+            dataSource.open(new DataSpec.Builder()
+                    .setUri(url)
+                    .setLength(1)
+                    .build());
+
+            synchronized (this) {
+                mWarmHosts.put(host, SystemClock.elapsedRealtime());
+            }
+
+            Log.d(TAG, "Connected to %s in %s ms", host, SystemClock.elapsedRealtime() - startMs);
+        } catch (Exception e) {
+            synchronized (this) {
+                mWarmHosts.remove(host);
+            }
+
+            Log.e(TAG, "Can't connect to %s: %s", host, e.getMessage());
+        } finally {
+            try {
+                dataSource.close();
+            } catch (Exception e) {
+                // NOP
+            }
+        }
+    }
+
+    private static <T> Map<String, T> createHostMap() {
+        return new LinkedHashMap<String, T>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > MAX_HOSTS;
+            }
+        };
+    }
+
+    private static List<String> getUrls(MediaItemFormatInfo formatInfo) {
+        List<String> urls = new ArrayList<>();
+
+        List<MediaFormat> formats = formatInfo.getAdaptiveFormats();
+
+        if (formats != null) {
+            for (MediaFormat format : formats) {
+                if (format.getUrl() != null) {
+                    urls.add(format.getUrl());
+                }
+            }
+        }
+
+        if (formatInfo.getDashManifestUrl() != null) {
+            urls.add(formatInfo.getDashManifestUrl());
+        }
+
+        if (formatInfo.getHlsManifestUrl() != null) {
+            urls.add(formatInfo.getHlsManifestUrl());
+        }
+
+        return urls;
+    }
+}
@@ -0,0 +1,195 @@
+package com.liskovsoft.smartyoutubetv2.common.exoplayer.other;
+
+import androidx.media3.common.text.Cue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes the lines repeated by the rolling auto-generated subtitles.<br/>
+ * Remembers the last lines shown and emits only the new text. Known patterns:<br/>
+ * vtt - the previous line comes as a separate cue that ends with a line break or a space,<br/>
+ * ttml - the cue contains the previous and the new line,<br/>
+ * single line - the new words are appended to the previous text.<br/>
+ * Only the rolling captions are deduplicated (see {@link #setRolling(boolean)}), the regular ones may repeat a line on purpose.<br/>
+ * Output of the cue that stays on screen is reused, so it's not rebuilt on every update.
+ */
+public class CueDeduplicator {
+    private static final int WINDOW_SIZE = 4;
+    // Ring of the recent lines
+    private final String[] mWindow = new String[WINDOW_SIZE];
+    private int mWindowPos;
+    // Input text -> output of the cues of the previous update
+    private Map<String, Cue> mShownCues = new HashMap<>();
+    private Map<String, Cue> mNextShownCues = new HashMap<>();
+    private boolean mIsRolling;
+    private final Cue.Builder mBuilder = new Cue.Builder();
+    private final StringBuilder mText = new StringBuilder();
+    private List<Cue> mLastResult = Collections.emptyList();
+
+    /**
+     * Returns the previous list when the visible cues aren't changed
+     */
+    public List<Cue> process(List<Cue> cues) {
+        if (cues == null || cues.isEmpty()) {
+            mShownCues.clear();
+            mLastResult = Collections.emptyList();
+            return mLastResult;
+        }
+
+        List<Cue> result = null;
+        int count = 0;
+
+        for (Cue cue : cues) {
+            Cue output = processCue(cue);
+
+            if (output == null) {
+                continue;
+            }
+
+            if (result == null && count < mLastResult.size() && mLastResult.get(count) == output) {
+                // Same as before so far
+                count++;
+                continue;
+            }
+
+            if (result == null) {
+                result = new ArrayList<>(mLastResult.subList(0, count));
+            }
+
+            result.add(output);
+        }
+
+        // Cue that left the screen goes through the repeat check again
+        Map<String, Cue> shownCues = mShownCues;
+        mShownCues = mNextShownCues;
+        mNextShownCues = shownCues;
+        mNextShownCues.clear();
+
+        if (result == null) {
+            if (count == mLastResult.size()) {
+                return mLastResult;
+            }
+
+            result = new ArrayList<>(mLastResult.subList(0, count));
+        }
+
+        mLastResult = result;
+
+        return result;
+    }
+
+    /**
+     * Auto-generated captions that repeat the previous lines
+     */
+    public void setRolling(boolean rolling) {
+        if (mIsRolling != rolling) {
+            mIsRolling = rolling;
+            reset();
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            mWindow[i] = null;
+        }
+
+        mShownCues.clear();
+        mLastResult = Collections.emptyList();
+    }
+
+    private Cue processCue(Cue cue) {
+        String text = cue.text != null ? cue.text.toString() : "";
+
+        Cue output;
+
+        if (mShownCues.containsKey(text)) {
+            output = mShownCues.get(text);
+        } else {
+            CharSequence newText = mIsRolling ? processText(text) : text;
+            // sub centered by default
+            output = newText != null ? mBuilder.setText(newText).build() : null;
+        }
+
+        mNextShownCues.put(text, output);
+
+        return output;
+    }
+
+    /**
+     * New part of the text or null if there's nothing new
+     */
+    CharSequence processText(String text) {
+        boolean isVttCarrier = text.endsWith("\n") || text.endsWith(" ");
+
+        mText.setLength(0);
+
+        int start = 0;
+
+        while (start <= text.length()) {
+            int end = text.indexOf('\n', start);
+
+            if (end == -1) {
+                end = text.length();
+            }
+
+            String line = text.substring(start, end).trim();
+            start = end + 1;
+
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            if (!isVttCarrier) {
+                appendNewPart(line);
+            }
+
+            remember(line);
+        }
+
+        return mText.length() > 0 ? mText.toString() : null;
+    }
+
+    private void appendNewPart(String line) {
+        String newPart = line;
+
+        for (String recent : mWindow) {
+            if (recent == null) {
+                continue;
+            }
+
+            if (recent.equals(line)) {
+                return;
+            }
+
+            // Rolling single line: the previous words are repeated at the start
+            if (line.length() > recent.length() && line.startsWith(recent) && line.charAt(recent.length()) == ' ') {
+                String part = line.substring(recent.length() + 1).trim();
+
+                if (part.length() < newPart.length()) {
+                    newPart = part;
+                }
+            }
+        }
+
+        if (mText.length() > 0) {
+            mText.append('\n');
+        }
+
+        mText.append(newPart);
+    }
+
+    private void remember(String line) {
+        for (String recent : mWindow) {
+            if (line.equals(recent)) {
+                return;
+            }
+        }
+
+        mWindow[mWindowPos] = line;
+        mWindowPos = (mWindowPos + 1) % WINDOW_SIZE;
+    }
+}
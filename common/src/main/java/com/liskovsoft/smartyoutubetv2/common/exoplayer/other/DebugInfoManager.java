@@ -6,6 +6,8 @@ import android.graphics.Color;
 import android.graphics.Point;
 import android.net.Uri;
 import android.os.Build.VERSION;
+import android.text.Spanned;
+import android.text.TextUtils;
 import android.util.TypedValue;
 import android.view.Display;
 import android.view.Gravity;
@@ -32,10 +34,14 @@ import com.liskovsoft.sharedutils.helpers.AppInfoHelpers;
 import com.liskovsoft.sharedutils.helpers.DeviceHelpers;
 import com.liskovsoft.sharedutils.helpers.FileHelpers;
 import com.liskovsoft.sharedutils.helpers.Helpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.sharedutils.rx.RxHelper;
 import com.liskovsoft.sharedutils.querystringparser.UrlQueryStringFactory;
 import com.liskovsoft.smartyoutubetv2.common.R;
+import com.liskovsoft.smartyoutubetv2.common.app.models.playback.PlayerEventDispatcher;
 import com.liskovsoft.smartyoutubetv2.common.autoframerate.internal.DisplayHolder.Mode;
 import com.liskovsoft.smartyoutubetv2.common.autoframerate.internal.UhdHelper;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.BufferAwareTrackSelection;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.versions.ExoUtils;
 import com.liskovsoft.smartyoutubetv2.common.misc.MediaServiceManager;
 import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
@@ -46,6 +52,11 @@ import com.liskovsoft.youtubeapi.service.internal.MediaServiceData;
 
 import org.chromium.net.ApiVersion;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -62,11 +73,15 @@ public final class DebugInfoManager implements Runnable, Player.Listener {
     private static final String TAG = DebugInfoManager.class.getSimpleName();
     private static final int REFRESH_INTERVAL_MS = 1000;
     private static final String NOT_AVAILABLE = "none";
+    private static final int HISTORY_SIZE = 600; // 10 min
+    private static final int SPARKLINE_WIDTH = 30;
+    private static final String STATS_FILE_NAME = "debug_stats.csv";
     private final float mTextSize;
 
     private final ExoPlayer mPlayer;
     private final ViewGroup mDebugViewGroup;
     private final Activity mContext;
+    private final PlayerEventDispatcher.StatsProvider mStatsProvider;
 
     private boolean mStarted;
     private LinearLayout column1;
@@ -76,6 +91,11 @@ public final class DebugInfoManager implements Runnable, Player.Listener {
     private final List<Pair<String, String>> mDisplayModeId = new ArrayList<>();
     private final List<Pair<String, String>> mDisplayInfo = new ArrayList<>();
     private final String mAppVersion;
+    private final StatsHistory mHistory = new StatsHistory(HISTORY_SIZE, SPARKLINE_WIDTH);
+    // Rows filled during the current update. Cells are reused between the updates.
+    private int mRowCount;
+    private int mLastDroppedFrames = -1;
+    private int mLastRenderedFrames = -1;
 
     /**
      * @param activity    context
@@ -83,9 +103,11 @@ public final class DebugInfoManager implements Runnable, Player.Listener {
      *                    be obtained.
      * @param resLayoutId The {@link TextView} that should be updated to display the
      *                    information.
+     * @param statsProvider Time spent in the player event handlers.
      */
-    public DebugInfoManager(Activity activity, ExoPlayer player, int resLayoutId) {
+    public DebugInfoManager(Activity activity, ExoPlayer player, int resLayoutId, PlayerEventDispatcher.StatsProvider statsProvider) {
         mPlayer = player;
+        mStatsProvider = statsProvider;
         mDebugViewGroup = activity.findViewById(resLayoutId);
         mContext = activity;
         mTextSize = activity.getResources().getDimension(R.dimen.debug_text_size);
@@ -145,6 +167,7 @@ public final class DebugInfoManager implements Runnable, Player.Listener {
         mPlayer.removeListener(this);
         mDebugViewGroup.removeCallbacks(this);
         mUhdHelper = null;
+        exportHistory();
     }
 
     // Player.Listener implementation.
@@ -205,14 +228,15 @@ public final class DebugInfoManager implements Runnable, Player.Listener {
 
     @SuppressLint("SetTextI18n")
     private void updateAndPost() {
-        column1.removeAllViews();
-        column2.removeAllViews();
+        mRowCount = 0;
 
         updateRareChangedValues();
 
         appendVideoInfo();
         appendRuntimeInfo();
+        appendHistory();
         appendPlayerState();
+        appendEventStats();
         appendDisplayInfo();
         appendDisplayModeId();
         // appendPlayerWindowIndex();
@@ -224,6 +248,8 @@ public final class DebugInfoManager implements Runnable, Player.Listener {
         appendVideoInfoVersion();
         appendAccountInfo();
 
+        removeUnusedRows();
+
         // Schedule next update
         mDebugViewGroup.removeCallbacks(this);
         mDebugViewGroup.postDelayed(this, REFRESH_INTERVAL_MS);
@@ -285,6 +311,55 @@ public final class DebugInfoManager implements Runnable, Player.Listener {
                 (int) (mPlayer.getBufferedPosition() - mPlayer.getCurrentPosition()) / 1_000);
     }
 
+    private void appendHistory() {
+        DecoderCounters counters = mPlayer.getVideoDecoderCounters();
+        int droppedFrames = counters != null ? counters.droppedBufferCount : 0;
+        int renderedFrames = counters != null ? counters.renderedOutputBufferCount : 0;
+
+        // Counters are reset when the decoder is changed
+        int droppedDelta = mLastDroppedFrames != -1 && droppedFrames >= mLastDroppedFrames ? droppedFrames - mLastDroppedFrames : 0;
+        int renderedDelta = mLastRenderedFrames != -1 && renderedFrames >= mLastRenderedFrames ? renderedFrames - mLastRenderedFrames : 0;
+        mLastDroppedFrames = droppedFrames;
+        mLastRenderedFrames = renderedFrames;
+
+        mHistory.add(System.currentTimeMillis(), droppedDelta, BandwidthEstimator.instance(mContext).getBitrateEstimate() / 1_000_000f,
+                (mPlayer.getBufferedPosition() - mPlayer.getCurrentPosition()) / 1_000f, renderedDelta * 1_000f / REFRESH_INTERVAL_MS);
+
+        appendHistoryRow("Dropped frames/sec", StatsHistory.DROPPED_FRAMES, "%.0f");
+        appendHistoryRow("Bitrate estimate (Mbps)", StatsHistory.BITRATE_ESTIMATE, "%.1f");
+        appendHistoryRow("Buffer health (seconds)", StatsHistory.BUFFER, "%.1f");
+        appendHistoryRow("Decoder output (fps)", StatsHistory.RENDERED_FRAMES, "%.0f");
+        appendRow("Network estimate", BandwidthEstimator.instance(mContext).getStats());
+        appendRow("Connection warm-up", ConnectionPrewarmer.instance(mContext).getStats());
+        appendRow("Quality switches", BufferAwareTrackSelection.getStats());
+    }
+
+    private void appendHistoryRow(String name, int metric, String format) {
+        appendRow(name, String.format(Locale.US, format, mHistory.getLast(metric)) + " " + mHistory.getSparkline(metric));
+    }
+
+    /**
+     * Save the last session stats as csv for the offline analysis.<br/>
+     * Single file that is overwritten on every hide. No toast, the path is in the log.
+     */
+    private void exportHistory() {
+        if (mHistory.isEmpty()) {
+            return;
+        }
+
+        File dir = mContext.getExternalFilesDir(null) != null ? mContext.getExternalFilesDir(null) : mContext.getCacheDir();
+        File file = new File(dir, STATS_FILE_NAME);
+
+        RxHelper.runAsync(() -> {
+            try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+                mHistory.writeCsv(writer);
+                Log.d(TAG, "Stats exported to %s", file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.e(TAG, "Can't export stats: %s", e.getMessage());
+            }
+        });
+    }
+
     private void appendPlayerState() {
         appendRow("Player paused", !mPlayer.getPlayWhenReady());
 
@@ -309,6 +384,19 @@ public final class DebugInfoManager implements Runnable, Player.Listener {
         appendRow("Playback state", text);
     }
 
+    /**
+     * The slowest controllers. Red when some calls didn't fit into a frame.
+     */
+    private void appendEventStats() {
+        List<PlayerEventDispatcher.Stats> stats = mStatsProvider.getEventStats();
+
+        for (int i = 0; i < Math.min(3, stats.size()); i++) {
+            PlayerEventDispatcher.Stats item = stats.get(i);
+            String value = item.toString();
+            appendRow(String.format("Event handler #%s", i + 1), item.getSlowCount() > 0 ? Utils.color(value, Color.RED) : value);
+        }
+    }
+
     private void appendDisplayModeId() {
         for (Pair<String, String> pair : mDisplayModeId) {
             appendRow(pair.first, pair.second);
@@ -373,6 +461,7 @@ public final class DebugInfoManager implements Runnable, Player.Listener {
                 (FileHelpers.getDirSize(FileHelpers.getInternalCacheDir(mContext))
                         + FileHelpers.getDirSize(FileHelpers.getExternalCacheDir(mContext)))
                         / 1024 / 1024));
+        appendRow("Pre-buffer cache", PreBufferManager.instance(mContext).getStats());
     }
 
     private void appendMemoryInfo() {
@@ -406,48 +495,51 @@ public final class DebugInfoManager implements Runnable, Player.Listener {
     }
 
     private void appendRow(String name, boolean val) {
-        appendNameColumn(createTextView(name));
-        appendValueColumn(createTextView(val));
+        appendRow(name, String.valueOf(val));
     }
 
     private void appendRow(String name, CharSequence val) {
-        appendNameColumn(createTextView(name));
-        appendValueColumn(createTextView(val));
+        setText(getCell(column1, Gravity.END), name);
+        setText(getCell(column2, Gravity.START), val);
+        mRowCount++;
     }
 
     private void appendRow(String name, int val) {
-        appendNameColumn(createTextView(name));
-        appendValueColumn(createTextView(val));
+        appendRow(name, String.valueOf(val));
     }
 
-    private void appendNameColumn(TextView content) {
-        content.setGravity(Gravity.END);
-        column1.addView(content);
-    }
-
-    private void appendValueColumn(TextView content) {
-        column2.addView(content);
-    }
+    /**
+     * Reuse the cell of the previous update or create a new one
+     */
+    private TextView getCell(LinearLayout column, int gravity) {
+        if (column.getChildCount() > mRowCount) {
+            return (TextView) column.getChildAt(mRowCount);
+        }
 
-    private TextView createTextView(CharSequence name) {
         TextView textView = new TextView(mContext);
-        textView.setText(name);
         textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
+        textView.setGravity(gravity);
+        column.addView(textView);
         return textView;
     }
 
-    private TextView createTextView(boolean val) {
-        TextView textView = new TextView(mContext);
-        textView.setText(String.valueOf(val));
-        textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
-        return textView;
+    /**
+     * Skip the layout pass when the text isn't changed
+     */
+    private static void setText(TextView textView, CharSequence text) {
+        if (text instanceof Spanned || !TextUtils.equals(textView.getText(), text)) {
+            textView.setText(text);
+        }
     }
 
-    private TextView createTextView(int val) {
-        TextView textView = new TextView(mContext);
-        textView.setText(String.valueOf(val));
-        textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, mTextSize);
-        return textView;
+    private void removeUnusedRows() {
+        if (column1.getChildCount() > mRowCount) {
+            column1.removeViews(mRowCount, column1.getChildCount() - mRowCount);
+        }
+
+        if (column2.getChildCount() > mRowCount) {
+            column2.removeViews(mRowCount, column2.getChildCount() - mRowCount);
+        }
     }
 
     private String toHumanReadable(int bitrate) {
@@ -2,8 +2,6 @@ package com.liskovsoft.smartyoutubetv2.common.exoplayer.other;
 
 import android.content.Context;
 import android.os.Build;
-import android.os.Handler;
-import androidx.annotation.Nullable;
 import androidx.media3.common.AudioAttributes;
 import androidx.media3.exoplayer.drm.FrameworkMediaDrm;
 import androidx.media3.common.C;
@@ -20,8 +18,6 @@ import androidx.media3.exoplayer.drm.ExoMediaDrm;
 import androidx.media3.exoplayer.drm.MediaDrmCallback;
 import androidx.media3.exoplayer.drm.UnsupportedDrmException;
 import androidx.media3.exoplayer.trackselection.DefaultTrackSelector;
-import androidx.media3.exoplayer.upstream.BandwidthMeter;
-import androidx.media3.datasource.TransferListener;
 import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.smartyoutubetv2.common.prefs.PlayerData;
 import com.liskovsoft.smartyoutubetv2.common.prefs.PlayerTweaksData;
@@ -57,11 +53,16 @@ public class ExoPlayerInitializer {
         // HDR fix?
         // trackSelector.setParameters(trackSelector.buildUponParameters().setTunnelingAudioSessionId(C.generateAudioSessionIdV21(context)));
 
+        // Start from the last known speed of the current network
+        BandwidthEstimator bandwidthMeter = BandwidthEstimator.instance(context);
+        bandwidthMeter.updateNetwork();
+
         // Media3 initializer
         ExoPlayer player = new ExoPlayer.Builder(context)
                 .setRenderersFactory(renderersFactory)
                 .setTrackSelector(trackSelector)
                 .setLoadControl(loadControl)
+                .setBandwidthMeter(bandwidthMeter)
                 .build();
 
         // enableAudioFocus(player);
@@ -199,32 +200,4 @@ public class ExoPlayerInitializer {
                 });
 
     }
-
-    private static final class DummyBandwidthMeter implements BandwidthMeter {
-        @Override
-        public long getBitrateEstimate() {
-            return 0;
-        }
-
-        @Nullable
-        @Override
-        public TransferListener getTransferListener() {
-            return null;
-        }
-
-        @Override
-        public void addEventListener(Handler eventHandler, EventListener eventListener) {
-            // Do nothing.
-        }
-
-        @Override
-        public void removeEventListener(EventListener eventListener) {
-            // Do nothing.
-        }
-
-        @Override
-        public long getTimeToFirstByteEstimateUs() {
-            return C.TIME_UNSET;
-        }
-    }
 }
@@ -0,0 +1,320 @@
+package com.liskovsoft.smartyoutubetv2.common.exoplayer.other;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.net.Uri;
+import androidx.media3.database.StandaloneDatabaseProvider;
+import androidx.media3.datasource.DataSource;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.TransferListener;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.CacheKeyFactory;
+import androidx.media3.datasource.cache.CacheWriter;
+import androidx.media3.datasource.cache.LeastRecentlyUsedCacheEvictor;
+import androidx.media3.datasource.cache.SimpleCache;
+import androidx.media3.datasource.okhttp.OkHttpDataSource;
+import com.liskovsoft.googlecommon.common.helpers.DefaultHeaders;
+import com.liskovsoft.mediaserviceinterfaces.data.MediaFormat;
+import com.liskovsoft.mediaserviceinterfaces.data.MediaItemFormatInfo;
+import com.liskovsoft.sharedutils.helpers.FileHelpers;
+import com.liskovsoft.sharedutils.helpers.Helpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.sharedutils.okhttp.OkHttpManager;
+import com.liskovsoft.sharedutils.rx.RxHelper;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.FormatInfoSelector;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.FormatItem;
+import com.liskovsoft.smartyoutubetv2.common.prefs.PlayerData;
+
+import io.reactivex.disposables.Disposable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches the first seconds of the next video into a bounded on-disk cache.<br/>
+ * The player reads through the same cache so the next video starts from local bytes.
+ */
+public class PreBufferManager {
+    private static final String TAG = PreBufferManager.class.getSimpleName();
+    private static final String CACHE_DIR_NAME = "prebuffer";
+    private static final long MAX_CACHE_SIZE_BYTES = 150 * 1024 * 1024;
+    private static final int PRE_BUFFER_DURATION_SEC = 15;
+    // Init and index segments of the YouTube streams located at the start of the file
+    private static final long MIN_PRE_BUFFER_BYTES = 256 * 1024;
+    private static final long MAX_PRE_BUFFER_BYTES = 30 * 1024 * 1024;
+    @SuppressLint("StaticFieldLeak")
+    private static PreBufferManager sInstance;
+    private final Context mContext;
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mHitBytes = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mMissBytes = new AtomicLong();
+    private SimpleCache mCache;
+    // Separate slots: card previews don't cancel the next video of the queue
+    private Job mNextJob;
+    private Job mPreviewJob;
+    // Url params are changed between requests. Id and itag are enough to identify a stream.
+    private static final CacheKeyFactory CACHE_KEY_FACTORY = dataSpec -> {
+        Uri uri = dataSpec.uri;
+
+        if (uri.isHierarchical() && uri.getQueryParameter("sq") == null && uri.getQueryParameter("range") == null) {
+            String id = uri.getQueryParameter("id");
+            String itag = uri.getQueryParameter("itag");
+
+            if (id != null && itag != null) {
+                return id + ":" + itag;
+            }
+        }
+
+        return dataSpec.key != null ? dataSpec.key : uri.toString();
+    };
+    private final CacheDataSource.EventListener mHitListener = new CacheDataSource.EventListener() {
+        @Override
+        public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+            mHitCount.incrementAndGet();
+            mHitBytes.addAndGet(cachedBytesRead);
+        }
+
+        @Override
+        public void onCacheIgnored(int reason) {
+            // NOP
+        }
+    };
+    private final TransferListener mMissListener = new TransferListener() {
+        @Override
+        public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            // NOP
+        }
+
+        @Override
+        public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            if (isNetwork) {
+                mMissCount.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+            if (isNetwork) {
+                mMissBytes.addAndGet(bytesTransferred);
+            }
+        }
+
+        @Override
+        public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            // NOP
+        }
+    };
+
+    private static class Job {
+        private final String mVideoId;
+        private final CacheWriter mVideoWriter;
+        private final CacheWriter mAudioWriter;
+        private Disposable mAction;
+
+        private Job(String videoId, CacheWriter videoWriter, CacheWriter audioWriter) {
+            mVideoId = videoId;
+            mVideoWriter = videoWriter;
+            mAudioWriter = audioWriter;
+        }
+
+        private void cancel() {
+            if (mVideoWriter != null) {
+                mVideoWriter.cancel();
+            }
+
+            if (mAudioWriter != null) {
+                mAudioWriter.cancel();
+            }
+
+            RxHelper.disposeActions(mAction);
+        }
+    }
+
+    private PreBufferManager(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public static PreBufferManager instance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PreBufferManager(context);
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Wraps player's data source. Read only: playback itself never fills the cache.
+     */
+    public DataSource.Factory wrap(DataSource.Factory upstreamFactory) {
+        SimpleCache cache = getCache();
+
+        if (cache == null) {
+            return upstreamFactory;
+        }
+
+        DataSource.Factory countingFactory = () -> {
+            DataSource dataSource = upstreamFactory.createDataSource();
+            dataSource.addTransferListener(mMissListener);
+            return dataSource;
+        };
+
+        return new CacheDataSource.Factory()
+                .setCache(cache)
+                .setCacheKeyFactory(CACHE_KEY_FACTORY)
+                .setUpstreamDataSourceFactory(countingFactory)
+                .setCacheWriteDataSinkFactory(null)
+                .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR)
+                .setEventListener(mHitListener);
+    }
+
+    /**
+     * Fetches the beginning of the preferred video and audio representations in background.
+     */
+    public void preBuffer(String videoId, MediaItemFormatInfo formatInfo) {
+        if (isSkipped(videoId, formatInfo, mNextJob)) {
+            return;
+        }
+
+        cancel(mNextJob);
+        mNextJob = startJob(videoId, formatInfo, PlayerData.instance(mContext).getFormat(FormatItem.TYPE_VIDEO));
+    }
+
+    /**
+     * Same as {@link #preBuffer(String, MediaItemFormatInfo)} but for the card preview.<br/>
+     * Doesn't interrupt the pre-buffering of the next video.
+     * @param preferredVideo quality of the preview player
+     */
+    public void preBufferPreview(String videoId, MediaItemFormatInfo formatInfo, FormatItem preferredVideo) {
+        if (isSkipped(videoId, formatInfo, mPreviewJob)) {
+            return;
+        }
+
+        cancel(mPreviewJob);
+        mPreviewJob = startJob(videoId, formatInfo, preferredVideo);
+    }
+
+    private boolean isSkipped(String videoId, MediaItemFormatInfo formatInfo, Job currentJob) {
+        return videoId == null || formatInfo == null || formatInfo.isLive() || !formatInfo.containsDashFormats()
+                || (currentJob != null && videoId.equals(currentJob.mVideoId));
+    }
+
+    private Job startJob(String videoId, MediaItemFormatInfo formatInfo, FormatItem preferredVideo) {
+        SimpleCache cache = getCache();
+
+        if (cache == null) {
+            return null;
+        }
+
+        List<MediaFormat> formats = formatInfo.getAdaptiveFormats();
+        PlayerData playerData = PlayerData.instance(mContext);
+        MediaFormat video = FormatInfoSelector.findVideoFormat(formats, preferredVideo);
+        MediaFormat audio = FormatInfoSelector.findAudioFormat(formats, playerData.getFormat(FormatItem.TYPE_AUDIO));
+
+        CacheDataSource dataSource = new CacheDataSource.Factory()
+                .setCache(cache)
+                .setCacheKeyFactory(CACHE_KEY_FACTORY)
+                .setUpstreamDataSourceFactory(buildUpstreamFactory())
+                .createDataSource();
+
+        CacheWriter videoWriter = createWriter(dataSource, video);
+        CacheWriter audioWriter = createWriter(dataSource, audio);
+        Job job = new Job(videoId, videoWriter, audioWriter);
+
+        job.mAction = RxHelper.runAsync(() -> {
+            long startMs = System.currentTimeMillis();
+            try {
+                if (videoWriter != null) {
+                    videoWriter.cache();
+                }
+                if (audioWriter != null) {
+                    audioWriter.cache();
+                }
+                Log.d(TAG, "Pre-buffered %s in %s ms. %s", videoId, System.currentTimeMillis() - startMs, getStats());
+            } catch (IOException e) {
+                Log.e(TAG, "Pre-buffer error: %s", e.getMessage());
+            }
+        });
+
+        return job;
+    }
+
+    /**
+     * Keep pre-buffering if the same video is about to play
+     */
+    public void cancelUnless(String videoId) {
+        if (mNextJob != null && (videoId == null || !videoId.equals(mNextJob.mVideoId))) {
+            cancel(mNextJob);
+            mNextJob = null;
+        }
+
+        if (mPreviewJob != null && (videoId == null || !videoId.equals(mPreviewJob.mVideoId))) {
+            cancel(mPreviewJob);
+            mPreviewJob = null;
+        }
+    }
+
+    public void cancel() {
+        cancel(mNextJob);
+        cancel(mPreviewJob);
+        mNextJob = null;
+        mPreviewJob = null;
+    }
+
+    private static void cancel(Job job) {
+        if (job != null) {
+            job.cancel();
+        }
+    }
+
+    public String getStats() {
+        SimpleCache cache = mCache;
+        return String.format(Locale.ENGLISH, "hits: %s (%s KB), misses: %s (%s KB), size: %s/%s MB",
+                mHitCount.get(), mHitBytes.get() / 1024, mMissCount.get(), mMissBytes.get() / 1024,
+                cache != null ? cache.getCacheSpace() / 1024 / 1024 : 0, MAX_CACHE_SIZE_BYTES / 1024 / 1024);
+    }
+
+    private synchronized SimpleCache getCache() {
+        if (mCache == null) {
+            File cacheDir = FileHelpers.getInternalCacheDir(mContext);
+
+            if (cacheDir == null) {
+                return null;
+            }
+
+            try {
+                mCache = new SimpleCache(new File(cacheDir, CACHE_DIR_NAME),
+                        new LeastRecentlyUsedCacheEvictor(MAX_CACHE_SIZE_BYTES), new StandaloneDatabaseProvider(mContext));
+            } catch (IllegalStateException e) { // another instance uses the folder
+                Log.e(TAG, "Can't create pre-buffer cache: %s", e.getMessage());
+            }
+        }
+
+        return mCache;
+    }
+
+    private static DataSource.Factory buildUpstreamFactory() {
+        return new OkHttpDataSource.Factory(OkHttpManager.instance().getClient())
+                .setUserAgent(DefaultHeaders.APP_USER_AGENT);
+    }
+
+    private static CacheWriter createWriter(CacheDataSource dataSource, MediaFormat format) {
+        if (format == null || format.getUrl() == null) {
+            return null;
+        }
+
+        long length = (long) Helpers.parseInt(format.getBitrate()) / 8 * PRE_BUFFER_DURATION_SEC;
+        length = Math.max(MIN_PRE_BUFFER_BYTES, Math.min(length, MAX_PRE_BUFFER_BYTES));
+
+        DataSpec dataSpec = new DataSpec.Builder()
+                .setUri(format.getUrl())
+                .setPosition(0)
+                .setLength(length)
+                .build();
+
+        return new CacheWriter(dataSource, dataSpec, null, null);
+    }
+}
@@ -0,0 +1,106 @@
+package com.liskovsoft.smartyoutubetv2.common.exoplayer.other;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Fixed size history of the playback stats. Sampled once per second by the debug overlay.<br/>
+ * The oldest samples are overwritten.
+ */
+public class StatsHistory {
+    public static final int DROPPED_FRAMES = 0;
+    public static final int BITRATE_ESTIMATE = 1;
+    public static final int BUFFER = 2;
+    public static final int RENDERED_FRAMES = 3;
+    private static final String[] CSV_COLUMNS = {"dropped_frames", "bitrate_estimate_mbps", "buffer_sec", "rendered_fps"};
+    private static final char[] SPARK_CHARS = {'▁', '▂', '▃', '▄', '▅', '▆', '▇', '█'};
+    private final int mCapacity;
+    private final long[] mTimesMs;
+    private final float[][] mValues;
+    private final char[] mSparkline;
+    private int mStart;
+    private int mSize;
+
+    public StatsHistory(int capacity, int sparklineWidth) {
+        mCapacity = capacity;
+        mTimesMs = new long[capacity];
+        mValues = new float[CSV_COLUMNS.length][capacity];
+        mSparkline = new char[sparklineWidth];
+    }
+
+    public synchronized void add(long timeMs, float droppedFrames, float bitrateEstimate, float buffer, float renderedFrames) {
+        int index = (mStart + mSize) % mCapacity;
+
+        if (mSize == mCapacity) {
+            mStart = (mStart + 1) % mCapacity;
+        } else {
+            mSize++;
+        }
+
+        mTimesMs[index] = timeMs;
+        mValues[DROPPED_FRAMES][index] = droppedFrames;
+        mValues[BITRATE_ESTIMATE][index] = bitrateEstimate;
+        mValues[BUFFER][index] = buffer;
+        mValues[RENDERED_FRAMES][index] = renderedFrames;
+    }
+
+    public synchronized float getLast(int metric) {
+        return mSize > 0 ? mValues[metric][(mStart + mSize - 1) % mCapacity] : 0;
+    }
+
+    public synchronized boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Latest samples scaled between the min and the max of the visible window
+     */
+    public synchronized String getSparkline(int metric) {
+        int count = Math.min(mSize, mSparkline.length);
+
+        if (count == 0) {
+            return "";
+        }
+
+        float[] values = mValues[metric];
+        int first = mStart + mSize - count;
+
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (int i = first; i < first + count; i++) {
+            float value = values[i % mCapacity];
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        float range = max - min;
+
+        for (int i = 0; i < count; i++) {
+            float value = values[(first + i) % mCapacity];
+            int level = range > 0 ? (int) ((value - min) / range * (SPARK_CHARS.length - 1)) : 0;
+            mSparkline[i] = SPARK_CHARS[level];
+        }
+
+        return new String(mSparkline, 0, count);
+    }
+
+    public synchronized void writeCsv(Writer writer) throws IOException {
+        writer.write("time_ms");
+        for (String column : CSV_COLUMNS) {
+            writer.write(',');
+            writer.write(column);
+        }
+        writer.write('\n');
+
+        for (int i = 0; i < mSize; i++) {
+            int index = (mStart + i) % mCapacity;
+            writer.write(String.valueOf(mTimesMs[index]));
+            for (float[] values : mValues) {
+                writer.write(',');
+                writer.write(String.format(Locale.US, "%.2f", values[index]));
+            }
+            writer.write('\n');
+        }
+    }
+}
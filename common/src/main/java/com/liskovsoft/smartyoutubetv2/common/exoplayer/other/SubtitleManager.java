@@ -12,12 +12,16 @@ import android.view.accessibility.CaptioningManager.CaptionStyle;
 
 import androidx.annotation.RequiresApi;
 import androidx.core.content.ContextCompat;
+import androidx.media3.common.C;
+import androidx.media3.common.Format;
+import androidx.media3.common.MediaItem;
 import androidx.media3.common.Player;
+import androidx.media3.common.Tracks;
 import androidx.media3.ui.CaptionStyleCompat;
 import androidx.media3.common.text.Cue;
 import androidx.media3.ui.SubtitleView;
-import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.smartyoutubetv2.common.R;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.track.SubtitleTrack;
 import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
 import com.liskovsoft.smartyoutubetv2.common.prefs.common.DataChangeBase.OnDataChange;
 import com.liskovsoft.smartyoutubetv2.common.prefs.PlayerData;
@@ -32,7 +36,7 @@ public class SubtitleManager implements Player.Listener, OnDataChange {
     private final List<SubtitleStyle> mSubtitleStyles = new ArrayList<>();
     private final AppPrefs mPrefs;
     private final PlayerData mPlayerData;
-    private CharSequence subsBuffer;
+    private final CueDeduplicator mCueDeduplicator = new CueDeduplicator();
 
     public static class SubtitleStyle {
         public final int nameResId;
@@ -73,16 +77,50 @@ public class SubtitleManager implements Player.Listener, OnDataChange {
     @Override
     public void onCues(List<Cue> cues) {
         if (mSubtitleView != null) {
-            mSubtitleView.setCues(forceCenterAlignment(cues));
+            mSubtitleView.setCues(mCueDeduplicator.process(cues));
         }
     }
 
+    @Override
+    public void onTracksChanged(Tracks tracks) {
+        // Only the auto-generated captions repeat the previous lines
+        mCueDeduplicator.setRolling(isAutoSubtitleSelected(tracks));
+    }
+
+    @Override
+    public void onPositionDiscontinuity(Player.PositionInfo oldPosition, Player.PositionInfo newPosition, int reason) {
+        // Recent lines are not relevant after seek
+        mCueDeduplicator.reset();
+    }
+
+    @Override
+    public void onMediaItemTransition(MediaItem mediaItem, int reason) {
+        mCueDeduplicator.reset();
+    }
+
     public void show(boolean show) {
         if (mSubtitleView != null) {
             mSubtitleView.setVisibility(show ? View.VISIBLE : View.GONE);
         }
     }
 
+    private static boolean isAutoSubtitleSelected(Tracks tracks) {
+        for (Tracks.Group group : tracks.getGroups()) {
+            if (group.getType() != C.TRACK_TYPE_TEXT || !group.isSelected()) {
+                continue;
+            }
+
+            for (int i = 0; i < group.length; i++) {
+                if (group.isTrackSelected(i)) {
+                    Format format = group.getTrackFormat(i);
+                    return SubtitleTrack.isAutoGenerated(format.language);
+                }
+            }
+        }
+
+        return false;
+    }
+
     private List<SubtitleStyle> getSubtitleStyles() {
         return mSubtitleStyles;
     }
@@ -96,40 +134,6 @@ public class SubtitleManager implements Player.Listener, OnDataChange {
         configureSubtitleView();
     }
 
-    private List<Cue> forceCenterAlignment(List<Cue> cues) {
-        List<Cue> result = new ArrayList<>();
-
-        for (Cue cue : cues) {
-            // Autogenerated subs repeated lines fix
-            final String textStr = cue.text.toString();
-            if (Helpers.endsWithAny(textStr, "\n", " ")) { // vtt subs format
-                subsBuffer = textStr;
-            } else if (textStr.contains("\n")) { // ttml subs format
-                // CharSequence text = subsBuffer != null ? textStr.replace(subsBuffer,
-                // "").replace("\n", "") : textStr;
-
-                CharSequence text;
-
-                if (subsBuffer != null && textStr.contains(subsBuffer)) {
-                    text = textStr.replace(subsBuffer, "").replace("\n", "");
-                } else {
-                    text = textStr;
-                }
-
-                result.add(new Cue.Builder().setText(text).build()); // sub centered by default
-
-                String[] split = textStr.split("\n");
-                subsBuffer = split.length == 2 ? split[1] : textStr;
-            } else {
-                CharSequence text = subsBuffer != null ? textStr.replace(subsBuffer, "") : textStr;
-                result.add(new Cue.Builder().setText(text).build()); // sub centered by default
-                subsBuffer = text;
-            }
-        }
-
-        return result;
-    }
-
     private void configureSubtitleView() {
         if (mSubtitleView != null) {
             // disable default style
@@ -0,0 +1,259 @@
+package com.liskovsoft.smartyoutubetv2.common.exoplayer.selector;
+
+import android.content.Context;
+import android.graphics.Point;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.C;
+import androidx.media3.common.Format;
+import androidx.media3.common.Timeline;
+import androidx.media3.common.TrackGroup;
+import androidx.media3.common.util.Util;
+import androidx.media3.exoplayer.source.MediaSource.MediaPeriodId;
+import androidx.media3.exoplayer.source.chunk.MediaChunk;
+import androidx.media3.exoplayer.source.chunk.MediaChunkIterator;
+import androidx.media3.exoplayer.trackselection.AdaptiveTrackSelection;
+import androidx.media3.exoplayer.trackselection.BaseTrackSelection;
+import androidx.media3.exoplayer.trackselection.ExoTrackSelection;
+import androidx.media3.exoplayer.upstream.BandwidthMeter;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Automatic video quality for TV.<br/>
+ * Picks the best track that fits the throughput estimate and the current display mode.<br/>
+ * The display mode is read on every update, so a switch made by the auto frame rate is applied to the running selection.<br/>
+ * Goes up only when some buffer is collected. Stays on the current quality while the buffer is deep,
+ * so a short throughput drop doesn't lower the quality of the large TV buffers.<br/>
+ * Every switch is logged with the reason.
+ */
+public class BufferAwareTrackSelection extends BaseTrackSelection {
+    private static final String TAG = BufferAwareTrackSelection.class.getSimpleName();
+    private static final float BANDWIDTH_FRACTION = 0.8f;
+    private static final long MIN_BUFFER_FOR_UP_US = 10_000_000;
+    private static final long DEEP_BUFFER_US = 25_000_000;
+    private static final String REASON_INITIAL = "initial";
+    private static final String REASON_THROUGHPUT = "throughput";
+    private static final String REASON_DISPLAY = "display mode";
+    private static final String REASON_EXCLUDED = "track error";
+    private static int sUpCount;
+    private static int sDownCount;
+    private static int sHoldCount;
+    private static String sLastSwitch;
+    private final BandwidthMeter mBandwidthMeter;
+    private final Context mContext;
+    private int mMaxWidth;
+    private int mMaxHeight;
+    private int mSelectedIndex;
+    private int mReason = C.SELECTION_REASON_INITIAL;
+    private boolean mIsHolding;
+
+    /**
+     * Video groups get the buffer aware selection. Others are handled by {@link AdaptiveTrackSelection}.
+     */
+    public static class Factory implements ExoTrackSelection.Factory {
+        private final Context mContext;
+        private final AdaptiveTrackSelection.Factory mDefaultFactory = new AdaptiveTrackSelection.Factory();
+
+        public Factory(Context context) {
+            mContext = context.getApplicationContext();
+        }
+
+        @Override
+        public ExoTrackSelection[] createTrackSelections(Definition[] definitions, BandwidthMeter bandwidthMeter,
+                                                         MediaPeriodId mediaPeriodId, Timeline timeline) {
+            Definition[] otherDefinitions = new Definition[definitions.length];
+            boolean hasVideo = false;
+
+            for (int i = 0; i < definitions.length; i++) {
+                Definition definition = definitions[i];
+
+                if (definition != null && definition.tracks.length > 1 && definition.group.type == C.TRACK_TYPE_VIDEO) {
+                    hasVideo = true;
+                } else {
+                    otherDefinitions[i] = definition;
+                }
+            }
+
+            ExoTrackSelection[] selections = mDefaultFactory.createTrackSelections(otherDefinitions, bandwidthMeter, mediaPeriodId, timeline);
+
+            if (hasVideo) {
+                for (int i = 0; i < definitions.length; i++) {
+                    if (otherDefinitions[i] == null && definitions[i] != null) {
+                        selections[i] = new BufferAwareTrackSelection(definitions[i].group, definitions[i].tracks, definitions[i].type,
+                                bandwidthMeter, mContext);
+                    }
+                }
+            }
+
+            return selections;
+        }
+    }
+
+    /**
+     * @param context source of the display mode size
+     */
+    public BufferAwareTrackSelection(TrackGroup group, int[] tracks, int type, BandwidthMeter bandwidthMeter, Context context) {
+        super(group, tracks, type);
+        mBandwidthMeter = bandwidthMeter;
+        mContext = context;
+        updateDisplaySize();
+        mSelectedIndex = getIdealIndex(SystemClock.elapsedRealtime());
+    }
+
+    @Override
+    public int getSelectedIndex() {
+        return mSelectedIndex;
+    }
+
+    @Override
+    public int getSelectionReason() {
+        return mReason;
+    }
+
+    @Nullable
+    @Override
+    public Object getSelectionData() {
+        return null;
+    }
+
+    @Override
+    public void updateSelectedTrack(long playbackPositionUs, long bufferedDurationUs, long availableDurationUs,
+                                    List<? extends MediaChunk> queue, MediaChunkIterator[] mediaChunkIterators) {
+        long nowMs = SystemClock.elapsedRealtime();
+        int currentIndex = mSelectedIndex;
+
+        // The mode may be changed by the auto frame rate
+        updateDisplaySize();
+
+        // Tracks are sorted by the bitrate. Lower index - higher quality.
+        int idealIndex = getIdealIndex(nowMs);
+
+        if (mReason == C.SELECTION_REASON_INITIAL) {
+            switchTo(idealIndex, REASON_INITIAL, bufferedDurationUs);
+            return;
+        }
+
+        if (isTrackExcluded(currentIndex, nowMs)) {
+            switchTo(idealIndex, REASON_EXCLUDED, bufferedDurationUs);
+            return;
+        }
+
+        if (!fitsDisplay(getFormat(currentIndex))) {
+            switchTo(idealIndex, REASON_DISPLAY, bufferedDurationUs);
+            return;
+        }
+
+        if (idealIndex < currentIndex && bufferedDurationUs >= MIN_BUFFER_FOR_UP_US) {
+            switchTo(idealIndex, REASON_THROUGHPUT, bufferedDurationUs);
+        } else if (idealIndex > currentIndex) {
+            if (bufferedDurationUs >= DEEP_BUFFER_US) {
+                hold(idealIndex, bufferedDurationUs);
+            } else {
+                switchTo(idealIndex, REASON_THROUGHPUT, bufferedDurationUs);
+            }
+        } else {
+            mIsHolding = false;
+        }
+    }
+
+    /**
+     * E.g. "up 3, down 1, held 2. Last: 720p -> 1080p (throughput)"
+     */
+    public static synchronized String getStats() {
+        return String.format(Locale.US, "up %s, down %s, held %s. Last: %s", sUpCount, sDownCount, sHoldCount, sLastSwitch != null ? sLastSwitch : "-");
+    }
+
+    private int getIdealIndex(long nowMs) {
+        long allocatableBitrate = (long) (mBandwidthMeter.getBitrateEstimate() * BANDWIDTH_FRACTION);
+        int lowestIndex = -1;
+
+        for (int i = 0; i < length; i++) {
+            if (isTrackExcluded(i, nowMs)) {
+                continue;
+            }
+
+            Format format = getFormat(i);
+            lowestIndex = i;
+
+            if (fitsDisplay(format) && format.bitrate <= allocatableBitrate) {
+                return i;
+            }
+        }
+
+        // Nothing fits. Use the lowest quality.
+        return lowestIndex != -1 ? lowestIndex : mSelectedIndex;
+    }
+
+    private void updateDisplaySize() {
+        Point displaySize = Util.getCurrentDisplayModeSize(mContext);
+
+        // Portrait video is compared by the larger side too
+        mMaxWidth = Math.max(displaySize.x, displaySize.y);
+        mMaxHeight = Math.min(displaySize.x, displaySize.y);
+    }
+
+    private boolean fitsDisplay(Format format) {
+        if (mMaxWidth <= 0 || mMaxHeight <= 0 || format.width == Format.NO_VALUE || format.height == Format.NO_VALUE) {
+            return true;
+        }
+
+        return Math.max(format.width, format.height) <= mMaxWidth && Math.min(format.width, format.height) <= mMaxHeight;
+    }
+
+    private void switchTo(int index, String reason, long bufferedDurationUs) {
+        mIsHolding = false;
+        int previousIndex = mSelectedIndex;
+        mSelectedIndex = index;
+
+        if (index == previousIndex && mReason != C.SELECTION_REASON_INITIAL) {
+            return;
+        }
+
+        boolean isInitial = mReason == C.SELECTION_REASON_INITIAL;
+        mReason = C.SELECTION_REASON_ADAPTIVE;
+
+        String decision = String.format(Locale.US, "%s -> %s (%s)", toString(getFormat(previousIndex)), toString(getFormat(index)), reason);
+
+        synchronized (BufferAwareTrackSelection.class) {
+            if (!isInitial) {
+                if (index < previousIndex) {
+                    sUpCount++;
+                } else {
+                    sDownCount++;
+                }
+            }
+
+            sLastSwitch = decision;
+        }
+
+        Log.d(TAG, "Switch %s. Estimate: %s kbps, buffer: %s s", decision, mBandwidthMeter.getBitrateEstimate() / 1_000,
+                bufferedDurationUs / 1_000_000);
+    }
+
+    /**
+     * Don't go down while the buffer is deep
+     */
+    private void hold(int idealIndex, long bufferedDurationUs) {
+        if (mIsHolding) {
+            return;
+        }
+
+        mIsHolding = true;
+
+        synchronized (BufferAwareTrackSelection.class) {
+            sHoldCount++;
+        }
+
+        Log.d(TAG, "Hold %s instead of %s. Estimate: %s kbps, buffer: %s s", toString(getFormat(mSelectedIndex)),
+                toString(getFormat(idealIndex)), mBandwidthMeter.getBitrateEstimate() / 1_000, bufferedDurationUs / 1_000_000);
+    }
+
+    private static String toString(Format format) {
+        return String.format(Locale.US, "%sp %s kbps", format.height, format.bitrate / 1_000);
+    }
+}
@@ -0,0 +1,94 @@
+package com.liskovsoft.smartyoutubetv2.common.exoplayer.selector;
+
+import com.liskovsoft.mediaserviceinterfaces.data.MediaFormat;
+import com.liskovsoft.sharedutils.helpers.Helpers;
+
+import java.util.List;
+
+/**
+ * Guesses the tracks the player is going to pick before the player is created.<br/>
+ * Used by the pre-buffering and the early display mode switch so both expect the same track.
+ */
+public class FormatInfoSelector {
+    private static final int DEFAULT_VIDEO_HEIGHT = 1080;
+
+    /**
+     * Closest to the preferred quality, not bigger. The same codec is preferred, then the higher frame rate.
+     */
+    public static MediaFormat findVideoFormat(List<MediaFormat> formats, FormatItem preferred) {
+        if (formats == null) {
+            return null;
+        }
+
+        int maxHeight = preferred != null && preferred.getHeight() > 0 ? preferred.getHeight() : DEFAULT_VIDEO_HEIGHT;
+        float maxFrameRate = preferred != null && preferred.getFrameRate() > 0 ? preferred.getFrameRate() : Float.MAX_VALUE;
+        String codec = getCodec(preferred);
+        MediaFormat result = null;
+
+        for (MediaFormat format : formats) {
+            if (!Helpers.startsWith(format.getMimeType(), "video/") || format.getHeight() > maxHeight
+                    || Helpers.parseFloat(format.getFps()) > maxFrameRate) {
+                continue;
+            }
+
+            if (result == null || format.getHeight() > result.getHeight()
+                    || (format.getHeight() == result.getHeight() && isBetter(format, result, codec))) {
+                result = format;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Highest bitrate. The same codec is preferred.
+     */
+    public static MediaFormat findAudioFormat(List<MediaFormat> formats, FormatItem preferred) {
+        if (formats == null) {
+            return null;
+        }
+
+        String codec = getCodec(preferred);
+        MediaFormat result = null;
+
+        for (MediaFormat format : formats) {
+            if (!Helpers.startsWith(format.getMimeType(), "audio/")) {
+                continue;
+            }
+
+            boolean codecMatched = isCodecMatched(format, codec);
+            boolean resultCodecMatched = result != null && isCodecMatched(result, codec);
+
+            if (result == null || (codecMatched && !resultCodecMatched)
+                    || (codecMatched == resultCodecMatched
+                    && Helpers.parseInt(format.getBitrate()) > Helpers.parseInt(result.getBitrate()))) {
+                result = format;
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean isBetter(MediaFormat format, MediaFormat result, String codec) {
+        boolean codecMatched = isCodecMatched(format, codec);
+        boolean resultCodecMatched = isCodecMatched(result, codec);
+
+        if (codecMatched != resultCodecMatched) {
+            return codecMatched;
+        }
+
+        return Helpers.parseFloat(format.getFps()) > Helpers.parseFloat(result.getFps());
+    }
+
+    private static boolean isCodecMatched(MediaFormat format, String codec) {
+        return codec != null && codec.equals(TrackSelectorUtil.codecNameShort(format.getMimeType()));
+    }
+
+    private static String getCodec(FormatItem formatItem) {
+        if (formatItem == null || formatItem.getTrack() == null || formatItem.getTrack().format == null) {
+            return null;
+        }
+
+        return TrackSelectorUtil.codecNameShort(formatItem.getTrack().format.codecs);
+    }
+}
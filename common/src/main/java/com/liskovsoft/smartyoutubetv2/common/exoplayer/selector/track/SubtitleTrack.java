@@ -116,6 +116,13 @@ public class SubtitleTrack extends MediaTrack {
         return hasMarker(language);
     }
 
+    /**
+     * Speech recognition or translated subs. See {@link #isAutoUser(String)} for the possible mismatches.
+     */
+    public static boolean isAutoGenerated(String language) {
+        return isAuto(language) || isAutoUser(language);
+    }
+
     private static boolean hasMarker(String language) {
         return language != null && language.endsWith(TranslatedCaptionTrack.TRANSLATE_MARKER);
     }
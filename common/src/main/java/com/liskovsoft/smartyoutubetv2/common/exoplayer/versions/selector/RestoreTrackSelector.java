@@ -42,9 +42,8 @@ public class RestoreTrackSelector extends DefaultTrackSelector {
 
     public RestoreTrackSelector(Context context,
             androidx.media3.exoplayer.trackselection.ExoTrackSelection.Factory trackSelectionFactory) {
-        super(context);
-        // Optimizing for high-speed connections (300mbps+)
-        setParameters(buildUponParameters().setForceHighestSupportedBitrate(true));
+        // Auto quality is chosen by the factory (throughput, buffer and display mode aware)
+        super(context, trackSelectionFactory);
     }
 
     public void setOnTrackSelectCallback(TrackSelectorCallback callback) {
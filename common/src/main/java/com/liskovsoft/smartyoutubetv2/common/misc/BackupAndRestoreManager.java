@@ -31,7 +31,8 @@ public class BackupAndRestoreManager implements MotherActivity.OnPermissions {
             "yt_service_prefs.xml",
             "com.liskovsoft.appupdatechecker2.preferences.xml",
             "com.liskovsoft.sharedutils.prefs.GlobalPreferences.xml",
-            "_preferences.xml" // before _ should be the app package name
+            "_preferences.xml", // before _ should be the app package name
+            "video_states.bin" // watch history (before _ may be the profile name)
     };
     private Runnable mPendingHandler;
 
@@ -0,0 +1,397 @@
+package com.liskovsoft.smartyoutubetv2.common.misc;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.util.SparseArray;
+import android.util.SparseLongArray;
+
+import com.liskovsoft.mediaserviceinterfaces.data.MediaGroup;
+import com.liskovsoft.sharedutils.helpers.FileHelpers;
+import com.liskovsoft.sharedutils.helpers.Helpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.sharedutils.rx.RxHelper;
+import com.liskovsoft.smartyoutubetv2.common.app.models.data.BrowseSection;
+import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
+import com.liskovsoft.smartyoutubetv2.common.app.models.data.VideoGroup;
+import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
+import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Keeps the last rendered rows of the browse sections on disk (per profile).<br/>
+ * Rows are shown immediately on start and then revalidated with the network data.
+ */
+public class BrowseSnapshotManager {
+    private static final String TAG = BrowseSnapshotManager.class.getSimpleName();
+    private static final String SNAPSHOT_DIR_NAME = "browse_snapshots";
+    private static final String SNAPSHOT_FILE_NAME = "browse_snapshot_";
+    private static final int MAGIC = 0x42534e50; // BSNP
+    private static final int VERSION = 1;
+    private static final int MAX_ROWS = 15;
+    private static final int MAX_ROW_SIZE = 30;
+    private static final int MAX_SNAPSHOT_SIZE_BYTES = 256 * 1024;
+    private static final int MAX_TOTAL_SIZE_BYTES = 2 * 1024 * 1024;
+    private static final long SAVE_DELAY_MS = 5_000;
+    private static final long HOUR_MS = 60 * 60 * 1_000;
+    private static final int FLAG_LIVE = 1;
+    private static final int FLAG_UPCOMING = 1 << 1;
+    private static final int FLAG_SHORTS = 1 << 2;
+    private static final int FLAG_MOVIE = 1 << 3;
+    @SuppressLint("StaticFieldLeak")
+    private static BrowseSnapshotManager sInstance;
+    private final Context mContext;
+    private final SparseLongArray mTtlMs = new SparseLongArray();
+    private final SparseArray<byte[]> mPendingSnapshots = new SparseArray<>();
+    private final Runnable mPersistSnapshots = this::persistSnapshots;
+    private long mLastTimeToFirstRowMs = -1;
+    private boolean mLastFirstRowFromSnapshot;
+
+    private BrowseSnapshotManager(Context context) {
+        mContext = context;
+
+        // Volatile sections should be revalidated more often
+        mTtlMs.put(MediaGroup.TYPE_HOME, 12 * HOUR_MS);
+        mTtlMs.put(MediaGroup.TYPE_SUBSCRIPTIONS, 3 * HOUR_MS);
+        mTtlMs.put(MediaGroup.TYPE_HISTORY, HOUR_MS);
+        mTtlMs.put(MediaGroup.TYPE_SHORTS, 6 * HOUR_MS);
+        mTtlMs.put(MediaGroup.TYPE_TRENDING, 6 * HOUR_MS);
+        mTtlMs.put(MediaGroup.TYPE_MUSIC, 12 * HOUR_MS);
+        mTtlMs.put(MediaGroup.TYPE_GAMING, 12 * HOUR_MS);
+        mTtlMs.put(MediaGroup.TYPE_NEWS, 3 * HOUR_MS);
+        mTtlMs.put(MediaGroup.TYPE_LIVE, HOUR_MS);
+        mTtlMs.put(MediaGroup.TYPE_SPORTS, 3 * HOUR_MS);
+        mTtlMs.put(MediaGroup.TYPE_KIDS_HOME, 12 * HOUR_MS);
+    }
+
+    public static BrowseSnapshotManager instance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BrowseSnapshotManager(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    public boolean isSupported(BrowseSection section) {
+        return section != null && mTtlMs.get(section.getId(), 0) > 0;
+    }
+
+    /**
+     * Reads the rows in background. Emits empty list if snapshot is missing or expired.
+     */
+    public Observable<List<VideoGroup>> loadObserve(BrowseSection section) {
+        return Observable.fromCallable(() -> {
+                    List<VideoGroup> rows = load(section);
+                    return rows != null ? rows : Collections.<VideoGroup>emptyList();
+                })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Returns rows of the previous session or null if snapshot is missing or expired
+     */
+    private List<VideoGroup> load(BrowseSection section) {
+        if (!isSupported(section)) {
+            return null;
+        }
+
+        File snapshotFile = getSnapshotFile(section);
+
+        if (snapshotFile == null || !snapshotFile.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return null;
+            }
+
+            long savedTimeMs = in.readLong();
+
+            if (System.currentTimeMillis() - savedTimeMs > mTtlMs.get(section.getId())) {
+                Log.d(TAG, "Snapshot of section %s is expired", section.getTitle());
+                return null;
+            }
+
+            int rowCount = in.readShort();
+            List<VideoGroup> rows = new ArrayList<>(rowCount);
+
+            for (int i = 0; i < rowCount; i++) {
+                String title = readString(in);
+                int size = in.readShort();
+                List<Video> videos = new ArrayList<>(size);
+
+                for (int j = 0; j < size; j++) {
+                    videos.add(readVideo(in, section));
+                }
+
+                VideoGroup row = VideoGroup.from(videos, section);
+                row.setTitle(title);
+                row.setId(row.hashCode());
+                rows.add(row);
+            }
+
+            return rows.isEmpty() ? null : rows;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Can't read snapshot of section %s: %s", section.getTitle(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Serialized immediately, stored on disk later in background
+     */
+    public void save(BrowseSection section, List<VideoGroup> rows) {
+        if (!isSupported(section) || rows == null || rows.isEmpty()) {
+            return;
+        }
+
+        byte[] snapshot = serialize(rows);
+
+        if (snapshot == null) {
+            return;
+        }
+
+        synchronized (mPendingSnapshots) {
+            mPendingSnapshots.put(section.getId(), snapshot);
+        }
+
+        Utils.removeCallbacks(mPersistSnapshots);
+        Utils.postDelayed(mPersistSnapshots, SAVE_DELAY_MS);
+    }
+
+    /**
+     * Compares rows by title and videos. The fresh row may be longer than the stored one.
+     */
+    public static boolean isSameRow(VideoGroup snapshotRow, VideoGroup freshRow) {
+        if (snapshotRow == null || freshRow == null || !Helpers.equals(snapshotRow.getTitle(), freshRow.getTitle())
+                || snapshotRow.getSize() > freshRow.getSize()) {
+            return false;
+        }
+
+        for (int i = 0; i < snapshotRow.getSize(); i++) {
+            Video snapshotVideo = snapshotRow.get(i);
+            Video freshVideo = freshRow.get(i);
+
+            if (!Helpers.equals(snapshotVideo.videoId, freshVideo.videoId)
+                    || !Helpers.equals(snapshotVideo.playlistId, freshVideo.playlistId)
+                    || !Helpers.equals(snapshotVideo.channelId, freshVideo.channelId)
+                    || !Helpers.equals(snapshotVideo.title, freshVideo.title)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void onFirstRow(BrowseSection section, long timeToFirstRowMs, boolean fromSnapshot) {
+        mLastTimeToFirstRowMs = timeToFirstRowMs;
+        mLastFirstRowFromSnapshot = fromSnapshot;
+        Log.d(TAG, "Time to first row of section %s: %s ms (%s)", section.getTitle(), timeToFirstRowMs, fromSnapshot ? "snapshot" : "network");
+    }
+
+    public long getLastTimeToFirstRowMs() {
+        return mLastTimeToFirstRowMs;
+    }
+
+    public boolean isLastFirstRowFromSnapshot() {
+        return mLastFirstRowFromSnapshot;
+    }
+
+    private byte[] serialize(List<VideoGroup> rows) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            int rowCount = Math.min(rows.size(), MAX_ROWS);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeShort(rowCount);
+
+            for (int i = 0; i < rowCount; i++) {
+                VideoGroup row = rows.get(i);
+                List<Video> videos = row.getVideos();
+                int size = Math.min(videos.size(), MAX_ROW_SIZE);
+                writeString(out, row.getTitle());
+                out.writeShort(size);
+
+                for (int j = 0; j < size; j++) {
+                    writeVideo(out, videos.get(j));
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Can't serialize snapshot: %s", e.getMessage());
+            return null;
+        }
+
+        if (bytes.size() > MAX_SNAPSHOT_SIZE_BYTES) {
+            Log.e(TAG, "Snapshot is too big: %s bytes", bytes.size());
+            return null;
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private void persistSnapshots() {
+        SparseArray<byte[]> snapshots;
+
+        synchronized (mPendingSnapshots) {
+            snapshots = mPendingSnapshots.clone();
+            mPendingSnapshots.clear();
+        }
+
+        SparseArray<File> files = new SparseArray<>();
+
+        for (int i = 0; i < snapshots.size(); i++) {
+            files.put(snapshots.keyAt(i), getSnapshotFile(snapshots.keyAt(i)));
+        }
+
+        RxHelper.runAsync(() -> {
+            for (int i = 0; i < snapshots.size(); i++) {
+                File snapshotFile = files.get(snapshots.keyAt(i));
+
+                if (snapshotFile == null) {
+                    continue;
+                }
+
+                try (FileOutputStream out = new FileOutputStream(snapshotFile)) {
+                    out.write(snapshots.valueAt(i));
+                } catch (IOException e) {
+                    Log.e(TAG, "Can't write snapshot: %s", e.getMessage());
+                }
+            }
+
+            trimSnapshots();
+        });
+    }
+
+    /**
+     * Remove oldest snapshots that don't fit the size cap
+     */
+    private void trimSnapshots() {
+        File snapshotDir = getSnapshotDir();
+        File[] files = snapshotDir != null ? snapshotDir.listFiles() : null;
+
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, Collections.reverseOrder((f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified())));
+
+        long totalSize = 0;
+
+        for (File file : files) {
+            totalSize += file.length();
+
+            if (totalSize > MAX_TOTAL_SIZE_BYTES) {
+                FileHelpers.delete(file);
+            }
+        }
+    }
+
+    private File getSnapshotDir() {
+        File cacheDir = FileHelpers.getInternalCacheDir(mContext);
+
+        if (cacheDir == null) {
+            return null;
+        }
+
+        File snapshotDir = new File(cacheDir, SNAPSHOT_DIR_NAME);
+
+        if (!snapshotDir.exists() && !snapshotDir.mkdirs()) {
+            return null;
+        }
+
+        return snapshotDir;
+    }
+
+    private File getSnapshotFile(BrowseSection section) {
+        return getSnapshotFile(section.getId());
+    }
+
+    private File getSnapshotFile(int sectionId) {
+        File snapshotDir = getSnapshotDir();
+
+        if (snapshotDir == null) {
+            return null;
+        }
+
+        return new File(snapshotDir, AppPrefs.instance(mContext).getProfileFileName(SNAPSHOT_FILE_NAME + sectionId));
+    }
+
+    private static void writeVideo(DataOutputStream out, Video video) throws IOException {
+        int flags = (video.isLive ? FLAG_LIVE : 0) | (video.isUpcoming ? FLAG_UPCOMING : 0)
+                | (video.isShorts ? FLAG_SHORTS : 0) | (video.isMovie ? FLAG_MOVIE : 0);
+
+        out.writeByte(flags);
+        out.writeInt(video.itemType);
+        out.writeFloat(video.percentWatched);
+        writeString(out, video.videoId);
+        writeString(out, video.playlistId);
+        writeString(out, video.channelId);
+        writeString(out, video.playlistParams);
+        writeString(out, video.reloadPageKey);
+        writeString(out, video.title);
+        writeString(out, video.secondTitle != null ? video.secondTitle.toString() : null);
+        writeString(out, video.author);
+        writeString(out, video.badge);
+        writeString(out, video.cardImageUrl);
+        writeString(out, video.bgImageUrl);
+        writeString(out, video.previewUrl);
+    }
+
+    private static Video readVideo(DataInputStream in, BrowseSection section) throws IOException {
+        Video video = new Video();
+        int flags = in.readByte();
+
+        video.isLive = (flags & FLAG_LIVE) != 0;
+        video.isUpcoming = (flags & FLAG_UPCOMING) != 0;
+        video.isShorts = (flags & FLAG_SHORTS) != 0;
+        video.isMovie = (flags & FLAG_MOVIE) != 0;
+        video.itemType = in.readInt();
+        video.percentWatched = in.readFloat();
+        video.videoId = readString(in);
+        video.playlistId = readString(in);
+        video.channelId = readString(in);
+        video.playlistParams = readString(in);
+        video.reloadPageKey = readString(in);
+        video.title = readString(in);
+        video.secondTitle = readString(in);
+        video.author = readString(in);
+        video.badge = readString(in);
+        video.cardImageUrl = readString(in);
+        video.bgImageUrl = readString(in);
+        video.previewUrl = readString(in);
+        video.sectionId = section.getId();
+
+        return video;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -10,6 +10,7 @@ import com.liskovsoft.googleapi.oauth2.impl.GoogleSignInService;
 import com.liskovsoft.sharedutils.helpers.FileHelpers;
 import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.sharedutils.helpers.MessageHelpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.sharedutils.rx.RxHelper;
 import com.liskovsoft.smartyoutubetv2.common.R;
 import com.liskovsoft.smartyoutubetv2.common.app.presenters.GoogleSignInPresenter;
@@ -27,6 +28,7 @@ import io.reactivex.functions.Consumer;
 import io.reactivex.schedulers.Schedulers;
 
 public class GDriveBackupManager {
+    private static final String TAG = GDriveBackupManager.class.getSimpleName();
     @SuppressLint("StaticFieldLeak")
     private static GDriveBackupManager sInstance;
     private final Context mContext;
@@ -51,7 +53,8 @@ public class GDriveBackupManager {
                 "yt_service_prefs.xml",
                 "com.liskovsoft.appupdatechecker2.preferences.xml",
                 "com.liskovsoft.sharedutils.prefs.GlobalPreferences.xml",
-                "_preferences.xml" // before _ should be the app package name
+                "_preferences.xml", // before _ should be the app package name
+                "video_states.bin" // watch history (before _ may be the profile name)
         };
     }
 
@@ -209,13 +212,33 @@ public class GDriveBackupManager {
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(inputStream -> {
-                    File zipFile = new File(mContext.getCacheDir(), BACKUP_NAME);
-                    FileHelpers.copy(inputStream, zipFile);
-
                     File out = new File(dataDir);
-                    // remove old data
-                    FileHelpers.delete(out);
-                    ZipHelper.unzipToFolder(zipFile, out);
+                    // Extract while downloading. Keep old data until the archive is fully extracted.
+                    File restoreDir = new File(out.getPath() + ".restore");
+                    FileHelpers.delete(restoreDir);
+
+                    if (!ZipHelper.unzipToFolder(inputStream, restoreDir)) {
+                        FileHelpers.delete(restoreDir);
+                        MessageHelpers.showLongMessage(mContext, R.string.nothing_found);
+                        return;
+                    }
+
+                    // Keep old data aside until the restored data is in place
+                    File oldDir = new File(out.getPath() + ".bak");
+                    FileHelpers.delete(oldDir);
+
+                    if ((out.exists() && !out.renameTo(oldDir)) || !restoreDir.renameTo(out)) {
+                        if (oldDir.exists() && !out.exists() && !oldDir.renameTo(out)) {
+                            Log.e(TAG, "Can't roll back old data");
+                        }
+                        FileHelpers.delete(restoreDir);
+                        String msg = "Can't move restored data";
+                        Log.e(TAG, msg);
+                        MessageHelpers.showLongMessage(mContext, msg);
+                        return;
+                    }
+
+                    FileHelpers.delete(oldDir);
                     fixFileNames(out);
 
                     Utils.restartTheApp(mContext);
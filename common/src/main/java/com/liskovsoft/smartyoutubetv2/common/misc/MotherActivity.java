@@ -23,14 +23,17 @@ import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.smartyoutubetv2.common.R;
 import com.liskovsoft.smartyoutubetv2.common.app.presenters.PlaybackPresenter;
 import com.liskovsoft.smartyoutubetv2.common.app.views.ViewManager;
+import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
 import com.liskovsoft.smartyoutubetv2.common.prefs.GeneralData;
 import com.liskovsoft.smartyoutubetv2.common.prefs.MainUIData;
 import com.liskovsoft.smartyoutubetv2.common.prefs.PlayerData;
 import com.liskovsoft.smartyoutubetv2.common.prefs.PlayerTweaksData;
+import com.liskovsoft.smartyoutubetv2.common.prefs.common.PersistQueue;
 import com.liskovsoft.youtubeapi.service.internal.MediaServiceData;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 public class MotherActivity extends FragmentActivity {
     private static final String TAG = MotherActivity.class.getSimpleName();
@@ -38,6 +41,7 @@ public class MotherActivity extends FragmentActivity {
     private static final float DEFAULT_WIDTH = 1920f; // xhdpi
     private static DisplayMetrics sCachedDisplayMetrics;
     protected static boolean sIsInPipMode;
+    private static boolean sIsPrefsLoaded;
     private ScreensaverManager mScreensaverManager;
     // Make static in case Don't keep activities enabled in Developer settings
     private static List<OnPermissions> mOnPermissions;
@@ -67,6 +71,8 @@ public class MotherActivity extends FragmentActivity {
 
         Log.d(TAG, "Starting %s...", this.getClass().getSimpleName());
 
+        loadPrefs();
+
         mIsOculusQuestFixEnabled = PlayerTweaksData.instance(this).isOculusQuestFixEnabled();
         mIsFullscreenModeEnabled = GeneralData.instance(this).isFullscreenModeEnabled();
 
@@ -213,6 +219,14 @@ public class MotherActivity extends FragmentActivity {
         mScreensaverManager.disable();
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+
+        // App might be killed in background. Don't wait for the delayed persist.
+        PersistQueue.persistAll();
+    }
+
     @Override
     public void onConfigurationChanged(Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
@@ -231,6 +245,48 @@ public class MotherActivity extends FragmentActivity {
         }
     }
 
+    /**
+     * Load the settings needed by the first frame at once and measure the time of each.<br/>
+     * Other settings (player, search, remote etc) are loaded on the first use.<br/>
+     * NOTE: don't touch the media service here (e.g. AccountsData). Global prefs aren't initialized yet.
+     */
+    private void loadPrefs() {
+        if (sIsPrefsLoaded) {
+            return;
+        }
+
+        sIsPrefsLoaded = true;
+
+        long startTimeMs = System.currentTimeMillis();
+        StringBuilder result = new StringBuilder();
+
+        Context context = getApplicationContext();
+        loadPref(result, () -> AppPrefs.instance(context));
+        loadPref(result, () -> GeneralData.instance(context));
+        loadPref(result, () -> MainUIData.instance(context));
+        loadPref(result, () -> PlayerTweaksData.instance(context));
+
+        Log.d(TAG, "Prefs loaded in %s ms: %s", System.currentTimeMillis() - startTimeMs, result);
+    }
+
+    private static void loadPref(StringBuilder result, Callable<Object> instance) {
+        long startTimeMs = System.currentTimeMillis();
+        Object pref;
+
+        try {
+            pref = instance.call();
+        } catch (Exception e) {
+            Log.e(TAG, "Can't load prefs: %s", e.getMessage());
+            return;
+        }
+
+        if (result.length() > 0) {
+            result.append(", ");
+        }
+
+        result.append(pref.getClass().getSimpleName()).append(' ').append(System.currentTimeMillis() - startTimeMs).append(" ms");
+    }
+
     private void initDpi() {
         getResources().getDisplayMetrics().setTo(getDisplayMetrics(this));
     }
@@ -1,62 +1,394 @@
 package com.liskovsoft.smartyoutubetv2.common.misc;
 
 import com.liskovsoft.sharedutils.helpers.Helpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
+/**
+ * Writes the backups as a standard zip.<br/>
+ * Files are compressed in parallel. Files that didn't change since the previous backup (see the manifest next to the archive)
+ * are copied from the previous archive as is.
+ */
 public class ZipHelper {
+    private static final String TAG = ZipHelper.class.getSimpleName();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final int MANIFEST_VERSION = 1;
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int FLAG_UTF8 = 0x800;
+    private static final int ZIP_VERSION = 20;
+
+    private static class Entry {
+        final String name;
+        final byte[] nameBytes;
+        final File file; // null for dirs
+        int method = ZipEntry.STORED;
+        long size;
+        long lastModified;
+        long crc;
+        long compressedSize;
+        long dataOffset;
+        long headerOffset;
+        byte[] data;
+        boolean isReused;
+
+        Entry(String name, File file) {
+            this.name = name;
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            this.file = file;
+        }
+    }
+
     public static boolean zipFolder(File sourceFolder, File zipFile, String[] backupPatterns) {
-        try (ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
-            zipFolderRecursive(sourceFolder, sourceFolder, zipOut, backupPatterns);
-            return true;
-        } catch (IOException e) {
+        long startTimeMs = System.currentTimeMillis();
+
+        List<Entry> entries = new ArrayList<>();
+        collectEntries(sourceFolder, sourceFolder, entries, backupPatterns);
+
+        File manifestFile = new File(zipFile.getPath() + MANIFEST_SUFFIX);
+        Map<String, Entry> previous = readManifest(manifestFile, zipFile);
+        File tmpFile = new File(zipFile.getPath() + ".tmp");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try (RandomAccessFile previousZip = previous.isEmpty() ? null : new RandomAccessFile(zipFile, "r");
+             CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE))) {
+            // Keep the order of the entries. Limit the memory used by the compressed data.
+            ArrayDeque<Future<Entry>> pending = new ArrayDeque<>();
+
+            for (Entry entry : entries) {
+                pending.add(executor.submit(() -> prepareEntry(entry, previous.get(entry.name), previousZip)));
+
+                if (pending.size() >= THREADS * 2) {
+                    writeEntry(out, pending.poll().get());
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                writeEntry(out, pending.poll().get());
+            }
+
+            writeCentralDirectory(out, entries);
+        } catch (IOException | InterruptedException | ExecutionException e) {
             e.printStackTrace();
+            tmpFile.delete();
+            manifestFile.delete();
+            return false;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!tmpFile.renameTo(zipFile)) {
+            Log.e(TAG, "Can't replace archive %s", zipFile.getName());
+            manifestFile.delete();
             return false;
         }
+
+        writeManifest(manifestFile, zipFile, entries);
+
+        int reused = 0;
+        for (Entry entry : entries) {
+            if (entry.isReused) {
+                reused++;
+            }
+        }
+
+        Log.d(TAG, "Backup of %s entries (%s unchanged) done in %s ms. Archive size: %s bytes",
+                entries.size(), reused, System.currentTimeMillis() - startTimeMs, zipFile.length());
+
+        return true;
     }
 
-    private static void zipFolderRecursive(File rootFolder, File currentFile, ZipOutputStream zipOut, String[] backupPatterns) throws IOException {
+    private static void collectEntries(File rootFolder, File currentFile, List<Entry> entries, String[] backupPatterns) {
         String entryName = rootFolder.toURI().relativize(currentFile.toURI()).getPath();
 
         if (currentFile.isDirectory()) {
             if (!entryName.isEmpty()) {
-                zipOut.putNextEntry(new ZipEntry(entryName + "/"));
-                zipOut.closeEntry();
+                entries.add(new Entry(entryName.endsWith("/") ? entryName : entryName + "/", null));
             }
             File[] children = currentFile.listFiles();
             if (children != null) {
                 for (File child : children) {
                     if (Helpers.endsWithAny(child.getName(), backupPatterns))
-                        zipFolderRecursive(rootFolder, child, zipOut, backupPatterns);
+                        collectEntries(rootFolder, child, entries, backupPatterns);
                 }
             }
         } else {
-            zipOut.putNextEntry(new ZipEntry(entryName));
-            try (FileInputStream input = new FileInputStream(currentFile)) {
-                byte[] buffer = new byte[1024];
-                int length;
-                while ((length = input.read(buffer)) >= 0) {
-                    zipOut.write(buffer, 0, length);
+            entries.add(new Entry(entryName, currentFile));
+        }
+    }
+
+    /**
+     * Runs in parallel. Reuses the compressed data of the previous archive when the file isn't changed.
+     */
+    private static Entry prepareEntry(Entry entry, Entry previous, RandomAccessFile previousZip) throws IOException {
+        if (entry.file == null) {
+            entry.lastModified = System.currentTimeMillis();
+            entry.data = new byte[0];
+            return entry;
+        }
+
+        entry.lastModified = entry.file.lastModified();
+        entry.size = entry.file.length();
+
+        boolean isSameSize = previous != null && previous.size == entry.size;
+
+        if (isSameSize && previous.lastModified == entry.lastModified) {
+            reuseEntry(entry, previous, previousZip);
+            return entry;
+        }
+
+        byte[] content = readFile(entry.file);
+        entry.size = content.length;
+
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        entry.crc = crc.getValue();
+
+        // Rewritten but the same content
+        if (isSameSize && previous.crc == entry.crc) {
+            reuseEntry(entry, previous, previousZip);
+            return entry;
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        entry.method = ZipEntry.DEFLATED;
+        entry.data = compressed.toByteArray();
+        entry.compressedSize = entry.data.length;
+
+        return entry;
+    }
+
+    private static void reuseEntry(Entry entry, Entry previous, RandomAccessFile previousZip) throws IOException {
+        entry.method = previous.method;
+        entry.size = previous.size;
+        entry.crc = previous.crc;
+        entry.compressedSize = previous.compressedSize;
+        entry.data = new byte[(int) previous.compressedSize];
+
+        synchronized (previousZip) {
+            previousZip.seek(previous.dataOffset);
+            previousZip.readFully(entry.data);
+        }
+
+        entry.isReused = true;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream((int) Math.max(32, file.length()));
+
+        try (InputStream input = new FileInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = input.read(buffer)) > 0) {
+                result.write(buffer, 0, length);
+            }
+        }
+
+        return result.toByteArray();
+    }
+
+    private static void writeEntry(CountingOutputStream out, Entry entry) throws IOException {
+        entry.headerOffset = out.getCount();
+
+        writeInt(out, 0x04034b50);
+        writeCommonHeader(out, entry);
+        writeShort(out, 0); // extra field length
+        out.write(entry.nameBytes);
+
+        entry.dataOffset = out.getCount();
+        out.write(entry.data);
+        entry.data = null;
+    }
+
+    private static void writeCentralDirectory(CountingOutputStream out, List<Entry> entries) throws IOException {
+        long offset = out.getCount();
+
+        for (Entry entry : entries) {
+            writeInt(out, 0x02014b50);
+            writeShort(out, ZIP_VERSION); // version made by
+            writeCommonHeader(out, entry);
+            writeShort(out, 0); // extra field length
+            writeShort(out, 0); // comment length
+            writeShort(out, 0); // disk number
+            writeShort(out, 0); // internal attributes
+            writeInt(out, 0); // external attributes
+            writeInt(out, entry.headerOffset);
+            out.write(entry.nameBytes);
+        }
+
+        long size = out.getCount() - offset;
+
+        writeInt(out, 0x06054b50);
+        writeShort(out, 0); // disk number
+        writeShort(out, 0); // disk with central directory
+        writeShort(out, entries.size());
+        writeShort(out, entries.size());
+        writeInt(out, size);
+        writeInt(out, offset);
+        writeShort(out, 0); // comment length
+    }
+
+    /**
+     * Fields that are the same in the local header and the central directory
+     */
+    private static void writeCommonHeader(OutputStream out, Entry entry) throws IOException {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(entry.lastModified);
+        int year = Math.max(1980, calendar.get(Calendar.YEAR));
+
+        writeShort(out, ZIP_VERSION); // version needed to extract
+        writeShort(out, FLAG_UTF8);
+        writeShort(out, entry.method);
+        writeShort(out, (calendar.get(Calendar.HOUR_OF_DAY) << 11) | (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1));
+        writeShort(out, ((year - 1980) << 9) | ((calendar.get(Calendar.MONTH) + 1) << 5) | calendar.get(Calendar.DAY_OF_MONTH));
+        writeInt(out, entry.crc);
+        writeInt(out, entry.compressedSize);
+        writeInt(out, entry.size);
+        writeShort(out, entry.nameBytes.length);
+    }
+
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+    }
+
+    private static void writeInt(OutputStream out, long value) throws IOException {
+        writeShort(out, (int) (value & 0xffff));
+        writeShort(out, (int) ((value >>> 16) & 0xffff));
+    }
+
+    private static Map<String, Entry> readManifest(File manifestFile, File zipFile) {
+        Map<String, Entry> result = new HashMap<>();
+
+        if (!manifestFile.exists() || !zipFile.exists()) {
+            return result;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestFile)))) {
+            // The archive was replaced by someone else
+            if (in.readInt() != MANIFEST_VERSION || in.readLong() != zipFile.length()) {
+                return result;
+            }
+
+            int size = in.readInt();
+
+            for (int i = 0; i < size; i++) {
+                Entry entry = new Entry(in.readUTF(), null);
+                entry.method = in.readInt();
+                entry.size = in.readLong();
+                entry.lastModified = in.readLong();
+                entry.crc = in.readLong();
+                entry.compressedSize = in.readLong();
+                entry.dataOffset = in.readLong();
+                result.put(entry.name, entry);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Can't read manifest: %s", e.getMessage());
+            result.clear();
+        }
+
+        return result;
+    }
+
+    private static void writeManifest(File manifestFile, File zipFile, List<Entry> entries) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(manifestFile)))) {
+            out.writeInt(MANIFEST_VERSION);
+            out.writeLong(zipFile.length());
+
+            int size = 0;
+            for (Entry entry : entries) {
+                if (entry.file != null) {
+                    size++;
+                }
+            }
+
+            out.writeInt(size);
+
+            for (Entry entry : entries) {
+                if (entry.file == null) {
+                    continue;
                 }
+
+                out.writeUTF(entry.name);
+                out.writeInt(entry.method);
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.crc);
+                out.writeLong(entry.compressedSize);
+                out.writeLong(entry.dataOffset);
             }
-            zipOut.closeEntry();
+        } catch (IOException e) {
+            Log.e(TAG, "Can't write manifest: %s", e.getMessage());
+            manifestFile.delete();
         }
     }
 
     public static boolean unzipToFolder(File zipFile, File outputFolder) {
+        try (InputStream input = new FileInputStream(zipFile)) {
+            return unzipToFolder(input, outputFolder);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Extracts the archive while it's being downloaded
+     */
+    public static boolean unzipToFolder(InputStream zipStream, File outputFolder) {
+        long startTimeMs = System.currentTimeMillis();
+
         if (!outputFolder.exists()) {
             outputFolder.mkdirs();
         }
 
-        try (ZipInputStream zipIn = new ZipInputStream(new BufferedInputStream(new FileInputStream(zipFile)))) {
+        int count = 0;
+
+        try (ZipInputStream zipIn = new ZipInputStream(new BufferedInputStream(zipStream, BUFFER_SIZE))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
             ZipEntry entry;
             while ((entry = zipIn.getNextEntry()) != null) {
                 File filePath = new File(outputFolder, entry.getName());
@@ -68,19 +400,57 @@ public class ZipHelper {
                         filePath.getParentFile().mkdirs();
                     }
                     try (FileOutputStream output = new FileOutputStream(filePath)) {
-                        byte[] buffer = new byte[1024];
                         int length;
                         while ((length = zipIn.read(buffer)) > 0) {
                             output.write(buffer, 0, length);
                         }
                     }
+                    count++;
                 }
                 zipIn.closeEntry();
             }
-            return true;
         } catch (IOException e) {
             e.printStackTrace();
             return false;
         }
+
+        Log.d(TAG, "Restore of %s files done in %s ms", count, System.currentTimeMillis() - startTimeMs);
+
+        return true;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream mOut;
+        private long mCount;
+
+        CountingOutputStream(OutputStream out) {
+            mOut = out;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            mOut.write(b);
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            mOut.write(b, off, len);
+            mCount += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            mOut.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mOut.close();
+        }
     }
 }
@@ -124,6 +124,14 @@ public class AppPrefs extends SharedPreferencesBase implements AccountChangeList
         return getData(getProfileKey(key, isMultiProfilesEnabled()));
     }
 
+    /**
+     * Per profile file name. Used by the services that keep their data on the disk.
+     */
+    public String getProfileFileName(String fileName) {
+        // Always use multiple profiles
+        return getProfileKey(fileName, true);
+    }
+
     public void setData(String key, String data) {
         if (checkData(key, data)) {
             putString(key, data);
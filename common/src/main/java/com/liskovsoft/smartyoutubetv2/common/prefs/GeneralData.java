@@ -7,6 +7,8 @@ import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.sharedutils.prefs.GlobalPreferences;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
 import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs.ProfileChangeListener;
+import com.liskovsoft.smartyoutubetv2.common.prefs.common.DirtyTracker;
+import com.liskovsoft.smartyoutubetv2.common.prefs.common.PersistQueue;
 import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
 
 import java.util.Collections;
@@ -88,6 +90,7 @@ public class GeneralData implements ProfileChangeListener {
     private boolean mIsAutoBackupEnabled;
     private List<Video> mOldPinnedItems;
     private final Runnable mPersistStateInt = this::persistStateInt;
+    private final DirtyTracker mDirtyTracker = new DirtyTracker();
 
     private GeneralData(Context context) {
         mContext = context;
@@ -685,6 +688,7 @@ public class GeneralData implements ProfileChangeListener {
      */
     private synchronized void restoreState() {
         String data = mPrefs.getProfileData(GENERAL_DATA);
+        mDirtyTracker.onRestored(data);
 
         String[] split = Helpers.splitData(data);
 
@@ -763,12 +767,17 @@ public class GeneralData implements ProfileChangeListener {
     }
 
     private void persistState() {
-        Utils.postDelayed(mPersistStateInt, 10_000);
+        mDirtyTracker.markDirty();
+        PersistQueue.persistLater(mPersistStateInt);
     }
 
     private void persistStateInt() {
+        if (!mDirtyTracker.isDirty()) {
+            return;
+        }
+
         // Zero index is skipped. Selected sections were there.
-        mPrefs.setProfileData(GENERAL_DATA, Helpers.mergeData(null, null, null, mAppExitShortcut, mIsReturnToLauncherEnabled,
+        String data = Helpers.mergeData(null, null, null, mAppExitShortcut, mIsReturnToLauncherEnabled,
                 mBackgroundShortcut, mOldPinnedItems, mIsHideShortsFromSubscriptionsEnabled,
                 mIsRemapFastForwardToNextEnabled, null, mIsProxyEnabled, mIsBridgeCheckEnabled, mIsOkButtonLongPressDisabled, mLastPlaylistId,
                 null, mIsHideUpcomingEnabled, mIsRemapPageUpToNextEnabled, mIsRemapPageUpToLikeEnabled,
@@ -781,16 +790,22 @@ public class GeneralData implements ProfileChangeListener {
                 mHistoryState, mIsRememberSubscriptionsPositionEnabled, null, mIsRemapNumbersToSpeedEnabled, mIsRemapDpadUpToSpeedEnabled, mIsRemapChannelUpToVolumeEnabled,
                 mIsRemapDpadUpToVolumeEnabled, mIsRemapDpadLeftToVolumeEnabled, mIsRemapNextToFastForwardEnabled, mIsHideWatchedFromNotificationsEnabled,
                 mChangelog, mPlayerExitShortcut, null, mIsFullscreenModeEnabled, null, mIsRememberPinnedPositionEnabled, mSelectedItems, mIsFirstUseTooltipEnabled, mIsDeviceSpecificBackupEnabled, mIsAutoBackupEnabled,
-                mIsRemapPageDownToSpeedEnabled, mSearchExitShortcut));
+                mIsRemapPageDownToSpeedEnabled, mSearchExitShortcut);
+
+        if (mDirtyTracker.commit(data)) {
+            mPrefs.setProfileData(GENERAL_DATA, data);
+        }
     }
 
     public void persistNow() {
+        mDirtyTracker.markDirty();
+        PersistQueue.cancel(mPersistStateInt);
         Utils.post(mPersistStateInt);
     }
 
     @Override
     public void onProfileChanged() {
-        Utils.removeCallbacks(mPersistStateInt);
+        PersistQueue.cancel(mPersistStateInt);
         restoreState();
     }
 }
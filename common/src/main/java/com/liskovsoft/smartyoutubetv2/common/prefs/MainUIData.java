@@ -10,6 +10,8 @@ import com.liskovsoft.smartyoutubetv2.common.app.presenters.dialogs.menu.provide
 import com.liskovsoft.smartyoutubetv2.common.app.presenters.dialogs.menu.providers.ContextMenuProvider;
 import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs.ProfileChangeListener;
 import com.liskovsoft.smartyoutubetv2.common.prefs.common.DataChangeBase;
+import com.liskovsoft.smartyoutubetv2.common.prefs.common.DirtyTracker;
+import com.liskovsoft.smartyoutubetv2.common.prefs.common.PersistQueue;
 import com.liskovsoft.smartyoutubetv2.common.utils.ClickbaitRemover;
 import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
 
@@ -111,6 +113,7 @@ public class MainUIData extends DataChangeBase implements ProfileChangeListener
     private boolean mIsPinnedChannelRowsEnabled;
     private int mCardPreviewType;
     private final Runnable mPersistStateInt = this::persistStateInt;
+    private final DirtyTracker mDirtyTracker = new DirtyTracker();
     private boolean mIsUnlocalizedTitlesEnabled;
 
     private MainUIData(Context context) {
@@ -399,6 +402,7 @@ public class MainUIData extends DataChangeBase implements ProfileChangeListener
 
     private void restoreState() {
         String data = mPrefs.getProfileData(MAIN_UI_DATA);
+        mDirtyTracker.onRestored(data);
 
         String[] split = Helpers.splitData(data);
 
@@ -453,21 +457,32 @@ public class MainUIData extends DataChangeBase implements ProfileChangeListener
     }
 
     private void persistState() {
+        mDirtyTracker.markDirty();
         onDataChange();
-        Utils.postDelayed(mPersistStateInt, 10_000);
+        PersistQueue.persistLater(mPersistStateInt);
     }
     
     private void persistStateInt() {
-        mPrefs.setProfileData(MAIN_UI_DATA, Helpers.mergeData(null,
+        if (!mDirtyTracker.isDirty()) {
+            return;
+        }
+
+        String data = Helpers.mergeData(null,
                 mVideoGridScale, mUIScale, mColorSchemeIndex, mIsCardMultilineTitleEnabled,
                 mChannelCategorySorting, mPlaylistsStyle, mCardTitleLinesNum, mIsCardTextAutoScrollEnabled,
                 mIsUploadsOldLookEnabled, mIsUploadsAutoLoadEnabled, mCardTextScrollSpeed, mMenuItems, mTopButtons,
                 null, mThumbQuality, mIsCardMultilineSubtitleEnabled, Helpers.mergeList(mMenuItemsOrdered),
                 mIsChannelsFilterEnabled, mIsChannelSearchBarEnabled, mIsPinnedChannelRowsEnabled, mCardPreviewType,
-                mIsUnlocalizedTitlesEnabled));
+                mIsUnlocalizedTitlesEnabled);
+
+        if (mDirtyTracker.commit(data)) {
+            mPrefs.setProfileData(MAIN_UI_DATA, data);
+        }
     }
 
     public void persistNow() {
+        mDirtyTracker.markDirty();
+        PersistQueue.cancel(mPersistStateInt);
         Utils.post(mPersistStateInt);
     }
 
@@ -19,7 +19,8 @@ import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.FormatItem;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.track.MediaTrack;
 import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs.ProfileChangeListener;
 import com.liskovsoft.smartyoutubetv2.common.prefs.common.DataChangeBase;
-import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
+import com.liskovsoft.smartyoutubetv2.common.prefs.common.DirtyTracker;
+import com.liskovsoft.smartyoutubetv2.common.prefs.common.PersistQueue;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -97,6 +98,7 @@ public class PlayerData extends DataChangeBase implements PlayerConstants, Profi
     private long mAfrSwitchTimeMs;
     private List<String> mLastAudioLanguages;
     private final Runnable mPersistStateInt = this::persistStateInt;
+    private final DirtyTracker mDirtyTracker = new DirtyTracker();
     private boolean mIsLegacyCodecsForced;
 
     private static class SpeedItem {
@@ -778,6 +780,7 @@ public class PlayerData extends DataChangeBase implements PlayerConstants, Profi
 
     private void restoreState() {
         String data = mPrefs.getProfileData(VIDEO_PLAYER_DATA);
+        mDirtyTracker.onRestored(data);
 
         String[] split = Helpers.splitData(data);
 
@@ -857,12 +860,17 @@ public class PlayerData extends DataChangeBase implements PlayerConstants, Profi
     }
 
     private void persistState() {
+        mDirtyTracker.markDirty();
         onDataChange();
-        Utils.postDelayed(mPersistStateInt, 10_000);
+        PersistQueue.persistLater(mPersistStateInt);
     }
 
     private void persistStateInt() {
-        mPrefs.setProfileData(VIDEO_PLAYER_DATA, Helpers.mergeData(mOKButtonBehavior, mUiHideTimeoutSec, null,
+        if (!mDirtyTracker.isDirty()) {
+            return;
+        }
+
+        String data = Helpers.mergeData(mOKButtonBehavior, mUiHideTimeoutSec, null,
                 mSeekPreviewMode, mIsSeekConfirmPauseEnabled,
                 mIsClockEnabled, mIsRemainingTimeEnabled, mBackgroundMode, null, // afrData was there
                 mVideoFormat, mAudioFormat, mSubtitleFormat,
@@ -880,12 +888,16 @@ public class PlayerData extends DataChangeBase implements PlayerConstants, Profi
                 mZoomPercents, mPlaybackMode, mAudioLanguage, mSubtitleLanguage, mEnabledSubtitlesPerChannel,
                 mIsSubtitlesPerChannelEnabled,
                 mIsSpeedPerChannelEnabled, Helpers.mergeArray(mSpeeds.values().toArray()), mPitch, mIsSkipShortsEnabled,
-                mLastAudioLanguages, mIsVideoFlipEnabled));
+                mLastAudioLanguages, mIsVideoFlipEnabled);
+
+        if (mDirtyTracker.commit(data)) {
+            mPrefs.setProfileData(VIDEO_PLAYER_DATA, data);
+        }
     }
 
     @Override
     public void onProfileChanged() {
-        Utils.removeCallbacks(mPersistStateInt);
+        PersistQueue.cancel(mPersistStateInt);
 
         // reset on profile change
         mSpeeds.clear();
@@ -6,9 +6,13 @@ import android.content.Context;
 import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.sharedutils.prefs.GlobalPreferences;
 import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs.ProfileChangeListener;
+import com.liskovsoft.smartyoutubetv2.common.prefs.common.DirtyTracker;
+import com.liskovsoft.smartyoutubetv2.common.prefs.common.PersistQueue;
 import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
 import com.liskovsoft.youtubeapi.service.internal.MediaServiceData;
 
+import java.util.List;
+
 public class PlayerTweaksData implements ProfileChangeListener {
     private static final String VIDEO_PLAYER_TWEAKS_DATA = "video_player_tweaks_data";
     public static final int PLAYER_DATA_SOURCE_DEFAULT = 0;
@@ -103,7 +107,10 @@ public class PlayerTweaksData implements ProfileChangeListener {
     private boolean mIsNetworkErrorFixingDisabled;
     private boolean mIsDontResizeVideoToFitDialogEnabled;
     private boolean mIsSuggestionsHorizontallyScrolled;
+    private List<String> mChatBlockList;
+    private boolean mIsGaplessPlaylistEnabled;
     private final Runnable mPersistDataInt = this::persistDataInt;
+    private final DirtyTracker mDirtyTracker = new DirtyTracker();
 
     private PlayerTweaksData(Context context) {
         mPrefs = AppPrefs.instance(context);
@@ -623,8 +630,30 @@ public class PlayerTweaksData implements ProfileChangeListener {
         persistData();
     }
 
+    /**
+     * User defined words that hide live chat messages (author name or message text)
+     */
+    public List<String> getChatBlockList() {
+        return mChatBlockList;
+    }
+
+    public void setChatBlockList(List<String> blockList) {
+        mChatBlockList = blockList;
+        persistData();
+    }
+
+    public boolean isGaplessPlaylistEnabled() {
+        return mIsGaplessPlaylistEnabled;
+    }
+
+    public void setGaplessPlaylistEnabled(boolean enable) {
+        mIsGaplessPlaylistEnabled = enable;
+        persistData();
+    }
+
     private void restoreData() {
         String data = mPrefs.getProfileData(VIDEO_PLAYER_TWEAKS_DATA);
+        mDirtyTracker.onRestored(data);
 
         String[] split = Helpers.splitData(data);
 
@@ -693,20 +722,29 @@ public class PlayerTweaksData implements ProfileChangeListener {
         mIsAudioFocusEnabled = Helpers.parseBoolean(split, 54, true);
         mIsDontResizeVideoToFitDialogEnabled = Helpers.parseBoolean(split, 55, false);
         mIsSuggestionsHorizontallyScrolled = Helpers.parseBoolean(split, 56, false);
+        mChatBlockList = Helpers.parseStrList(split, 57);
+        mIsGaplessPlaylistEnabled = Helpers.parseBoolean(split, 58, false);
 
         updateDefaultValues();
     }
 
     public void persistNow() {
+        mDirtyTracker.markDirty();
+        PersistQueue.cancel(mPersistDataInt);
         Utils.post(mPersistDataInt);
     }
 
     private void persistData() {
-        Utils.postDelayed(mPersistDataInt, 10_000);
+        mDirtyTracker.markDirty();
+        PersistQueue.persistLater(mPersistDataInt);
     }
 
     private void persistDataInt() {
-        mPrefs.setProfileData(VIDEO_PLAYER_TWEAKS_DATA, Helpers.mergeData(
+        if (!mDirtyTracker.isDirty()) {
+            return;
+        }
+
+        String data = Helpers.mergeData(
                 mIsAmlogicFixEnabled, mIsAmazonFrameDropFixEnabled, mIsSnapToVsyncDisabled,
                 mIsProfileLevelCheckSkipped, mIsSWDecoderForced, mIsTextureViewEnabled,
                 null, mIsSetOutputSurfaceWorkaroundEnabled, mIsAudioSyncFixEnabled, mIsKeepFinishedActivityEnabled,
@@ -727,7 +765,12 @@ public class PlayerTweaksData implements ProfileChangeListener {
                 mIsRememberPositionOfLiveVideosEnabled,
                 mIsOculusQuestFixEnabled, null, mIsExtraLongSpeedListEnabled, mIsQuickSkipVideosEnabled,
                 mIsNetworkErrorFixingDisabled, mIsCommentsPlacedLeft,
-                null, mIsAudioFocusEnabled, mIsDontResizeVideoToFitDialogEnabled, mIsSuggestionsHorizontallyScrolled));
+                null, mIsAudioFocusEnabled, mIsDontResizeVideoToFitDialogEnabled, mIsSuggestionsHorizontallyScrolled,
+                mChatBlockList, mIsGaplessPlaylistEnabled);
+
+        if (mDirtyTracker.commit(data)) {
+            mPrefs.setProfileData(VIDEO_PLAYER_TWEAKS_DATA, data);
+        }
     }
 
     private void updateDefaultValues() {
@@ -740,7 +783,7 @@ public class PlayerTweaksData implements ProfileChangeListener {
 
     @Override
     public void onProfileChanged() {
-        Utils.removeCallbacks(mPersistDataInt);
+        PersistQueue.cancel(mPersistDataInt);
         restoreData();
     }
 }
@@ -3,28 +3,48 @@ package com.liskovsoft.smartyoutubetv2.common.prefs.common;
 import android.content.Context;
 
 import com.liskovsoft.sharedutils.helpers.Helpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
-import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Every value is a typed entry stored under its own key (e.g. DeArrowData_0).<br/>
+ * Entries are read on first access and only the changed entries are written back.
+ */
 public abstract class DataSaverBase extends DataChangeBase {
+    private static final String TAG = DataSaverBase.class.getSimpleName();
     private final AppPrefs mAppPrefs;
     private final String mDataKey;
-    private final List<Object> mValues;
+    private final List<Entry> mEntries;
+    private final Set<Entry> mDirtyEntries;
     private final Runnable mPersistStateInt = this::persistStateInt;
 
     private interface Converter {
         Object convert(String input);
     }
 
+    private static final class Entry {
+        private final String mKey;
+        private final Class<?> mType;
+        private Object mValue;
+
+        private Entry(String key, Class<?> type, Object value) {
+            mKey = key;
+            mType = type;
+            mValue = value;
+        }
+    }
+
     public DataSaverBase(Context context) {
         mAppPrefs = AppPrefs.instance(context.getApplicationContext());
         mDataKey = this.getClass().getSimpleName();
-        mValues = new ArrayList<>();
-        restoreState();
+        mEntries = new ArrayList<>();
+        mDirtyEntries = new LinkedHashSet<>();
+        migrateState();
     }
 
     protected boolean getBoolean(int index) {
@@ -53,53 +73,101 @@ public abstract class DataSaverBase extends DataChangeBase {
 
     @SuppressWarnings("unchecked")
     private <T> T getValue(int index, T defaultValue, Converter converter) {
-        if (index >= mValues.size() || mValues.get(index) == null) {
-            return defaultValue;
-        }
+        Entry entry = getEntry(index, defaultValue.getClass(), converter);
 
-        Object rawValue = mValues.get(index);
-        if (rawValue instanceof String) {
-            Object value = converter.convert((String) rawValue);
-            mValues.set(index, value);
-            return (T) value;
-        } else {
-            return (T) rawValue;
-        }
+        return entry.mValue != null ? (T) entry.mValue : defaultValue;
     }
 
     private <T> void setValue(int index, T value) {
+        Entry entry = getEntry(index, value.getClass(), null);
+
+        if (Helpers.equals(entry.mValue, value)) {
+            return;
+        }
+
+        entry.mValue = value;
+        persistState(entry);
+    }
+
+    /**
+     * The type of the entry is fixed by the first access. Reading the same index as another type is a bug.
+     */
+    private Entry getEntry(int index, Class<?> type, Converter converter) {
         checkCapacity(index);
-        mValues.set(index, value);
-        persistState();
+
+        Entry entry = mEntries.get(index);
+
+        if (entry == null) {
+            String key = getKey(index);
+            String rawValue = mAppPrefs.getData(key);
+            Object value = rawValue != null && converter != null ? converter.convert(rawValue) : null;
+            entry = new Entry(key, type, value);
+            mEntries.set(index, entry);
+        } else if (entry.mType != type) {
+            throw new IllegalStateException(String.format("Entry %s is %s, not %s", entry.mKey, entry.mType.getSimpleName(), type.getSimpleName()));
+        }
+
+        return entry;
     }
 
     private void checkCapacity(int index) {
-        int size = mValues.size();
+        int size = mEntries.size();
         if (size <= index) { // fill with nulls
             for (int i = size; i <= index; i++) {
-                mValues.add(null);
+                mEntries.add(null);
             }
         }
     }
 
-    private void restoreState() {
+    private String getKey(int index) {
+        return mDataKey + "_" + index;
+    }
+
+    /**
+     * Moves the old merged string (all values under the class key) to the per entry keys.
+     */
+    private void migrateState() {
         String data = mAppPrefs.getData(mDataKey);
 
         String[] split = Helpers.splitData(data);
 
-        if (split != null) {
-            mValues.addAll(Arrays.asList(split));
+        if (split == null) {
+            return;
         }
+
+        for (int i = 0; i < split.length; i++) {
+            if (split[i] != null && mAppPrefs.getData(getKey(i)) == null) {
+                mAppPrefs.setData(getKey(i), split[i]);
+            }
+        }
+
+        mAppPrefs.setData(mDataKey, null);
+
+        Log.d(TAG, "%s: %s values migrated", mDataKey, split.length);
     }
 
-    private void persistState() {
+    private void persistState(Entry entry) {
+        synchronized (mDirtyEntries) {
+            mDirtyEntries.add(entry);
+        }
         onDataChange();
-        Utils.postDelayed(mPersistStateInt, 10_000);
+        PersistQueue.persistLater(mPersistStateInt);
     }
 
     private void persistStateInt() {
-        mAppPrefs.setData(mDataKey, Helpers.mergeData(
-                mValues.toArray()
-        ));
+        List<Entry> dirtyEntries;
+
+        synchronized (mDirtyEntries) {
+            if (mDirtyEntries.isEmpty()) {
+                return;
+            }
+
+            dirtyEntries = new ArrayList<>(mDirtyEntries);
+            mDirtyEntries.clear();
+        }
+
+        for (Entry entry : dirtyEntries) {
+            mAppPrefs.setData(entry.mKey, String.valueOf(entry.mValue));
+        }
     }
 }
@@ -0,0 +1,43 @@
+package com.liskovsoft.smartyoutubetv2.common.prefs.common;
+
+import com.liskovsoft.sharedutils.helpers.Helpers;
+
+/**
+ * Dirty flag and the last stored data of the settings class.<br/>
+ * Clean classes aren't merged at all. Merged data that equals the stored one isn't written.
+ */
+public final class DirtyTracker {
+    private boolean mIsDirty;
+    private String mStoredData;
+
+    public synchronized void markDirty() {
+        mIsDirty = true;
+    }
+
+    public synchronized boolean isDirty() {
+        return mIsDirty;
+    }
+
+    /**
+     * Data that is read from the prefs
+     */
+    public synchronized void onRestored(String data) {
+        mStoredData = data;
+        mIsDirty = false;
+    }
+
+    /**
+     * @return true if the data should be written
+     */
+    public synchronized boolean commit(String data) {
+        mIsDirty = false;
+
+        if (Helpers.equals(data, mStoredData)) {
+            return false;
+        }
+
+        mStoredData = data;
+
+        return true;
+    }
+}
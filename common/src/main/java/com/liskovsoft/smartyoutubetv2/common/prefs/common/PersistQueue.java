@@ -0,0 +1,59 @@
+package com.liskovsoft.smartyoutubetv2.common.prefs.common;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Batches the writes of all settings classes.<br/>
+ * Dirty classes are persisted together after the last change or when the app goes to background.<br/>
+ * Settings might be changed from any thread. The queue is guarded by the class lock. Writes are done outside of it.
+ */
+public final class PersistQueue {
+    private static final String TAG = PersistQueue.class.getSimpleName();
+    private static final long PERSIST_DELAY_MS = 10_000;
+    private static final Set<Runnable> sPending = new LinkedHashSet<>();
+    private static final Runnable sPersistAll = PersistQueue::persistAll;
+
+    private PersistQueue() {
+    }
+
+    public static synchronized void persistLater(Runnable persistInt) {
+        sPending.add(persistInt);
+        Utils.postDelayed(sPersistAll, PERSIST_DELAY_MS);
+    }
+
+    /**
+     * Drop pending write (e.g. before the profile change)
+     */
+    public static synchronized void cancel(Runnable persistInt) {
+        sPending.remove(persistInt);
+    }
+
+    public static void persistAll() {
+        List<Runnable> pending;
+
+        synchronized (PersistQueue.class) {
+            Utils.removeCallbacks(sPersistAll);
+
+            if (sPending.isEmpty()) {
+                return;
+            }
+
+            pending = new ArrayList<>(sPending);
+            sPending.clear();
+        }
+
+        long startTimeMs = System.currentTimeMillis();
+
+        for (Runnable persistInt : pending) {
+            persistInt.run();
+        }
+
+        Log.d(TAG, "Persisted %s settings in %s ms", pending.size(), System.currentTimeMillis() - startTimeMs);
+    }
+}
@@ -0,0 +1,149 @@
+package com.liskovsoft.smartyoutubetv2.common.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Case insensitive Aho-Corasick matcher.<br/>
+ * Compiled once. Lookup time depends only on the text length, not on the number of patterns.
+ */
+public class MultiPatternMatcher {
+    private static final char[] EMPTY_KEYS = new char[0];
+    private static final int[] EMPTY_STATES = new int[0];
+    // Transitions of each state: sorted chars and target states
+    private final char[][] mKeys;
+    private final int[][] mStates;
+    private final int[] mFail;
+    private final boolean[] mIsTerminal;
+
+    public MultiPatternMatcher(Collection<String> patterns) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Boolean> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(false);
+
+        if (patterns != null) {
+            for (String pattern : patterns) {
+                if (pattern == null || pattern.isEmpty()) {
+                    continue;
+                }
+
+                int state = 0;
+
+                for (int i = 0; i < pattern.length(); i++) {
+                    char c = Character.toLowerCase(pattern.charAt(i));
+                    Integer next = trie.get(state).get(c);
+
+                    if (next == null) {
+                        next = trie.size();
+                        trie.add(new TreeMap<>());
+                        terminal.add(false);
+                        trie.get(state).put(c, next);
+                    }
+
+                    state = next;
+                }
+
+                terminal.set(state, true);
+            }
+        }
+
+        int size = trie.size();
+        mKeys = new char[size][];
+        mStates = new int[size][];
+        mFail = new int[size];
+        mIsTerminal = new boolean[size];
+
+        for (int i = 0; i < size; i++) {
+            TreeMap<Character, Integer> transitions = trie.get(i);
+            mKeys[i] = transitions.isEmpty() ? EMPTY_KEYS : new char[transitions.size()];
+            mStates[i] = transitions.isEmpty() ? EMPTY_STATES : new int[transitions.size()];
+            mIsTerminal[i] = terminal.get(i);
+
+            int index = 0;
+
+            for (Map.Entry<Character, Integer> entry : transitions.entrySet()) {
+                mKeys[i][index] = entry.getKey();
+                mStates[i][index] = entry.getValue();
+                index++;
+            }
+        }
+
+        buildFailLinks();
+    }
+
+    public boolean isEmpty() {
+        return mKeys[0].length == 0;
+    }
+
+    /**
+     * Whether the text contains any of the patterns
+     */
+    public boolean matches(CharSequence text) {
+        if (text == null || isEmpty()) {
+            return false;
+        }
+
+        int state = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = next(state, c);
+
+            while (next == -1 && state != 0) {
+                state = mFail[state];
+                next = next(state, c);
+            }
+
+            state = next != -1 ? next : 0;
+
+            if (mIsTerminal[state]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void buildFailLinks() {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        for (int child : mStates[0]) {
+            mFail[child] = 0;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+
+            for (int i = 0; i < mKeys[state].length; i++) {
+                char c = mKeys[state][i];
+                int child = mStates[state][i];
+
+                int fail = mFail[state];
+                int next = next(fail, c);
+
+                while (next == -1 && fail != 0) {
+                    fail = mFail[fail];
+                    next = next(fail, c);
+                }
+
+                mFail[child] = next != -1 && next != child ? next : 0;
+                // Pattern that ends inside the current one
+                mIsTerminal[child] |= mIsTerminal[mFail[child]];
+
+                queue.add(child);
+            }
+        }
+    }
+
+    private int next(int state, char c) {
+        int index = Arrays.binarySearch(mKeys[state], c);
+        return index >= 0 ? mStates[state][index] : -1;
+    }
+}
@@ -0,0 +1,177 @@
+package com.liskovsoft.smartyoutubetv2.common.utils;
+
+import android.os.SystemClock;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.sharedutils.rx.RxHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * App startup steps with dependencies. A step starts as soon as all its dependencies are completed.<br/>
+ * Background steps run in parallel, main steps are posted to the main thread.<br/>
+ * Milestones (e.g. {@link #FIRST_FRAME}) are completed from the outside.<br/>
+ * Every step is traced relative to the graph creation.
+ */
+public class StartupTaskGraph {
+    private static final String TAG = StartupTaskGraph.class.getSimpleName();
+    public static final int THREAD_MAIN = 0;
+    public static final int THREAD_BACKGROUND = 1;
+    /**
+     * Milestone: the first content row is drawn
+     */
+    public static final String FIRST_FRAME = "first_frame";
+    private static StartupTaskGraph sInstance;
+    private final long mStartTimeMs = SystemClock.elapsedRealtime();
+    private final Set<String> mCompleted = new HashSet<>();
+    private final List<Task> mPending = new ArrayList<>();
+    private final List<String> mTrace = new ArrayList<>();
+
+    private static class Task {
+        final String name;
+        final int thread;
+        final Runnable runnable;
+        final String[] dependencies;
+        final long queuedMs;
+
+        Task(String name, int thread, Runnable runnable, String[] dependencies, long queuedMs) {
+            this.name = name;
+            this.thread = thread;
+            this.runnable = runnable;
+            this.dependencies = dependencies;
+            this.queuedMs = queuedMs;
+        }
+    }
+
+    private StartupTaskGraph() {
+    }
+
+    public static synchronized StartupTaskGraph instance() {
+        if (sInstance == null) {
+            sInstance = new StartupTaskGraph();
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Run the step once all the dependencies are completed (immediately if they already are).<br/>
+     * The step counts as completed when the runnable returns.
+     */
+    public void add(String name, int thread, Runnable runnable, String... dependencies) {
+        Task task = new Task(name, thread, runnable, dependencies, getTimeMs());
+
+        synchronized (this) {
+            if (!isCompleted(dependencies)) {
+                mPending.add(task);
+                return;
+            }
+        }
+
+        start(task);
+    }
+
+    /**
+     * Drop the step that isn't started yet
+     */
+    public synchronized void cancel(Runnable runnable) {
+        Iterator<Task> iterator = mPending.iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().runnable == runnable) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Mark the milestone as reached. Repeated calls are ignored.
+     */
+    public void complete(String name) {
+        if (isCompleted(name)) {
+            return;
+        }
+
+        complete(name, String.format(Locale.US, "%s: reached at %s ms", name, getTimeMs()));
+    }
+
+    private void complete(String name, String traceLine) {
+        List<Task> ready = new ArrayList<>();
+
+        synchronized (this) {
+            if (!mCompleted.add(name)) {
+                return;
+            }
+
+            mTrace.add(traceLine);
+
+            Iterator<Task> iterator = mPending.iterator();
+
+            while (iterator.hasNext()) {
+                Task task = iterator.next();
+
+                if (isCompleted(task.dependencies)) {
+                    iterator.remove();
+                    ready.add(task);
+                }
+            }
+        }
+
+        for (Task task : ready) {
+            start(task);
+        }
+    }
+
+    public synchronized boolean isCompleted(String... names) {
+        return mCompleted.containsAll(Arrays.asList(names));
+    }
+
+    /**
+     * One line per step: when it was queued, when it started and how long it took
+     */
+    public synchronized String getTrace() {
+        StringBuilder result = new StringBuilder();
+
+        for (String line : mTrace) {
+            result.append(line).append('\n');
+        }
+
+        return result.toString();
+    }
+
+    private void start(Task task) {
+        if (task.thread == THREAD_MAIN) {
+            Utils.sHandler.post(() -> run(task));
+        } else {
+            RxHelper.runAsync(() -> run(task));
+        }
+    }
+
+    private void run(Task task) {
+        long startMs = getTimeMs();
+
+        try {
+            task.runnable.run();
+        } catch (Exception e) {
+            // Don't block the dependent steps
+            Log.e(TAG, "Step %s failed: %s", task.name, e.getMessage());
+        }
+
+        long endMs = getTimeMs();
+
+        Log.d(TAG, "%s took %s ms", task.name, endMs - startMs);
+
+        complete(task.name, String.format(Locale.US, "%s: queued at %s ms, started at %s ms, took %s ms on %s",
+                task.name, task.queuedMs, startMs, endMs - startMs, Thread.currentThread().getName()));
+    }
+
+    private long getTimeMs() {
+        return SystemClock.elapsedRealtime() - mStartTimeMs;
+    }
+}
@@ -0,0 +1,188 @@
+package com.liskovsoft.smartyoutubetv2.common.app.models.data;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Queue operations, restore of the saved log and the cost of the operations on the full queue
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PlaylistTest {
+    private static final int OPERATION_COUNT = 1_000;
+    private static final long MAX_MAIN_THREAD_MS = 500;
+    private static final long MAX_RESTORE_MS = 2_000;
+    private Context mContext;
+    private File mLogFile;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+        mLogFile = PlaylistStore.getFile(mContext);
+        mLogFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        PlaylistStore.flush();
+        mLogFile.delete();
+    }
+
+    @Test
+    public void testQueueOrder() {
+        Playlist playlist = new Playlist();
+        playlist.add(createVideo("a"));
+        playlist.add(createVideo("b"));
+        playlist.add(createVideo("c"));
+        playlist.setCurrent(createVideo("a"));
+
+        playlist.next(createVideo("d"));
+
+        assertEquals(Arrays.asList("a", "d", "b", "c"), ids(playlist.getAll()));
+        assertEquals("d", playlist.getNext().videoId);
+        assertTrue(playlist.containsAfterCurrent(createVideo("c")));
+
+        playlist.remove(createVideo("a"));
+
+        assertEquals("d", playlist.getCurrent().videoId);
+        assertFalse(playlist.contains(createVideo("a")));
+    }
+
+    @Test
+    public void testAddAllTrimmed() {
+        Playlist playlist = new Playlist();
+        playlist.addAll(createVideos("video", Playlist.PLAYLIST_MAX_SIZE + 10));
+
+        assertEquals(Playlist.PLAYLIST_MAX_SIZE, playlist.size());
+        assertEquals("video10", playlist.getAll().get(0).videoId);
+    }
+
+    @Test
+    public void testRestoreMergesQueuedItems() throws IOException {
+        Files.write(mLogFile.toPath(), PlaylistStore.toSnapshot(Arrays.asList("saved1", "saved2"),
+                Arrays.asList(createVideo("saved1"), createVideo("saved2")), "saved1"));
+
+        Playlist playlist = new Playlist();
+        // Added before the log is loaded
+        playlist.add(createVideo("queued"));
+        playlist.add(createVideo("saved2"));
+        playlist.restore(mContext);
+
+        assertEquals(Arrays.asList("saved1", "queued", "saved2"), ids(playlist.getAll()));
+        assertEquals("saved1", playlist.getCurrent().videoId);
+
+        // Merged queue is written back
+        Playlist restored = new Playlist();
+        restored.restore(mContext);
+
+        assertEquals(Arrays.asList("saved1", "queued", "saved2"), ids(restored.getAll()));
+        assertEquals("saved1", restored.getCurrent().videoId);
+    }
+
+    @Test
+    public void testProfileChangedRestoresInBackground() throws IOException {
+        Playlist playlist = new Playlist();
+        playlist.restore(mContext);
+
+        Files.write(mLogFile.toPath(), PlaylistStore.toSnapshot(Arrays.asList("saved1", "saved2"),
+                Arrays.asList(createVideo("saved1"), createVideo("saved2")), "saved1"));
+
+        playlist.onProfileChanged();
+        // Added while (or after) the log is loaded
+        playlist.add(createVideo("queued"));
+        // Wait for the restore
+        PlaylistStore.flush();
+
+        assertEquals(Arrays.asList("saved1", "saved2", "queued"), ids(playlist.getAll()));
+        assertEquals("saved1", playlist.getCurrent().videoId);
+    }
+
+    /**
+     * Operations on the full queue (main thread) vs compaction and restore (background)
+     */
+    @Test
+    public void benchmarkFullQueue() throws IOException {
+        Playlist playlist = new Playlist();
+        List<Video> videos = createVideos("video", Playlist.PLAYLIST_MAX_SIZE);
+
+        long startTimeMs = System.currentTimeMillis();
+        playlist.addAll(videos);
+        long addAllMs = System.currentTimeMillis() - startTimeMs;
+
+        playlist.setCurrent(videos.get(0));
+
+        startTimeMs = System.currentTimeMillis();
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            Video video = videos.get(i * 7 % videos.size());
+            playlist.containsAfterCurrent(video);
+            playlist.next(video); // move
+            playlist.remove(videos.get(i * 13 % videos.size()));
+        }
+        long operationsMs = System.currentTimeMillis() - startTimeMs;
+
+        List<String> keys = new ArrayList<>();
+        for (Video video : playlist.getAll()) {
+            keys.add(video.videoId);
+        }
+
+        startTimeMs = System.currentTimeMillis();
+        byte[] snapshot = PlaylistStore.toSnapshot(keys, playlist.getAll(), null);
+        long snapshotMs = System.currentTimeMillis() - startTimeMs;
+
+        Files.write(mLogFile.toPath(), snapshot);
+
+        startTimeMs = System.currentTimeMillis();
+        Playlist restored = new Playlist();
+        restored.restore(mContext);
+        long restoreMs = System.currentTimeMillis() - startTimeMs;
+
+        assertEquals(playlist.size(), restored.size());
+        assertTrue(String.format("addAll %s ms", addAllMs), addAllMs < MAX_MAIN_THREAD_MS);
+        assertTrue(String.format("%s x (contains, move, remove) %s ms", OPERATION_COUNT, operationsMs), operationsMs < MAX_MAIN_THREAD_MS);
+        assertTrue(String.format("Snapshot %s ms, restore %s ms", snapshotMs, restoreMs), snapshotMs + restoreMs < MAX_RESTORE_MS);
+    }
+
+    private static Video createVideo(String videoId) {
+        Video video = new Video();
+        video.videoId = videoId;
+        video.title = "Title of " + videoId;
+
+        return video;
+    }
+
+    private static List<Video> createVideos(String prefix, int count) {
+        List<Video> result = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            result.add(createVideo(prefix + i));
+        }
+
+        return result;
+    }
+
+    private static List<String> ids(List<Video> videos) {
+        List<String> result = new ArrayList<>();
+
+        for (Video video : videos) {
+            result.add(video.videoId);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package com.liskovsoft.smartyoutubetv2.common.app.models.playback.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+
+/**
+ * Local stand-in of the remote control service. Records the states instead of sending them.
+ */
+class LocalSender implements RemoteStateChannel.Sender {
+    private final long mLatencyMs;
+    private final List<String> mReceived = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param latencyMs simulated request time
+     */
+    LocalSender(long latencyMs) {
+        mLatencyMs = latencyMs;
+    }
+
+    @Override
+    public Observable<?> postStartPlaying(String videoId, long positionMs, long durationMs, boolean isPlaying) {
+        return receive(String.format(Locale.US, "start %s %s/%s %s", videoId, positionMs, durationMs, isPlaying));
+    }
+
+    @Override
+    public Observable<?> postStateChange(long positionMs, long durationMs, boolean isPlaying) {
+        return receive(String.format(Locale.US, "state %s/%s %s", positionMs, durationMs, isPlaying));
+    }
+
+    @Override
+    public Observable<?> postVolumeChange(int volume) {
+        return receive(String.format(Locale.US, "volume %s", volume));
+    }
+
+    List<String> getReceived() {
+        return new ArrayList<>(mReceived);
+    }
+
+    private Observable<?> receive(String state) {
+        return Observable.timer(mLatencyMs, TimeUnit.MILLISECONDS)
+                .doOnComplete(() -> mReceived.add(state));
+    }
+}
@@ -0,0 +1,134 @@
+package com.liskovsoft.smartyoutubetv2.common.app.models.playback.service;
+
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Coalescing, rate limit, flush and close of the outbound states.<br/>
+ * The main looper clock moves only when asked, the requests complete in real time.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RemoteStateChannelTest {
+    private static final long LATENCY_MS = 20;
+    private static final long TIMEOUT_MS = 5_000;
+    private LocalSender mSender;
+    private RemoteStateChannel mChannel;
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    @Before
+    public void setUp() {
+        mSender = new LocalSender(LATENCY_MS);
+        mChannel = new RemoteStateChannel(mSender);
+    }
+
+    @Test
+    public void testLatestStateWins() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            mChannel.postStateChange(i * 1_000, 100_000, true);
+        }
+
+        idleUntil(() -> !mSender.getReceived().isEmpty());
+        waitFor(LATENCY_MS * 5);
+
+        assertEquals(Collections.singletonList("state 99000/100000 true"), mSender.getReceived());
+        assertEquals(1, mChannel.getSentCount());
+        assertEquals(99, mChannel.getCoalescedCount());
+    }
+
+    @Test
+    public void testKindsAreIndependent() throws InterruptedException {
+        mChannel.postStartPlaying("video", 0, 100_000, true);
+        mChannel.postStateChange(1_000, 100_000, false);
+        mChannel.postVolumeChange(50);
+
+        idleUntil(() -> mSender.getReceived().size() == 3);
+
+        assertEquals(new HashSet<>(Arrays.asList("start video 0/100000 true", "state 1000/100000 false", "volume 50")),
+                new HashSet<>(mSender.getReceived()));
+        assertEquals(0, mChannel.getCoalescedCount());
+    }
+
+    @Test
+    public void testMinInterval() throws InterruptedException {
+        mChannel.postStateChange(1_000, 100_000, true);
+        idleUntil(() -> mSender.getReceived().size() == 1);
+
+        mChannel.postStateChange(2_000, 100_000, true);
+        waitFor(LATENCY_MS * 5);
+
+        // The clock didn't move
+        assertEquals(1, mChannel.getSentCount());
+
+        shadowOf(Looper.getMainLooper()).idleFor(RemoteStateChannel.MIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        idleUntil(() -> mSender.getReceived().size() == 2);
+
+        assertEquals("state 2000/100000 true", mSender.getReceived().get(1));
+    }
+
+    @Test
+    public void testFlushSkipsInterval() throws InterruptedException {
+        mChannel.postStateChange(1_000, 100_000, true);
+        idleUntil(() -> mSender.getReceived().size() == 1);
+
+        mChannel.postStateChange(2_000, 100_000, false);
+        mChannel.flush();
+
+        idleUntil(() -> mSender.getReceived().size() == 2);
+
+        assertEquals("state 2000/100000 false", mSender.getReceived().get(1));
+    }
+
+    @Test
+    public void testCloseDropsPending() throws InterruptedException {
+        mChannel.postStateChange(1_000, 100_000, true);
+        mChannel.postVolumeChange(10);
+        mChannel.close();
+
+        waitFor(LATENCY_MS * 5);
+
+        assertTrue(mSender.getReceived().isEmpty());
+        assertEquals(0, mChannel.getSentCount());
+        assertEquals(2, mChannel.getDroppedCount());
+    }
+
+    /**
+     * Runs the main looper tasks that are due now until the condition is met
+     */
+    private static void idleUntil(Condition condition) throws InterruptedException {
+        long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+
+        while (!condition.isMet()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadlineMs);
+            Thread.sleep(5);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+    }
+
+    /**
+     * Real time wait for the requests in flight. The looper clock doesn't move.
+     */
+    private static void waitFor(long timeMs) throws InterruptedException {
+        long endMs = System.currentTimeMillis() + timeMs;
+
+        while (System.currentTimeMillis() < endMs) {
+            Thread.sleep(5);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.liskovsoft.smartyoutubetv2.common.app.models.playback.service;
+
+import android.content.Context;
+
+import com.liskovsoft.sharedutils.helpers.Helpers;
+import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
+import com.liskovsoft.smartyoutubetv2.common.app.models.playback.service.VideoStateService.State;
+import com.liskovsoft.smartyoutubetv2.common.prefs.AppPrefs;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trip of the history log, the migration of the old string format and the cost of both formats on the full history
+ */
+@RunWith(RobolectricTestRunner.class)
+public class VideoStateStoreTest {
+    private static final int STATE_COUNT = 10_000;
+    private static final int UPDATE_COUNT = 1_000;
+    private static final long MAX_RESTORE_MS = 2_000;
+    // Old prefs format
+    private static final String LEGACY_DELIM = "&si;";
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+    private File mFile;
+    private List<State> mStates;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = new File(mFolder.getRoot(), VideoStateStore.FILE_NAME);
+        mStates = new ArrayList<>();
+
+        for (int i = 0; i < STATE_COUNT; i++) {
+            mStates.add(createState("video" + i, i * 1_000L));
+        }
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() {
+        assertTrue(VideoStateStore.write(mFile, VideoStateStore.toSnapshot(mStates, true), false));
+
+        Map<String, State> result = new LinkedHashMap<>();
+        boolean[] isBroken = new boolean[1];
+
+        int count = VideoStateStore.read(mFile, new TestReader(result) {
+            @Override
+            public void onHistoryBroken(boolean broken) {
+                isBroken[0] = broken;
+            }
+        });
+
+        assertEquals(STATE_COUNT + 1, count);
+        assertEquals(STATE_COUNT, result.size());
+        assertEquals(5_000_000, result.get("video5000").positionMs);
+        assertTrue(isBroken[0]);
+    }
+
+    @Test
+    public void testAppendedRecordsOverrideSnapshot() throws IOException {
+        VideoStateStore.write(mFile, VideoStateStore.toSnapshot(mStates, false), false);
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(records);
+        VideoStateStore.writePut(out, createState("video1", 777));
+        VideoStateStore.writeRemove(out, "video2");
+        VideoStateStore.write(mFile, records.toByteArray(), true);
+
+        Map<String, State> result = new LinkedHashMap<>();
+        VideoStateStore.read(mFile, new TestReader(result));
+
+        assertEquals(STATE_COUNT - 1, result.size());
+        assertEquals(777, result.get("video1").positionMs);
+        assertFalse(result.containsKey("video2"));
+    }
+
+    @Test
+    public void testCorruptedTail() throws IOException {
+        VideoStateStore.write(mFile, VideoStateStore.toSnapshot(mStates.subList(0, 10), false), false);
+        VideoStateStore.write(mFile, new byte[] {1, 0, 42}, true); // truncated put record
+
+        Map<String, State> result = new LinkedHashMap<>();
+        boolean[] isCorrupted = new boolean[1];
+
+        VideoStateStore.read(mFile, new TestReader(result) {
+            @Override
+            public void onCorrupted() {
+                isCorrupted[0] = true;
+            }
+        });
+
+        assertEquals(10, result.size());
+        assertTrue(isCorrupted[0]);
+    }
+
+    @Test
+    public void testReadLegacy() {
+        Map<String, State> result = new LinkedHashMap<>();
+        boolean[] isBroken = new boolean[1];
+
+        VideoStateService.readLegacy(toLegacyData(mStates.subList(0, 100), true), new TestReader(result) {
+            @Override
+            public void onHistoryBroken(boolean broken) {
+                isBroken[0] = broken;
+            }
+        });
+
+        assertEquals(100, result.size());
+        assertEquals(99_000, result.get("video99").positionMs);
+        assertEquals("Title of video99", result.get("video99").video.title);
+        assertTrue(isBroken[0]);
+
+        result.clear();
+        VideoStateService.readLegacy(null, new TestReader(result));
+        assertTrue(result.isEmpty());
+    }
+
+    /**
+     * The old string history is moved to the log once and removed from the prefs
+     */
+    @Test
+    public void testMigrateState() throws InterruptedException {
+        Context context = RuntimeEnvironment.application;
+        AppPrefs prefs = AppPrefs.instance(context);
+        prefs.setStateUpdaterData(toLegacyData(mStates.subList(0, 100), true));
+
+        // Restored in background
+        VideoStateService service = VideoStateService.instance(context);
+        awaitPendingTasks();
+
+        assertEquals(100, service.getStates().size());
+        assertEquals(99_000, service.getLastState().positionMs);
+        assertTrue(service.isHistoryBroken());
+        assertNull(prefs.getStateUpdaterData());
+
+        Map<String, State> result = new LinkedHashMap<>();
+        assertEquals(101, VideoStateStore.read(VideoStateStore.getFile(context), new TestReader(result)));
+        assertEquals(100, result.size());
+    }
+
+    /**
+     * Old format (whole string rewritten on every persist) vs the log (one record appended) on the full history.<br/>
+     * Restore of the log is done in background but still should be comparable to the old format.
+     */
+    @Test
+    public void benchmarkFullHistory() throws IOException {
+        String legacyData = toLegacyData(mStates, false);
+
+        Map<String, State> legacyResult = new LinkedHashMap<>();
+        long startTimeMs = System.currentTimeMillis();
+        VideoStateService.readLegacy(legacyData, new TestReader(legacyResult));
+        long legacyReadMs = System.currentTimeMillis() - startTimeMs;
+
+        byte[] snapshot = VideoStateStore.toSnapshot(mStates, false);
+        assertTrue(VideoStateStore.write(mFile, snapshot, false));
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(records);
+
+        for (int i = 0; i < UPDATE_COUNT; i++) {
+            VideoStateStore.writePut(out, createState("video" + i, i));
+        }
+
+        assertTrue(VideoStateStore.write(mFile, records.toByteArray(), true));
+
+        Map<String, State> result = new LinkedHashMap<>();
+        startTimeMs = System.currentTimeMillis();
+        int count = VideoStateStore.read(mFile, new TestReader(result));
+        long readMs = System.currentTimeMillis() - startTimeMs;
+
+        assertEquals(STATE_COUNT, legacyResult.size());
+        assertEquals(STATE_COUNT, result.size());
+        assertEquals(STATE_COUNT + 1 + UPDATE_COUNT, count);
+
+        // One persisted change: a record vs the whole history
+        int bytesPerUpdate = records.size() / UPDATE_COUNT;
+        assertTrue(String.format("Record %s bytes, history %s chars", bytesPerUpdate, legacyData.length()),
+                bytesPerUpdate * 1_000 < legacyData.length());
+        // The log has 10% more records
+        assertTrue(String.format("Restore %s ms, old format %s ms", readMs, legacyReadMs),
+                readMs <= legacyReadMs * 2 + 50 && readMs < MAX_RESTORE_MS);
+    }
+
+    private static String toLegacyData(List<State> states, boolean isHistoryBroken) {
+        return Helpers.mergeData(Helpers.merge(LEGACY_DELIM, states.toArray()), isHistoryBroken);
+    }
+
+    /**
+     * The restore runs on the log executor. Tasks are executed in order.
+     */
+    private static void awaitPendingTasks() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        VideoStateStore.runAsync(latch::countDown);
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    private static State createState(String videoId, long positionMs) {
+        Video video = new Video();
+        video.videoId = videoId;
+        video.title = "Title of " + videoId;
+
+        return new State(video, positionMs, 3_600_000, 1.0f, System.currentTimeMillis());
+    }
+
+    private static class TestReader implements VideoStateStore.Reader {
+        private final Map<String, State> mResult;
+
+        TestReader(Map<String, State> result) {
+            mResult = result;
+        }
+
+        @Override
+        public void onPut(State state) {
+            mResult.remove(state.video.videoId);
+            mResult.put(state.video.videoId, state);
+        }
+
+        @Override
+        public void onRemove(String videoId) {
+            mResult.remove(videoId);
+        }
+
+        @Override
+        public void onClear() {
+            mResult.clear();
+        }
+
+        @Override
+        public void onHistoryBroken(boolean isBroken) {
+        }
+
+        @Override
+        public void onCorrupted() {
+        }
+    }
+}
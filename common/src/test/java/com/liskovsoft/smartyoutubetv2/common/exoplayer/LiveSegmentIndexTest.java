@@ -0,0 +1,377 @@
+package com.liskovsoft.smartyoutubetv2.common.exoplayer;
+
+import android.net.Uri;
+
+import androidx.media3.common.C;
+import androidx.media3.exoplayer.dash.manifest.AdaptationSet;
+import androidx.media3.exoplayer.dash.manifest.DashManifest;
+import androidx.media3.exoplayer.dash.manifest.RangedUri;
+import androidx.media3.exoplayer.dash.manifest.Representation;
+import androidx.media3.exoplayer.dash.manifest.Representation.MultiSegmentRepresentation;
+import androidx.media3.exoplayer.dash.manifest.SegmentBase.SegmentList;
+import androidx.media3.exoplayer.dash.manifest.SegmentBase.SegmentTimelineElement;
+
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.LiveSegmentIndex.SegmentUrls;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.LiveSegmentIndex.Timeline;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Run expansion of the segment urls and the timeline. The lists should match the plain lists of the parser.<br/>
+ * The refreshes of a long stream are simulated through {@link LiveDashManifestParser}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LiveSegmentIndexTest {
+    private static final String PREFIX = "https://host/videoplayback/itag/137/";
+    private static final Field sStartTime = LiveSegmentIndex.findField(SegmentTimelineElement.class, "startTime");
+    private static final Field sDuration = LiveSegmentIndex.findField(SegmentTimelineElement.class, "duration");
+    private static final Field sSegmentBase = LiveSegmentIndex.findField(MultiSegmentRepresentation.class, "segmentBase");
+    private static final Field sMediaSegments = LiveSegmentIndex.findField(SegmentList.class, "mediaSegments");
+    private static final Field sSegmentTimeline = LiveSegmentIndex.findField(SegmentList.class, "segmentTimeline");
+    private static final long SEGMENT_DURATION_MS = 5_000;
+    // 12 hours, a refresh per segment
+    private static final int REFRESH_COUNT = (int) (12 * 60 * 60 * 1_000 / SEGMENT_DURATION_MS);
+    private static final int VIDEO_REPRESENTATION_COUNT = 8;
+    private static final int AUDIO_REPRESENTATION_COUNT = 4;
+    private static final int WINDOW_SEGMENT_COUNT = 12;
+    private static final long FIRST_SEGMENT_NUM = 100_000;
+    private static final long MAX_REFRESH_MS = 50;
+    private static final long MAX_LOOKUP_US = 50;
+
+    @Test
+    public void testConsecutiveSegmentsInOneRun() {
+        List<RangedUri> segments = createSegments(100, 1_000, 1_600_000_000, 5_000);
+        SegmentUrls urls = new SegmentUrls(segments);
+
+        assertEquals(1, urls.getRunCount());
+        assertUrlsEqual(segments, urls);
+    }
+
+    @Test
+    public void testSegmentsWithoutLmt() {
+        List<RangedUri> segments = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            segments.add(new RangedUri(PREFIX + "sq/" + (50 + i), 0, -1));
+        }
+
+        SegmentUrls urls = new SegmentUrls(segments);
+
+        assertEquals(1, urls.getRunCount());
+        assertUrlsEqual(segments, urls);
+    }
+
+    @Test
+    public void testGapsStartNewRun() {
+        List<RangedUri> segments = new ArrayList<>();
+        segments.addAll(createSegments(5, 1_000, 1_600_000_000, 5_000));
+        // Missing sq
+        segments.addAll(createSegments(5, 1_010, 1_600_050_000, 5_000));
+        // Different lmt step
+        segments.addAll(createSegments(5, 1_015, 1_600_080_000, 4_000));
+        // Unknown url format
+        segments.add(new RangedUri(PREFIX + "index.m4s", 0, 100));
+        segments.addAll(createSegments(3, 1_020, 1_600_100_000, 5_000));
+
+        SegmentUrls urls = new SegmentUrls(segments);
+
+        assertEquals(5, urls.getRunCount());
+        assertUrlsEqual(segments, urls);
+    }
+
+    @Test
+    public void testAddFirstJoinsRun() {
+        List<RangedUri> segments = createSegments(10, 1_000, 1_600_000_000, 5_000);
+        SegmentUrls urls = new SegmentUrls(segments.subList(3, segments.size()));
+
+        for (int i = 2; i >= 0; i--) {
+            urls.addFirst(segments.get(i));
+        }
+
+        assertEquals(1, urls.getRunCount());
+        assertUrlsEqual(segments, urls);
+
+        // Not a previous segment
+        RangedUri older = new RangedUri(PREFIX + "sq/900/lmt/1500000000", 0, -1);
+        urls.addFirst(older);
+
+        assertEquals(2, urls.getRunCount());
+        assertEquals(getReferenceUri(older), getReferenceUri(urls.get(0)));
+        assertEquals(getReferenceUri(segments.get(0)), getReferenceUri(urls.get(1)));
+    }
+
+    @Test
+    public void testAddLast() {
+        List<RangedUri> segments = createSegments(20, 1_000, 1_600_000_000, 5_000);
+        SegmentUrls urls = new SegmentUrls(segments.subList(0, 10));
+
+        for (RangedUri segment : segments.subList(10, segments.size())) {
+            urls.addLast(segment);
+        }
+
+        assertEquals(1, urls.getRunCount());
+        assertUrlsEqual(segments, urls);
+    }
+
+    @Test
+    public void testOutOfBounds() {
+        SegmentUrls urls = new SegmentUrls(createSegments(3, 1_000, 1_600_000_000, 5_000));
+
+        assertOutOfBounds(urls, -1);
+        assertOutOfBounds(urls, 3);
+        assertOutOfBounds(new Timeline(Collections.emptyList()), 0);
+    }
+
+    @Test
+    public void testTimelineRuns() {
+        List<SegmentTimelineElement> elements = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            elements.add(new SegmentTimelineElement(i * 5_000, 5_000));
+        }
+
+        // Different duration
+        elements.add(new SegmentTimelineElement(50_000, 4_000));
+        // Gap
+        elements.add(new SegmentTimelineElement(60_000, 4_000));
+
+        Timeline timeline = new Timeline(elements);
+
+        assertEquals(3, timeline.getRunCount());
+        assertElementsEqual(elements, timeline);
+    }
+
+    @Test
+    public void testTimelineExtend() {
+        Timeline timeline = new Timeline(Arrays.asList(new SegmentTimelineElement(0, 5_000), new SegmentTimelineElement(5_000, 5_000)));
+
+        timeline.extend(3);
+
+        assertEquals(5, timeline.size());
+        assertEquals(1, timeline.getRunCount());
+        assertEquals(20_000, getLong(sStartTime, timeline.get(4)));
+        assertEquals(5_000, getLong(sDuration, timeline.get(4)));
+
+        timeline.extend(0);
+        assertEquals(5, timeline.size());
+    }
+
+    /**
+     * Memory of the long stream doesn't depend on its length
+     */
+    @Test
+    public void testLongStream() {
+        List<RangedUri> segments = createSegments(100_000, 1, 1_600_000_000, 5_000);
+
+        SegmentUrls urls = new SegmentUrls(segments);
+
+        int lookupCount = 0;
+        long startTimeNs = System.nanoTime();
+        for (int i = 0; i < segments.size(); i += 97) {
+            assertEquals(getReferenceUri(segments.get(i)), getReferenceUri(urls.get(i)));
+            lookupCount++;
+        }
+        long lookupUs = (System.nanoTime() - startTimeNs) / 1_000 / lookupCount;
+
+        assertEquals(1, urls.getRunCount());
+        assertTrue(String.format("Lookup %s us", lookupUs), lookupUs < MAX_LOOKUP_US);
+    }
+
+    /**
+     * 12 hours of a live stream: a refresh every segment, 12 representations, a window of the last segments in every manifest.<br/>
+     * Every refresh continues the lists by one segment. The kept runs and the refresh cost don't grow with the stream.
+     */
+    @Test
+    public void testTwelveHourRefresh() throws IOException {
+        LiveDashManifestParser parser = new LiveDashManifestParser();
+        Uri uri = Uri.parse("https://host/api/manifest/dash/live/1");
+
+        DashManifest manifest = parser.parse(uri, createManifest(FIRST_SEGMENT_NUM));
+        List<Representation> representations = getRepresentations(manifest);
+        List<SegmentUrls> urls = new ArrayList<>();
+        List<Timeline> timelines = new ArrayList<>();
+
+        for (Representation representation : representations) {
+            Object segmentList = LiveSegmentIndex.getObject(sSegmentBase, representation);
+            urls.add((SegmentUrls) LiveSegmentIndex.getObject(sMediaSegments, segmentList));
+            timelines.add((Timeline) LiveSegmentIndex.getObject(sSegmentTimeline, segmentList));
+        }
+
+        assertEquals(VIDEO_REPRESENTATION_COUNT + AUDIO_REPRESENTATION_COUNT, representations.size());
+
+        int partCount = REFRESH_COUNT / 10;
+        long firstPartNs = 0;
+        long lastPartNs = 0;
+
+        for (int i = 1; i <= REFRESH_COUNT; i++) {
+            InputStream newManifest = createManifest(FIRST_SEGMENT_NUM + i);
+
+            long startTimeNs = System.nanoTime();
+            DashManifest result = parser.parse(uri, newManifest);
+            long refreshNs = System.nanoTime() - startTimeNs;
+
+            if (i <= partCount) {
+                firstPartNs += refreshNs;
+            } else if (i > REFRESH_COUNT - partCount) {
+                lastPartNs += refreshNs;
+            }
+
+            // The first manifest is continued
+            assertSame(manifest, result);
+
+            for (int j = 0; j < representations.size(); j++) {
+                assertEquals(WINDOW_SEGMENT_COUNT + i, urls.get(j).size());
+                assertEquals(WINDOW_SEGMENT_COUNT + i, timelines.get(j).size());
+            }
+        }
+
+        int segmentCount = WINDOW_SEGMENT_COUNT + REFRESH_COUNT;
+
+        for (int j = 0; j < representations.size(); j++) {
+            Representation representation = representations.get(j);
+            SegmentUrls segmentUrls = urls.get(j);
+            Timeline timeline = timelines.get(j);
+
+            // Retained size: one run per list
+            assertEquals(1, segmentUrls.getRunCount());
+            assertEquals(1, timeline.getRunCount());
+            assertEquals(segmentCount, representation.getIndex().getSegmentCount(C.TIME_UNSET));
+            assertEquals(createSegmentUri(FIRST_SEGMENT_NUM + REFRESH_COUNT), getReferenceUri(segmentUrls.get(segmentCount - 1)));
+            assertEquals(getLong(sStartTime, timeline.get(0)) + SEGMENT_DURATION_MS * (segmentCount - 1),
+                    getLong(sStartTime, timeline.get(segmentCount - 1)));
+        }
+
+        long firstPartMs = firstPartNs / 1_000_000;
+        long lastPartMs = lastPartNs / 1_000_000;
+
+        assertTrue(String.format("First %s refreshes %s ms", partCount, firstPartMs), firstPartMs < MAX_REFRESH_MS * partCount);
+        // 1 ms per refresh for the noise
+        assertTrue(String.format("Last %s refreshes %s ms, first %s ms", partCount, lastPartMs, firstPartMs),
+                lastPartMs <= firstPartMs * 2 + partCount);
+    }
+
+    /**
+     * Manifest of the live stream with the window of the segments that ends at the segment
+     */
+    private static InputStream createManifest(long lastSegmentNum) {
+        long firstSegmentNum = lastSegmentNum - WINDOW_SEGMENT_COUNT + 1;
+        StringBuilder segments = new StringBuilder();
+        segments.append("<SegmentList presentationTimeOffset=\"").append(firstSegmentNum * SEGMENT_DURATION_MS)
+                .append("\" startNumber=\"").append(firstSegmentNum).append("\" timescale=\"1000\">")
+                .append("<SegmentTimeline><S t=\"").append(firstSegmentNum * SEGMENT_DURATION_MS).append("\" d=\"").append(SEGMENT_DURATION_MS)
+                .append("\" r=\"").append(WINDOW_SEGMENT_COUNT - 1).append("\"/></SegmentTimeline>");
+
+        for (long num = firstSegmentNum; num <= lastSegmentNum; num++) {
+            segments.append("<SegmentURL media=\"").append(createSegmentUri(num)).append("\"/>");
+        }
+
+        segments.append("</SegmentList>");
+
+        StringBuilder manifest = new StringBuilder();
+        manifest.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\" type=\"dynamic\" profiles=\"urn:mpeg:dash:profile:isoff-live:2011\"")
+                .append(" availabilityStartTime=\"2020-09-13T12:00:00\" minimumUpdatePeriod=\"PT5S\" timeShiftBufferDepth=\"PT60S\"")
+                .append(" minBufferTime=\"PT1.5S\"><Period start=\"PT0S\">");
+
+        manifest.append("<AdaptationSet id=\"0\" mimeType=\"video/mp4\">");
+        for (int i = 0; i < VIDEO_REPRESENTATION_COUNT; i++) {
+            manifest.append("<Representation id=\"").append(130 + i).append("\" codecs=\"avc1.4d401f\" bandwidth=\"")
+                    .append(500_000 * (i + 1)).append("\" width=\"1920\" height=\"1080\">")
+                    .append("<BaseURL>https://host/videoplayback/itag/").append(130 + i).append("/</BaseURL>")
+                    .append(segments).append("</Representation>");
+        }
+        manifest.append("</AdaptationSet>");
+
+        manifest.append("<AdaptationSet id=\"1\" mimeType=\"audio/mp4\">");
+        for (int i = 0; i < AUDIO_REPRESENTATION_COUNT; i++) {
+            manifest.append("<Representation id=\"").append(140 + i).append("\" codecs=\"mp4a.40.2\" bandwidth=\"")
+                    .append(64_000 * (i + 1)).append("\" audioSamplingRate=\"48000\">")
+                    .append("<BaseURL>https://host/videoplayback/itag/").append(140 + i).append("/</BaseURL>")
+                    .append(segments).append("</Representation>");
+        }
+        manifest.append("</AdaptationSet>");
+
+        manifest.append("</Period></MPD>");
+
+        return new ByteArrayInputStream(manifest.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String createSegmentUri(long segmentNum) {
+        return "sq/" + segmentNum + "/lmt/" + (1_600_000_000 + segmentNum * 5_000);
+    }
+
+    private static List<Representation> getRepresentations(DashManifest manifest) {
+        List<Representation> result = new ArrayList<>();
+
+        for (AdaptationSet adaptationSet : manifest.getPeriod(0).adaptationSets) {
+            result.addAll(adaptationSet.representations);
+        }
+
+        return result;
+    }
+
+    private static List<RangedUri> createSegments(int count, long firstNum, long firstLmt, long lmtStep) {
+        List<RangedUri> result = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            result.add(new RangedUri(PREFIX + "sq/" + (firstNum + i) + "/lmt/" + (firstLmt + lmtStep * i) + "/file.mp4", 0, -1));
+        }
+
+        return result;
+    }
+
+    private static void assertUrlsEqual(List<RangedUri> expected, List<RangedUri> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            RangedUri expectedUri = expected.get(i);
+            RangedUri actualUri = actual.get(i);
+            assertEquals("Index " + i, getReferenceUri(expectedUri), getReferenceUri(actualUri));
+            assertEquals(expectedUri.start, actualUri.start);
+            assertEquals(expectedUri.length, actualUri.length);
+        }
+    }
+
+    private static void assertElementsEqual(List<SegmentTimelineElement> expected, List<SegmentTimelineElement> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("Index " + i, getLong(sStartTime, expected.get(i)), getLong(sStartTime, actual.get(i)));
+            assertEquals("Index " + i, getLong(sDuration, expected.get(i)), getLong(sDuration, actual.get(i)));
+        }
+    }
+
+    private static void assertOutOfBounds(List<?> list, int index) {
+        try {
+            list.get(index);
+            fail("No exception for " + index);
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+
+    private static String getReferenceUri(RangedUri segment) {
+        return LiveSegmentIndex.getReferenceUri(segment);
+    }
+
+    private static long getLong(Field field, Object target) {
+        return LiveSegmentIndex.getLong(field, target);
+    }
+}
@@ -0,0 +1,127 @@
+package com.liskovsoft.smartyoutubetv2.common.exoplayer.other;
+
+import androidx.media3.common.text.Cue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Replay of the rolling caption patterns and the regular captions
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CueDeduplicatorTest {
+    private CueDeduplicator mDeduplicator;
+
+    @Before
+    public void setUp() {
+        mDeduplicator = new CueDeduplicator();
+        mDeduplicator.setRolling(true);
+    }
+
+    @Test
+    public void testVttCarrier() {
+        assertEquals("hello world", text(mDeduplicator.processText("hello world")));
+        // Previous line is repeated as a separate cue
+        assertNull(mDeduplicator.processText("hello world\n"));
+        assertEquals("how are you", text(mDeduplicator.processText("how are you")));
+    }
+
+    @Test
+    public void testTtmlTwoLines() {
+        assertEquals("line one", text(mDeduplicator.processText("line one")));
+        assertEquals("line two", text(mDeduplicator.processText("line one\nline two")));
+        assertEquals("line three", text(mDeduplicator.processText("line two\nline three")));
+    }
+
+    @Test
+    public void testSingleLineAppend() {
+        assertEquals("the quick", text(mDeduplicator.processText("the quick")));
+        assertEquals("brown fox", text(mDeduplicator.processText("the quick brown fox")));
+        // Not a word boundary
+        assertEquals("the quickest", text(mDeduplicator.processText("the quickest")));
+    }
+
+    @Test
+    public void testReplay() {
+        List<String> output = new ArrayList<>();
+
+        for (String text : Arrays.asList("so today", "so today we", "so today we will", "so today we will\n",
+                "talk about", "so today we will\ntalk about", "talk about\ncaptions")) {
+            CharSequence newText = mDeduplicator.processText(text);
+
+            if (newText != null) {
+                output.add(newText.toString());
+            }
+        }
+
+        assertEquals(Arrays.asList("so today", "we", "will", "talk about", "captions"), output);
+    }
+
+    @Test
+    public void testCueOnScreenReused() {
+        List<Cue> cues = Collections.singletonList(createCue("hello"));
+
+        List<Cue> first = mDeduplicator.process(cues);
+        List<Cue> second = mDeduplicator.process(Collections.singletonList(createCue("hello")));
+
+        assertEquals(Collections.singletonList("hello"), texts(first));
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testCueBackOnScreenChecked() {
+        assertEquals(Collections.singletonList("hello"), texts(mDeduplicator.process(Collections.singletonList(createCue("hello")))));
+        mDeduplicator.process(Collections.emptyList());
+
+        // Still in the recent lines, shouldn't come back from the cache
+        assertEquals(Collections.emptyList(), texts(mDeduplicator.process(Collections.singletonList(createCue("hello")))));
+    }
+
+    @Test
+    public void testRegularCaptionsKeepRepeats() {
+        mDeduplicator.setRolling(false);
+
+        assertEquals(Collections.singletonList("Yes."), texts(mDeduplicator.process(Collections.singletonList(createCue("Yes.")))));
+        mDeduplicator.process(Collections.emptyList());
+        assertEquals(Collections.singletonList("Yes."), texts(mDeduplicator.process(Collections.singletonList(createCue("Yes.")))));
+        assertEquals(Arrays.asList("Yes.", "Yes. Yes."),
+                texts(mDeduplicator.process(Arrays.asList(createCue("Yes."), createCue("Yes. Yes.")))));
+    }
+
+    @Test
+    public void testReset() {
+        mDeduplicator.processText("hello");
+        mDeduplicator.reset();
+
+        assertEquals("hello", text(mDeduplicator.processText("hello")));
+    }
+
+    private static Cue createCue(String text) {
+        return new Cue.Builder().setText(text).build();
+    }
+
+    private static String text(CharSequence text) {
+        return text != null ? text.toString() : null;
+    }
+
+    private static List<String> texts(List<Cue> cues) {
+        List<String> result = new ArrayList<>();
+
+        for (Cue cue : cues) {
+            result.add(cue.text.toString());
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,192 @@
+package com.liskovsoft.smartyoutubetv2.common.misc;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Backup archive round trip, reuse of the unchanged entries and the broken inputs
+ */
+public class ZipHelperTest {
+    private static final String[] PATTERNS = {".xml", ".bin", "prefs"};
+    private static final int BENCHMARK_FILE_COUNT = 300;
+    private static final long MAX_BACKUP_MS = 2_000;
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+    private File mSource;
+    private File mZip;
+    private final Random mRandom = new Random(42);
+
+    @Before
+    public void setUp() {
+        mSource = mFolder.newFolder("shared_prefs");
+        mZip = new File(mFolder.getRoot(), "backup.zip");
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        writeFile("app_prefs.xml", createPrefs(1_000));
+        writeFile("video_states.bin", createRandom(10_000));
+        writeFile("profiles_prefs/profile_prefs.xml", createPrefs(10)); // patterns are applied to the folder names too
+        writeFile("ignored.txt", createPrefs(10));
+
+        assertTrue(ZipHelper.zipFolder(mSource, mZip, PATTERNS));
+
+        // Readable by the standard implementation
+        try (ZipFile zipFile = new ZipFile(mZip)) {
+            ZipEntry entry = zipFile.getEntry("app_prefs.xml");
+            assertNotNull(entry);
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            assertEquals(null, zipFile.getEntry("ignored.txt"));
+        }
+
+        File output = mFolder.newFolder("restored");
+        assertTrue(ZipHelper.unzipToFolder(mZip, output));
+
+        assertSameFile("app_prefs.xml", output);
+        assertSameFile("video_states.bin", output);
+        assertSameFile("profiles_prefs/profile_prefs.xml", output);
+        assertFalse(new File(output, "ignored.txt").exists());
+    }
+
+    @Test
+    public void testUnchangedEntriesReused() throws IOException {
+        writeFile("a_prefs.xml", createPrefs(1_000));
+        writeFile("b_prefs.xml", createPrefs(1_000));
+
+        assertTrue(ZipHelper.zipFolder(mSource, mZip, PATTERNS));
+
+        // Same size, new content
+        File changed = writeFile("b_prefs.xml", createPrefs(1_000));
+        changed.setLastModified(changed.lastModified() + 10_000);
+
+        assertTrue(ZipHelper.zipFolder(mSource, mZip, PATTERNS));
+
+        File output = mFolder.newFolder("restored");
+        assertTrue(ZipHelper.unzipToFolder(mZip, output));
+
+        assertSameFile("a_prefs.xml", output);
+        assertSameFile("b_prefs.xml", output);
+    }
+
+    @Test
+    public void testEmptyFolder() {
+        assertTrue(ZipHelper.zipFolder(mSource, mZip, PATTERNS));
+
+        File output = mFolder.newFolder("restored");
+        assertTrue(ZipHelper.unzipToFolder(mZip, output));
+
+        String[] files = output.list();
+        assertNotNull(files);
+        assertEquals(0, files.length);
+    }
+
+    @Test
+    public void testTruncatedArchive() throws IOException {
+        writeFile("app_prefs.xml", createPrefs(10_000));
+
+        assertTrue(ZipHelper.zipFolder(mSource, mZip, PATTERNS));
+
+        byte[] data = Files.readAllBytes(mZip.toPath());
+        byte[] truncated = Arrays.copyOf(data, data.length / 2);
+
+        assertFalse(ZipHelper.unzipToFolder(new ByteArrayInputStream(truncated), mFolder.newFolder("restored")));
+    }
+
+    @Test
+    public void testCorruptedManifest() throws IOException {
+        writeFile("app_prefs.xml", createPrefs(1_000));
+
+        assertTrue(ZipHelper.zipFolder(mSource, mZip, PATTERNS));
+
+        try (FileOutputStream out = new FileOutputStream(new File(mZip.getPath() + ".manifest"))) {
+            out.write(createRandom(100));
+        }
+
+        // Falls back to the full compression
+        assertTrue(ZipHelper.zipFolder(mSource, mZip, PATTERNS));
+
+        File output = mFolder.newFolder("restored");
+        assertTrue(ZipHelper.unzipToFolder(mZip, output));
+        assertSameFile("app_prefs.xml", output);
+    }
+
+    /**
+     * First backup vs repeated backup of the unchanged profile vs restore
+     */
+    @Test
+    public void benchmarkSyntheticProfile() throws IOException {
+        long sourceSize = 0;
+
+        for (int i = 0; i < BENCHMARK_FILE_COUNT; i++) {
+            sourceSize += writeFile("file" + i + "_prefs.xml", createPrefs(100 + mRandom.nextInt(2_000))).length();
+        }
+
+        long startTimeMs = System.currentTimeMillis();
+        assertTrue(ZipHelper.zipFolder(mSource, mZip, PATTERNS));
+        long firstMs = System.currentTimeMillis() - startTimeMs;
+
+        startTimeMs = System.currentTimeMillis();
+        assertTrue(ZipHelper.zipFolder(mSource, mZip, PATTERNS));
+        long repeatMs = System.currentTimeMillis() - startTimeMs;
+
+        File output = mFolder.newFolder("restored");
+        startTimeMs = System.currentTimeMillis();
+        assertTrue(ZipHelper.unzipToFolder(mZip, output));
+        long restoreMs = System.currentTimeMillis() - startTimeMs;
+
+        assertSameFile("file0_prefs.xml", output);
+        assertTrue(String.format("First backup %s ms, restore %s ms", firstMs, restoreMs), firstMs < MAX_BACKUP_MS && restoreMs < MAX_BACKUP_MS);
+        // Unchanged entries are copied without the compression
+        assertTrue(String.format("Repeated backup %s ms, first backup %s ms", repeatMs, firstMs), repeatMs <= firstMs);
+        assertTrue(String.format("Archive %s KB, source %s KB", mZip.length() / 1024, sourceSize / 1024), mZip.length() < sourceSize / 2);
+    }
+
+    private File writeFile(String name, byte[] content) throws IOException {
+        File file = new File(mSource, name);
+        file.getParentFile().mkdirs();
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+
+        return file;
+    }
+
+    private void assertSameFile(String name, File outputFolder) throws IOException {
+        assertArrayEquals(Files.readAllBytes(new File(mSource, name).toPath()), Files.readAllBytes(new File(outputFolder, name).toPath()));
+    }
+
+    private byte[] createPrefs(int count) {
+        StringBuilder result = new StringBuilder("<map>\n");
+
+        for (int i = 0; i < count; i++) {
+            result.append("<string name=\"key").append(i).append("\">").append(mRandom.nextInt()).append("</string>\n");
+        }
+
+        return result.append("</map>\n").toString().getBytes();
+    }
+
+    private byte[] createRandom(int size) {
+        byte[] result = new byte[size];
+        mRandom.nextBytes(result);
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package com.liskovsoft.smartyoutubetv2.common.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Results should be the same as the per-pattern contains() check that the chat filter used before
+ */
+public class MultiPatternMatcherTest {
+    @Test
+    public void testOverlappingPatterns() {
+        List<String> patterns = Arrays.asList("he", "she", "his", "hers");
+
+        assertMatchesNaive(patterns, "ushers");
+        assertMatchesNaive(patterns, "sh");
+        assertMatchesNaive(patterns, "hi");
+        assertMatchesNaive(patterns, "this");
+        assertTrue(new MultiPatternMatcher(patterns).matches("ushers"));
+        assertFalse(new MultiPatternMatcher(patterns).matches("shi"));
+    }
+
+    @Test
+    public void testPatternInsideAnotherPattern() {
+        // "bc" ends inside "abcd", reachable only through the fail link
+        List<String> patterns = Arrays.asList("abcd", "bc");
+
+        assertTrue(new MultiPatternMatcher(patterns).matches("xabcx"));
+        assertTrue(new MultiPatternMatcher(Arrays.asList("abcd", "bcx")).matches("abcx"));
+        assertFalse(new MultiPatternMatcher(Arrays.asList("abcd", "bcy")).matches("abcx"));
+        assertMatchesNaive(patterns, "xabcx");
+        assertMatchesNaive(patterns, "abd");
+    }
+
+    @Test
+    public void testRepeatedPrefix() {
+        List<String> patterns = Collections.singletonList("aab");
+
+        assertTrue(new MultiPatternMatcher(patterns).matches("aaab"));
+        assertTrue(new MultiPatternMatcher(patterns).matches("aaaaaab"));
+        assertFalse(new MultiPatternMatcher(patterns).matches("abab"));
+    }
+
+    @Test
+    public void testCaseInsensitive() {
+        MultiPatternMatcher matcher = new MultiPatternMatcher(Arrays.asList("SpamBot", "free gift"));
+
+        assertTrue(matcher.matches("SPAMBOT_123"));
+        assertTrue(matcher.matches("Get your FREE Gift now"));
+        assertFalse(matcher.matches("spam bot"));
+    }
+
+    @Test
+    public void testEmptyPatterns() {
+        assertTrue(new MultiPatternMatcher(null).isEmpty());
+        assertTrue(new MultiPatternMatcher(Arrays.asList("", null)).isEmpty());
+        assertFalse(new MultiPatternMatcher(Collections.emptyList()).matches("text"));
+        assertFalse(new MultiPatternMatcher(Collections.singletonList("text")).matches(null));
+        assertFalse(new MultiPatternMatcher(Collections.singletonList("text")).matches(""));
+    }
+
+    @Test
+    public void testRandomAgainstNaive() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 1_000; round++) {
+            List<String> patterns = new ArrayList<>();
+            int patternCount = 1 + random.nextInt(8);
+
+            for (int i = 0; i < patternCount; i++) {
+                patterns.add(randomText(random, 1 + random.nextInt(4)));
+            }
+
+            for (int i = 0; i < 20; i++) {
+                assertMatchesNaive(patterns, randomText(random, random.nextInt(16)));
+            }
+        }
+    }
+
+    private static void assertMatchesNaive(List<String> patterns, String text) {
+        assertEquals(patterns + " in " + text, containsAny(text, patterns), new MultiPatternMatcher(patterns).matches(text));
+    }
+
+    /**
+     * Previous per-pattern implementation
+     */
+    private static boolean containsAny(String text, List<String> patterns) {
+        for (String pattern : patterns) {
+            if (text.toLowerCase().contains(pattern.toLowerCase())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Small alphabet to get a lot of the overlaps
+     */
+    private static String randomText(Random random, int length) {
+        String alphabet = "abcAB";
+        StringBuilder result = new StringBuilder();
+
+        for (int i = 0; i < length; i++) {
+            result.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+
+        return result.toString();
+    }
+}
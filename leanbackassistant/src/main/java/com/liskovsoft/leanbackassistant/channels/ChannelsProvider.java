@@ -2,6 +2,8 @@ package com.liskovsoft.leanbackassistant.channels;
 
 import android.annotation.TargetApi;
 import android.content.ComponentName;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
@@ -31,7 +33,9 @@ import com.liskovsoft.sharedutils.mylogger.Log;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -299,18 +303,132 @@ public class ChannelsProvider {
             return;
         }
 
-        cleanupChannel(context, channelId);
+        long startTimeMs = System.currentTimeMillis();
+
+        List<PreviewProgram> duplicates = new ArrayList<>();
+        Map<String, PreviewProgram> published = getPublishedPrograms(context, channelId, duplicates);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        // Clips that waiting for the program id from the insert operation with the same index
+        List<Clip> insertedClips = new ArrayList<>();
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
 
         int weight = clips.size();
         for (int i = 0; i < clips.size(); ++i, --weight) {
             Clip clip = clips.get(i);
 
-            publishProgram(context, clip, channelId, weight);
+            if (clip.getVideoUrl() == null) {
+                // Seems like this is an ads
+                continue;
+            }
+
+            ContentValues values = createProgramBuilder(context, clip)
+                    .setWeight(weight)
+                    .setChannelId(channelId)
+                    .build().toContentValues();
+
+            PreviewProgram program = published.remove(getProgramKey(clip.getContentId(), clip.getClipId()));
+
+            if (program == null) {
+                clip.setProgramId(-1);
+                operations.add(ContentProviderOperation.newInsert(PREVIEW_PROGRAMS_CONTENT_URI).withValues(values).build());
+                insertedClips.add(clip);
+                inserted++;
+                continue;
+            }
+
+            clip.setProgramId(program.getId());
+
+            if (isSameProgram(program, values)) {
+                unchanged++;
+                continue;
+            }
+
+            operations.add(ContentProviderOperation.newUpdate(TvContractCompat.buildPreviewProgramUri(program.getId())).withValues(values).build());
+            insertedClips.add(null);
+            updated++;
+        }
+
+        // Not in the playlist anymore
+        duplicates.addAll(published.values());
+
+        for (PreviewProgram program : duplicates) {
+            operations.add(ContentProviderOperation.newDelete(TvContractCompat.buildPreviewProgramUri(program.getId())).build());
+            insertedClips.add(null);
         }
+
+        if (!operations.isEmpty()) {
+            try {
+                ContentProviderResult[] results = context.getContentResolver().applyBatch(TvContractCompat.AUTHORITY, operations);
+
+                for (int i = 0; i < results.length; i++) {
+                    Clip clip = insertedClips.get(i);
+
+                    if (clip != null && results[i].uri != null) {
+                        clip.setProgramId(ContentUris.parseId(results[i].uri));
+                    }
+                }
+            } catch (Exception e) { // RemoteException, OperationApplicationException, SecurityException
+                Log.e(TAG, "Batch update of channel %s failed: %s", channelId, e.getMessage());
+                return;
+            }
+        }
+
+        Log.d(TAG, "Channel %s synced in %s ms: %s inserted, %s updated, %s deleted, %s unchanged",
+                channelId, System.currentTimeMillis() - startTimeMs, inserted, updated, duplicates.size(), unchanged);
     }
 
-    private static void cleanupChannel(Context context, long channelId) {
-        context.getContentResolver().delete(TvContractCompat.buildPreviewProgramsUriForChannel(channelId), null, null);
+    /**
+     * Programs of the channel mapped by the content id. Programs with the same content id are added to the duplicates.
+     */
+    private static Map<String, PreviewProgram> getPublishedPrograms(Context context, long channelId, List<PreviewProgram> duplicates) {
+        Map<String, PreviewProgram> result = new LinkedHashMap<>();
+
+        try (Cursor cursor = context.getContentResolver().query(
+                TvContractCompat.buildPreviewProgramsUriForChannel(channelId), PreviewProgram.PROJECTION, null, null, null)) {
+            if (cursor == null) {
+                return result;
+            }
+
+            while (cursor.moveToNext()) {
+                PreviewProgram program = PreviewProgram.fromCursor(cursor);
+                String key = getProgramKey(program.getContentId(), program.getInternalProviderId());
+
+                if (result.containsKey(key)) {
+                    duplicates.add(program);
+                } else {
+                    result.put(key, program);
+                }
+            }
+        } catch (Exception e) { // channels not supported
+            Log.e(TAG, "Can't query programs of channel %s: %s", channelId, e.getMessage());
+        }
+
+        return result;
+    }
+
+    private static String getProgramKey(String contentId, String providerId) {
+        return contentId != null ? contentId : providerId;
+    }
+
+    /**
+     * Compares only the columns that we publish. Other columns (e.g. browsable) could be changed by the launcher.
+     */
+    private static boolean isSameProgram(PreviewProgram program, ContentValues values) {
+        ContentValues publishedValues = program.toContentValues();
+
+        for (String key : values.keySet()) {
+            Object value = values.get(key);
+            Object publishedValue = publishedValues.get(key);
+
+            if (!TextUtils.equals(value != null ? value.toString() : null, publishedValue != null ? publishedValue.toString() : null)) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     @WorkerThread
@@ -372,40 +490,6 @@ public class ChannelsProvider {
         }
     }
 
-    private static void publishProgram(Context context, Clip clip, long channelId, int weight) {
-        if (clip.getProgramId() != -1) {
-            Log.e(TAG, "Clip already published. Skipping...");
-            return;
-        }
-
-        if (clip.getVideoUrl() == null) {
-            // Seems like this is an ads
-            Log.e(TAG, "Clip doesn't contain url. Skipping...");
-            return;
-        }
-
-        PreviewProgram.Builder builder =
-                createProgramBuilder(context, clip)
-                        .setWeight(weight)
-                        .setChannelId(channelId);
-
-        Uri programUri = null;
-
-        try {
-            programUri = context.getContentResolver().insert(PREVIEW_PROGRAMS_CONTENT_URI, builder.build().toContentValues());
-        } catch (Exception e) {
-            Log.e(TAG, e.getMessage());
-            e.printStackTrace();
-        }
-
-        if (programUri == null || programUri.equals(Uri.EMPTY)) {
-            Log.e(TAG, "Insert program failed");
-            return;
-        }
-
-        clip.setProgramId(ContentUris.parseId(programUri));
-    }
-
     static String decodeVideoId(Uri uri) {
         List<String> paths = uri.getPathSegments();
         if (paths.size() == 2 && TextUtils.equals(paths.get(0), PLAY_VIDEO_ACTION_PATH)) {
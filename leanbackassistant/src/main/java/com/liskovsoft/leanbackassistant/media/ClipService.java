@@ -4,6 +4,7 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 
 import com.liskovsoft.leanbackassistant.R;
+import com.liskovsoft.leanbackassistant.search.LocalSearchIndex;
 import com.liskovsoft.mediaserviceinterfaces.data.MediaGroup;
 import com.liskovsoft.mediaserviceinterfaces.ContentService;
 
@@ -79,7 +80,16 @@ public class ClipService {
         Playlist playlist = new Playlist(
                 mContext.getResources().getString(titleResId),
                 Integer.toString(id),
-                callback,
+                contentService -> {
+                    MediaGroup group = callback.call(contentService);
+
+                    // Feed the global search
+                    if (group != null) {
+                        LocalSearchIndex.instance(mContext).add(group.getMediaItems());
+                    }
+
+                    return group;
+                },
                 isDefault);
         playlist.setChannelKey(channelId);
         playlist.setProgramsKey(programId);
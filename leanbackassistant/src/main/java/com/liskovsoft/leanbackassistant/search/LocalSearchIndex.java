@@ -0,0 +1,385 @@
+package com.liskovsoft.leanbackassistant.search;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+
+import com.liskovsoft.mediaserviceinterfaces.data.MediaItem;
+import com.liskovsoft.sharedutils.mylogger.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline index of the videos that the user has already seen: subscriptions, history, recommended and previous searches.<br/>
+ * Matches the words of the title and the author by prefix. Bounded by size, the least recently seen videos are evicted first.<br/>
+ * Loaded and persisted in background.
+ */
+public class LocalSearchIndex {
+    private static final String TAG = LocalSearchIndex.class.getSimpleName();
+    private static final String FILE_NAME = "local_search_index.bin";
+    private static final int VERSION = 1;
+    static final int MAX_SIZE = 3_000;
+    private static final long PERSIST_DELAY_MS = 10_000;
+    @SuppressLint("StaticFieldLeak")
+    private static LocalSearchIndex sInstance;
+    private final Context mContext;
+    // Access ordered: the least recently seen first
+    private final LinkedHashMap<Integer, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    // Word -> videos that contain it
+    private final TreeMap<String, Set<Entry>> mWords = new TreeMap<>();
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    private boolean mIsPersistPending;
+    private long mSeenCounter;
+
+    public static class Entry {
+        public final int id;
+        public final String videoId;
+        public final String channelId;
+        public final String title;
+        public final String secondTitle;
+        public final String author;
+        public final String cardImageUrl;
+        public final String contentType;
+        public final String productionDate;
+        public final long durationMs;
+        public final boolean isLive;
+        private final String[] mWords;
+        private long mSeenIndex;
+
+        Entry(int id, String videoId, String channelId, String title, String secondTitle, String author,
+                      String cardImageUrl, String contentType, String productionDate, long durationMs, boolean isLive) {
+            this.id = id;
+            this.videoId = videoId;
+            this.channelId = channelId;
+            this.title = title;
+            this.secondTitle = secondTitle;
+            this.author = author;
+            this.cardImageUrl = cardImageUrl;
+            this.contentType = contentType;
+            this.productionDate = productionDate;
+            this.durationMs = durationMs;
+            this.isLive = isLive;
+            mWords = splitWords(author != null ? title + " " + author : title);
+        }
+
+        private static Entry from(MediaItem item) {
+            return new Entry(item.getId(), item.getVideoId(), item.getChannelId(), item.getTitle(),
+                    item.getSecondTitle() != null ? item.getSecondTitle().toString() : null, item.getAuthor(),
+                    item.getCardImageUrl(), item.getContentType(), item.getProductionDate(), item.getDurationMs(), item.isLive());
+        }
+
+        private boolean hasWordPrefix(String prefix) {
+            for (String word : mWords) {
+                if (word.startsWith(prefix)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    LocalSearchIndex(Context context) {
+        mContext = context;
+        mExecutor.execute(this::load);
+    }
+
+    public static synchronized LocalSearchIndex instance(Context context) {
+        if (sInstance == null) {
+            sInstance = new LocalSearchIndex(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Add new or refresh the existing videos
+     */
+    public void add(Collection<MediaItem> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+
+        for (MediaItem item : items) {
+            if (item == null || item.getTitle() == null || (item.getVideoId() == null && item.getChannelId() == null)) {
+                continue;
+            }
+
+            entries.add(Entry.from(item));
+        }
+
+        addEntries(entries);
+    }
+
+    void addEntries(Collection<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            for (Entry entry : entries) {
+                put(entry);
+            }
+
+            trimToSize();
+        }
+
+        persistLater();
+    }
+
+    public synchronized Entry findById(int id) {
+        return mEntries.get(id);
+    }
+
+    /**
+     * Every word of the query should be a prefix of some word of the title or the author.<br/>
+     * The most recently seen videos first.
+     */
+    public List<Entry> search(String query, int limit) {
+        long startTimeNs = System.nanoTime();
+
+        String[] queryWords = splitWords(query);
+
+        if (queryWords.length == 0) {
+            return Collections.emptyList();
+        }
+
+        List<Entry> result = new ArrayList<>();
+
+        synchronized (this) {
+            // The longest word is the most selective one
+            String longestWord = queryWords[0];
+            for (String word : queryWords) {
+                if (word.length() > longestWord.length()) {
+                    longestWord = word;
+                }
+            }
+
+            Set<Entry> candidates = new HashSet<>();
+            for (Set<Entry> entries : mWords.subMap(longestWord, longestWord + Character.MAX_VALUE).values()) {
+                candidates.addAll(entries);
+            }
+
+            for (Entry entry : candidates) {
+                if (matchesAll(entry, queryWords)) {
+                    result.add(entry);
+                }
+            }
+        }
+
+        Collections.sort(result, (o1, o2) -> Long.compare(o2.mSeenIndex, o1.mSeenIndex));
+
+        if (result.size() > limit) {
+            result = new ArrayList<>(result.subList(0, limit));
+        }
+
+        Log.d(TAG, "Local search '%s': %s results in %s us", query, result.size(), (System.nanoTime() - startTimeNs) / 1_000);
+
+        return result;
+    }
+
+    private static boolean matchesAll(Entry entry, String[] queryWords) {
+        for (String word : queryWords) {
+            if (!entry.hasWordPrefix(word)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void put(Entry entry) {
+        Entry old = mEntries.remove(entry.id);
+
+        if (old != null) {
+            unindex(old);
+        }
+
+        entry.mSeenIndex = ++mSeenCounter;
+        mEntries.put(entry.id, entry);
+
+        for (String word : entry.mWords) {
+            Set<Entry> entries = mWords.get(word);
+
+            if (entries == null) {
+                entries = new HashSet<>();
+                mWords.put(word, entries);
+            }
+
+            entries.add(entry);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (String word : entry.mWords) {
+            Set<Entry> entries = mWords.get(word);
+
+            if (entries != null) {
+                entries.remove(entry);
+
+                if (entries.isEmpty()) {
+                    mWords.remove(word);
+                }
+            }
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+
+        while (mEntries.size() > MAX_SIZE && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            unindex(entry);
+        }
+    }
+
+    private static String[] splitWords(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+
+        List<String> result = new ArrayList<>();
+
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+")) {
+            if (!word.isEmpty() && !result.contains(word)) {
+                result.add(word);
+            }
+        }
+
+        return result.toArray(new String[0]);
+    }
+
+    private synchronized void persistLater() {
+        if (mIsPersistPending) {
+            return;
+        }
+
+        mIsPersistPending = true;
+        mExecutor.schedule(this::persist, PERSIST_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private File getFile() {
+        return new File(mContext.getCacheDir(), FILE_NAME);
+    }
+
+    void load() {
+        long startTimeMs = System.currentTimeMillis();
+        File file = getFile();
+
+        if (!file.exists()) {
+            return;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION) {
+                return;
+            }
+
+            int size = in.readInt();
+
+            for (int i = 0; i < size; i++) {
+                entries.add(new Entry(in.readInt(), readString(in), readString(in), readString(in), readString(in), readString(in),
+                        readString(in), readString(in), readString(in), in.readLong(), in.readBoolean()));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Can't load index: %s", e.getMessage());
+        }
+
+        synchronized (this) {
+            // Keep the videos that were added while loading as most recent ones
+            List<Entry> recent = new ArrayList<>(mEntries.values());
+            mEntries.clear();
+            mWords.clear();
+
+            for (Entry entry : entries) {
+                put(entry);
+            }
+
+            for (Entry entry : recent) {
+                put(entry);
+            }
+
+            trimToSize();
+        }
+
+        Log.d(TAG, "Loaded %s videos in %s ms", entries.size(), System.currentTimeMillis() - startTimeMs);
+    }
+
+    void persist() {
+        long startTimeMs = System.currentTimeMillis();
+        List<Entry> entries;
+
+        synchronized (this) {
+            mIsPersistPending = false;
+            entries = new ArrayList<>(mEntries.values());
+        }
+
+        File file = getFile();
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+
+            for (Entry entry : entries) {
+                out.writeInt(entry.id);
+                writeString(out, entry.videoId);
+                writeString(out, entry.channelId);
+                writeString(out, entry.title);
+                writeString(out, entry.secondTitle);
+                writeString(out, entry.author);
+                writeString(out, entry.cardImageUrl);
+                writeString(out, entry.contentType);
+                writeString(out, entry.productionDate);
+                out.writeLong(entry.durationMs);
+                out.writeBoolean(entry.isLive);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Can't persist index: %s", e.getMessage());
+            return;
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            Log.e(TAG, "Can't replace index file");
+            return;
+        }
+
+        Log.d(TAG, "Persisted %s videos in %s ms", entries.size(), System.currentTimeMillis() - startTimeMs);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
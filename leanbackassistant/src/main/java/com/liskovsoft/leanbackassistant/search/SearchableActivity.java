@@ -54,6 +54,12 @@ public class SearchableActivity extends Activity {
             return video.getVideoId() != null ? ServiceHelper.videoIdToFullUrl(video.getVideoId()) : ServiceHelper.channelIdToFullUrl(video.getChannelId());
         }
 
+        LocalSearchIndex.Entry entry = LocalSearchIndex.instance(this).findById(id);
+
+        if (entry != null) {
+            return entry.videoId != null ? ServiceHelper.videoIdToFullUrl(entry.videoId) : ServiceHelper.channelIdToFullUrl(entry.channelId);
+        }
+
         return null;
     }
 }
@@ -3,11 +3,13 @@ package com.liskovsoft.leanbackassistant.search;
 import android.app.SearchManager;
 import android.content.ContentProvider;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
 import android.provider.BaseColumns;
+import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.liskovsoft.leanbackassistant.R;
@@ -15,16 +17,20 @@ import com.liskovsoft.mediaserviceinterfaces.data.MediaGroup;
 import com.liskovsoft.mediaserviceinterfaces.data.MediaItem;
 import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.sharedutils.rx.AppSchedulerProvider;
+import com.liskovsoft.sharedutils.rx.RxHelper;
 import com.liskovsoft.sharedutils.rx.SchedulerProvider;
 import com.liskovsoft.youtubeapi.service.YouTubeServiceManager;
 import io.reactivex.disposables.CompositeDisposable;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Provides global search on the app's movie service.<br/>
  * The assistant will query this provider for results.<br/>
+ * Local results (see {@link LocalSearchIndex}) are returned immediately. Remote results are merged in when ready.<br/>
  * Note: If you provide WatchAction feeds to Google, then you do not need this class.<br/>
  * You should still handle the playback intent and media controls in your fragment.<br/>
  * This class enables <a href="https://developer.android.com/training/tv/discovery/searchable.html">on-device search.</a>.
@@ -59,8 +65,8 @@ public class VideoContentProvider extends ContentProvider {
     };
     private CompositeDisposable mDisposable;
     private SchedulerProvider mSchedulerProvider;
-    private static List<MediaItem> sCachedMediaItems = new ArrayList<>();
-    private MediaGroup mSearch;
+    private static volatile List<MediaItem> sCachedMediaItems = new ArrayList<>();
+    private static volatile String sCachedQuery;
 
     @Override
     public boolean onCreate() {
@@ -106,7 +112,7 @@ public class VideoContentProvider extends ContentProvider {
 
             //String limitStr = uri.getQueryParameter("limit");
             //int limit = limitStr != null ? Integer.parseInt(limitStr) : SEARCH_LIMIT;
-            return search(uri.getLastPathSegment(), SEARCH_LIMIT);
+            return search(uri, uri.getLastPathSegment(), SEARCH_LIMIT);
         } else {
             Log.d(TAG, "Unknown uri to query: " + uri);
             throw new IllegalArgumentException("Unknown Uri: " + uri);
@@ -114,11 +120,13 @@ public class VideoContentProvider extends ContentProvider {
     }
 
     public static MediaItem findVideoWithId(int id) {
-        if (sCachedMediaItems == null) {
+        List<MediaItem> cachedMediaItems = sCachedMediaItems;
+
+        if (cachedMediaItems == null) {
             return null;
         }
 
-        for (MediaItem video : sCachedMediaItems) {
+        for (MediaItem video : cachedMediaItems) {
             if (video != null && video.getId() == id) {
                 return video;
             }
@@ -127,57 +135,78 @@ public class VideoContentProvider extends ContentProvider {
         return null;
     }
 
-    private Cursor search(String query, int limit) {
+    private Cursor search(Uri uri, String query, int limit) {
         MatrixCursor matrixCursor = new MatrixCursor(queryProjection);
 
-        List<MediaGroup> searchRows = YouTubeServiceManager.instance().getContentService().getSearch(query);
-        mSearch = searchRows != null && !searchRows.isEmpty() ? searchRows.get(0) : null;
+        List<LocalSearchIndex.Entry> localResults = LocalSearchIndex.instance(getContext()).search(query, limit);
+
+        if (!TextUtils.equals(query, sCachedQuery)) {
+            if (localResults.isEmpty()) {
+                // Nothing to show. Wait for the remote results.
+                searchRemote(getContext(), query, limit);
+            } else {
+                // The launcher will repeat the query after the remote results are received
+                matrixCursor.setNotificationUri(getContext().getContentResolver(), uri);
+                RxHelper.runAsync(() -> {
+                    searchRemote(getContext(), query, limit);
+                    getContext().getContentResolver().notifyChange(uri, null);
+                });
+            }
+        }
 
-        if (mSearch != null) {
-            List<MediaItem> mediaItems = mSearch.getMediaItems();
+        Set<Integer> ids = new HashSet<>();
 
-            Log.d(TAG, "Search result received: " + mediaItems);
+        for (LocalSearchIndex.Entry entry : localResults) {
+            matrixCursor.addRow(convertEntryIntoRow(entry));
+            ids.add(entry.id);
+        }
 
-            sCachedMediaItems.clear();
+        List<MediaItem> cachedMediaItems = sCachedMediaItems;
 
-            apply(matrixCursor, mediaItems, limit);
-        } else {
-            Log.e(TAG, "Search is empty");
+        if (TextUtils.equals(query, sCachedQuery) && cachedMediaItems != null) {
+            for (MediaItem mediaItem : cachedMediaItems) {
+                if (ids.add(mediaItem.getId())) {
+                    matrixCursor.addRow(convertVideoIntoRow(mediaItem));
+                }
+            }
         }
 
-
         return matrixCursor;
     }
 
-    private void nextSearch(MatrixCursor cursor, int limit) {
-        mSearch = YouTubeServiceManager.instance().getContentService().continueGroup(mSearch);
+    private static void searchRemote(Context context, String query, int limit) {
+        long startTimeMs = System.currentTimeMillis();
 
-        if (mSearch != null) {
-            List<MediaItem> mediaItems = mSearch.getMediaItems();
+        List<MediaGroup> searchRows = YouTubeServiceManager.instance().getContentService().getSearch(query);
+        MediaGroup search = searchRows != null && !searchRows.isEmpty() ? searchRows.get(0) : null;
 
-            Log.d(TAG, "Next search result received: " + mediaItems);
+        List<MediaItem> result = new ArrayList<>();
 
-            apply(cursor, mediaItems, limit);
-        } else {
-            Log.e(TAG, "Next search is empty");
-        }
-    }
+        while (search != null && search.getMediaItems() != null) {
+            Log.d(TAG, "Search result received: " + search.getMediaItems());
 
-    private void apply(MatrixCursor matrixCursor, List<MediaItem> mediaItems, int limit) {
-        if (mediaItems != null) {
-            int idx = 0;
+            result.addAll(search.getMediaItems());
 
-            for (MediaItem mediaItem : mediaItems) {
-                matrixCursor.addRow(convertVideoIntoRow(mediaItem));
-                idx++;
+            if (result.size() >= limit) {
+                break;
             }
 
-            sCachedMediaItems.addAll(mediaItems);
+            search = YouTubeServiceManager.instance().getContentService().continueGroup(search);
+        }
 
-            if (idx < limit) {
-                nextSearch(matrixCursor, limit - idx);
-            }
+        if (result.isEmpty()) {
+            Log.e(TAG, "Search is empty");
+        } else {
+            // Available offline next time
+            LocalSearchIndex.instance(context).add(result);
+        }
+
+        synchronized (VideoContentProvider.class) {
+            sCachedMediaItems = result;
+            sCachedQuery = query;
         }
+
+        Log.d(TAG, "Remote search '%s': %s results in %s ms", query, result.size(), System.currentTimeMillis() - startTimeMs);
     }
 
     private SchedulerProvider getSchedulerProvider() {
@@ -218,6 +247,28 @@ public class VideoContentProvider extends ContentProvider {
         };
     }
 
+    private Object[] convertEntryIntoRow(LocalSearchIndex.Entry entry) {
+        return new Object[] {
+            entry.id,
+            entry.title,
+            entry.secondTitle,
+            entry.cardImageUrl,
+            entry.contentType,
+            entry.isLive,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            entry.productionDate,
+            entry.durationMs,
+            "GLOBALSEARCH",
+            entry.id
+        };
+    }
+
     @Nullable
     @Override
     public String getType(@NonNull Uri uri) {
@@ -0,0 +1,229 @@
+package com.liskovsoft.leanbackassistant.search;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prefix search, recency order, eviction, the persist/load round trip and the query cost on the full index
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LocalSearchIndexTest {
+    private static final int VOCABULARY_SIZE = 500;
+    private static final int TITLE_WORD_COUNT = 6;
+    private static final int QUERY_COUNT = 500;
+    private static final long MAX_QUERY_US = 5_000;
+    private LocalSearchIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new LocalSearchIndex(RuntimeEnvironment.getApplication());
+    }
+
+    @Test
+    public void testWordPrefixSearch() {
+        mIndex.addEntries(Arrays.asList(
+                createEntry(1, "Lofi hip hop radio", "Lofi Girl"),
+                createEntry(2, "Hip-Hop Workout Mix", "Gym Beats"),
+                createEntry(3, "Radiohead - Creep", "Radiohead")));
+
+        assertEquals(ids(2, 1), ids(mIndex.search("hip", 10)));
+        assertEquals(ids(1), ids(mIndex.search("HIP lofi", 10)));
+        assertEquals(ids(3, 1), ids(mIndex.search("radio", 10)));
+        assertEquals(ids(1), ids(mIndex.search("girl", 10))); // author
+        assertEquals(ids(), ids(mIndex.search("hop creep", 10)));
+        assertEquals(ids(), ids(mIndex.search("  ", 10)));
+    }
+
+    @Test
+    public void testRecentlySeenFirst() {
+        mIndex.addEntries(Arrays.asList(createEntry(1, "News today", null), createEntry(2, "News yesterday", null)));
+        // Seen again
+        mIndex.addEntries(Collections.singletonList(createEntry(1, "News today", null)));
+
+        assertEquals(ids(1, 2), ids(mIndex.search("news", 10)));
+        assertEquals(ids(1), ids(mIndex.search("news", 1)));
+    }
+
+    @Test
+    public void testRefreshedTitleReindexed() {
+        mIndex.addEntries(Collections.singletonList(createEntry(1, "Old title", null)));
+        mIndex.addEntries(Collections.singletonList(createEntry(1, "New title", null)));
+
+        assertEquals(ids(), ids(mIndex.search("old", 10)));
+        assertEquals(ids(1), ids(mIndex.search("new", 10)));
+    }
+
+    @Test
+    public void testLeastRecentlySeenEvicted() {
+        List<LocalSearchIndex.Entry> entries = new ArrayList<>();
+
+        for (int i = 0; i <= LocalSearchIndex.MAX_SIZE; i++) {
+            entries.add(createEntry(i, "Video " + i, null));
+        }
+
+        mIndex.addEntries(entries);
+
+        assertNull(mIndex.findById(0));
+        assertNotNull(mIndex.findById(1));
+        assertNotNull(mIndex.findById(LocalSearchIndex.MAX_SIZE));
+        assertEquals(LocalSearchIndex.MAX_SIZE, mIndex.search("video", Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testPersistRoundTrip() {
+        mIndex.addEntries(Arrays.asList(createEntry(1, "First video", "Author"), createEntry(2, "Second video", null)));
+        mIndex.persist();
+
+        LocalSearchIndex restored = new LocalSearchIndex(RuntimeEnvironment.getApplication());
+        restored.load();
+
+        LocalSearchIndex.Entry entry = restored.findById(1);
+        assertNotNull(entry);
+        assertEquals("First video", entry.title);
+        assertEquals("Author", entry.author);
+        assertEquals("video1", entry.videoId);
+        assertEquals(60_000, entry.durationMs);
+        assertTrue(entry.isLive);
+        assertNull(restored.findById(2).author);
+        assertEquals(ids(2, 1), ids(restored.search("video", 10)));
+    }
+
+    /**
+     * Broad prefix (matches most of the entries) and selective tokens on the index of the max size.<br/>
+     * Token query should be cheaper than the plain scan of the titles.
+     */
+    @Test
+    public void benchmarkFullIndex() {
+        Random random = new Random(42);
+        List<LocalSearchIndex.Entry> entries = new ArrayList<>();
+
+        for (int i = 0; i < LocalSearchIndex.MAX_SIZE; i++) {
+            StringBuilder title = new StringBuilder();
+
+            for (int j = 0; j < TITLE_WORD_COUNT; j++) {
+                title.append(createWord(random.nextInt(VOCABULARY_SIZE))).append(' ');
+            }
+
+            entries.add(createEntry(i, title.toString().trim(), "Author" + (i % 100)));
+        }
+
+        mIndex.addEntries(entries);
+
+        String[] prefixQueries = new String[QUERY_COUNT];
+        String[] tokenQueries = new String[QUERY_COUNT];
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            prefixQueries[i] = "word" + (i % 5);
+            String[] words = splitWords(entries.get(random.nextInt(entries.size())).title);
+            tokenQueries[i] = words[0] + " " + words[1];
+        }
+
+        // Warm up
+        measureSearch(prefixQueries);
+        measureSearch(tokenQueries);
+
+        long prefixUs = measureSearch(prefixQueries);
+        long tokenUs = measureSearch(tokenQueries);
+        long scanUs = measureScan(entries, tokenQueries);
+
+        assertEquals(LocalSearchIndex.MAX_SIZE, mIndex.search("author", Integer.MAX_VALUE).size());
+        assertTrue(String.format("Prefix query %s us", prefixUs), prefixUs < MAX_QUERY_US);
+        assertTrue(String.format("Token query %s us, scan %s us", tokenUs, scanUs), tokenUs < MAX_QUERY_US && tokenUs < scanUs);
+    }
+
+    /**
+     * Average time of the query, microseconds
+     */
+    private long measureSearch(String[] queries) {
+        long startTimeNs = System.nanoTime();
+
+        for (String query : queries) {
+            assertTrue(query, !mIndex.search(query, 50).isEmpty());
+        }
+
+        return (System.nanoTime() - startTimeNs) / 1_000 / queries.length;
+    }
+
+    /**
+     * Average time of the plain scan of every title, microseconds
+     */
+    private static long measureScan(List<LocalSearchIndex.Entry> entries, String[] queries) {
+        long startTimeNs = System.nanoTime();
+
+        for (String query : queries) {
+            String[] queryWords = splitWords(query);
+            int found = 0;
+
+            for (LocalSearchIndex.Entry entry : entries) {
+                if (matchesAll(splitWords(entry.title + " " + entry.author), queryWords)) {
+                    found++;
+                }
+            }
+
+            assertTrue(query, found > 0);
+        }
+
+        return (System.nanoTime() - startTimeNs) / 1_000 / queries.length;
+    }
+
+    private static boolean matchesAll(String[] words, String[] queryWords) {
+        for (String queryWord : queryWords) {
+            boolean matched = false;
+
+            for (String word : words) {
+                if (word.startsWith(queryWord)) {
+                    matched = true;
+                    break;
+                }
+            }
+
+            if (!matched) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String[] splitWords(String text) {
+        return text.toLowerCase(Locale.ROOT).split(" ");
+    }
+
+    private static String createWord(int num) {
+        return "word" + num;
+    }
+
+    private static LocalSearchIndex.Entry createEntry(int id, String title, String author) {
+        return new LocalSearchIndex.Entry(id, "video" + id, null, title, null, author,
+                null, null, null, 60_000, id % 2 == 1);
+    }
+
+    private static List<Integer> ids(Integer... ids) {
+        return Arrays.asList(ids);
+    }
+
+    private static List<Integer> ids(List<LocalSearchIndex.Entry> entries) {
+        List<Integer> result = new ArrayList<>();
+
+        for (LocalSearchIndex.Entry entry : entries) {
+            result.add(entry.id);
+        }
+
+        return result;
+    }
+}
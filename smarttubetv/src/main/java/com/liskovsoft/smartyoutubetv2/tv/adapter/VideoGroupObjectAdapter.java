@@ -5,20 +5,30 @@ import androidx.leanback.widget.Presenter;
 import androidx.leanback.widget.PresenterSelector;
 
 import com.liskovsoft.sharedutils.helpers.Helpers;
-import com.liskovsoft.sharedutils.misc.WeakHashSet;
+import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.VideoGroup;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 public class VideoGroupObjectAdapter extends ObjectAdapter {
-    private static final WeakHashSet<VideoGroupObjectAdapter> sAdapterRegistry = new WeakHashSet<>();
+    private static final String TAG = VideoGroupObjectAdapter.class.getSimpleName();
+    // Id of the last group -> adapters
+    private static final Map<Integer, Set<VideoGroupObjectAdapter>> sAdaptersByGroupId = new HashMap<>();
+    private static boolean sIsNotifying;
     private final List<Video> mVideoItems = new ArrayList<>();
     private final List<VideoGroup> mVideoGroups = new ArrayList<>(); // keep groups from being garbage collected
     private static final int TYPE_ADD = 0;
     private static final int TYPE_REMOVE = 1;
     private static final int TYPE_SYNC = 2;
+    private static final int NO_GROUP_ID = -1;
+    private int mLastGroupId = NO_GROUP_ID;
 
     public VideoGroupObjectAdapter(VideoGroup videoGroup, Presenter presenter) {
         super(presenter);
@@ -41,8 +51,6 @@ public class VideoGroupObjectAdapter extends ObjectAdapter {
     }
 
     private void initData(VideoGroup videoGroup) {
-        sAdapterRegistry.add(this);
-
         if (videoGroup != null) {
             add(videoGroup);
         }
@@ -102,6 +110,8 @@ public class VideoGroupObjectAdapter extends ObjectAdapter {
             mVideoGroups.add(0, group);
         }
 
+        updateGroupId();
+
         // Fix double item blinking by specifying exact range
         notifyItemRangeInserted(0, mVideoItems.size() - begin);
     }
@@ -121,6 +131,8 @@ public class VideoGroupObjectAdapter extends ObjectAdapter {
             mVideoGroups.add(group);
         }
 
+        updateGroupId();
+
         // Fix double item blinking by specifying exact range
         notifyItemRangeInserted(begin, mVideoItems.size() - begin);
     }
@@ -167,6 +179,7 @@ public class VideoGroupObjectAdapter extends ObjectAdapter {
         int itemCount = mVideoItems.size();
         mVideoItems.clear();
         mVideoGroups.clear();
+        updateGroupId();
         if (itemCount != 0) {
             // NOTE: Crashes RecycleView IndexOutOfBoundsException when doing add immediately after clear
             notifyItemRangeRemoved(0, itemCount);
@@ -174,19 +187,40 @@ public class VideoGroupObjectAdapter extends ObjectAdapter {
     }
 
     public void remove(VideoGroup group) {
+        long startTimeMs = System.currentTimeMillis();
+
+        // Remove all occurrences of the same element (if present)
+        boolean[] removed = new boolean[mVideoItems.size()];
+        Map<Integer, List<Integer>> index = createIndex();
+
         for (Video video : group.getVideos()) {
-            while (true) { // remove all occurrences of the same element (if present)
-                int index = mVideoItems.indexOf(video);
-                if (index != -1) {
-                    mVideoItems.remove(video);
-                    notifyItemRangeRemoved(index, 1);
+            for (int position : findAll(index, video)) {
+                if (!removed[position]) {
+                    removed[position] = true;
                     removeFromGroup(video);
-                } else {
-                    break;
                 }
             }
         }
 
+        List<Video> result = new ArrayList<>(mVideoItems.size());
+
+        for (int i = 0; i < removed.length; i++) {
+            if (!removed[i]) {
+                result.add(mVideoItems.get(i));
+            }
+        }
+
+        if (result.size() != mVideoItems.size()) {
+            mVideoItems.clear();
+            mVideoItems.addAll(result);
+
+            // From the end. Positions before the range stay valid.
+            int ranges = notifyRanges(removed, true);
+
+            Log.d(TAG, "Removed %s of %s videos in %s ranges in %s ms",
+                    removed.length - result.size(), removed.length, ranges, System.currentTimeMillis() - startTimeMs);
+        }
+
         notifyOtherAdapters(group, TYPE_REMOVE);
     }
 
@@ -199,20 +233,99 @@ public class VideoGroupObjectAdapter extends ObjectAdapter {
     }
 
     public void sync(VideoGroup group) {
+        long startTimeMs = System.currentTimeMillis();
+
+        boolean[] changed = new boolean[mVideoItems.size()];
+        Map<Integer, List<Integer>> index = createIndex();
+
         for (Video video : group.getVideos()) {
             // Search for multiple occurrences (e.g. History section)
-            for (int i = 0; i < mVideoItems.size(); i++) {
-                Video origin = mVideoItems.get(i);
-                if (origin.equals(video)) {
-                    origin.sync(video);
-                    notifyItemRangeChanged(i, 1);
-                }
+            for (int position : findAll(index, video)) {
+                mVideoItems.get(position).sync(video);
+                changed[position] = true;
             }
         }
 
+        int ranges = notifyRanges(changed, false);
+
+        if (ranges > 0) {
+            Log.d(TAG, "Synced %s videos of %s in %s ranges in %s ms",
+                    group.getVideos().size(), changed.length, ranges, System.currentTimeMillis() - startTimeMs);
+        }
+
         notifyOtherAdapters(group, TYPE_SYNC);
     }
 
+    /**
+     * Hash -> positions. Built for every batch because the content of the videos may change between the calls.
+     */
+    private Map<Integer, List<Integer>> createIndex() {
+        Map<Integer, List<Integer>> result = new HashMap<>(mVideoItems.size() * 2);
+
+        for (int i = 0; i < mVideoItems.size(); i++) {
+            int hashCode = mVideoItems.get(i).hashCode();
+            List<Integer> positions = result.get(hashCode);
+
+            if (positions == null) {
+                positions = new ArrayList<>(1);
+                result.put(hashCode, positions);
+            }
+
+            positions.add(i);
+        }
+
+        return result;
+    }
+
+    private List<Integer> findAll(Map<Integer, List<Integer>> index, Video video) {
+        List<Integer> positions = video != null ? index.get(video.hashCode()) : null;
+
+        if (positions == null) {
+            return Collections.emptyList();
+        }
+
+        List<Integer> result = new ArrayList<>(positions.size());
+
+        for (int position : positions) {
+            if (video.equals(mVideoItems.get(position))) {
+                result.add(position);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Coalesce marked positions into contiguous ranges. Returns the number of ranges.
+     */
+    private int notifyRanges(boolean[] marked, boolean isRemoved) {
+        int ranges = 0;
+        int end = marked.length;
+
+        while (end > 0) {
+            if (!marked[end - 1]) {
+                end--;
+                continue;
+            }
+
+            int start = end - 1;
+            while (start > 0 && marked[start - 1]) {
+                start--;
+            }
+
+            if (isRemoved) {
+                notifyItemRangeRemoved(start, end - start);
+            } else {
+                notifyItemRangeChanged(start, end - start);
+            }
+
+            ranges++;
+            end = start;
+        }
+
+        return ranges;
+    }
+
     public boolean isEmpty() {
         return mVideoItems.isEmpty();
     }
@@ -223,17 +336,61 @@ public class VideoGroupObjectAdapter extends ObjectAdapter {
         }
     }
 
+    private void updateGroupId() {
+        int groupId = mVideoGroups.isEmpty() ? NO_GROUP_ID : mVideoGroups.get(mVideoGroups.size() - 1).getId();
+
+        if (groupId == mLastGroupId) {
+            return;
+        }
+
+        Set<VideoGroupObjectAdapter> adapters = sAdaptersByGroupId.get(mLastGroupId);
+
+        if (adapters != null) {
+            adapters.remove(this);
+
+            if (adapters.isEmpty()) {
+                sAdaptersByGroupId.remove(mLastGroupId);
+            }
+        }
+
+        mLastGroupId = groupId;
+
+        if (groupId == NO_GROUP_ID) {
+            return;
+        }
+
+        adapters = sAdaptersByGroupId.get(groupId);
+
+        if (adapters == null) {
+            adapters = Collections.newSetFromMap(new WeakHashMap<>());
+            sAdaptersByGroupId.put(groupId, adapters);
+        }
+
+        adapters.add(this);
+    }
+
+    /**
+     * Repeat the change in the first other adapter that shows the same group
+     */
     private void notifyOtherAdapters(VideoGroup group, int type) {
-        sAdapterRegistry.forEach(adapter -> {
-            if (adapter == this || adapter.isEmpty())
-                return;
+        // Don't bounce the change back
+        if (sIsNotifying) {
+            return;
+        }
+
+        Set<VideoGroupObjectAdapter> adapters = sAdaptersByGroupId.get(group.getId());
+
+        if (adapters == null) {
+            return;
+        }
 
-            List<VideoGroup> groups = adapter.getAllGroups();
+        for (VideoGroupObjectAdapter adapter : new ArrayList<>(adapters)) {
+            if (adapter == this || adapter.isEmpty())
+                continue;
 
-            VideoGroup lastGroup = groups.get(groups.size() - 1);
-            boolean adapterFound = lastGroup.getId() == group.getId();
+            sIsNotifying = true;
 
-            if (adapterFound) {
+            try {
                 switch (type) {
                     case TYPE_ADD:
                         adapter.add(group);
@@ -245,8 +402,11 @@ public class VideoGroupObjectAdapter extends ObjectAdapter {
                         adapter.sync(group);
                         break;
                 }
-                sAdapterRegistry.stopForEach();
+            } finally {
+                sIsNotifying = false;
             }
-        });
+
+            break;
+        }
     }
 }
@@ -7,6 +7,7 @@ import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentTransaction;
@@ -33,6 +34,7 @@ import com.liskovsoft.smartyoutubetv2.common.app.presenters.SearchPresenter;
 import com.liskovsoft.smartyoutubetv2.common.app.presenters.SplashPresenter;
 import com.liskovsoft.smartyoutubetv2.common.app.views.BrowseView;
 import com.liskovsoft.smartyoutubetv2.common.app.views.ViewManager;
+import com.liskovsoft.smartyoutubetv2.common.utils.StartupTaskGraph;
 import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
 import com.liskovsoft.smartyoutubetv2.tv.R;
 import com.liskovsoft.smartyoutubetv2.tv.presenter.IconHeaderItemPresenter;
@@ -334,6 +336,30 @@ public class BrowseFragment extends BrowseSupportFragment implements BrowseView
         mSectionFragmentFactory.updateCurrentFragment(group);
 
         fixInvisibleSearchOrb();
+
+        if (group != null && !group.isEmpty()) {
+            reportFirstFrame();
+        }
+    }
+
+    /**
+     * Deferred startup tasks wait for the first drawn content
+     */
+    private void reportFirstFrame() {
+        if (StartupTaskGraph.instance().isCompleted(StartupTaskGraph.FIRST_FRAME) || getView() == null) {
+            return;
+        }
+
+        View view = getView();
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Run after the frame is drawn
+                view.post(() -> StartupTaskGraph.instance().complete(StartupTaskGraph.FIRST_FRAME));
+                return true;
+            }
+        });
     }
 
     @Override
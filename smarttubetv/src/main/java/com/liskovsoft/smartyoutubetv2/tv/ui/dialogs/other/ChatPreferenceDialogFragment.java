@@ -67,7 +67,7 @@ public class ChatPreferenceDialogFragment extends LeanbackPreferenceDialogFragme
         messagesList.setAdapter(adapter);
 
         if (mChatReceiver != null) {
-            mChatReceiver.setCallback(chatItem -> adapter.addToStart(ChatItemMessage.from(chatItem), true));
+            mChatReceiver.setCallback(chatItems -> adapter.addToStart(ChatItemMessage.from(chatItems), true));
         }
 
         if (mIsTransparent) {
@@ -38,7 +38,6 @@ import androidx.media3.common.Player;
 import androidx.media3.exoplayer.ExoPlayer;
 import androidx.media3.ui.leanback.LeanbackPlayerAdapter;
 // import androidx.media3.session.MediaSessionConnector;
-import androidx.media3.exoplayer.trackselection.AdaptiveTrackSelection;
 import androidx.media3.exoplayer.trackselection.DefaultTrackSelector;
 import androidx.media3.common.util.Util;
 import com.liskovsoft.mediaserviceinterfaces.data.MediaItemFormatInfo;
@@ -55,6 +54,7 @@ import com.liskovsoft.smartyoutubetv2.common.exoplayer.controller.ExoPlayerContr
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.other.DebugInfoManager;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.other.ExoPlayerInitializer;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.other.SubtitleManager;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.BufferAwareTrackSelection;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.FormatItem;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.versions.renderer.CustomOverridesRenderersFactory;
 import com.liskovsoft.smartyoutubetv2.common.exoplayer.versions.selector.RestoreTrackSelector;
@@ -445,10 +445,9 @@ public class PlaybackFragment extends SeekModePlaybackFragment implements Playba
     private void createPlayer() {
         // mExoPlayerController.setEventListener(mPlaybackPresenter);
 
-        // Use default or pass your bandwidthMeter here: bandwidthMeter = new
-        // DefaultBandwidthMeter.Builder(getContext()).build()
+        // Bandwidth meter is set by the initializer
         DefaultTrackSelector trackSelector = new RestoreTrackSelector(getContext(),
-                new AdaptiveTrackSelection.Factory());
+                new BufferAwareTrackSelection.Factory(getContext()));
         mExoPlayerController.setTrackSelector(trackSelector);
 
         DefaultRenderersFactory renderersFactory = new CustomOverridesRenderersFactory(getContext());
@@ -490,7 +489,7 @@ public class PlaybackFragment extends SeekModePlaybackFragment implements Playba
     }
 
     private void createDebugManager() {
-        mDebugInfoManager = new DebugInfoManager(getActivity(), mPlayer, R.id.debug_view_group);
+        mDebugInfoManager = new DebugInfoManager(getActivity(), mPlayer, R.id.debug_view_group, mPlaybackPresenter::getEventStats);
     }
 
     private void initializeGlobalClock() {
@@ -918,6 +917,21 @@ public class PlaybackFragment extends SeekModePlaybackFragment implements Playba
         mExoPlayerController.openMerged(dashManifest, hlsPlaylistUrl);
     }
 
+    @Override
+    public void appendDash(Video video, MediaItemFormatInfo formatInfo) {
+        mExoPlayerController.appendDash(video, formatInfo);
+    }
+
+    @Override
+    public void clearAppended() {
+        mExoPlayerController.clearAppended();
+    }
+
+    @Override
+    public Video getAppendedVideo() {
+        return mExoPlayerController.getAppendedVideo();
+    }
+
     @Override
     public long getPositionMs() {
         return mExoPlayerController.getPositionMs();
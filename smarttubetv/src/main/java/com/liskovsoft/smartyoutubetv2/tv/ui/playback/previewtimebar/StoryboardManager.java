@@ -2,14 +2,7 @@ package com.liskovsoft.smartyoutubetv2.tv.ui.playback.previewtimebar;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.drawable.Drawable;
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-import androidx.collection.ArraySet;
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.CustomTarget;
-import com.bumptech.glide.request.target.Target;
-import com.bumptech.glide.request.transition.Transition;
+import android.os.SystemClock;
 import com.liskovsoft.mediaserviceinterfaces.MediaItemService;
 import com.liskovsoft.mediaserviceinterfaces.ServiceManager;
 import com.liskovsoft.mediaserviceinterfaces.data.MediaItemStoryboard;
@@ -17,28 +10,37 @@ import com.liskovsoft.mediaserviceinterfaces.data.MediaItemStoryboard.Size;
 import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.sharedutils.rx.RxHelper;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
-import com.liskovsoft.smartyoutubetv2.tv.util.ViewUtil;
 import com.liskovsoft.youtubeapi.service.YouTubeServiceManager;
 import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
 
-import java.util.Set;
-
+/**
+ * Seek thumbnails of the video.<br/>
+ * Tiles come from {@link StoryboardTileCache}. Sheets ahead are prefetched, the faster the seek the more sheets.
+ */
 public class StoryboardManager {
     private static final String TAG = StoryboardManager.class.getSimpleName();
     private static final long FRAME_DURATION_MS = 10_000;
-    private static final int MAX_PRELOADED_IMAGES = 3;
+    private static final int MIN_PRELOADED_IMAGES = 1;
+    private static final int MAX_PRELOADED_IMAGES = 10;
+    // Prefetch the sheets that will be reached within this time at the current seek speed
+    private static final long PRELOAD_AHEAD_MS = 3_000;
     private static final int DIRECTION_RIGHT = 0;
     private static final int DIRECTION_LEFT = 1;
     private final MediaItemService mMediaItemService;
     private final Context mContext;
+    private final StoryboardTileCache mTileCache;
     private long mLengthMs;
+    private String mVideoId;
     private MediaItemStoryboard mStoryboard;
     private Disposable mFormatAction;
     private long[] mSeekPositions;
     private int mCurrentImgNum = -1;
-    private final Set<Integer> mCachedImageNums = new ArraySet<>();
     private int mSeekDirection = DIRECTION_RIGHT;
+    private int mLastIndex = -1;
+    private long mLastIndexTimeMs;
+    // Thumbnails per second, smoothed
+    private float mSeekSpeed;
 
     public interface Callback {
         void onBitmapLoaded(Bitmap bitmap);
@@ -48,20 +50,27 @@ public class StoryboardManager {
         mContext = context;
         ServiceManager service = YouTubeServiceManager.instance();
         mMediaItemService = service.getMediaItemService();
+        mTileCache = StoryboardTileCache.instance(context);
+        mTileCache.trimDisk();
     }
 
     public void init(Video video, long lengthMs) {
         mLengthMs = lengthMs;
         mSeekPositions = null;
         mStoryboard = null;
-        mCachedImageNums.clear();
+        mVideoId = null;
+        mCurrentImgNum = -1;
+        mLastIndex = -1;
+        mSeekSpeed = 0;
 
         RxHelper.disposeActions(mFormatAction);
 
-        if (video == null || video.isUpcoming) {
+        if (video == null || video.isUpcoming || video.videoId == null) {
             return;
         }
 
+        mVideoId = video.videoId;
+
         Observable<MediaItemStoryboard> storyboardObserve;
 
         if (video.mediaItem != null) {
@@ -126,6 +135,8 @@ public class StoryboardManager {
             return;
         }
 
+        updateSeekSpeed(index);
+
         loadPreview(mSeekPositions[index], callback);
     }
 
@@ -137,63 +148,64 @@ public class StoryboardManager {
         int groupNum = (int) currentPosition / mStoryboard.getGroupDurationMS();
         long realPosMS = currentPosition % mStoryboard.getGroupDurationMS();
         Size size = mStoryboard.getGroupSize();
-        GlideThumbnailTransformation transformation =
-                new GlideThumbnailTransformation(realPosMS, size.getWidth(), size.getHeight(), size.getRowCount(), size.getColCount(), size.getDurationEachMS());
+        int tileNum = (int) realPosMS / size.getDurationEachMS();
 
         //Log.d(TAG, "Loading preview. Position: %s, groupNum: %s, groupDurationMS: %s, groupSize", currentPosition, groupNum, mStoryboard.getGroupDurationMS(), size);
 
-        Glide.with(mContext)
-                .asBitmap()
-                .load(mStoryboard.getGroupUrl(groupNum))
-                .apply(ViewUtil.glideOptions())
-                .override(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL)
-                .transform(transformation)
-                .into(new CustomTarget<Bitmap>() {
-                    @Override
-                    public void onResourceReady(@NonNull Bitmap resource, @Nullable Transition<? super Bitmap> transition) {
-                        //Log.d(TAG, "onPreviewLoaded: image hashCode: %s", resource.hashCode());
-                        callback.onBitmapLoaded(resource);
-                    }
-
-                    @Override
-                    public void onLoadCleared(@Nullable Drawable placeholder) {
-                        // NOP
-                    }
-                });
+        loadImage(groupNum, tiles -> callback.onBitmapLoaded(tiles[Math.min(tileNum, tiles.length - 1)]));
 
         if (mCurrentImgNum != groupNum) {
             mSeekDirection = mCurrentImgNum < groupNum ? DIRECTION_RIGHT : DIRECTION_LEFT;
-            mCachedImageNums.add(groupNum);
             mCurrentImgNum = groupNum;
-
-            preloadNextImage();
         }
+
+        preloadNextImages();
     }
 
-    private void preloadNextImage() {
-        if (mStoryboard == null) {
-            return;
-        }
+    /**
+     * Exponentially smoothed speed of the scrubbing
+     */
+    private void updateSeekSpeed(int index) {
+        long nowMs = SystemClock.elapsedRealtime();
 
-        for (int i = 1; i <= MAX_PRELOADED_IMAGES; i++) {
-            int imgNum = mSeekDirection == DIRECTION_RIGHT ? mCurrentImgNum + i : mCurrentImgNum - i; // get next image
-            preloadImage(imgNum);
+        if (mLastIndex != -1 && index != mLastIndex) {
+            float speed = Math.abs(index - mLastIndex) * 1_000f / Math.max(nowMs - mLastIndexTimeMs, 1);
+            mSeekSpeed = mSeekSpeed * 0.5f + speed * 0.5f;
         }
+
+        mLastIndex = index;
+        mLastIndexTimeMs = nowMs;
     }
 
-    private void preloadImage(int imgNum) {
-        if (mCachedImageNums.contains(imgNum) || imgNum < 0) {
+    private void preloadNextImages() {
+        if (mStoryboard == null) {
             return;
         }
 
-        Log.d(TAG, "Oops, image #" + imgNum + " didn't cached yet");
+        Size size = mStoryboard.getGroupSize();
+        int tilesPerImage = Math.max(1, size.getRowCount() * size.getColCount());
+        int count = (int) Math.ceil(mSeekSpeed * PRELOAD_AHEAD_MS / 1_000f / tilesPerImage);
+        count = Math.max(MIN_PRELOADED_IMAGES, Math.min(MAX_PRELOADED_IMAGES, count));
+        int lastImgNum = (int) ((mLengthMs - 1) / mStoryboard.getGroupDurationMS());
+
+        for (int i = 1; i <= count; i++) {
+            int imgNum = mSeekDirection == DIRECTION_RIGHT ? mCurrentImgNum + i : mCurrentImgNum - i; // get next image
 
-        mCachedImageNums.add(imgNum);
+            if (imgNum < 0 || imgNum > lastImgNum) {
+                break;
+            }
 
-        String link = mStoryboard.getGroupUrl(imgNum);
+            if (!mTileCache.contains(mVideoId, imgNum)) {
+                Log.d(TAG, "Preloading image #%s (seek speed %s thumbs/s)", imgNum, mSeekSpeed);
+                loadImage(imgNum, null);
+            }
+        }
+    }
+
+    private void loadImage(int imgNum, StoryboardTileCache.Callback callback) {
+        Size size = mStoryboard.getGroupSize();
 
-        Glide.with(mContext)
-                .load(link)
-                .preload();
+        mTileCache.load(mVideoId, imgNum, mStoryboard.getGroupUrl(imgNum),
+                size.getWidth(), size.getHeight(), size.getColCount(), size.getRowCount(), callback);
     }
 }
@@ -0,0 +1,219 @@
+package com.liskovsoft.smartyoutubetv2.tv.ui.playback.previewtimebar;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import com.bumptech.glide.Glide;
+import com.liskovsoft.sharedutils.helpers.FileHelpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.sharedutils.rx.RxHelper;
+import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Storyboard sheets sliced into tiles.<br/>
+ * Every sheet is downloaded and decoded once. Tiles are kept in the memory LRU, the sheets are kept on disk per video.<br/>
+ * Should be used from the main thread.
+ */
+class StoryboardTileCache {
+    private static final String TAG = StoryboardTileCache.class.getSimpleName();
+    private static final String DIR_NAME = "storyboards";
+    private static final int MAX_DISK_VIDEOS = 30;
+    private static StoryboardTileCache sInstance;
+    private final Context mContext;
+    private final LruCache<String, Bitmap[]> mTiles;
+    // Sheets being loaded -> waiting callbacks
+    private final Map<String, List<Callback>> mLoading = new HashMap<>();
+    private int mHitCount;
+    private int mMissCount;
+
+    interface Callback {
+        /**
+         * @param tiles row by row
+         */
+        void onTilesLoaded(Bitmap[] tiles);
+    }
+
+    private StoryboardTileCache(Context context) {
+        mContext = context.getApplicationContext();
+
+        int maxSizeBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, Integer.MAX_VALUE);
+
+        mTiles = new LruCache<String, Bitmap[]>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap[] tiles) {
+                int size = 0;
+
+                for (Bitmap tile : tiles) {
+                    size += tile.getByteCount();
+                }
+
+                return size;
+            }
+        };
+    }
+
+    static StoryboardTileCache instance(Context context) {
+        if (sInstance == null) {
+            sInstance = new StoryboardTileCache(context);
+        }
+
+        return sInstance;
+    }
+
+    boolean contains(String videoId, int groupNum) {
+        String key = getKey(videoId, groupNum);
+
+        return mTiles.get(key) != null || mLoading.containsKey(key);
+    }
+
+    /**
+     * @param tileWidth 0 to compute from the sheet size
+     * @param callback null to prefetch the sheet
+     */
+    void load(String videoId, int groupNum, String url, int tileWidth, int tileHeight, int colCount, int rowCount, Callback callback) {
+        String key = getKey(videoId, groupNum);
+        Bitmap[] tiles = mTiles.get(key);
+
+        if (tiles != null) {
+            mHitCount++;
+            if (callback != null) {
+                callback.onTilesLoaded(tiles);
+            }
+            return;
+        }
+
+        List<Callback> callbacks = mLoading.get(key);
+
+        if (callbacks == null) {
+            mMissCount++;
+            callbacks = new ArrayList<>();
+            mLoading.put(key, callbacks);
+
+            File file = getFile(videoId, groupNum);
+            RxHelper.runAsync(() -> {
+                Bitmap[] result = loadTiles(url, file, tileWidth, tileHeight, colCount, rowCount);
+                Utils.sHandler.post(() -> onTilesLoaded(key, result));
+            });
+        }
+
+        if (callback != null) {
+            callbacks.add(callback);
+        }
+    }
+
+    /**
+     * Remove the sheets of the oldest videos
+     */
+    void trimDisk() {
+        File dir = new File(mContext.getCacheDir(), DIR_NAME);
+
+        RxHelper.runAsync(() -> {
+            File[] videoDirs = dir.listFiles();
+
+            if (videoDirs == null || videoDirs.length <= MAX_DISK_VIDEOS) {
+                return;
+            }
+
+            Arrays.sort(videoDirs, (dir1, dir2) -> Long.compare(dir2.lastModified(), dir1.lastModified()));
+
+            for (int i = MAX_DISK_VIDEOS; i < videoDirs.length; i++) {
+                FileHelpers.delete(videoDirs[i]);
+            }
+        });
+    }
+
+    String getStats() {
+        return String.format(Locale.US, "hits %s, misses %s, memory %s KB", mHitCount, mMissCount, mTiles.size() / 1024);
+    }
+
+    private void onTilesLoaded(String key, Bitmap[] tiles) {
+        List<Callback> callbacks = mLoading.remove(key);
+
+        if (tiles == null) {
+            return;
+        }
+
+        mTiles.put(key, tiles);
+
+        if (callbacks != null) {
+            for (Callback callback : callbacks) {
+                callback.onTilesLoaded(tiles);
+            }
+        }
+    }
+
+    /**
+     * Runs in background
+     */
+    private Bitmap[] loadTiles(String url, File file, int tileWidth, int tileHeight, int colCount, int rowCount) {
+        long startTimeMs = System.currentTimeMillis();
+
+        try {
+            if (!file.exists()) {
+                File downloaded = Glide.with(mContext).downloadOnly().load(url).submit().get();
+                file.getParentFile().mkdirs();
+                FileHelpers.copy(downloaded, file);
+            }
+
+            // Mark as recently used
+            file.getParentFile().setLastModified(System.currentTimeMillis());
+
+            Bitmap sheet = BitmapFactory.decodeFile(file.getPath());
+
+            if (sheet == null) {
+                FileHelpers.delete(file);
+                return null;
+            }
+
+            Bitmap[] tiles = slice(sheet, tileWidth, tileHeight, colCount, rowCount);
+
+            // Single tile sheet is returned as is
+            if (tiles.length != 1 || tiles[0] != sheet) {
+                sheet.recycle();
+            }
+
+            Log.d(TAG, "Sheet %s loaded in %s ms", file.getName(), System.currentTimeMillis() - startTimeMs);
+
+            return tiles;
+        } catch (Exception e) {
+            Log.e(TAG, "Can't load sheet %s: %s", url, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The last sheet of the video may contain less rows or, if it's a single row, less columns
+     */
+    private static Bitmap[] slice(Bitmap sheet, int tileWidth, int tileHeight, int colCount, int rowCount) {
+        int width = Math.max(1, Math.min(tileWidth > 0 ? tileWidth : sheet.getWidth() / colCount, sheet.getWidth()));
+        int height = Math.max(1, Math.min(tileHeight > 0 ? tileHeight : sheet.getHeight() / rowCount, sheet.getHeight()));
+        int cols = Math.max(1, Math.min(colCount, sheet.getWidth() / width));
+        // Short sheet is a single row
+        int rows = cols < colCount ? 1 : Math.max(1, Math.min(rowCount, sheet.getHeight() / height));
+        Bitmap[] tiles = new Bitmap[cols * rows];
+
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = Bitmap.createBitmap(sheet, (i % cols) * width, (i / cols) * height, width, height);
+        }
+
+        return tiles;
+    }
+
+    private File getFile(String videoId, int groupNum) {
+        return new File(new File(mContext.getCacheDir(), DIR_NAME + "/" + videoId), groupNum + ".jpg");
+    }
+
+    private static String getKey(String videoId, int groupNum) {
+        return videoId + "/" + groupNum;
+    }
+}
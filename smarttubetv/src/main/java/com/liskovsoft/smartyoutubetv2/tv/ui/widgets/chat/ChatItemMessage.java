@@ -38,6 +38,16 @@ public class ChatItemMessage implements IMessage {
         return message;
     }
 
+    public static List<ChatItemMessage> from(List<ChatItem> chatItems) {
+        List<ChatItemMessage> result = new ArrayList<>(chatItems.size());
+
+        for (ChatItem chatItem : chatItems) {
+            result.add(from(chatItem));
+        }
+
+        return result;
+    }
+
     public static ChatItemMessage from(Context context, CommentItem commentItem) {
         ChatItemMessage message = new ChatItemMessage();
         message.mId = commentItem.getId();
@@ -68,7 +68,7 @@ public class LiveChatView extends com.stfalcon.chatkit.messages.MessagesList {
             setAdapter(mAdapter);
         }
 
-        mChatReceiver.setCallback(chatItem -> mAdapter.addToStart(ChatItemMessage.from(chatItem), true));
+        mChatReceiver.setCallback(chatItems -> mAdapter.addToStart(ChatItemMessage.from(chatItems), true));
     }
 
     private void alignChat() {
@@ -5,6 +5,7 @@ import android.graphics.Color;
 import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.ImageView.ScaleType;
@@ -12,10 +13,13 @@ import android.widget.ProgressBar;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
+import androidx.recyclerview.widget.RecyclerView;
+
 import com.bumptech.glide.Glide;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
 import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
 import com.liskovsoft.smartyoutubetv2.tv.R;
+import com.liskovsoft.smartyoutubetv2.tv.ui.widgets.embedplayer.EmbedPlayerPool;
 import com.liskovsoft.smartyoutubetv2.tv.ui.widgets.embedplayer.EmbedPlayerView;
 import com.liskovsoft.smartyoutubetv2.tv.util.ViewUtil;
 
@@ -169,9 +173,10 @@ public class ComplexImageView extends RelativeLayout {
             return;
         }
 
+        EmbedPlayerPool pool = EmbedPlayerPool.instance(getContext());
+
         if (mPreviewPlayer == null) {
-            mPreviewPlayer = new EmbedPlayerView(getContext());
-            mPreviewPlayer.setQuality(Math.min(mPreviewWidth, mPreviewHeight) < 300 ? EmbedPlayerView.QUALITY_LOW : EmbedPlayerView.QUALITY_NORMAL);
+            mPreviewPlayer = pool.acquire(Math.min(mPreviewWidth, mPreviewHeight) < 300 ? EmbedPlayerView.QUALITY_LOW : EmbedPlayerView.QUALITY_NORMAL);
             mPreviewPlayer.setUseController(false);
             mPreviewPlayer.setMute(mMute);
             mPreviewPlayer.setBackgroundColor(Color.BLACK);
@@ -179,9 +184,44 @@ public class ComplexImageView extends RelativeLayout {
             mPreviewContainer.setVisibility(View.VISIBLE);
         }
 
+        pool.setNextVideo(findNextVideo());
         mPreviewPlayer.openVideo(getVideo());
     }
 
+    /**
+     * Next card in the direction of the focus movement
+     */
+    private Video findNextVideo() {
+        View card = this;
+        ViewParent parent = getParent();
+
+        while (parent instanceof View && !(parent instanceof RecyclerView)) {
+            card = (View) parent;
+            parent = parent.getParent();
+        }
+
+        if (!(parent instanceof RecyclerView)) {
+            return null;
+        }
+
+        RecyclerView row = (RecyclerView) parent;
+        int position = row.getChildAdapterPosition(card);
+
+        if (position == RecyclerView.NO_POSITION) {
+            return null;
+        }
+
+        // Direction of the focus movement inside the row. Each row keeps its own position.
+        Object lastPosition = row.getTag(R.id.last_focused_position);
+        int nextPosition = lastPosition instanceof Integer && position < (Integer) lastPosition ? position - 1 : position + 1;
+        row.setTag(R.id.last_focused_position, position);
+
+        RecyclerView.ViewHolder holder = row.findViewHolderForAdapterPosition(nextPosition);
+        ComplexImageView next = holder != null ? holder.itemView.findViewById(R.id.main_image_wrapper) : null;
+
+        return next != null ? next.getVideo() : null;
+    }
+
     public void stopPlayback() {
         stopPlayback(false);
     }
@@ -204,16 +244,15 @@ public class ComplexImageView extends RelativeLayout {
 
             if (mPreviewPlayer != null) {
                 mPreviewContainer.setVisibility(View.GONE);
-                if (stopImmediately) {
+                if (stopImmediately) { // fullscreen player is about to start
                     mPreviewPlayer.finish();
                     mPreviewContainer.removeView(mPreviewPlayer);
                 } else {
                     EmbedPlayerView epv = mPreviewPlayer;
                     epv.setMute(true);
-                    Utils.postDelayed(() -> {
-                        epv.finish();
-                        mPreviewContainer.removeView(epv);
-                    }, 500);
+                    // Keep the engine for the next card
+                    EmbedPlayerPool pool = EmbedPlayerPool.instance(getContext());
+                    Utils.postDelayed(() -> pool.release(epv), 500);
                 }
                 mPreviewPlayer = null;
             }
@@ -0,0 +1,197 @@
+package com.liskovsoft.smartyoutubetv2.tv.ui.widgets.embedplayer;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.view.ViewGroup;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.other.PreBufferManager;
+import com.liskovsoft.smartyoutubetv2.common.exoplayer.selector.FormatItem;
+import com.liskovsoft.smartyoutubetv2.common.misc.MediaServiceManager;
+import com.liskovsoft.smartyoutubetv2.common.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Preview players shared by the cards of the activity.<br/>
+ * Released player keeps its engine, so moving the focus between the cards doesn't recreate the player and the decoders.<br/>
+ * Number of the parked players depends on the device memory. Idle players are released after {@link #IDLE_TIMEOUT_MS}.
+ */
+public class EmbedPlayerPool implements EmbedPlayerView.OnStartListener {
+    private static final String TAG = EmbedPlayerPool.class.getSimpleName();
+    private static final long IDLE_TIMEOUT_MS = 60_000;
+    private static EmbedPlayerPool sInstance;
+    private final Context mContext;
+    private final int mMaxSize;
+    private final List<EmbedPlayerView> mParked = new ArrayList<>();
+    private final Runnable mReleaseIdle = this::clear;
+    private Video mNextVideo;
+    private String mPreBufferedVideoId;
+    private int mCreatedCount;
+    private int mReusedCount;
+    private int mStartCount;
+    private long mStartupSumMs;
+
+    private EmbedPlayerPool(Context context) {
+        mContext = context;
+        mMaxSize = getMaxSize(context);
+    }
+
+    /**
+     * Players are bound to the activity. The pool of the previous activity is released.
+     */
+    public static EmbedPlayerPool instance(Context context) {
+        if (sInstance == null || sInstance.mContext != context) {
+            if (sInstance != null) {
+                sInstance.clear();
+            }
+
+            sInstance = new EmbedPlayerPool(context);
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Releases the players of the destroyed activity
+     */
+    public static void unhold(Context context) {
+        if (sInstance != null && sInstance.mContext == context) {
+            sInstance.clear();
+            sInstance = null;
+        }
+    }
+
+    /**
+     * Parked player of the same quality is preferred
+     */
+    public EmbedPlayerView acquire(int quality) {
+        EmbedPlayerView player = null;
+
+        for (EmbedPlayerView parked : mParked) {
+            if (player == null || parked.getQuality() == quality) {
+                player = parked;
+            }
+        }
+
+        if (player != null) {
+            mParked.remove(player);
+        } else {
+            player = new EmbedPlayerView(mContext);
+            player.setOnStartListener(this);
+            mCreatedCount++;
+        }
+
+        if (mParked.isEmpty()) {
+            Utils.removeCallbacks(mReleaseIdle);
+        }
+
+        player.setQuality(quality);
+
+        return player;
+    }
+
+    /**
+     * Detach the player from the card and park it for the next card
+     */
+    public void release(EmbedPlayerView player) {
+        if (player == null) {
+            return;
+        }
+
+        if (player.getParent() instanceof ViewGroup) {
+            ((ViewGroup) player.getParent()).removeView(player);
+        }
+
+        if (mParked.size() >= mMaxSize || isLowMemory()) {
+            player.finish();
+            return;
+        }
+
+        player.park();
+
+        if (!player.isParked()) { // the engine isn't created yet
+            player.finish();
+            return;
+        }
+
+        mParked.add(player);
+        Utils.postDelayed(mReleaseIdle, IDLE_TIMEOUT_MS);
+    }
+
+    public void clear() {
+        Utils.removeCallbacks(mReleaseIdle);
+
+        for (EmbedPlayerView player : mParked) {
+            player.finish();
+        }
+
+        mParked.clear();
+    }
+
+    /**
+     * The card that is likely to be focused after the current one.<br/>
+     * Its beginning is fetched once the current preview has started.
+     */
+    public void setNextVideo(Video video) {
+        mNextVideo = video;
+    }
+
+    @Override
+    public void onStart(EmbedPlayerView player, long startupMs, boolean isReused) {
+        if (isReused) {
+            mReusedCount++;
+        }
+
+        mStartCount++;
+        mStartupSumMs += startupMs;
+
+        Log.d(TAG, "Preview started in %s ms. %s", startupMs, getStats());
+
+        preBuffer(mNextVideo, player.getQuality());
+    }
+
+    public String getStats() {
+        return String.format(Locale.US, "Players: created %s, reused %s, parked %s/%s. Avg startup: %s ms",
+                mCreatedCount, mReusedCount, mParked.size(), mMaxSize, mStartCount > 0 ? mStartupSumMs / mStartCount : 0);
+    }
+
+    private void preBuffer(Video video, int quality) {
+        if (video == null || video.videoId == null || video.isLive || video.videoId.equals(mPreBufferedVideoId)) {
+            return;
+        }
+
+        mPreBufferedVideoId = video.videoId;
+        FormatItem format = quality == EmbedPlayerView.QUALITY_LOW ? FormatItem.VIDEO_SUB_SD_AVC_30 : FormatItem.VIDEO_SD_AVC_30;
+
+        MediaServiceManager.instance().loadFormatInfo(video,
+                formatInfo -> PreBufferManager.instance(mContext).preBufferPreview(video.videoId, formatInfo, format));
+    }
+
+    private boolean isLowMemory() {
+        ActivityManager activityManager = (ActivityManager) mContext.getSystemService(Context.ACTIVITY_SERVICE);
+
+        if (activityManager == null) {
+            return false;
+        }
+
+        ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(memoryInfo);
+
+        return memoryInfo.lowMemory;
+    }
+
+    private static int getMaxSize(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+
+        if (activityManager == null || activityManager.isLowRamDevice()) {
+            return 1;
+        }
+
+        // One preview plays at a time. The second one covers the delayed stop of the previous card.
+        return activityManager.getMemoryClass() >= 192 ? 2 : 1;
+    }
+}
@@ -1,6 +1,7 @@
 package com.liskovsoft.smartyoutubetv2.tv.ui.widgets.embedplayer;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 
 import androidx.annotation.Nullable;
@@ -12,6 +13,7 @@ import androidx.media3.exoplayer.trackselection.DefaultTrackSelector;
 import androidx.media3.ui.AspectRatioFrameLayout;
 import androidx.media3.ui.PlayerView;
 import com.liskovsoft.mediaserviceinterfaces.data.MediaItemFormatInfo;
+import com.liskovsoft.sharedutils.mylogger.Log;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
 import com.liskovsoft.smartyoutubetv2.common.app.models.data.VideoGroup;
 import com.liskovsoft.smartyoutubetv2.common.app.models.playback.ui.ChatReceiver;
@@ -47,6 +49,19 @@ public class EmbedPlayerView extends PlayerView implements PlaybackView {
     private final Runnable mStopPlayback = this::finish;
     private int mQuality;
     private float mPercentWatched;
+    // Engine is kept for the next video. See park().
+    private boolean mIsParked;
+    private long mOpenTimeMs;
+    private boolean mPlayerReused;
+    private OnStartListener mOnStartListener;
+
+    public interface OnStartListener {
+        /**
+         * @param startupMs time from the open call to the loaded video
+         * @param isReused engine was parked before the open call
+         */
+        void onStart(EmbedPlayerView player, long startupMs, boolean isReused);
+    }
 
     public EmbedPlayerView(Context context) {
         super(context);
@@ -290,6 +305,21 @@ public class EmbedPlayerView extends PlayerView implements PlaybackView {
         mExoPlayerController.openMerged(dashManifest, hlsPlaylistUrl);
     }
 
+    @Override
+    public void appendDash(Video video, MediaItemFormatInfo formatInfo) {
+        mExoPlayerController.appendDash(video, formatInfo);
+    }
+
+    @Override
+    public void clearAppended() {
+        mExoPlayerController.clearAppended();
+    }
+
+    @Override
+    public Video getAppendedVideo() {
+        return mExoPlayerController.getAppendedVideo();
+    }
+
     @Override
     public long getPositionMs() {
         return mExoPlayerController.getPositionMs();
@@ -370,7 +400,11 @@ public class EmbedPlayerView extends PlayerView implements PlaybackView {
 
     @Override
     public boolean isEngineInitialized() {
-        return mPlayer != null;
+        return mPlayer != null && !mIsParked;
+    }
+
+    public boolean isParked() {
+        return mIsParked;
     }
 
     @Override
@@ -498,6 +532,14 @@ public class EmbedPlayerView extends PlayerView implements PlaybackView {
         mQuality = quality;
     }
 
+    public int getQuality() {
+        return mQuality;
+    }
+
+    public void setOnStartListener(OnStartListener listener) {
+        mOnStartListener = listener;
+    }
+
     public void openVideo(String videoId) {
         openVideo(Video.from(videoId));
     }
@@ -515,6 +557,8 @@ public class EmbedPlayerView extends PlayerView implements PlaybackView {
         PlaybackView view = mPlaybackPresenter.getView();
         if (view == null || view instanceof EmbedPlayerView
                 || !PlaybackPresenter.instance(getContext()).isEngineInitialized()) {
+            mOpenTimeMs = SystemClock.elapsedRealtime();
+            mPlayerReused = mIsParked;
             initPlayer();
             createPlayerObjects();
             mPlaybackPresenter.onNewVideo(video);
@@ -523,7 +567,7 @@ public class EmbedPlayerView extends PlayerView implements PlaybackView {
     }
 
     private void initPlayer() {
-        if (isEngineInitialized()) {
+        if (isEngineInitialized() || mIsParked) {
             mPlaybackPresenter.setView(this);
             return;
         }
@@ -543,6 +587,11 @@ public class EmbedPlayerView extends PlayerView implements PlaybackView {
             return;
         }
 
+        if (mIsParked) {
+            unpark();
+            return;
+        }
+
         // Use default or pass your bandwidthMeter here: bandwidthMeter = new
         // DefaultBandwidthMeter.Builder(getContext()).build()
         DefaultTrackSelector trackSelector = new RestoreTrackSelector(getContext(),
@@ -570,6 +619,14 @@ public class EmbedPlayerView extends PlayerView implements PlaybackView {
     }
 
     private void destroyPlayerObjects() {
+        if (mIsParked) {
+            // Controllers are notified already
+            mExoPlayerController.release();
+            mPlayer = null;
+            mIsParked = false;
+            return;
+        }
+
         if (isEngineInitialized()) {
             Utils.removeCallbacks(mShowView);
             Utils.removeCallbacks(mStopPlayback);
@@ -587,6 +644,47 @@ public class EmbedPlayerView extends PlayerView implements PlaybackView {
         }
     }
 
+    /**
+     * Stop the playback but keep the engine (player, track selector, renderers factory) for the next video.<br/>
+     * The controllers are notified as with {@link #finish()}. Use {@link #finish()} to release the parked engine.
+     */
+    public void park() {
+        if (!isEngineInitialized()) {
+            return;
+        }
+
+        Utils.removeCallbacks(mShowView);
+        Utils.removeCallbacks(mStopPlayback);
+        // Don't replace main player!
+        if (mPlaybackPresenter.getView() == null || mPlaybackPresenter.getView() == this) {
+            mPlaybackPresenter.onEngineReleased();
+        }
+        // Don't report the stop to the presenter
+        mPlayer.removeListener(mExoPlayerController);
+        mPlayer.setPlayWhenReady(false);
+        mPlayer.stop();
+        mPlayer.clearMediaItems();
+        setPlayer(null);
+        hideView();
+        syncPositionIfNeeded();
+        mIsParked = true;
+    }
+
+    private void unpark() {
+        mIsParked = false;
+
+        mExoPlayerController.setPlayer(mPlayer);
+        mExoPlayerController.setOnVideoLoaded(this::onVideoLoaded);
+        mPlayer.setPlayWhenReady(true);
+        mExoPlayerController
+                .selectFormat(mQuality == QUALITY_LOW ? FormatItem.VIDEO_SUB_SD_AVC_30 : FormatItem.VIDEO_SD_AVC_30);
+        mExoPlayerController.setVolume(mIsMute ? 0 : 1f);
+
+        setPlayer(mPlayer);
+
+        mPlaybackPresenter.onEngineInitialized(); // start playback
+    }
+
     private void syncPositionIfNeeded() {
         if (!mIsMute && isPositionChanged()) {
             BasePresenter<?> presenter = ViewManager.instance(getContext()).getTopPresenter();
@@ -601,6 +699,15 @@ public class EmbedPlayerView extends PlayerView implements PlaybackView {
     }
 
     private void onVideoLoaded() {
+        if (mOpenTimeMs != 0) {
+            long startupMs = SystemClock.elapsedRealtime() - mOpenTimeMs;
+            Log.d(TAG, "Preview started in %s ms", startupMs);
+            if (mOnStartListener != null) {
+                mOnStartListener.onStart(this, startupMs, mPlayerReused);
+            }
+            mOpenTimeMs = 0;
+        }
+
         // Fix the screen becomes black for a moment
         Utils.postDelayed(mShowView, 1_000);
         if (mIsMute) { // Save bandwidth if the previews are muted
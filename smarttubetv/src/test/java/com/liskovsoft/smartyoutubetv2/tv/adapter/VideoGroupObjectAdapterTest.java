@@ -0,0 +1,198 @@
+package com.liskovsoft.smartyoutubetv2.tv.adapter;
+
+import androidx.leanback.widget.ObjectAdapter;
+import androidx.leanback.widget.Presenter;
+
+import com.liskovsoft.smartyoutubetv2.common.app.models.data.Video;
+import com.liskovsoft.smartyoutubetv2.common.app.models.data.VideoGroup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sync and remove notify coalesced ranges (from the end) and scale linearly on the full grid
+ */
+@RunWith(RobolectricTestRunner.class)
+public class VideoGroupObjectAdapterTest {
+    private static final int GRID_SIZE = 5_000;
+    private static final long MAX_BATCH_MS = 500;
+    private static int sGroupId = 1;
+
+    @Test
+    public void testSyncCoalescesRanges() {
+        VideoGroupObjectAdapter adapter = createAdapter(100);
+        RangeObserver observer = observe(adapter);
+
+        List<Video> changed = new ArrayList<>();
+        changed.addAll(createVideos(10, 20, 50));
+        changed.addAll(createVideos(30, 35, 50));
+        // Not in the adapter
+        changed.addAll(createVideos(200, 210, 50));
+
+        adapter.sync(createGroup(changed));
+
+        assertEquals(Arrays.asList("changed 30 5", "changed 10 10"), observer.mRanges);
+        assertEquals(50, adapter.getAll().get(15).percentWatched, 0);
+        assertEquals(0, adapter.getAll().get(25).percentWatched, 0);
+    }
+
+    @Test
+    public void testSyncDuplicates() {
+        List<Video> videos = createVideos(0, 10, 0);
+        // Same video in another place (e.g. History section)
+        videos.add(createVideo(3, 0));
+        VideoGroupObjectAdapter adapter = new VideoGroupObjectAdapter(createGroup(videos), (Presenter) null);
+        RangeObserver observer = observe(adapter);
+
+        adapter.sync(createGroup(createVideos(3, 4, 70)));
+
+        assertEquals(Arrays.asList("changed 10 1", "changed 3 1"), observer.mRanges);
+        assertEquals(70, adapter.getAll().get(10).percentWatched, 0);
+    }
+
+    @Test
+    public void testRemoveCoalescesRanges() {
+        VideoGroupObjectAdapter adapter = createAdapter(100);
+        RangeObserver observer = observe(adapter);
+
+        List<Video> removed = new ArrayList<>(adapter.getAll().subList(20, 40));
+        removed.add(adapter.getAll().get(50));
+        removed.add(adapter.getAll().get(99));
+
+        adapter.remove(createGroup(removed));
+
+        // Positions before the range stay valid
+        assertEquals(Arrays.asList("removed 99 1", "removed 50 1", "removed 20 20"), observer.mRanges);
+        assertEquals(78, adapter.size());
+        assertEquals("video19", adapter.getAll().get(19).videoId);
+        assertEquals("video40", adapter.getAll().get(20).videoId);
+        assertEquals("video98", adapter.getAll().get(77).videoId);
+    }
+
+    @Test
+    public void testRemoveMissing() {
+        VideoGroupObjectAdapter adapter = createAdapter(10);
+        RangeObserver observer = observe(adapter);
+
+        adapter.remove(createGroup(createVideos(20, 30, 0)));
+
+        assertTrue(observer.mRanges.isEmpty());
+        assertEquals(10, adapter.size());
+    }
+
+    /**
+     * Every other item is changed (worst case for the ranges). The grid is 10 times bigger, the time should grow about the same.
+     */
+    @Test
+    public void benchmarkFullGrid() {
+        long smallSyncMs = measureSync(GRID_SIZE / 10);
+        long syncMs = measureSync(GRID_SIZE);
+
+        long smallRemoveMs = measureRemove(GRID_SIZE / 10);
+        long removeMs = measureRemove(GRID_SIZE);
+
+        assertTrue(String.format("Sync %s ms, small grid %s ms", syncMs, smallSyncMs),
+                syncMs < MAX_BATCH_MS && syncMs <= smallSyncMs * 30 + 50);
+        assertTrue(String.format("Remove %s ms, small grid %s ms", removeMs, smallRemoveMs),
+                removeMs < MAX_BATCH_MS && removeMs <= smallRemoveMs * 30 + 50);
+    }
+
+    private long measureSync(int size) {
+        VideoGroupObjectAdapter adapter = createAdapter(size);
+        RangeObserver observer = observe(adapter);
+        List<Video> changed = new ArrayList<>();
+
+        for (int i = 0; i < size; i += 2) {
+            changed.add(createVideo(i, 50));
+        }
+
+        VideoGroup group = createGroup(changed);
+
+        long startTimeMs = System.currentTimeMillis();
+        adapter.sync(group);
+        long syncMs = System.currentTimeMillis() - startTimeMs;
+
+        assertEquals(size / 2, observer.mRanges.size());
+
+        return syncMs;
+    }
+
+    private long measureRemove(int size) {
+        VideoGroupObjectAdapter adapter = createAdapter(size);
+        RangeObserver observer = observe(adapter);
+        List<Video> removed = new ArrayList<>();
+
+        for (int i = 0; i < size; i += 2) {
+            removed.add(adapter.getAll().get(i));
+        }
+
+        VideoGroup group = createGroup(removed);
+
+        long startTimeMs = System.currentTimeMillis();
+        adapter.remove(group);
+        long removeMs = System.currentTimeMillis() - startTimeMs;
+
+        assertEquals(size / 2, observer.mRanges.size());
+        assertEquals(size / 2, adapter.size());
+
+        return removeMs;
+    }
+
+    private static VideoGroupObjectAdapter createAdapter(int size) {
+        return new VideoGroupObjectAdapter(createGroup(createVideos(0, size, 0)), (Presenter) null);
+    }
+
+    /**
+     * Unique id. Adapters of the same group repeat the changes of each other.
+     */
+    private static VideoGroup createGroup(List<Video> videos) {
+        VideoGroup group = VideoGroup.from(videos);
+        group.setId(sGroupId++);
+        return group;
+    }
+
+    private static List<Video> createVideos(int from, int to, float percentWatched) {
+        List<Video> result = new ArrayList<>();
+
+        for (int i = from; i < to; i++) {
+            result.add(createVideo(i, percentWatched));
+        }
+
+        return result;
+    }
+
+    private static Video createVideo(int num, float percentWatched) {
+        Video video = new Video();
+        video.videoId = "video" + num;
+        video.percentWatched = percentWatched;
+        return video;
+    }
+
+    private static RangeObserver observe(ObjectAdapter adapter) {
+        RangeObserver observer = new RangeObserver();
+        adapter.registerObserver(observer);
+        return observer;
+    }
+
+    private static class RangeObserver extends ObjectAdapter.DataObserver {
+        private final List<String> mRanges = new ArrayList<>();
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            mRanges.add("changed " + positionStart + " " + itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mRanges.add("removed " + positionStart + " " + itemCount);
+        }
+    }
+}